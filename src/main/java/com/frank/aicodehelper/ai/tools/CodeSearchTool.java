@@ -0,0 +1,89 @@
+package com.frank.aicodehelper.ai.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.ai.tools.support.CodeSearchIndex;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 代码搜索工具
+ * 基于每个应用的 trigram 索引查找字符串出现的位置，返回 文件:行号 片段，
+ * 用一次索引查询代替逐个 readFile 查找符号或样式类的引用
+ */
+@Slf4j
+@Component
+public class CodeSearchTool extends BaseTool {
+
+    /**
+     * 默认返回条数
+     */
+    private static final int DEFAULT_MAX_RESULTS = 20;
+
+    /**
+     * 返回条数上限
+     */
+    private static final int MAX_RESULTS_LIMIT = 50;
+
+    @Resource
+    private CodeSearchIndex codeSearchIndex;
+
+    @Tool("在项目代码中搜索字符串（大小写不敏感），返回匹配的 文件:行号 和该行内容。用于查找组件、函数、变量、CSS 类名等在哪些文件中定义或使用，比逐个读取文件更快")
+    public String searchCode(
+            @P("要搜索的字符串，如组件名、函数名、CSS 类名")
+            String query,
+            @P(value = "最大返回条数，默认 20，最多 50", required = false)
+            Integer maxResults,
+            @ToolMemoryId Long appId
+    ) {
+        if (StrUtil.isBlank(query)) {
+            return "错误：搜索内容不能为空";
+        }
+        Path projectRoot = resolveProjectRoot(appId);
+        if (projectRoot == null) {
+            return "错误：未找到项目目录，appId: " + appId;
+        }
+        int limit = maxResults == null || maxResults <= 0
+                ? DEFAULT_MAX_RESULTS
+                : Math.min(maxResults, MAX_RESULTS_LIMIT);
+
+        CodeSearchIndex.SearchResult result = codeSearchIndex.search(appId, projectRoot, query, limit);
+        log.info("代码搜索: appId={}, query={}, 命中 {} 处", appId, query, result.totalHits());
+        if (result.hits().isEmpty()) {
+            return "未找到匹配内容: " + query;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("搜索 \"%s\" 共命中 %d 处", query, result.totalHits()));
+        if (result.totalHits() > result.hits().size()) {
+            sb.append(String.format("（仅显示前 %d 处，可使用更精确的关键字）", result.hits().size()));
+        }
+        sb.append(":\n");
+        for (CodeSearchIndex.Hit hit : result.hits()) {
+            sb.append(hit.filePath()).append(':').append(hit.line()).append(": ").append(hit.snippet()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getToolName() {
+        return "searchCode";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "搜索代码";
+    }
+
+    @Override
+    public String generateToolExecutedResult(JSONObject arguments) {
+        String query = arguments.getStr("query");
+        return String.format("[工具调用] %s \"%s\"", getDisplayName(), query);
+    }
+}
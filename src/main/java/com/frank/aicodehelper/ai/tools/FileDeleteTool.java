@@ -1,9 +1,13 @@
 package com.frank.aicodehelper.ai.tools;
 
 import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.ai.tools.support.CodeSearchIndex;
+import com.frank.aicodehelper.ai.tools.support.LineOffsetIndexCache;
+import com.frank.aicodehelper.service.ProjectSummaryService;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -19,6 +23,15 @@ import java.nio.file.Path;
 @Component
 public class FileDeleteTool extends BaseTool{
 
+    @Resource
+    private CodeSearchIndex codeSearchIndex;
+
+    @Resource
+    private LineOffsetIndexCache lineOffsetIndexCache;
+
+    @Resource
+    private ProjectSummaryService projectSummaryService;
+
     @Tool("删除指定路径的文件")
     public String deleteFile(
             @P("文件的相对路径")
@@ -42,6 +55,9 @@ public class FileDeleteTool extends BaseTool{
             }
             Files.delete(path);
             log.info("成功删除文件: {}", path.toAbsolutePath());
+            codeSearchIndex.onFileDeleted(appId, path);
+            lineOffsetIndexCache.invalidate(path);
+            projectSummaryService.onFileDeleted(appId, path);
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
             String errorMessage = "删除文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
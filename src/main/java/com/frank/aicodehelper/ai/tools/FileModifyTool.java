@@ -1,9 +1,13 @@
 package com.frank.aicodehelper.ai.tools;
 
 import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.ai.tools.support.CodeSearchIndex;
+import com.frank.aicodehelper.ai.tools.support.LineOffsetIndexCache;
+import com.frank.aicodehelper.service.ProjectSummaryService;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -21,6 +25,15 @@ import java.util.List;
 @Component
 public class FileModifyTool extends BaseTool{
 
+    @Resource
+    private CodeSearchIndex codeSearchIndex;
+
+    @Resource
+    private LineOffsetIndexCache lineOffsetIndexCache;
+
+    @Resource
+    private ProjectSummaryService projectSummaryService;
+
     @Tool("修改文件内容，用新内容替换指定的旧内容")
     public String modifyFile(
             @P("文件的相对路径")
@@ -85,6 +98,9 @@ public class FileModifyTool extends BaseTool{
 
             Files.writeString(path, modifiedContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
             log.info("=== 成功修改文件: {} ===", path.toAbsolutePath());
+            codeSearchIndex.onFileChanged(appId, path);
+            lineOffsetIndexCache.invalidate(path);
+            projectSummaryService.onFileChanged(appId, path);
 
             // 轻量级代码验证
             List<String> validationErrors = CodeQuickValidator.validate(relativeFilePath, modifiedContent);
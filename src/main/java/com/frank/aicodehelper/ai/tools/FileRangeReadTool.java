@@ -0,0 +1,117 @@
+package com.frank.aicodehelper.ai.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.ai.tools.support.LineOffsetIndex;
+import com.frank.aicodehelper.ai.tools.support.LineOffsetIndexCache;
+import com.frank.aicodehelper.ai.tools.support.SymbolLocator;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 文件片段读取工具
+ * 只返回指定行范围、Vue 区块（template/script/style）或符号（函数/变量/CSS 选择器/组件标签）对应的内容，
+ * 避免为了查看一小段代码而读取整个大文件
+ */
+@Slf4j
+@Component
+public class FileRangeReadTool extends BaseTool {
+
+    @Resource
+    private LineOffsetIndexCache lineOffsetIndexCache;
+
+    @Tool("读取文件的局部内容：按行号范围读取，或按区块/符号名读取（如 template、script、style、函数名、变量名、.css-class、组件标签名）。只需要查看文件的一部分时优先使用此工具而不是 readFile")
+    public String readFileRange(
+            @P("文件的相对路径")
+            String relativeFilePath,
+            @P(value = "起始行号（从 1 开始，含），按符号读取时可不填", required = false)
+            Integer startLine,
+            @P(value = "结束行号（含），按符号读取时可不填", required = false)
+            Integer endLine,
+            @P(value = "区块或符号名称：template / script / style / 函数名 / 变量名 / .css-class / 组件标签名，按行号读取时可不填", required = false)
+            String symbol,
+            @ToolMemoryId Long appId
+    ) {
+        try {
+            Path path = resolveFilePath(relativeFilePath, appId);
+            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+                return "错误：文件不存在或不是文件 - " + relativeFilePath;
+            }
+            LineOffsetIndex index = lineOffsetIndexCache.get(path);
+            int totalLines = index.lineCount();
+
+            int fromLine;
+            int toLine;
+            if (StrUtil.isNotBlank(symbol)) {
+                int[] range = locate(index.getContent(), symbol.trim());
+                if (range == null) {
+                    return String.format("未在 %s 中找到 \"%s\"（共 %d 行），请检查名称或按行号读取",
+                            relativeFilePath, symbol, totalLines);
+                }
+                fromLine = index.lineOf(range[0]);
+                toLine = index.lineOf(Math.max(range[0], range[1] - 1));
+            } else if (startLine != null) {
+                fromLine = Math.max(1, startLine);
+                toLine = endLine != null ? Math.min(endLine, totalLines) : totalLines;
+                if (fromLine > totalLines || toLine < fromLine) {
+                    return String.format("错误：行号范围无效 %d-%s，文件 %s 共 %d 行",
+                            startLine, endLine, relativeFilePath, totalLines);
+                }
+            } else {
+                return "错误：请提供行号范围（startLine/endLine）或区块/符号名称（symbol）";
+            }
+
+            log.info("读取文件片段: {} 第 {}-{} 行（共 {} 行）", path.toAbsolutePath(), fromLine, toLine, totalLines);
+            return String.format("文件 %s 第 %d-%d 行（共 %d 行）:\n%s",
+                    relativeFilePath, fromLine, toLine, totalLines, index.slice(fromLine, toLine));
+        } catch (IOException e) {
+            String errorMessage = "读取文件片段失败: " + relativeFilePath + ", 错误: " + e.getMessage();
+            log.error(errorMessage, e);
+            return errorMessage;
+        }
+    }
+
+    /**
+     * 定位区块或符号：Vue 顶层区块优先，其次按符号查找
+     */
+    private int[] locate(String content, String symbol) {
+        String section = symbol.replaceAll("[<>/]", "").toLowerCase();
+        if (VueCodeChunker.VUE_SECTIONS.contains(section)) {
+            int[] range = VueCodeChunker.locateSection(content, section);
+            if (range != null) {
+                return range;
+            }
+        }
+        return SymbolLocator.locate(content, symbol);
+    }
+
+    @Override
+    public String getToolName() {
+        return "readFileRange";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "读取文件片段";
+    }
+
+    @Override
+    public String generateToolExecutedResult(JSONObject arguments) {
+        String relativeFilePath = arguments.getStr("relativeFilePath");
+        String symbol = arguments.getStr("symbol");
+        if (StrUtil.isNotBlank(symbol)) {
+            return String.format("[工具调用] %s %s (%s)", getDisplayName(), relativeFilePath, symbol);
+        }
+        return String.format("[工具调用] %s %s (第 %s-%s 行)", getDisplayName(), relativeFilePath,
+                arguments.getStr("startLine", "1"), arguments.getStr("endLine", "末尾"));
+    }
+}
@@ -2,9 +2,13 @@ package com.frank.aicodehelper.ai.tools;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.ai.tools.support.CodeSearchIndex;
+import com.frank.aicodehelper.ai.tools.support.LineOffsetIndexCache;
+import com.frank.aicodehelper.service.ProjectSummaryService;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -22,6 +26,15 @@ import java.util.List;
 @Component
 public class FileWriteTool extends BaseTool {
 
+    @Resource
+    private CodeSearchIndex codeSearchIndex;
+
+    @Resource
+    private LineOffsetIndexCache lineOffsetIndexCache;
+
+    @Resource
+    private ProjectSummaryService projectSummaryService;
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -41,6 +54,9 @@ public class FileWriteTool extends BaseTool {
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功写入文件: {}", path.toAbsolutePath());
+            codeSearchIndex.onFileChanged(appId, path);
+            lineOffsetIndexCache.invalidate(path);
+            projectSummaryService.onFileChanged(appId, path);
 
             // 轻量级代码验证
             List<String> validationErrors = CodeQuickValidator.validate(relativeFilePath, content);
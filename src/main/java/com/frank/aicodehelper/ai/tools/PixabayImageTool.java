@@ -5,8 +5,11 @@ import cn.hutool.http.HttpResponse;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.frank.aicodehelper.ai.tools.support.ImageSearchCache;
+import com.frank.aicodehelper.ai.tools.support.ProviderCircuitBreaker;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -17,14 +20,22 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
- * 统一图片搜索工具（Pixabay + Pexels 双源回退）
+ * 统一图片搜索工具（Pixabay + Pexels 双源竞速）
  * 
  * 搜索策略：
- * 1. 优先使用 Pixabay API（国内访问稳定，支持中文，图库丰富）
- * 2. Pixabay 失败时自动回退到 Pexels API
- * 3. 两者都失败时返回占位图
+ * 1. 先查二级缓存（Caffeine + Redis），相同关键词/用途/数量直接返回
+ * 2. 未命中时并发请求 Pixabay 和 Pexels，取最先返回的有效结果
+ * 3. 每个提供方独立熔断，连续失败后暂时跳过，避免拖慢整体响应
+ * 4. 两者都失败时返回占位图（占位图不缓存）
  * 
  * Pixabay 特点：
  * - 超过 2700 万张免费图片资源
@@ -41,8 +52,27 @@ import java.util.Set;
 @Component
 public class PixabayImageTool extends BaseTool {
 
-    private static final String PIXABAY_API_URL = "https://pixabay.com/api/";
-    private static final String PEXELS_API_URL = "https://api.pexels.com/v1/search";
+    /**
+     * 竞速搜索的整体超时时间（毫秒）
+     */
+    private static final long RACE_TIMEOUT_MS = 15000;
+
+    /**
+     * 熔断阈值：连续失败 3 次后熔断 60 秒
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long BREAKER_OPEN_MILLIS = 60_000;
+
+    /**
+     * 并发请求各图片源使用的虚拟线程执行器
+     */
+    private static final ExecutorService RACE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${tools.pixabay.api-url:https://pixabay.com/api/}")
+    private String pixabayApiUrl;
+
+    @Value("${tools.pexels.api-url:https://api.pexels.com/v1/search}")
+    private String pexelsApiUrl;
 
     @Value("${tools.pixabay.api-key:}")
     private String pixabayApiKey;
@@ -50,15 +80,24 @@ public class PixabayImageTool extends BaseTool {
     @Value("${tools.pexels.api-key:}")
     private String pexelsApiKey;
 
+    @Resource
+    private ImageSearchCache imageSearchCache;
+
+    private final ProviderCircuitBreaker pixabayBreaker =
+            new ProviderCircuitBreaker("Pixabay", BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS);
+
+    private final ProviderCircuitBreaker pexelsBreaker =
+            new ProviderCircuitBreaker("Pexels", BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS);
+
     /**
-     * 搜索高质量图片（双源回退：Pixabay → Pexels → 占位图）
+     * 搜索高质量图片（缓存 → Pixabay/Pexels 竞速 → 占位图）
      * 
      * @param query   搜索关键词，支持中文和英文
      * @param count   需要返回的图片数量
      * @param purpose 图片用途
      * @return 图片URL列表
      */
-    @Tool("根据关键词搜索高质量图片，支持中文搜索，返回图片URL列表。优先使用Pixabay（2700万+图片），失败后自动切换Pexels。")
+    @Tool("根据关键词搜索高质量图片，支持中文搜索，返回图片URL列表。同时查询Pixabay（2700万+图片）和Pexels，返回最快的有效结果。")
     public String searchImages(
             @P("搜索关键词，支持中文或英文，如 '商务办公', 'business office', '自然风景', 'technology'")
             String query,
@@ -68,33 +107,30 @@ public class PixabayImageTool extends BaseTool {
             String purpose
     ) {
         log.info("🔍 开始搜索图片: query={}, count={}, purpose={}", query, count, purpose);
-        log.info("📌 Pixabay API Key 状态: {}", (pixabayApiKey != null && !pixabayApiKey.isBlank()) ? "已配置" : "未配置");
-        log.info("📌 Pexels API Key 状态: {}", (pexelsApiKey != null && !pexelsApiKey.isBlank()) ? "已配置" : "未配置");
-        
-        // 1. 优先尝试 Pixabay
-        if (pixabayApiKey != null && !pixabayApiKey.isBlank()) {
-            log.info("🌐 尝试 Pixabay 搜索...");
-            String pixabayResult = searchFromPixabay(query, count, purpose);
-            if (pixabayResult != null) {
-                log.info("✅ Pixabay 搜索成功");
-                return pixabayResult;
-            }
-            log.warn("⚠️ Pixabay 搜索失败或无结果，尝试回退到 Pexels");
-        } else {
-            log.warn("⚠️ Pixabay API Key 未配置，尝试使用 Pexels");
+
+        // 1. 查询缓存
+        String cacheKey = ImageSearchCache.buildKey("search", query, purpose, count);
+        String cached = imageSearchCache.get(cacheKey);
+        if (cached != null) {
+            log.info("✅ 图片搜索命中缓存: query={}", query);
+            return cached;
         }
 
-        // 2. 回退到 Pexels
-        if (pexelsApiKey != null && !pexelsApiKey.isBlank()) {
-            log.info("🌐 尝试 Pexels 搜索...");
-            String pexelsResult = searchFromPexels(query, count, purpose);
-            if (pexelsResult != null) {
-                log.info("✅ Pexels 搜索成功");
-                return pexelsResult;
-            }
-            log.warn("⚠️ Pexels 搜索也失败或无结果，使用占位图");
-        } else {
-            log.warn("⚠️ Pexels API Key 也未配置，使用占位图");
+        // 2. 并发请求已配置的图片源，取最先返回的有效结果
+        List<Callable<String>> providers = new ArrayList<>();
+        if (isConfigured(pixabayApiKey)) {
+            providers.add(() -> searchFromPixabay(query, count, purpose));
+        }
+        if (isConfigured(pexelsApiKey)) {
+            providers.add(() -> searchFromPexels(query, count, purpose));
+        }
+        if (providers.isEmpty()) {
+            log.warn("⚠️ Pixabay 和 Pexels API Key 均未配置，使用占位图");
+        }
+        String result = raceProviders(providers);
+        if (result != null) {
+            imageSearchCache.put(cacheKey, result);
+            return result;
         }
 
         // 3. 最终回退到占位图
@@ -119,10 +155,15 @@ public class PixabayImageTool extends BaseTool {
             @P("类型：'vector' 矢量图, 'illustration' 插画")
             String type
     ) {
-        if (pixabayApiKey == null || pixabayApiKey.isBlank()) {
+        if (!isConfigured(pixabayApiKey)) {
             log.warn("Pixabay API Key 未配置，矢量图/插画搜索不可用，返回占位图");
             return generatePlaceholderImages(query, count, "card");
         }
+        ProviderCircuitBreaker.Permit permit = pixabayBreaker.tryAcquire();
+        if (permit == null) {
+            log.warn("Pixabay 处于熔断状态，矢量图/插画搜索返回占位图");
+            return generatePlaceholderImages(query, count, "card");
+        }
 
         try {
             String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
@@ -132,7 +173,7 @@ public class PixabayImageTool extends BaseTool {
             int perPage = Math.max(3, Math.min(count * 2, 30));
             String url = String.format(
                     "%s?key=%s&q=%s&image_type=%s&per_page=%d&safesearch=true&lang=zh",
-                    PIXABAY_API_URL, pixabayApiKey, encodedQuery, imageType, perPage
+                    pixabayApiUrl, pixabayApiKey, encodedQuery, imageType, perPage
             );
 
             HttpResponse response = HttpRequest.get(url)
@@ -140,6 +181,7 @@ public class PixabayImageTool extends BaseTool {
                     .execute();
 
             if (response.isOk()) {
+                pixabayBreaker.recordSuccess();
                 JSONObject result = JSONUtil.parseObj(response.body());
                 JSONArray hits = result.getJSONArray("hits");
                 
@@ -165,12 +207,16 @@ public class PixabayImageTool extends BaseTool {
                 log.info("Pixabay {}搜索成功，关键词: {}, 返回 {} 张", imageType, query, imageUrls.size());
                 return "搜索到以下" + (imageType.equals("vector") ? "矢量图" : "插画") + "URL:\n" + resultStr;
             } else {
+                pixabayBreaker.recordFailure();
                 log.error("Pixabay API 请求失败: {}", response.body());
                 return generatePlaceholderImages(query, count, "card");
             }
         } catch (Exception e) {
+            recordFailureUnlessCancelled(pixabayBreaker);
             log.error("Pixabay 矢量图/插画搜索异常", e);
             return generatePlaceholderImages(query, count, "card");
+        } finally {
+            pixabayBreaker.releaseProbe(permit);
         }
     }
 
@@ -191,33 +237,104 @@ public class PixabayImageTool extends BaseTool {
             @P("图片用途：'hero' 横幅大图, 'card' 卡片图, 'avatar' 头像, 'background' 背景图")
             String purpose
     ) {
-        // 1. 优先尝试 Pixabay（支持分类搜索）
-        if (pixabayApiKey != null && !pixabayApiKey.isBlank()) {
-            String pixabayResult = searchByCategoryFromPixabay(category, count, purpose);
-            if (pixabayResult != null && !pixabayResult.startsWith("使用占位图片")) {
-                return pixabayResult;
-            }
-            log.info("Pixabay 分类搜索失败，回退到 Pexels 关键词搜索");
+        String cacheKey = ImageSearchCache.buildKey("category", category, purpose, count);
+        String cached = imageSearchCache.get(cacheKey);
+        if (cached != null) {
+            log.info("分类搜索命中缓存: category={}", category);
+            return cached;
         }
 
-        // 2. 回退到 Pexels（使用分类名作为关键词）
-        if (pexelsApiKey != null && !pexelsApiKey.isBlank()) {
-            String pexelsResult = searchFromPexels(category, count, purpose);
-            if (pexelsResult != null && !pexelsResult.startsWith("使用占位图片")) {
-                return pexelsResult;
-            }
+        // Pixabay 按分类搜索，Pexels 使用分类名作为关键词，两者竞速
+        List<Callable<String>> providers = new ArrayList<>();
+        if (isConfigured(pixabayApiKey)) {
+            providers.add(() -> searchByCategoryFromPixabay(category, count, purpose));
+        }
+        if (isConfigured(pexelsApiKey)) {
+            providers.add(() -> searchFromPexels(category, count, purpose));
+        }
+        String result = raceProviders(providers);
+        if (result != null) {
+            imageSearchCache.put(cacheKey, result);
+            return result;
         }
 
-        // 3. 最终回退到占位图
+        // 最终回退到占位图
         return generatePlaceholderImages(category, count, purpose);
     }
 
+    // ==================== 多源竞速 ====================
+
+    /**
+     * 并发执行各图片源的搜索，返回最先完成的非空结果
+     * 其余仍在进行的请求会被取消；整体超过 RACE_TIMEOUT_MS 仍无结果时返回 null
+     *
+     * @param providers 各图片源的搜索任务（返回 null 表示无结果或失败）
+     * @return 最先返回的有效结果，全部失败返回 null
+     */
+    private String raceProviders(List<Callable<String>> providers) {
+        if (providers.isEmpty()) {
+            return null;
+        }
+        ExecutorCompletionService<String> completionService = new ExecutorCompletionService<>(RACE_EXECUTOR);
+        List<Future<String>> futures = new ArrayList<>();
+        for (Callable<String> provider : providers) {
+            futures.add(completionService.submit(provider));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RACE_TIMEOUT_MS);
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("图片搜索竞速超时({}ms)", RACE_TIMEOUT_MS);
+                    break;
+                }
+                Future<String> done = completionService.poll(remaining, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    log.warn("图片搜索竞速超时({}ms)", RACE_TIMEOUT_MS);
+                    break;
+                }
+                try {
+                    String result = done.get();
+                    if (result != null) {
+                        return result;
+                    }
+                } catch (ExecutionException e) {
+                    log.error("图片源搜索异常", e.getCause());
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * 竞速中落败的请求会被中断取消，这类异常不计入熔断失败次数
+     */
+    private void recordFailureUnlessCancelled(ProviderCircuitBreaker breaker) {
+        if (!Thread.currentThread().isInterrupted()) {
+            breaker.recordFailure();
+        }
+    }
+
+    private boolean isConfigured(String apiKey) {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
     // ==================== Pixabay 搜索实现 ====================
 
     /**
      * 从 Pixabay 搜索图片
      */
     private String searchFromPixabay(String query, int count, String purpose) {
+        ProviderCircuitBreaker.Permit permit = pixabayBreaker.tryAcquire();
+        if (permit == null) {
+            log.warn("Pixabay 处于熔断状态，跳过");
+            return null;
+        }
         try {
             String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
             String imageType = getPixabayImageTypeByPurpose(purpose);
@@ -227,7 +344,7 @@ public class PixabayImageTool extends BaseTool {
             int perPage = Math.max(3, Math.min(count * 2, 30));
             String url = String.format(
                     "%s?key=%s&q=%s&image_type=%s&orientation=%s&per_page=%d&safesearch=true&lang=zh",
-                    PIXABAY_API_URL, pixabayApiKey, encodedQuery, imageType, orientation, perPage
+                    pixabayApiUrl, pixabayApiKey, encodedQuery, imageType, orientation, perPage
             );
             
             // 日志中隐藏 API Key
@@ -241,6 +358,7 @@ public class PixabayImageTool extends BaseTool {
             log.info("Pixabay HTTP状态码: {}", response.getStatus());
 
             if (response.isOk()) {
+                pixabayBreaker.recordSuccess();
                 JSONObject result = JSONUtil.parseObj(response.body());
                 int total = result.getInt("total", 0);
                 JSONArray hits = result.getJSONArray("hits");
@@ -291,12 +409,16 @@ public class PixabayImageTool extends BaseTool {
                 log.info("Pixabay 搜索成功，关键词: {}, 返回 {} 张相关图片", query, imageUrls.size());
                 return "搜索到以下图片URL（来源: Pixabay）:\n" + resultStr;
             } else {
+                pixabayBreaker.recordFailure();
                 log.error("Pixabay API 请求失败: {}", response.body());
                 return null;
             }
         } catch (Exception e) {
+            recordFailureUnlessCancelled(pixabayBreaker);
             log.error("Pixabay 图片搜索异常", e);
             return null;
+        } finally {
+            pixabayBreaker.releaseProbe(permit);
         }
     }
 
@@ -304,6 +426,11 @@ public class PixabayImageTool extends BaseTool {
      * 从 Pixabay 按分类搜索图片
      */
     private String searchByCategoryFromPixabay(String category, int count, String purpose) {
+        ProviderCircuitBreaker.Permit permit = pixabayBreaker.tryAcquire();
+        if (permit == null) {
+            log.warn("Pixabay 处于熔断状态，跳过分类搜索");
+            return null;
+        }
         try {
             String orientation = getPixabayOrientationByPurpose(purpose);
             
@@ -311,7 +438,7 @@ public class PixabayImageTool extends BaseTool {
             int perPage = Math.max(3, Math.min(count * 2, 30));
             String url = String.format(
                     "%s?key=%s&category=%s&orientation=%s&per_page=%d&safesearch=true&order=popular",
-                    PIXABAY_API_URL, pixabayApiKey, category.toLowerCase(), orientation, perPage
+                    pixabayApiUrl, pixabayApiKey, category.toLowerCase(), orientation, perPage
             );
 
             HttpResponse response = HttpRequest.get(url)
@@ -319,6 +446,7 @@ public class PixabayImageTool extends BaseTool {
                     .execute();
 
             if (response.isOk()) {
+                pixabayBreaker.recordSuccess();
                 JSONObject result = JSONUtil.parseObj(response.body());
                 JSONArray hits = result.getJSONArray("hits");
                 
@@ -349,28 +477,37 @@ public class PixabayImageTool extends BaseTool {
                 log.info("Pixabay 分类搜索成功，分类: {}, 返回 {} 张图片", category, imageUrls.size());
                 return "搜索到以下图片URL（来源: Pixabay）:\n" + resultStr;
             } else {
+                pixabayBreaker.recordFailure();
                 log.error("Pixabay API 请求失败: {}", response.body());
                 return null;
             }
         } catch (Exception e) {
+            recordFailureUnlessCancelled(pixabayBreaker);
             log.error("Pixabay 分类搜索异常", e);
             return null;
+        } finally {
+            pixabayBreaker.releaseProbe(permit);
         }
     }
 
     // ==================== Pexels 搜索实现 ====================
 
     /**
-     * 从 Pexels 搜索图片（回退方案）
+     * 从 Pexels 搜索图片
      */
     private String searchFromPexels(String query, int count, String purpose) {
+        ProviderCircuitBreaker.Permit permit = pexelsBreaker.tryAcquire();
+        if (permit == null) {
+            log.warn("Pexels 处于熔断状态，跳过");
+            return null;
+        }
         try {
             String orientation = getPexelsOrientationByPurpose(purpose);
             int perPage = Math.max(1, Math.min(count * 2, 15));
             
             log.info("Pexels 请求: query={}, per_page={}, orientation={}", query, perPage, orientation);
             
-            HttpResponse response = HttpRequest.get(PEXELS_API_URL)
+            HttpResponse response = HttpRequest.get(pexelsApiUrl)
                     .header("Authorization", pexelsApiKey)
                     .form("query", query)
                     .form("per_page", perPage)
@@ -381,6 +518,7 @@ public class PixabayImageTool extends BaseTool {
             log.info("Pexels HTTP状态码: {}", response.getStatus());
 
             if (response.isOk()) {
+                pexelsBreaker.recordSuccess();
                 JSONObject result = JSONUtil.parseObj(response.body());
                 JSONArray photos = result.getJSONArray("photos");
                 
@@ -406,15 +544,19 @@ public class PixabayImageTool extends BaseTool {
                 }
 
                 String resultStr = String.join("\n", imageUrls);
-                log.info("Pexels 搜索成功（回退），关键词: {}, 返回 {} 张图片", query, imageUrls.size());
+                log.info("Pexels 搜索成功，关键词: {}, 返回 {} 张图片", query, imageUrls.size());
                 return "搜索到以下图片URL（来源: Pexels）:\n" + resultStr;
             } else {
+                pexelsBreaker.recordFailure();
                 log.error("Pexels API 请求失败: {}", response.body());
                 return null;
             }
         } catch (Exception e) {
+            recordFailureUnlessCancelled(pexelsBreaker);
             log.error("Pexels 图片搜索异常", e);
             return null;
+        } finally {
+            pexelsBreaker.releaseProbe(permit);
         }
     }
 
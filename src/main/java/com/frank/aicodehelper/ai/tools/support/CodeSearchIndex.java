@@ -0,0 +1,313 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 代码搜索索引
+ * 每个应用维护一份内存中的三元组（trigram）倒排索引：trigram -> 包含该 trigram 的文件集合
+ * 查询时先用 trigram 求交集得到候选文件，再逐行校验，避免每次都扫描全部文件
+ * 索引在首次搜索时懒加载构建，之后由文件写入/修改/删除工具增量维护
+ */
+@Slf4j
+@Component
+public class CodeSearchIndex {
+
+    /**
+     * 需要跳过的目录
+     */
+    private static final Set<String> IGNORED_DIRS = Set.of(
+            "node_modules", ".git", "dist", "build", "target", ".idea", ".vscode", "coverage"
+    );
+
+    /**
+     * 参与索引的文本文件扩展名
+     */
+    private static final Set<String> INDEXED_EXTENSIONS = Set.of(
+            "vue", "js", "ts", "jsx", "tsx", "css", "scss", "less", "html", "htm", "json", "md"
+    );
+
+    /**
+     * 单个文件大小上限（超过则不索引，通常是打包产物或数据文件）
+     */
+    private static final long MAX_FILE_SIZE = 512 * 1024;
+
+    /**
+     * 返回的单行片段最大长度
+     */
+    private static final int MAX_SNIPPET_LENGTH = 200;
+
+    /**
+     * 应用索引缓存：appId -> 索引，长时间未访问自动回收
+     */
+    private final Cache<Long, AppIndex> indexCache = Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 搜索代码
+     *
+     * @param appId       应用 ID
+     * @param projectRoot 项目根目录
+     * @param query       查询字符串（大小写不敏感的字面量匹配）
+     * @param maxResults  最大返回条数
+     * @return 搜索结果
+     */
+    public SearchResult search(Long appId, Path projectRoot, String query, int maxResults) {
+        AppIndex index = indexCache.get(appId, id -> AppIndex.build(projectRoot));
+        return index.search(query, maxResults);
+    }
+
+    /**
+     * 文件被写入或修改后更新索引（索引尚未构建时忽略，首次搜索时会全量构建）
+     *
+     * @param appId 应用 ID
+     * @param file  文件绝对路径
+     */
+    public void onFileChanged(Long appId, Path file) {
+        AppIndex index = indexCache.getIfPresent(appId);
+        if (index != null) {
+            index.update(file);
+        }
+    }
+
+    /**
+     * 文件被删除后更新索引
+     *
+     * @param appId 应用 ID
+     * @param file  文件绝对路径
+     */
+    public void onFileDeleted(Long appId, Path file) {
+        AppIndex index = indexCache.getIfPresent(appId);
+        if (index != null) {
+            index.remove(file);
+        }
+    }
+
+    /**
+     * 丢弃应用的索引（项目被整体重新生成或删除时调用）
+     *
+     * @param appId 应用 ID
+     */
+    public void invalidate(Long appId) {
+        indexCache.invalidate(appId);
+    }
+
+    /**
+     * 搜索结果
+     *
+     * @param hits      命中行（已按文件路径、行号排序并截断）
+     * @param totalHits 实际命中总数（可能大于 hits 数量）
+     */
+    public record SearchResult(List<Hit> hits, int totalHits) {
+    }
+
+    /**
+     * 单条命中
+     *
+     * @param filePath 相对项目根目录的文件路径
+     * @param line     行号（从 1 开始）
+     * @param snippet  命中行内容（去除首尾空白并截断）
+     */
+    public record Hit(String filePath, int line, String snippet) {
+    }
+
+    /**
+     * 单个应用的索引
+     */
+    private static final class AppIndex {
+
+        private final Path root;
+
+        /**
+         * 相对路径 -> 文件行内容
+         */
+        private final Map<String, String[]> files = new HashMap<>();
+
+        /**
+         * trigram -> 相对路径集合
+         */
+        private final Map<Long, Set<String>> postings = new HashMap<>();
+
+        private AppIndex(Path root) {
+            this.root = root.toAbsolutePath().normalize();
+        }
+
+        static AppIndex build(Path projectRoot) {
+            AppIndex index = new AppIndex(projectRoot);
+            long startTime = System.currentTimeMillis();
+            try {
+                Files.walkFileTree(index.root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        return IGNORED_DIRS.contains(dir.getFileName().toString())
+                                ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        index.update(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("构建代码搜索索引失败: {}, 错误: {}", projectRoot, e.getMessage());
+            }
+            log.info("代码搜索索引构建完成: {}, 文件数: {}, trigram 数: {}, 耗时: {}ms",
+                    index.root, index.files.size(), index.postings.size(), System.currentTimeMillis() - startTime);
+            return index;
+        }
+
+        synchronized void update(Path file) {
+            String relativePath = relativize(file);
+            if (relativePath == null) {
+                return;
+            }
+            removeInternal(relativePath);
+            if (!isIndexable(file)) {
+                return;
+            }
+            String content;
+            try {
+                content = Files.readString(file);
+            } catch (IOException e) {
+                log.debug("读取文件失败，跳过索引: {}", file);
+                return;
+            }
+            files.put(relativePath, content.split("\n", -1));
+            for (long trigram : trigrams(content)) {
+                postings.computeIfAbsent(trigram, k -> new HashSet<>()).add(relativePath);
+            }
+        }
+
+        synchronized void remove(Path file) {
+            String relativePath = relativize(file);
+            if (relativePath != null) {
+                removeInternal(relativePath);
+            }
+        }
+
+        synchronized SearchResult search(String query, int maxResults) {
+            String needle = query.toLowerCase(Locale.ROOT);
+            Collection<String> candidates = candidates(query);
+            List<String> sortedCandidates = new ArrayList<>(candidates);
+            Collections.sort(sortedCandidates);
+
+            List<Hit> hits = new ArrayList<>();
+            int totalHits = 0;
+            for (String path : sortedCandidates) {
+                String[] lines = files.get(path);
+                for (int i = 0; i < lines.length; i++) {
+                    if (lines[i].toLowerCase(Locale.ROOT).contains(needle)) {
+                        totalHits++;
+                        if (hits.size() < maxResults) {
+                            hits.add(new Hit(path, i + 1, snippet(lines[i])));
+                        }
+                    }
+                }
+            }
+            return new SearchResult(hits, totalHits);
+        }
+
+        /**
+         * 通过 trigram 交集筛选候选文件；查询不足 3 个字符时退化为全部文件
+         */
+        private Collection<String> candidates(String query) {
+            Set<Long> queryTrigrams = trigrams(query);
+            if (queryTrigrams.isEmpty()) {
+                return files.keySet();
+            }
+            // 先取最短的倒排表，再逐个求交集
+            List<Set<String>> lists = new ArrayList<>();
+            for (long trigram : queryTrigrams) {
+                Set<String> posting = postings.get(trigram);
+                if (posting == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(posting);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            Set<String> result = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result;
+        }
+
+        private void removeInternal(String relativePath) {
+            String[] lines = files.remove(relativePath);
+            if (lines == null) {
+                return;
+            }
+            for (long trigram : trigrams(String.join("\n", lines))) {
+                Set<String> posting = postings.get(trigram);
+                if (posting != null) {
+                    posting.remove(relativePath);
+                    if (posting.isEmpty()) {
+                        postings.remove(trigram);
+                    }
+                }
+            }
+        }
+
+        private String relativize(Path file) {
+            Path normalized = file.toAbsolutePath().normalize();
+            if (!normalized.startsWith(root)) {
+                return null;
+            }
+            return root.relativize(normalized).toString().replace('\\', '/');
+        }
+
+        private boolean isIndexable(Path file) {
+            try {
+                if (!Files.isRegularFile(file) || Files.size(file) > MAX_FILE_SIZE) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+            String fileName = file.getFileName().toString();
+            int dot = fileName.lastIndexOf('.');
+            return dot >= 0 && INDEXED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+
+        private static String snippet(String line) {
+            String trimmed = line.strip();
+            return trimmed.length() > MAX_SNIPPET_LENGTH
+                    ? trimmed.substring(0, MAX_SNIPPET_LENGTH) + "..."
+                    : trimmed;
+        }
+    }
+
+    /**
+     * 提取文本（小写化后）中的全部 trigram，每个 trigram 以三个 char 打包为一个 long
+     * 跨行的 trigram 不影响正确性：候选文件最终都会逐行校验
+     */
+    static Set<Long> trigrams(String text) {
+        Set<Long> result = new HashSet<>();
+        if (text.length() < 3) {
+            return result;
+        }
+        char c1 = Character.toLowerCase(text.charAt(0));
+        char c2 = Character.toLowerCase(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            char c3 = Character.toLowerCase(text.charAt(i));
+            result.add(((long) c1 << 32) | ((long) c2 << 16) | c3);
+            c1 = c2;
+            c2 = c3;
+        }
+        return result;
+    }
+}
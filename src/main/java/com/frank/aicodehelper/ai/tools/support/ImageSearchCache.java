@@ -0,0 +1,109 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 图片搜索结果二级缓存
+ * 缓存策略：
+ * - L1：Caffeine 本地缓存，最多 2000 条，写入后 1 小时过期
+ * - L2：Redis 共享缓存，24 小时过期，多实例之间共享
+ * 只缓存搜索成功的结果，占位图（搜索失败）不缓存
+ */
+@Slf4j
+@Component
+public class ImageSearchCache {
+
+    private static final String REDIS_KEY_PREFIX = "image_search:";
+
+    private static final Duration REDIS_TTL = Duration.ofHours(24);
+
+    private final Cache<String, String> localCache = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    /**
+     * Redis 不可用时（如单元测试）只使用本地缓存
+     */
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 构建缓存键：搜索类型 + 规范化关键词 + 用途 + 数量
+     *
+     * @param type    搜索类型，如 search / category
+     * @param query   搜索关键词
+     * @param purpose 图片用途
+     * @param count   图片数量
+     * @return 缓存键
+     */
+    public static String buildKey(String type, String query, String purpose, int count) {
+        String raw = type + "|" + normalize(query) + "|" + normalize(purpose) + "|" + count;
+        return DigestUtil.md5Hex(raw);
+    }
+
+    /**
+     * 规范化关键词：去首尾空白、转小写、合并连续空白
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 读取缓存，L1 未命中时回源 L2 并回填 L1
+     *
+     * @param key 缓存键
+     * @return 缓存的搜索结果，未命中返回 null
+     */
+    public String get(String key) {
+        String value = localCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        if (stringRedisTemplate == null) {
+            return null;
+        }
+        try {
+            value = stringRedisTemplate.opsForValue().get(REDIS_KEY_PREFIX + key);
+            if (value != null) {
+                localCache.put(key, value);
+            }
+            return value;
+        } catch (Exception e) {
+            log.warn("读取图片搜索 Redis 缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存（同时写 L1 和 L2）
+     *
+     * @param key   缓存键
+     * @param value 搜索结果
+     */
+    public void put(String key, String value) {
+        if (value == null) {
+            return;
+        }
+        localCache.put(key, value);
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key, value, REDIS_TTL);
+        } catch (Exception e) {
+            log.warn("写入图片搜索 Redis 缓存失败: {}", e.getMessage());
+        }
+    }
+}
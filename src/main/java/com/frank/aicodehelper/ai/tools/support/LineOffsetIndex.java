@@ -0,0 +1,89 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 文件行偏移索引
+ * 一次扫描记录每行起始字符位置，之后按行号切片为 O(1)，按字符位置反查行号为 O(log n)
+ */
+public class LineOffsetIndex {
+
+    /**
+     * 文件内容
+     */
+    @Getter
+    private final String content;
+
+    /**
+     * 构建索引时文件的最后修改时间（用于判断缓存是否过期）
+     */
+    @Getter
+    private final long lastModified;
+
+    /**
+     * 构建索引时文件的大小（字节）
+     */
+    @Getter
+    private final long size;
+
+    /**
+     * 第 i 行（从 0 开始）的起始字符位置；末尾额外存放 content.length() 作为哨兵
+     */
+    private final int[] lineStarts;
+
+    public LineOffsetIndex(String content, long lastModified, long size) {
+        this.content = content;
+        this.lastModified = lastModified;
+        this.size = size;
+        int[] starts = new int[64];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n' && i + 1 < content.length()) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = Arrays.copyOf(starts, count + 1);
+        this.lineStarts[count] = content.length();
+    }
+
+    /**
+     * 总行数
+     */
+    public int lineCount() {
+        return content.isEmpty() ? 0 : lineStarts.length - 1;
+    }
+
+    /**
+     * 按行号切片（行号从 1 开始，包含首尾行），越界时自动收敛到有效范围
+     *
+     * @param startLine 起始行
+     * @param endLine   结束行
+     * @return 对应行的原始文本
+     */
+    public String slice(int startLine, int endLine) {
+        int total = lineCount();
+        if (total == 0) {
+            return "";
+        }
+        int start = Math.max(1, Math.min(startLine, total));
+        int end = Math.max(start, Math.min(endLine, total));
+        return content.substring(lineStarts[start - 1], lineStarts[end]);
+    }
+
+    /**
+     * 根据字符位置反查所在行号（从 1 开始）
+     *
+     * @param offset 字符位置
+     * @return 行号
+     */
+    public int lineOf(int offset) {
+        int pos = Arrays.binarySearch(lineStarts, 0, lineStarts.length - 1, offset);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+}
@@ -0,0 +1,54 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 文件行偏移索引缓存
+ * 以文件绝对路径为键，文件修改时间或大小变化时自动重建
+ * 缓存策略：总容量约 32MB 字符，访问后 30 分钟过期
+ */
+@Component
+public class LineOffsetIndexCache {
+
+    private final Cache<String, LineOffsetIndex> cache = Caffeine.newBuilder()
+            .maximumWeight(32L * 1024 * 1024)
+            .weigher((String key, LineOffsetIndex index) -> index.getContent().length())
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 获取文件的行偏移索引（缓存有效时直接返回）
+     *
+     * @param path 文件路径
+     * @return 行偏移索引
+     * @throws IOException 读取文件失败
+     */
+    public LineOffsetIndex get(Path path) throws IOException {
+        String key = path.toAbsolutePath().normalize().toString();
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        LineOffsetIndex index = cache.getIfPresent(key);
+        if (index != null && index.getLastModified() == lastModified && index.getSize() == size) {
+            return index;
+        }
+        index = new LineOffsetIndex(Files.readString(path), lastModified, size);
+        cache.put(key, index);
+        return index;
+    }
+
+    /**
+     * 使指定文件的缓存失效（文件被工具写入/修改/删除时调用）
+     *
+     * @param path 文件路径
+     */
+    public void invalidate(Path path) {
+        cache.invalidate(path.toAbsolutePath().normalize().toString());
+    }
+}
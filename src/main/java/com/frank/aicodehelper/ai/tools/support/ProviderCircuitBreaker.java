@@ -0,0 +1,135 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 外部服务提供方熔断器
+ * 连续失败达到阈值后熔断一段时间，期间直接跳过该提供方；
+ * 熔断到期后进入半开状态，只放行一个探测请求，成功则恢复，失败则重新熔断
+ * 调用方通过 tryAcquire 获取许可，结束时用同一个许可调用 releaseProbe，只有持有探测许可的调用方能归还探测名额
+ */
+@Slf4j
+public class ProviderCircuitBreaker {
+
+    /**
+     * 提供方名称（用于日志）
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private final int failureThreshold;
+
+    /**
+     * 熔断持续时间（毫秒）
+     */
+    private final long openMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 熔断开始时间，0 表示未熔断
+     */
+    private volatile long openedAt = 0L;
+
+    /**
+     * 半开状态下已放行的探测请求的许可，null 表示没有探测请求
+     */
+    private final AtomicReference<Permit> probeInFlight = new AtomicReference<>();
+
+    /**
+     * 调用许可
+     */
+    public static final class Permit {
+
+        private static final Permit NORMAL = new Permit(false);
+
+        private final boolean probe;
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        /**
+         * 是否为半开状态下的探测请求
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+
+    public ProviderCircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 尝试获取请求该提供方的许可
+     *
+     * @return 许可，熔断中（或半开状态已有探测请求）时返回 null
+     */
+    public Permit tryAcquire() {
+        long opened = openedAt;
+        if (opened == 0L) {
+            return Permit.NORMAL;
+        }
+        if (System.currentTimeMillis() - opened < openMillis) {
+            return null;
+        }
+        // 半开：只放行一个探测请求，每个探测许可都是新对象，用于识别名额的持有者
+        Permit probe = new Permit(true);
+        return probeInFlight.compareAndSet(null, probe) ? probe : null;
+    }
+
+    /**
+     * 记录一次成功调用（提供方正常响应，无论是否有结果）
+     */
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (openedAt != 0L) {
+            log.info("提供方 {} 熔断恢复", name);
+        }
+        openedAt = 0L;
+        probeInFlight.set(null);
+    }
+
+    /**
+     * 记录一次失败调用（网络异常、超时或非 2xx 响应）
+     */
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (openedAt != 0L || failures >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            probeInFlight.set(null);
+            log.warn("提供方 {} 连续失败 {} 次，熔断 {}ms", name, failures, openMillis);
+        }
+    }
+
+    /**
+     * 归还半开状态的探测名额，在每次调用结束时（finally）执行
+     * 竞速中落败被中断取消的探测请求既不记成功也不记失败，不归还名额则熔断器会一直拒绝请求；
+     * 只有名额仍由该许可持有时才归还：熔断前发出、熔断后才结束的普通请求不会释放其他线程的探测名额；
+     * 已记录成功或失败时名额已归还，重复调用无影响
+     *
+     * @param permit tryAcquire 返回的许可
+     */
+    public void releaseProbe(Permit permit) {
+        if (permit != null && permit.isProbe()) {
+            probeInFlight.compareAndSet(permit, null);
+        }
+    }
+
+    /**
+     * 是否处于熔断状态（含半开）
+     */
+    public boolean isOpen() {
+        return openedAt != 0L;
+    }
+}
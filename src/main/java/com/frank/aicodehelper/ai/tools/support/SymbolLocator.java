@@ -0,0 +1,192 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 轻量级符号定位器
+ * 在 JS/TS/Vue/CSS 源码中查找函数、变量、方法、CSS 选择器或模板中的组件标签，返回其完整定义的字符区间
+ * 基于正则定位起点 + 括号配对定位终点，不做完整语法解析
+ */
+public final class SymbolLocator {
+
+    private SymbolLocator() {
+    }
+
+    /**
+     * 生成符号定义的候选匹配模式（按优先级排列）
+     */
+    private static List<Pattern> declarationPatterns(String symbol) {
+        String name = Pattern.quote(symbol);
+        if (symbol.startsWith(".") || symbol.startsWith("#")) {
+            // CSS 选择器：.hero-title { / #app { / .a .hero-title:hover {
+            return List.of(Pattern.compile("(?m)^[ \\t]*[^{}\\n]*(?<![\\w-])" + name + "(?![\\w-])[^{}\\n;]*\\{"));
+        }
+        return List.of(
+                // function foo( / async function foo( / export default function foo(
+                Pattern.compile("(?m)^[ \\t]*(?:export\\s+)?(?:default\\s+)?(?:async\\s+)?function\\s*\\*?\\s*" + name + "\\s*\\("),
+                // const foo = / let foo = / export const foo =
+                Pattern.compile("(?m)^[ \\t]*(?:export\\s+)?(?:const|let|var)\\s+" + name + "\\b\\s*(?::[^=]+)?="),
+                // 对象/类方法简写：foo(...) {  或  async foo(...) {
+                Pattern.compile("(?m)^[ \\t]*(?:async\\s+)?" + name + "\\s*\\([^)]*\\)\\s*\\{"),
+                // 对象属性：foo: function / foo: () => / foo: {
+                Pattern.compile("(?m)^[ \\t]*['\"]?" + name + "['\"]?\\s*:\\s*(?:async\\s+)?(?:function\\b|\\(|\\{|\\[)")
+        );
+    }
+
+    /**
+     * 定位符号定义的字符区间
+     *
+     * @param content 文件内容
+     * @param symbol  符号名称（函数名、变量名、CSS 选择器如 .hero-title、组件名如 NavBar）
+     * @return [start, end) 字符区间，未找到返回 null
+     */
+    public static int[] locate(String content, String symbol) {
+        if (content == null || symbol == null || symbol.isBlank()) {
+            return null;
+        }
+        String trimmed = symbol.trim();
+        for (Pattern pattern : declarationPatterns(trimmed)) {
+            Matcher matcher = pattern.matcher(content);
+            if (matcher.find()) {
+                int start = matcher.start();
+                return new int[]{start, findStatementEnd(content, start)};
+            }
+        }
+        // 模板中的组件/元素标签：<NavBar ...> ... </NavBar> 或 <NavBar ... />
+        return locateElement(content, trimmed);
+    }
+
+    /**
+     * 从声明起点向后查找语句结束位置
+     * 遇到 { 时做括号配对；否则在括号平衡后的 ; 或换行处结束
+     */
+    private static int findStatementEnd(String content, int start) {
+        int parenDepth = 0;
+        for (int i = start; i < content.length(); i++) {
+            char c = content.charAt(i);
+            switch (c) {
+                case '(', '[' -> parenDepth++;
+                case ')', ']' -> parenDepth = Math.max(0, parenDepth - 1);
+                case '{' -> {
+                    // 括号内的 { 属于参数（如 computed(() => {...})），由外层括号平衡处理
+                    if (parenDepth == 0) {
+                        return matchBrace(content, i);
+                    }
+                }
+                case ';' -> {
+                    if (parenDepth == 0) {
+                        return i + 1;
+                    }
+                }
+                case '\n' -> {
+                    if (parenDepth == 0) {
+                        return i;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return content.length();
+    }
+
+    /**
+     * 从 { 开始配对到对应的 }，跳过字符串和注释中的括号
+     *
+     * @return 闭合括号之后的位置（含同一行剩余的 ) ; , 等结尾字符）
+     */
+    private static int matchBrace(String content, int openIndex) {
+        int depth = 0;
+        int i = openIndex;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+            if (c == '"' || c == '\'' || c == '`') {
+                i = skipString(content, i, c);
+                continue;
+            }
+            if (c == '/' && i + 1 < content.length()) {
+                char next = content.charAt(i + 1);
+                if (next == '/') {
+                    int lineEnd = content.indexOf('\n', i);
+                    i = lineEnd < 0 ? content.length() : lineEnd;
+                    continue;
+                }
+                if (next == '*') {
+                    int commentEnd = content.indexOf("*/", i + 2);
+                    i = commentEnd < 0 ? content.length() : commentEnd + 2;
+                    continue;
+                }
+            }
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    int lineEnd = content.indexOf('\n', i);
+                    return lineEnd < 0 ? content.length() : lineEnd;
+                }
+            }
+            i++;
+        }
+        return content.length();
+    }
+
+    private static int skipString(String content, int start, char quote) {
+        int i = start + 1;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            // 普通引号字符串不跨行，避免未闭合引号吞掉后续内容
+            if (c == '\n' && quote != '`') {
+                return i;
+            }
+            i++;
+        }
+        return content.length();
+    }
+
+    /**
+     * 定位模板中的元素标签（支持同名标签嵌套）
+     */
+    private static int[] locateElement(String content, String tagName) {
+        Pattern openPattern = Pattern.compile("<" + Pattern.quote(tagName) + "(?=[\\s/>])");
+        Matcher matcher = openPattern.matcher(content);
+        if (!matcher.find()) {
+            return null;
+        }
+        int start = matcher.start();
+        int tagEnd = content.indexOf('>', start);
+        if (tagEnd < 0) {
+            return new int[]{start, content.length()};
+        }
+        if (content.charAt(tagEnd - 1) == '/') {
+            return new int[]{start, tagEnd + 1};
+        }
+        Pattern tagPattern = Pattern.compile("<(/?)" + Pattern.quote(tagName) + "(?=[\\s/>])[^>]*?(/?)>");
+        Matcher tags = tagPattern.matcher(content);
+        int depth = 0;
+        int from = start;
+        while (tags.find(from)) {
+            boolean closing = !tags.group(1).isEmpty();
+            boolean selfClosing = !tags.group(2).isEmpty();
+            if (!closing && !selfClosing) {
+                depth++;
+            } else if (closing) {
+                depth--;
+                if (depth == 0) {
+                    return new int[]{start, tags.end()};
+                }
+            }
+            from = tags.end();
+        }
+        return new int[]{start, tagEnd + 1};
+    }
+}
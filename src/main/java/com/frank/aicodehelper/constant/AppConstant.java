@@ -22,6 +22,21 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * 部署发布目录（按内容寻址的文件对象 + 每个应用的历史发布，部署目录是指向当前发布的符号链接）
+     */
+    String CODE_RELEASE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_releases";
+
+    /**
+     * 外部图片资源本地化存储目录（按内容哈希寻址，所有应用共享）
+     */
+    String CODE_ASSET_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_assets";
+
+    /**
+     * Vue 项目依赖缓存目录（按 package.json + lockfile 哈希寻址，所有应用共享 node_modules）
+     */
+    String CODE_DEPENDENCY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_dependencies";
+
     /**
      * 应用部署域名
      */
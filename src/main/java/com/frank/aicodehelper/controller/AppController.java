@@ -9,6 +9,7 @@ import com.frank.aicodehelper.common.DeleteRequest;
 import com.frank.aicodehelper.common.ResultUtils;
 import com.frank.aicodehelper.constant.AppConstant;
 import com.frank.aicodehelper.constant.UserConstant;
+import com.frank.aicodehelper.core.builder.BuildTracker;
 import com.frank.aicodehelper.exception.BusinessException;
 import com.frank.aicodehelper.exception.ErrorCode;
 import com.frank.aicodehelper.exception.ThrowUtils;
@@ -16,6 +17,7 @@ import com.frank.aicodehelper.model.dto.app.*;
 import com.frank.aicodehelper.model.entity.App;
 import com.frank.aicodehelper.model.entity.User;
 import com.frank.aicodehelper.model.vo.AppVO;
+import com.frank.aicodehelper.model.vo.BuildStatusVO;
 import com.frank.aicodehelper.service.AppService;
 import com.frank.aicodehelper.service.UserService;
 import com.mybatisflex.core.paginate.Page;
@@ -54,6 +56,9 @@ public class AppController {
     @Resource
     private com.frank.aicodehelper.service.ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private BuildTracker buildTracker;
+
     /**
      * 创建应用
      *
@@ -129,20 +134,92 @@ public class AppController {
         return ResultUtils.success(deployUrl);
     }
 
+    /**
+     * 回滚应用部署到上一个发布
+     *
+     * @param appDeployRequest 部署请求
+     * @param request          请求
+     * @return 部署 URL
+     */
+    @PostMapping("/deploy/rollback")
+    public BaseResponse<String> rollbackDeploy(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(appDeployRequest == null, ErrorCode.PARAMS_ERROR);
+        Long appId = appDeployRequest.getAppId();
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.rollbackDeploy(appId, loginUser));
+    }
+
     /**
      * 检查 Vue 项目构建状态
      * 用于前端轮询判断预览是否可用
      *
      * @param appId 应用ID
-     * @return 构建是否完成（dist 目录是否存在）
+     * @return 最近一次构建是否成功（没有构建记录时看 dist 目录是否存在）
      */
     @GetMapping("/build-status/{appId}")
     public BaseResponse<Boolean> getBuildStatus(@PathVariable Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
-        // 检查 dist 目录是否存在
-        String distPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId + File.separator + "dist";
-        boolean ready = new File(distPath).exists();
-        return ResultUtils.success(ready);
+        // 构建中或构建失败时旧的 dist 仍然存在，不能再用 dist 是否存在判断
+        return ResultUtils.success(Boolean.TRUE.equals(buildTracker.status(appId).getReady()));
+    }
+
+    /**
+     * 获取 Vue 项目构建详情（状态和各阶段耗时）
+     *
+     * @param appId   应用ID
+     * @param request 请求
+     * @return 构建状态
+     */
+    @GetMapping("/build-status/detail/{appId}")
+    public BaseResponse<BuildStatusVO> getBuildStatusDetail(@PathVariable Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        // 构建详情包含失败原因，与构建日志一样只有应用创建者可以查看
+        User loginUser = userService.getLoginUser(request);
+        if (!app.getUserId().equals(loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限查看该应用构建详情");
+        }
+        return ResultUtils.success(buildTracker.status(appId));
+    }
+
+    /**
+     * 订阅 Vue 项目构建进度（SSE）
+     * 事件类型：status（BuildStatusVO JSON）、log（构建输出的一行），构建结束后发送 done 事件
+     *
+     * @param appId    应用ID
+     * @param request  请求
+     * @param response 响应
+     * @return 构建事件流
+     */
+    @GetMapping(value = "/build-status/stream/{appId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamBuildStatus(@PathVariable Long appId,
+                                                           HttpServletRequest request,
+                                                           HttpServletResponse response) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        // 构建日志可能包含项目路径等信息，只有应用创建者可以查看
+        User loginUser = userService.getLoginUser(request);
+        if (!app.getUserId().equals(loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限查看该应用构建日志");
+        }
+        // 设置响应头禁用缓冲，确保日志实时到达前端
+        response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+        response.setHeader("X-Accel-Buffering", "no");
+        response.setHeader("Connection", "keep-alive");
+        return buildTracker.stream(appId)
+                .map(event -> ServerSentEvent.<String>builder()
+                        .event(event.type())
+                        .data(event.data())
+                        .build())
+                .concatWith(Mono.just(
+                        ServerSentEvent.<String>builder()
+                                .event("done")
+                                .data("")
+                                .build()
+                ));
     }
 
     /**
@@ -0,0 +1,55 @@
+package com.frank.aicodehelper.controller;
+
+import com.frank.aicodehelper.core.asset.AssetStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 本地化资源访问
+ * 资源按内容哈希命名，内容永不变化，因此可以设置长期强缓存
+ * 资源来自第三方（SVG 可以包含脚本），且与 API 同源：所有响应都禁止执行脚本、禁止类型嗅探，
+ * 直接打开资源地址时内容在沙箱中渲染，不能访问本站的 Cookie 和接口
+ * 访问格式：http://localhost:8123/api/assets/{hash}.{ext}
+ */
+@Slf4j
+@RestController
+@RequestMapping("/assets")
+public class AssetController {
+
+    /**
+     * 只允许内联样式（SVG 常用），禁止脚本、外部加载和表单，并在沙箱中渲染
+     */
+    static final String CONTENT_SECURITY_POLICY = "default-src 'none'; style-src 'unsafe-inline'; sandbox";
+
+    @jakarta.annotation.Resource
+    private AssetStore assetStore;
+
+    @GetMapping("/{assetName:.+}")
+    public ResponseEntity<Resource> serveAsset(@PathVariable String assetName) {
+        Path path = assetStore.resolve(assetName);
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType mediaType = MediaTypeFactory.getMediaType(assetName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .eTag(assetName.substring(0, assetName.indexOf('.')))
+                .contentType(mediaType)
+                .header("Content-Security-Policy", CONTENT_SECURITY_POLICY)
+                .header("X-Content-Type-Options", "nosniff")
+                .body(new FileSystemResource(path));
+    }
+}
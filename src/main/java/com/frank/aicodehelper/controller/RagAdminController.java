@@ -0,0 +1,57 @@
+package com.frank.aicodehelper.controller;
+
+import com.frank.aicodehelper.annotation.AuthCheck;
+import com.frank.aicodehelper.common.BaseResponse;
+import com.frank.aicodehelper.common.ResultUtils;
+import com.frank.aicodehelper.constant.UserConstant;
+import com.frank.aicodehelper.rag.indexing.ProjectReindexJob;
+import com.frank.aicodehelper.rag.model.ReindexProgress;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * RAG 索引管理（仅管理员）
+ */
+@RestController
+@RequestMapping("/rag/admin")
+public class RagAdminController {
+
+    @Resource
+    private ProjectReindexJob projectReindexJob;
+
+    /**
+     * 启动批量重建索引（已在运行时返回当前进度）
+     *
+     * @param fullRebuild 是否忽略片段哈希、全部重新向量化（向量存储被清空时使用）
+     * @param restart     是否丢弃上一次被中断任务的完成记录、从头开始
+     * @return 任务进度
+     */
+    @PostMapping("/reindex")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ReindexProgress> startReindex(@RequestParam(defaultValue = "false") boolean fullRebuild,
+                                                     @RequestParam(defaultValue = "false") boolean restart) {
+        return ResultUtils.success(projectReindexJob.start(fullRebuild, restart));
+    }
+
+    /**
+     * 停止批量重建索引（完成记录保留，再次启动时续跑）
+     *
+     * @return 任务进度
+     */
+    @PostMapping("/reindex/stop")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ReindexProgress> stopReindex() {
+        return ResultUtils.success(projectReindexJob.stop());
+    }
+
+    /**
+     * 查询批量重建索引进度
+     *
+     * @return 任务进度
+     */
+    @GetMapping("/reindex/progress")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ReindexProgress> getReindexProgress() {
+        return ResultUtils.success(projectReindexJob.progress());
+    }
+}
@@ -9,7 +9,8 @@ import com.frank.aicodehelper.ai.model.message.AiResponseMessage;
 import com.frank.aicodehelper.ai.model.message.ToolExecutedMessage;
 import com.frank.aicodehelper.ai.model.message.ToolRequestMessage;
 import com.frank.aicodehelper.constant.AppConstant;
-import com.frank.aicodehelper.core.builder.VueProjectBuilder;
+import com.frank.aicodehelper.core.builder.BuildPriority;
+import com.frank.aicodehelper.core.builder.BuildScheduler;
 import com.frank.aicodehelper.core.parser.CodeParserExecutor;
 import com.frank.aicodehelper.core.saver.CodeFileSaverExecutor;
 import com.frank.aicodehelper.core.collector.StreamDataCollector;
@@ -40,12 +41,12 @@ public class AiCodeGeneratorFacade {
      * 读取类工具列表（不向前端返回执行结果）
      * 这些工具的执行结果通常是大量文件内容，不适合直接展示给前端
      */
-    private static final Set<String> SILENT_TOOLS = Set.of("readFile", "readDir", "readDirectory");
+    private static final Set<String> SILENT_TOOLS = Set.of("readFile", "readFileRange", "searchCode", "readDir", "readDirectory");
 
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private BuildScheduler buildScheduler;
     @Resource
     private ChatHistoryService chatHistoryService;
     @Resource
@@ -205,18 +206,17 @@ public class AiCodeGeneratorFacade {
                             saveCompleteResponse(appId, userId, collector);
                         }
                         
-                        // 使用虚拟线程异步执行 Vue 项目构建，避免阻塞流式响应
-                        // 前端收到 complete 后可立即展示结果，构建在后台进行
+                        // 提交到构建调度器异步执行 Vue 项目构建，避免阻塞流式响应
+                        // 前端收到 complete 后可立即展示结果，构建在后台排队进行（同一应用的重复请求会被合并）
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId;
-                        Thread.startVirtualThread(() -> {
-                            log.info("App {} 开始异步构建 Vue 项目: {}", appId, projectPath);
-                            boolean success = vueProjectBuilder.buildProject(projectPath);
-                            if (success) {
-                                log.info("App {} Vue 项目构建成功", appId);
-                            } else {
-                                log.warn("App {} Vue 项目构建失败", appId);
-                            }
-                        });
+                        buildScheduler.submit(appId, projectPath, BuildPriority.PREVIEW)
+                                .thenAccept(success -> {
+                                    if (success) {
+                                        log.info("App {} Vue 项目构建成功", appId);
+                                    } else {
+                                        log.warn("App {} Vue 项目构建失败", appId);
+                                    }
+                                });
                         
                         try {
                             sink.complete();
@@ -0,0 +1,223 @@
+package com.frank.aicodehelper.core.asset;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 部署资源本地化
+ * 部署时扫描页面中引用的第三方图片（Pixabay / Pexels / popsy / ui-avatars / dicebear 等），
+ * 下载到内容寻址仓库并把引用改写为本站路径，部署后的页面和截图不再依赖第三方 CDN
+ */
+@Slf4j
+@Component
+public class AssetLocalizer {
+
+    /**
+     * 需要本地化的资源域名（工具返回的图片都来自这些域名）
+     */
+    private static final Set<String> DEFAULT_ASSET_HOSTS = Set.of(
+            "pixabay.com",
+            "images.pexels.com",
+            "illustrations.popsy.co",
+            "ui-avatars.com",
+            "api.dicebear.com",
+            "picsum.photos"
+    );
+
+    /**
+     * 需要扫描改写的文件类型
+     */
+    private static final Set<String> REWRITABLE_EXTENSIONS = Set.of("html", "htm", "css", "js");
+
+    /**
+     * 匹配 http(s) URL（引号、括号、空白处截断）
+     */
+    private static final Pattern URL_PATTERN = Pattern.compile("https?://[^\\s\"'`()<>\\\\]+");
+
+    /**
+     * 并发下载资源使用的虚拟线程执行器
+     */
+    private static final ExecutorService DOWNLOAD_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Resource
+    private AssetStore assetStore;
+
+    /**
+     * 本地化资源的访问前缀（默认与前端一样走 /api 反向代理）
+     */
+    @Value("${code.asset-base-url:/api/assets}")
+    private String assetBaseUrl;
+
+    private Set<String> assetHosts = DEFAULT_ASSET_HOSTS;
+
+    /**
+     * 本地化结果
+     *
+     * @param rewritten 被改写的引用数
+     * @param failed    未能本地化的资源数（下载失败、文件读写失败），大于 0 时页面仍引用部分第三方资源
+     */
+    public record Result(int rewritten, int failed) {
+
+        /**
+         * 所有资源都已本地化
+         */
+        public boolean complete() {
+            return failed == 0;
+        }
+    }
+
+    /**
+     * 本地化目录下所有页面引用的第三方资源
+     * 下载失败的资源保留原始 URL，不影响部署，由调用方根据结果决定是否需要重试
+     *
+     * @param dir 部署目录（只改写该目录，不修改生成目录）
+     * @return 本地化结果
+     */
+    public Result localize(Path dir) {
+        long startTime = System.currentTimeMillis();
+        List<Path> files = listRewritableFiles(dir);
+        if (files.isEmpty()) {
+            return new Result(0, 0);
+        }
+        int failed = 0;
+        // 1. 收集所有需要本地化的 URL
+        Map<Path, String> contents = new HashMap<>();
+        Set<String> urls = new LinkedHashSet<>();
+        for (Path file : files) {
+            try {
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                contents.put(file, content);
+                Matcher matcher = URL_PATTERN.matcher(content);
+                while (matcher.find()) {
+                    String url = matcher.group();
+                    if (isAssetUrl(url)) {
+                        urls.add(url);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取文件失败，跳过资源本地化: {}", file);
+                failed++;
+            }
+        }
+        if (urls.isEmpty()) {
+            return new Result(0, failed);
+        }
+        // 2. 并发下载（已存在的资源直接命中仓库索引）
+        Map<String, String> localUrls = new ConcurrentHashMap<>();
+        List<Future<?>> futures = urls.stream()
+                .map(url -> DOWNLOAD_EXECUTOR.submit(() -> {
+                    // HTML 属性中的 & 会被转义为 &amp;，下载时需要还原
+                    String assetName = assetStore.store(url.replace("&amp;", "&"), this::isAssetUrl);
+                    if (assetName != null) {
+                        localUrls.put(url, assetBaseUrl + "/" + assetName);
+                    }
+                }))
+                .collect(Collectors.toList());
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                log.warn("资源下载任务异常: {}", e.getMessage());
+            }
+        }
+        failed += urls.size() - localUrls.size();
+        // 3. 改写引用
+        int rewritten = 0;
+        for (Map.Entry<Path, String> entry : contents.entrySet()) {
+            String content = entry.getValue();
+            StringBuilder result = new StringBuilder(content.length());
+            Matcher matcher = URL_PATTERN.matcher(content);
+            int fileRewritten = 0;
+            while (matcher.find()) {
+                String localUrl = localUrls.get(matcher.group());
+                matcher.appendReplacement(result, Matcher.quoteReplacement(localUrl != null ? localUrl : matcher.group()));
+                if (localUrl != null) {
+                    fileRewritten++;
+                }
+            }
+            matcher.appendTail(result);
+            if (fileRewritten > 0) {
+                try {
+                    writeReplacing(entry.getKey(), result.toString());
+                    rewritten += fileRewritten;
+                } catch (IOException e) {
+                    log.warn("写回文件失败: {}, error={}", entry.getKey(), e.getMessage());
+                    failed++;
+                }
+            }
+        }
+        log.info("资源本地化完成: dir={}, 发现 {} 个外部资源, 本地化 {} 个, 改写 {} 处引用, 失败 {} 个, 耗时 {}ms",
+                dir, urls.size(), localUrls.size(), rewritten, failed, System.currentTimeMillis() - startTime);
+        return new Result(rewritten, failed);
+    }
+
+    /**
+     * 写入新文件再替换原文件：部署目录中的文件可能是发布仓库对象的硬链接，原地写入会改动其他发布
+     */
+    private static void writeReplacing(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 判断 URL 是否属于需要本地化的资源域名（含子域名）
+     */
+    private boolean isAssetUrl(String url) {
+        try {
+            String host = URI.create(url.replace("&amp;", "&")).getHost();
+            if (host == null) {
+                return false;
+            }
+            String lowerHost = host.toLowerCase();
+            return assetHosts.stream()
+                    .anyMatch(h -> lowerHost.equals(h) || lowerHost.endsWith("." + h));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private List<Path> listRewritableFiles(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        int dot = name.lastIndexOf('.');
+                        return dot > 0 && REWRITABLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+                    })
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("遍历部署目录失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.frank.aicodehelper.core.asset;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 内容寻址的本地资源仓库
+ * 外部图片只下载一次，按 SHA-256 命名存储，所有应用共享同一份文件
+ *
+ * 目录结构：
+ * - {root}/{hash前2位}/{hash}.{ext}  资源文件
+ * - {root}/index/{md5(url)}          URL → 资源文件名 的索引（重启后仍可复用）
+ */
+@Slf4j
+@Component
+public class AssetStore {
+
+    /**
+     * 单个资源最大字节数（超过则不做本地化）
+     */
+    private static final long MAX_ASSET_BYTES = 10 * 1024 * 1024;
+
+    private static final int DOWNLOAD_TIMEOUT_MS = 15000;
+
+    /**
+     * 最多跟随的重定向次数
+     */
+    private static final int MAX_REDIRECTS = 5;
+
+    /**
+     * 资源文件名格式：64 位十六进制哈希 + 扩展名
+     */
+    private static final Pattern ASSET_NAME_PATTERN = Pattern.compile("^[a-f0-9]{64}\\.[a-z0-9]{2,5}$");
+
+    private static final Map<String, String> CONTENT_TYPE_EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "image/svg+xml", "svg",
+            "image/avif", "avif"
+    );
+
+    private Path storeRoot = Paths.get(AppConstant.CODE_ASSET_ROOT_DIR);
+
+    /**
+     * URL → 资源文件名 的内存索引
+     * 同一 URL 并发请求时由第一个请求下载，其余等待同一个 future；下载在缓存的计算之外执行，
+     * 不阻塞其他 URL。结果为 null（下载失败）的条目会被自动移除，下次重试
+     */
+    private final AsyncCache<String, String> urlIndex = Caffeine.newBuilder()
+            .maximumSize(20000)
+            .buildAsync();
+
+    /**
+     * 获取外部 URL 对应的本地资源文件名，必要时下载
+     *
+     * @param url        外部资源 URL
+     * @param allowedUrl 允许下载的 URL（域名白名单），重定向的每一跳都要满足
+     * @return 资源文件名（如 ab12...ef.jpg），下载失败返回 null
+     */
+    public String store(String url, Predicate<String> allowedUrl) {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = urlIndex.asMap().putIfAbsent(url, pending);
+        if (existing != null) {
+            return existing.join();
+        }
+        String assetName = null;
+        try {
+            assetName = loadOrFetch(url, allowedUrl);
+        } finally {
+            pending.complete(assetName);
+        }
+        return assetName;
+    }
+
+    /**
+     * 根据资源文件名解析本地路径
+     *
+     * @param assetName 资源文件名
+     * @return 本地路径，文件名非法或文件不存在时返回 null
+     */
+    public Path resolve(String assetName) {
+        if (assetName == null || !ASSET_NAME_PATTERN.matcher(assetName).matches()) {
+            return null;
+        }
+        Path path = assetPath(assetName);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    private String loadOrFetch(String url, Predicate<String> allowedUrl) {
+        Path indexFile = storeRoot.resolve("index").resolve(DigestUtil.md5Hex(url));
+        try {
+            if (Files.exists(indexFile)) {
+                String assetName = Files.readString(indexFile, StandardCharsets.UTF_8).trim();
+                if (resolve(assetName) != null) {
+                    return assetName;
+                }
+            }
+            String assetName = fetch(url, allowedUrl);
+            if (assetName != null) {
+                writeAtomically(indexFile, assetName.getBytes(StandardCharsets.UTF_8));
+            }
+            return assetName;
+        } catch (Exception e) {
+            log.warn("资源本地化失败: url={}, error={}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 下载资源并按内容哈希存储（相同内容只存一份）
+     * 不自动跟随重定向：每一跳的地址都要重新校验白名单，防止白名单域名把请求重定向到内网地址
+     */
+    private String fetch(String url, Predicate<String> allowedUrl) throws IOException {
+        String current = url;
+        for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+            if (!isHttp(current) || !allowedUrl.test(current)) {
+                log.warn("资源地址不在白名单内，跳过: url={}, target={}", url, current);
+                return null;
+            }
+            try (HttpResponse response = HttpRequest.get(current)
+                    .setFollowRedirects(false)
+                    .timeout(DOWNLOAD_TIMEOUT_MS)
+                    .execute()) {
+                int status = response.getStatus();
+                String location = response.header("Location");
+                if (status >= 300 && status < 400 && location != null) {
+                    current = URI.create(current).resolve(location).toString();
+                    continue;
+                }
+                return storeResponse(url, response);
+            }
+        }
+        log.warn("资源重定向次数过多: url={}", url);
+        return null;
+    }
+
+    private static boolean isHttp(String url) {
+        try {
+            String scheme = URI.create(url).getScheme();
+            return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 校验响应类型和大小，按内容哈希存储
+     */
+    private String storeResponse(String url, HttpResponse response) throws IOException {
+        if (!response.isOk()) {
+            log.warn("资源下载失败: url={}, status={}", url, response.getStatus());
+            return null;
+        }
+        String extension = resolveExtension(response.header("Content-Type"));
+        if (extension == null) {
+            log.warn("资源类型不支持本地化: url={}, contentType={}", url, response.header("Content-Type"));
+            return null;
+        }
+        byte[] bytes = response.bodyBytes();
+        if (bytes == null || bytes.length == 0 || bytes.length > MAX_ASSET_BYTES) {
+            log.warn("资源大小不符合要求: url={}, size={}", url, bytes == null ? 0 : bytes.length);
+            return null;
+        }
+        String assetName = DigestUtil.sha256Hex(bytes) + "." + extension;
+        Path target = assetPath(assetName);
+        if (!Files.exists(target)) {
+            writeAtomically(target, bytes);
+            log.info("资源已本地化: url={}, asset={}, size={}", url, assetName, bytes.length);
+        } else {
+            log.debug("资源内容已存在，复用: url={}, asset={}", url, assetName);
+        }
+        return assetName;
+    }
+
+    private Path assetPath(String assetName) {
+        return storeRoot.resolve(assetName.substring(0, 2)).resolve(assetName);
+    }
+
+    /**
+     * 先写临时文件再原子重命名，避免并发读取到写了一半的文件
+     */
+    private void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".asset-", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private String resolveExtension(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String mimeType = contentType.split(";")[0].trim().toLowerCase();
+        return CONTENT_TYPE_EXTENSIONS.get(mimeType);
+    }
+}
@@ -0,0 +1,17 @@
+package com.frank.aicodehelper.core.builder;
+
+/**
+ * 构建优先级（按声明顺序，越靠前越先执行）
+ */
+public enum BuildPriority {
+
+    /**
+     * 部署：用户同步等待结果
+     */
+    DEPLOY,
+
+    /**
+     * 预览：代码生成完成后的后台构建
+     */
+    PREVIEW
+}
@@ -0,0 +1,32 @@
+package com.frank.aicodehelper.core.builder;
+
+import com.frank.aicodehelper.model.enums.BuildStatusEnum;
+
+/**
+ * 构建进度回调
+ */
+public interface BuildProgress {
+
+    /**
+     * 不记录进度
+     */
+    BuildProgress NONE = new BuildProgress() {
+        @Override
+        public void stage(BuildStatusEnum status) {
+        }
+
+        @Override
+        public void log(String line) {
+        }
+    };
+
+    /**
+     * 进入新阶段（INSTALLING / BUILDING）
+     */
+    void stage(BuildStatusEnum status);
+
+    /**
+     * 构建输出的一行日志
+     */
+    void log(String line);
+}
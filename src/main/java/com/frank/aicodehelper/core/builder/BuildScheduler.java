@@ -0,0 +1,252 @@
+package com.frank.aicodehelper.core.builder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vue 项目构建调度器
+ * - 全局并发上限：默认按 CPU 核数和物理内存（扣除 JVM 堆）自动计算，同时运行的 npm 进程数不超过上限
+ * - 按应用合并：同一应用同一时间最多一个构建在运行、一个在排队；排队中的请求被后来的请求合并
+ *   （构建执行时才读取文件，排队的那次构建本身就会用到最新代码）；
+ *   部署请求直接复用正在运行的构建，运行中到达的预览请求排在其后执行，避免两个构建同时写 dist
+ * - 部署优先于预览，合并时取较高的优先级
+ * - 该应用没有进行中的构建且 dist 已是最新（构建戳一致）时直接返回成功，不进入队列
+ * - 每个新入队的构建在 BuildTracker 中记录状态和输出日志，被合并的请求共用同一条记录
+ * 指标：vue.build.queue.wait（tag priority，排队耗时）、vue.build.duration（tag priority、outcome）、
+ * vue.build.coalesced（tag target=pending/running/up_to_date）、vue.build.pending、vue.build.running
+ */
+@Slf4j
+@Component
+public class BuildScheduler {
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private BuildTracker buildTracker;
+
+    /**
+     * 最大并发构建数，0 表示自动计算
+     */
+    @Value("${code.build.max-concurrent:0}")
+    private int maxConcurrent;
+
+    /**
+     * 单个构建（npm install + vite build）预估占用内存（MB），用于自动计算并发数
+     */
+    @Value("${code.build.memory-per-build-mb:1024}")
+    private long memoryPerBuildMb;
+
+    private final PriorityBlockingQueue<BuildJob> queue = new PriorityBlockingQueue<>(16,
+            Comparator.comparing((BuildJob job) -> job.priority).thenComparingLong(job -> job.seq));
+
+    /**
+     * 应用ID -> 等待执行的构建（在全局队列中，或等待同应用的运行中构建结束）
+     */
+    private final Map<Long, BuildJob> pending = new HashMap<>();
+
+    /**
+     * 应用ID -> 正在运行的构建
+     */
+    private final Map<Long, BuildJob> running = new HashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private static final class BuildJob {
+        private final Long appId;
+        private final String projectPath;
+        private final long seq;
+        private final long createdNanos = System.nanoTime();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final BuildTracker.BuildRun progress;
+        private BuildPriority priority;
+
+        private BuildJob(Long appId, String projectPath, BuildPriority priority, long seq,
+                         BuildTracker.BuildRun progress) {
+            this.appId = appId;
+            this.projectPath = projectPath;
+            this.priority = priority;
+            this.seq = seq;
+            this.progress = progress;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int concurrency = maxConcurrent > 0 ? maxConcurrent : autoConcurrency();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(Thread.ofVirtual().name("vue-build-worker-" + i).start(this::workLoop));
+        }
+        Gauge.builder("vue.build.pending", this, scheduler -> scheduler.count(pending)).register(meterRegistry);
+        Gauge.builder("vue.build.running", this, scheduler -> scheduler.count(running)).register(meterRegistry);
+        log.info("🏗️ Vue 构建调度器启动: 并发上限={}", concurrency);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 提交构建请求
+     *
+     * @param appId       应用ID
+     * @param projectPath 项目根目录
+     * @param priority    优先级
+     * @return 构建结果（是否成功），被合并的请求与合并目标共享同一个结果
+     */
+    public CompletableFuture<Boolean> submit(Long appId, String projectPath, BuildPriority priority) {
+        // 哈希源码树需要读文件，在锁外完成
+        if (!hasWork(appId) && vueProjectBuilder.isUpToDate(projectPath)) {
+            meterRegistry.counter("vue.build.coalesced", "target", "up_to_date").increment();
+            buildTracker.upToDate(appId);
+            return CompletableFuture.completedFuture(true);
+        }
+        return enqueue(appId, projectPath, priority);
+    }
+
+    private synchronized boolean hasWork(Long appId) {
+        return pending.containsKey(appId) || running.containsKey(appId);
+    }
+
+    private synchronized CompletableFuture<Boolean> enqueue(Long appId, String projectPath, BuildPriority priority) {
+        BuildJob pendingJob = pending.get(appId);
+        if (pendingJob != null) {
+            raisePriority(pendingJob, priority);
+            meterRegistry.counter("vue.build.coalesced", "target", "pending").increment();
+            return pendingJob.result;
+        }
+        BuildJob runningJob = running.get(appId);
+        if (runningJob != null && priority == BuildPriority.DEPLOY) {
+            meterRegistry.counter("vue.build.coalesced", "target", "running").increment();
+            return runningJob.result;
+        }
+        BuildJob job = new BuildJob(appId, projectPath, priority, sequence.incrementAndGet(),
+                buildTracker.queued(appId));
+        pending.put(appId, job);
+        if (runningJob == null) {
+            queue.add(job);
+        }
+        return job.result;
+    }
+
+    /**
+     * 提交构建请求并等待结果
+     *
+     * @param appId          应用ID
+     * @param projectPath    项目根目录
+     * @param priority       优先级
+     * @param timeoutSeconds 最长等待时间（含排队）
+     * @return 是否构建成功，超时返回 false（构建继续在后台执行）
+     */
+    public boolean buildAndWait(Long appId, String projectPath, BuildPriority priority, long timeoutSeconds) {
+        try {
+            return submit(appId, projectPath, priority).get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.error("等待 Vue 项目构建失败: appId={}, error={}", appId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void raisePriority(BuildJob job, BuildPriority priority) {
+        if (priority.compareTo(job.priority) >= 0) {
+            return;
+        }
+        // 优先级参与排序，需要移出队列再重新放入
+        boolean queued = queue.remove(job);
+        job.priority = priority;
+        if (queued) {
+            queue.add(job);
+        }
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            BuildJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            run(job);
+        }
+    }
+
+    private void run(BuildJob job) {
+        BuildPriority priority;
+        synchronized (this) {
+            pending.remove(job.appId, job);
+            running.put(job.appId, job);
+            priority = job.priority;
+        }
+        long startNanos = System.nanoTime();
+        meterRegistry.timer("vue.build.queue.wait", "priority", priority.name())
+                .record(startNanos - job.createdNanos, TimeUnit.NANOSECONDS);
+        boolean success = false;
+        try {
+            job.progress.started();
+            log.info("App {} 开始构建 Vue 项目: {}, 优先级={}", job.appId, job.projectPath, priority);
+            success = vueProjectBuilder.buildProject(job.projectPath, job.progress);
+        } catch (Exception e) {
+            log.error("构建 Vue 项目时发生异常: appId={}, error={}", job.appId, e.getMessage(), e);
+        } finally {
+            // 无论构建如何结束都要释放运行槽位、放行等待中的请求并通知调用方，否则该应用的构建会永久卡住
+            try {
+                Timer.builder("vue.build.duration")
+                        .tag("priority", priority.name())
+                        .tag("outcome", success ? "success" : "failure")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                job.progress.finish(success, success ? null : "构建失败，请查看构建日志");
+            } finally {
+                synchronized (this) {
+                    running.remove(job.appId);
+                    // 运行期间到达的请求现在可以执行
+                    BuildJob next = pending.get(job.appId);
+                    if (next != null) {
+                        queue.add(next);
+                    }
+                }
+                job.result.complete(success);
+            }
+        }
+    }
+
+    private synchronized int count(Map<Long, BuildJob> jobs) {
+        return jobs.size();
+    }
+
+    /**
+     * 按 CPU 核数（每个构建约占两个核）和物理内存（扣除 JVM 最大堆）计算并发上限
+     */
+    private int autoConcurrency() {
+        int byCpu = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        long totalMb = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getTotalMemorySize() / (1024 * 1024);
+        long heapMb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        int byMemory = (int) Math.max(1, (totalMb - heapMb) / Math.max(1, memoryPerBuildMb));
+        return Math.min(byCpu, byMemory);
+    }
+}
@@ -0,0 +1,127 @@
+package com.frank.aicodehelper.core.builder;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 构建戳：记录 dist 由哪一版源码和依赖构建而来
+ * 写在 dist/.build-stamp 中，dist 被删除或重新构建（Vite 会清空输出目录）时随之失效，不会与 dist 不一致
+ *
+ * @param sourceHash    源码树哈希（相对路径 + 内容，不含 node_modules、dist、lockfile）
+ * @param dependencyKey 依赖 key（package.json + lockfile 的哈希，见 {@link DependencyCache#keyOf}）
+ */
+@Slf4j
+public record BuildStamp(String sourceHash, String dependencyKey) {
+
+    public static final String FILE_NAME = ".build-stamp";
+
+    /**
+     * 不参与源码哈希的目录（依赖、构建产物和工具目录）
+     */
+    private static final Set<String> IGNORED_DIRS = Set.of(
+            "node_modules", "dist", ".git", "build", "target", ".idea", ".vscode", "coverage"
+    );
+
+    /**
+     * 不参与源码哈希的文件（lockfile 由依赖 key 覆盖，npm install 时可能被改写）
+     */
+    private static final Set<String> IGNORED_FILES = Set.of("package-lock.json", ".DS_Store");
+
+    /**
+     * 读取项目 dist 中的构建戳
+     *
+     * @param projectDir 项目根目录
+     * @return 构建戳，不存在或无法解析时返回 null
+     */
+    public static BuildStamp read(File projectDir) {
+        Path file = projectDir.toPath().resolve("dist").resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(Files.readString(file));
+            return new BuildStamp(json.getStr("source"), json.getStr("dependencies"));
+        } catch (Exception e) {
+            log.warn("读取构建戳失败: {}, error={}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入项目 dist 目录
+     *
+     * @param projectDir 项目根目录
+     */
+    public void write(File projectDir) {
+        Path file = projectDir.toPath().resolve("dist").resolve(FILE_NAME);
+        JSONObject json = new JSONObject();
+        json.set("source", sourceHash);
+        json.set("dependencies", dependencyKey);
+        try {
+            Files.writeString(file, json.toString());
+        } catch (IOException e) {
+            log.warn("写入构建戳失败: {}, error={}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 源码和依赖是否都与本次构建戳一致
+     */
+    public boolean matches(String sourceHash, String dependencyKey) {
+        return this.sourceHash != null && this.sourceHash.equals(sourceHash)
+                && Objects.equals(this.dependencyKey, dependencyKey);
+    }
+
+    /**
+     * 计算源码树哈希（按相对路径排序，逐个文件摘要路径和内容）
+     *
+     * @param projectDir 项目根目录
+     * @return SHA-256 十六进制串，读取失败返回 null（视为源码已变化）
+     */
+    public static String sourceHash(File projectDir) {
+        Path root = projectDir.toPath();
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(root) && IGNORED_DIRS.contains(dir.getFileName().toString())
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !IGNORED_FILES.contains(file.getFileName().toString())) {
+                        files.add(root.relativize(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            files.sort(null);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path file : files) {
+                digest.update(file.toString().replace('\\', '/').getBytes());
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(root.resolve(file)));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.warn("计算源码哈希失败: {}, error={}", projectDir, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.frank.aicodehelper.core.builder;
+
+import cn.hutool.json.JSONUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.model.enums.BuildStatusEnum;
+import com.frank.aicodehelper.model.vo.BuildStatusVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构建状态跟踪
+ * 每个应用记录最近一次构建（排队 -> 安装依赖 -> 构建 -> 成功/失败）的各阶段时间和最近的输出日志（有界环形缓冲），
+ * 订阅者先收到当前状态和已有日志，之后实时收到状态变化和新日志，构建结束时流结束
+ * 同一应用的新构建入队后取代旧记录：旧构建的后续输出不再推送，订阅者跟随新构建
+ */
+@Component
+public class BuildTracker {
+
+    /**
+     * 每次构建保留的日志行数
+     */
+    private static final int MAX_LOG_LINES = 500;
+
+    /**
+     * 单行日志最大长度
+     */
+    private static final int MAX_LINE_LENGTH = 2000;
+
+    /**
+     * 应用ID -> 构建记录与订阅者
+     */
+    private final Cache<Long, Channel> channels = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 推送给订阅者的事件
+     *
+     * @param type 事件类型：status（data 为 BuildStatusVO JSON）/ log（data 为日志行）
+     * @param data 事件数据
+     */
+    public record BuildEvent(String type, String data) {
+    }
+
+    /**
+     * 记录新构建入队
+     *
+     * @param appId 应用ID
+     * @return 本次构建的进度记录
+     */
+    public BuildRun queued(Long appId) {
+        Channel channel = channel(appId);
+        synchronized (channel) {
+            BuildRun run = new BuildRun(appId, channel);
+            channel.current = run;
+            run.emitStatus();
+            return run;
+        }
+    }
+
+    /**
+     * 记录一次因源码未变化而跳过的构建
+     *
+     * @param appId 应用ID
+     */
+    public void upToDate(Long appId) {
+        BuildRun run = queued(appId);
+        run.started();
+        run.finish(true, "源码和依赖未变化，复用已有构建");
+    }
+
+    /**
+     * 查询构建状态
+     *
+     * @param appId 应用ID
+     * @return 最近一次构建的状态；没有构建记录时只根据 dist 是否存在判断预览是否可用
+     */
+    public BuildStatusVO status(Long appId) {
+        Channel channel = channels.getIfPresent(appId);
+        if (channel != null) {
+            synchronized (channel) {
+                if (channel.current != null) {
+                    return channel.current.toVO();
+                }
+            }
+        }
+        BuildStatusVO vo = new BuildStatusVO();
+        vo.setAppId(appId);
+        vo.setReady(distExists(appId));
+        return vo;
+    }
+
+    /**
+     * 订阅构建事件
+     *
+     * @param appId 应用ID
+     * @return 事件流（当前状态 + 已有日志 + 实时事件），构建已结束或没有构建记录时发送当前状态后立即结束
+     */
+    public Flux<BuildEvent> stream(Long appId) {
+        return Flux.create(sink -> {
+            Channel channel = channel(appId);
+            synchronized (channel) {
+                BuildRun run = channel.current;
+                if (run == null) {
+                    sink.next(new BuildEvent("status", JSONUtil.toJsonStr(status(appId))));
+                    sink.complete();
+                    return;
+                }
+                run.logs.forEach(line -> sink.next(new BuildEvent("log", line)));
+                sink.next(new BuildEvent("status", JSONUtil.toJsonStr(run.toVO())));
+                if (run.status.isTerminal()) {
+                    sink.complete();
+                    return;
+                }
+                channel.listeners.add(sink);
+            }
+            sink.onDispose(() -> {
+                synchronized (channel) {
+                    channel.listeners.remove(sink);
+                }
+            });
+        });
+    }
+
+    private Channel channel(Long appId) {
+        return channels.get(appId, key -> new Channel());
+    }
+
+    private static boolean distExists(Long appId) {
+        return new File(AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId
+                + File.separator + "dist").exists();
+    }
+
+    /**
+     * 单个应用的构建记录和订阅者，所有读写在该对象锁内进行
+     */
+    private static final class Channel {
+        private BuildRun current;
+        private final List<FluxSink<BuildEvent>> listeners = new ArrayList<>();
+    }
+
+    /**
+     * 一次构建的进度记录
+     */
+    public static final class BuildRun implements BuildProgress {
+
+        private final Long appId;
+        private final Channel channel;
+        private final ArrayDeque<String> logs = new ArrayDeque<>();
+        private final long queuedAt = System.currentTimeMillis();
+        private BuildStatusEnum status = BuildStatusEnum.QUEUED;
+        private Long startedAt;
+        private Long installStartedAt;
+        private Long buildStartedAt;
+        private Long finishedAt;
+        private String message;
+
+        private BuildRun(Long appId, Channel channel) {
+            this.appId = appId;
+            this.channel = channel;
+        }
+
+        /**
+         * 开始执行（离开队列）
+         */
+        public void started() {
+            synchronized (channel) {
+                startedAt = System.currentTimeMillis();
+            }
+        }
+
+        @Override
+        public void stage(BuildStatusEnum stage) {
+            synchronized (channel) {
+                long now = System.currentTimeMillis();
+                if (stage == BuildStatusEnum.INSTALLING) {
+                    installStartedAt = now;
+                } else if (stage == BuildStatusEnum.BUILDING) {
+                    buildStartedAt = now;
+                }
+                status = stage;
+                emitStatus();
+            }
+        }
+
+        @Override
+        public void log(String line) {
+            String trimmed = line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) + "..." : line;
+            synchronized (channel) {
+                logs.addLast(trimmed);
+                if (logs.size() > MAX_LOG_LINES) {
+                    logs.removeFirst();
+                }
+                emit(new BuildEvent("log", trimmed));
+            }
+        }
+
+        /**
+         * 构建结束
+         *
+         * @param success 是否成功
+         * @param message 附加说明，可为空
+         */
+        public void finish(boolean success, String message) {
+            synchronized (channel) {
+                finishedAt = System.currentTimeMillis();
+                status = success ? BuildStatusEnum.SUCCEEDED : BuildStatusEnum.FAILED;
+                this.message = message;
+                emitStatus();
+                if (channel.current == this) {
+                    // complete 会触发 onDispose 从列表中移除订阅者，先复制再清空
+                    List<FluxSink<BuildEvent>> listeners = List.copyOf(channel.listeners);
+                    channel.listeners.clear();
+                    listeners.forEach(FluxSink::complete);
+                }
+            }
+        }
+
+        private void emitStatus() {
+            emit(new BuildEvent("status", JSONUtil.toJsonStr(toVO())));
+        }
+
+        /**
+         * 只有应用当前的构建才推送给订阅者
+         */
+        private void emit(BuildEvent event) {
+            if (channel.current == this) {
+                channel.listeners.forEach(listener -> listener.next(event));
+            }
+        }
+
+        private BuildStatusVO toVO() {
+            BuildStatusVO vo = new BuildStatusVO();
+            vo.setAppId(appId);
+            vo.setStatus(status.getValue());
+            vo.setReady(status == BuildStatusEnum.SUCCEEDED);
+            vo.setQueuedAt(queuedAt);
+            vo.setStartedAt(startedAt);
+            vo.setFinishedAt(finishedAt);
+            vo.setMessage(message);
+            long now = finishedAt != null ? finishedAt : System.currentTimeMillis();
+            vo.setQueueMillis((startedAt != null ? startedAt : now) - queuedAt);
+            if (installStartedAt != null) {
+                vo.setInstallMillis((buildStartedAt != null ? buildStartedAt : now) - installStartedAt);
+            }
+            if (buildStartedAt != null) {
+                vo.setBuildMillis(now - buildStartedAt);
+            }
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.frank.aicodehelper.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.UUID;
+
+/**
+ * 内容寻址的 node_modules 共享缓存
+ * 生成的 Vue 项目依赖几乎相同，按 package.json + package-lock.json 的哈希缓存一份安装结果，
+ * 项目中的 node_modules 以符号链接指向缓存，命中时不执行 npm install（无需网络）
+ *
+ * 目录结构：
+ * - {root}/{key}/node_modules        安装结果
+ * - {root}/{key}/package-lock.json   安装时生成/使用的 lockfile
+ * - {root}/{key}/.complete           完整性标记（整个目录通过原子重命名发布）
+ * - {root}/{key'} -> {key}           别名：安装前没有 lockfile 的项目，安装后 lockfile 改变了 key，两个 key 指向同一份缓存
+ */
+@Slf4j
+@Component
+public class DependencyCache {
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String PACKAGE_JSON = "package.json";
+
+    private static final String LOCKFILE = "package-lock.json";
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private Path cacheRoot = Paths.get(AppConstant.CODE_DEPENDENCY_ROOT_DIR);
+
+    /**
+     * 计算项目依赖的缓存 key
+     *
+     * @param projectDir 项目根目录
+     * @return package.json（+ lockfile）的 SHA-256，没有 package.json 时返回 null
+     */
+    public String keyOf(File projectDir) {
+        Path packageJson = projectDir.toPath().resolve(PACKAGE_JSON);
+        if (!Files.isRegularFile(packageJson)) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            content.write(Files.readAllBytes(packageJson));
+            Path lockfile = projectDir.toPath().resolve(LOCKFILE);
+            if (Files.isRegularFile(lockfile)) {
+                content.write(0);
+                content.write(Files.readAllBytes(lockfile));
+            }
+            return DigestUtil.sha256Hex(content.toByteArray());
+        } catch (IOException e) {
+            log.warn("读取依赖声明失败: {}, error={}", projectDir, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 缓存命中时将项目的 node_modules 链接到缓存
+     *
+     * @param projectDir 项目根目录
+     * @param key        缓存 key
+     * @return 是否命中并链接成功
+     */
+    public boolean link(File projectDir, String key) {
+        Path entry = cacheRoot.resolve(key);
+        if (!Files.exists(entry.resolve(COMPLETE_MARKER))) {
+            return false;
+        }
+        Path nodeModules = projectDir.toPath().resolve(NODE_MODULES);
+        try {
+            Path target = entry.resolve(NODE_MODULES).toRealPath();
+            if (!(Files.isSymbolicLink(nodeModules) && Files.readSymbolicLink(nodeModules).equals(target))) {
+                removeNodeModules(nodeModules);
+                Files.createSymbolicLink(nodeModules, target);
+            }
+            // 与 npm install 的效果保持一致：项目没有 lockfile 时补上安装时使用的 lockfile
+            Path lockfile = projectDir.toPath().resolve(LOCKFILE);
+            Path cachedLockfile = entry.resolve(LOCKFILE);
+            if (!Files.exists(lockfile) && Files.isRegularFile(cachedLockfile)) {
+                Files.copy(cachedLockfile, lockfile);
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("链接依赖缓存失败，回退到 npm install: {}, error={}", projectDir, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 执行真实安装前断开指向缓存的链接，避免 npm install 改写共享的缓存目录
+     *
+     * @param projectDir 项目根目录
+     */
+    public void detach(File projectDir) {
+        Path nodeModules = projectDir.toPath().resolve(NODE_MODULES);
+        if (Files.isSymbolicLink(nodeModules)) {
+            try {
+                Files.delete(nodeModules);
+            } catch (IOException e) {
+                log.warn("删除 node_modules 链接失败: {}, error={}", nodeModules, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 将刚安装好的 node_modules 发布到缓存，并把项目中的目录替换为链接
+     * 发布失败（如缓存目录与项目不在同一文件系统）时保留项目自己的 node_modules
+     *
+     * @param projectDir       项目根目录
+     * @param keyBeforeInstall 安装前计算的 key
+     */
+    public void publish(File projectDir, String keyBeforeInstall) {
+        Path nodeModules = projectDir.toPath().resolve(NODE_MODULES);
+        String key = keyOf(projectDir);
+        if (key == null || !Files.isDirectory(nodeModules, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Path entry = cacheRoot.resolve(key);
+        if (!Files.exists(entry.resolve(COMPLETE_MARKER)) && !moveIntoCache(projectDir.toPath(), entry)) {
+            return;
+        }
+        if (!key.equals(keyBeforeInstall)) {
+            try {
+                Files.createSymbolicLink(cacheRoot.resolve(keyBeforeInstall), Paths.get(key));
+            } catch (FileAlreadyExistsException ignored) {
+                // 其他构建已创建别名
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("创建依赖缓存别名失败: {}, error={}", keyBeforeInstall, e.getMessage());
+            }
+        }
+        link(projectDir, key);
+        log.info("依赖已发布到共享缓存: key={}", key);
+    }
+
+    /**
+     * 先在临时目录中组装缓存条目，再原子重命名为正式目录；并发发布同一 key 时只有一个成功，其余保留自己的安装结果
+     */
+    private boolean moveIntoCache(Path projectDir, Path entry) {
+        Path staging = cacheRoot.resolve(entry.getFileName() + ".tmp-" + UUID.randomUUID());
+        Path nodeModules = projectDir.resolve(NODE_MODULES);
+        try {
+            Files.createDirectories(staging);
+            Files.move(nodeModules, staging.resolve(NODE_MODULES), StandardCopyOption.ATOMIC_MOVE);
+            Path lockfile = projectDir.resolve(LOCKFILE);
+            if (Files.isRegularFile(lockfile)) {
+                Files.copy(lockfile, staging.resolve(LOCKFILE));
+            }
+            Files.createFile(staging.resolve(COMPLETE_MARKER));
+            Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            boolean lostRace = e instanceof FileAlreadyExistsException || e instanceof DirectoryNotEmptyException;
+            if (!lostRace) {
+                log.warn("发布依赖缓存失败: {}, error={}", entry, e.getMessage());
+            }
+            // 把安装结果还给项目
+            try {
+                if (Files.isDirectory(staging.resolve(NODE_MODULES)) && !Files.exists(nodeModules)) {
+                    Files.move(staging.resolve(NODE_MODULES), nodeModules, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException restoreError) {
+                log.error("恢复 node_modules 失败: {}, error={}", nodeModules, restoreError.getMessage());
+            }
+            FileUtil.del(staging.toFile());
+            return lostRace;
+        }
+    }
+
+    private static void removeNodeModules(Path nodeModules) throws IOException {
+        if (Files.isSymbolicLink(nodeModules)) {
+            Files.delete(nodeModules);
+        } else if (Files.exists(nodeModules)) {
+            FileUtil.del(nodeModules.toFile());
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.frank.aicodehelper.core.builder;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 常驻 Node 构建进程
+ * 每次 npm run build 都要重新启动 Node、解析模块并冷启动 Vite；开启后由一个常驻 Node 进程执行 vite build，
+ * 通过标准输入输出交换 JSON 行（协议见 build-worker/vite-worker.mjs）
+ * - 一次只执行一个构建，进程忙、未开启、处于重启退避期或项目的 build 脚本不是纯 vite build 时返回 UNAVAILABLE，
+ *   调用方回退到每次启动新进程的方式
+ * - 监管：定时发送 ping 做健康检查，无应答或进程退出时终止并重启（连续失败时指数退避）；
+ *   单次构建超时会终止进程；执行一定数量的构建后主动重启，避免内存持续增长
+ * 指标：vue.build.worker（tag outcome=succeeded/failed/unavailable）、vue.build.worker.starts
+ */
+@Slf4j
+@Component
+public class NodeBuildWorker {
+
+    /**
+     * 应答行前缀，其余输出都是构建日志
+     */
+    private static final char REPLY_PREFIX = '\u0001';
+
+    private static final String SCRIPT_RESOURCE = "build-worker/vite-worker.mjs";
+
+    private static final long START_TIMEOUT_SECONDS = 10;
+
+    private static final long PING_TIMEOUT_SECONDS = 5;
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * 进程退出标记
+     */
+    private static final JSONObject EXITED = new JSONObject();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用常驻构建进程
+     */
+    @Value("${code.build.worker.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Node 可执行文件
+     */
+    @Value("${code.build.worker.node-command:node}")
+    private String nodeCommand = "node";
+
+    /**
+     * 执行多少次构建后重启进程
+     */
+    @Value("${code.build.worker.max-jobs:200}")
+    private int maxJobs = 200;
+
+    /**
+     * 健康检查间隔（秒）
+     */
+    @Value("${code.build.worker.health-check-seconds:30}")
+    private long healthCheckSeconds = 30;
+
+    public enum Outcome {
+        SUCCEEDED, FAILED, UNAVAILABLE
+    }
+
+    /**
+     * 进程、构建请求和健康检查互斥
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong requestId = new AtomicLong();
+
+    private ScheduledExecutorService supervisor;
+
+    private Path script;
+
+    private Process process;
+
+    private Writer stdin;
+
+    private BlockingQueue<JSONObject> replies;
+
+    /**
+     * 当前构建的日志接收者，由输出读取线程使用
+     */
+    private volatile BuildProgress currentProgress = BuildProgress.NONE;
+
+    private int jobsSinceStart;
+
+    private int consecutiveFailures;
+
+    private long nextStartMillis;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        supervisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vue-build-worker-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 启动后立即拉起进程，之后定时检查
+        supervisor.scheduleWithFixedDelay(this::healthCheck, 0, healthCheckSeconds, TimeUnit.SECONDS);
+        log.info("🟢 常驻 Node 构建进程已启用: 健康检查间隔={}秒, 每 {} 次构建重启", healthCheckSeconds, maxJobs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (supervisor != null) {
+            supervisor.shutdownNow();
+        }
+        lock.lock();
+        try {
+            destroy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在常驻进程中执行 vite build
+     *
+     * @param projectDir     项目根目录
+     * @param timeoutSeconds 超时时间(秒)
+     * @param progress       进度回调（接收构建输出）
+     * @return 构建结果；UNAVAILABLE 表示没有执行，调用方应使用 npm run build
+     */
+    public Outcome build(File projectDir, int timeoutSeconds, BuildProgress progress) {
+        if (!enabled || !isPlainViteBuild(projectDir)) {
+            return Outcome.UNAVAILABLE;
+        }
+        if (!lock.tryLock()) {
+            return record(Outcome.UNAVAILABLE);
+        }
+        try {
+            if (!ensureStarted()) {
+                return record(Outcome.UNAVAILABLE);
+            }
+            log.info("使用常驻 Node 进程构建: {}", projectDir.getAbsolutePath());
+            progress.log("$ vite build (常驻构建进程)");
+            currentProgress = progress;
+            JSONObject reply;
+            try {
+                reply = request(new JSONObject()
+                        .set("type", "build")
+                        .set("root", projectDir.getAbsolutePath()), timeoutSeconds);
+            } finally {
+                currentProgress = BuildProgress.NONE;
+            }
+            if (reply == null) {
+                log.error("常驻进程构建超时({}秒)，终止进程", timeoutSeconds);
+                progress.log("构建超时(" + timeoutSeconds + "秒)，已终止");
+                destroy();
+                return record(Outcome.FAILED);
+            }
+            if (reply == EXITED) {
+                log.error("常驻 Node 构建进程在构建过程中退出");
+                progress.log("构建进程意外退出");
+                destroy();
+                return record(Outcome.FAILED);
+            }
+            if (++jobsSinceStart >= maxJobs) {
+                log.info("常驻 Node 构建进程已执行 {} 次构建，重启", jobsSinceStart);
+                destroy();
+            }
+            if (!reply.getBool("ok", false)) {
+                progress.log("构建失败: " + reply.getStr("error"));
+                return record(Outcome.FAILED);
+            }
+            return record(Outcome.SUCCEEDED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * build 脚本是否就是 vite build（带 vue-tsc 等前置步骤的项目走 npm run build）
+     */
+    static boolean isPlainViteBuild(File projectDir) {
+        try {
+            String json = Files.readString(new File(projectDir, "package.json").toPath());
+            JSONObject scripts = JSONUtil.parseObj(json).getJSONObject("scripts");
+            return scripts != null && "vite build".equals(scripts.getStr("build", "").trim());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 定时检查：空闲时确保进程存活并能应答
+     */
+    private void healthCheck() {
+        if (!lock.tryLock()) {
+            // 正在构建，由构建超时兜底
+            return;
+        }
+        try {
+            if (!ensureStarted()) {
+                return;
+            }
+            JSONObject reply = request(new JSONObject().set("type", "ping"), PING_TIMEOUT_SECONDS);
+            if (reply == null || reply == EXITED) {
+                log.warn("常驻 Node 构建进程健康检查失败，重启");
+                destroy();
+            }
+        } catch (Exception e) {
+            log.error("常驻 Node 构建进程健康检查异常: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 进程不在运行时启动，失败后按指数退避，退避期内直接返回 false
+     * 调用方持有锁
+     */
+    private boolean ensureStarted() {
+        if (process != null && process.isAlive()) {
+            return true;
+        }
+        if (process != null) {
+            log.warn("常驻 Node 构建进程已退出: exitCode={}", process.exitValue());
+            destroy();
+        }
+        if (System.currentTimeMillis() < nextStartMillis) {
+            return false;
+        }
+        try {
+            start();
+            consecutiveFailures = 0;
+            return true;
+        } catch (Exception e) {
+            destroy();
+            consecutiveFailures++;
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, 1000L << Math.min(consecutiveFailures, 20));
+            nextStartMillis = System.currentTimeMillis() + backoff;
+            log.error("常驻 Node 构建进程启动失败({}次)，{}毫秒后重试: {}", consecutiveFailures, backoff, e.getMessage());
+            return false;
+        }
+    }
+
+    private void start() throws IOException, InterruptedException {
+        if (script == null) {
+            script = Files.createTempFile("vue-build-worker", ".mjs");
+            script.toFile().deleteOnExit();
+            try (InputStream in = NodeBuildWorker.class.getClassLoader().getResourceAsStream(SCRIPT_RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("缺少构建进程脚本: " + SCRIPT_RESOURCE);
+                }
+                Files.copy(in, script, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Process started = new ProcessBuilder(nodeCommand, script.toString())
+                .redirectErrorStream(true)
+                .start();
+        BlockingQueue<JSONObject> startedReplies = new LinkedBlockingQueue<>();
+        Thread.ofVirtual().name("vue-build-worker-output").start(() -> readOutput(started, startedReplies));
+        process = started;
+        stdin = new BufferedWriter(new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+        replies = startedReplies;
+        jobsSinceStart = 0;
+        JSONObject ready = startedReplies.poll(START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (ready == null || !"ready".equals(ready.getStr("type"))) {
+            throw new IOException("进程未就绪");
+        }
+        meterRegistry.counter("vue.build.worker.starts").increment();
+        log.info("常驻 Node 构建进程已启动: pid={}", started.pid());
+    }
+
+    /**
+     * 发送请求并等待对应应答
+     *
+     * @return 应答；超时返回 null，进程退出返回 EXITED
+     */
+    private JSONObject request(JSONObject message, long timeoutSeconds) {
+        long id = requestId.incrementAndGet();
+        try {
+            stdin.write(message.set("id", id).toString());
+            stdin.write('\n');
+            stdin.flush();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            while (true) {
+                JSONObject reply = replies.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (reply == null || reply == EXITED) {
+                    return reply;
+                }
+                // 丢弃之前超时请求的迟到应答
+                if (reply.getLong("id", -1L) == id) {
+                    return reply;
+                }
+            }
+        } catch (IOException e) {
+            log.error("向常驻 Node 构建进程发送请求失败: {}", e.getMessage());
+            return EXITED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 读取进程输出：应答行放入队列，其余行转给当前构建
+     */
+    private void readOutput(Process target, BlockingQueue<JSONObject> sink) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(target.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && line.charAt(0) == REPLY_PREFIX) {
+                    try {
+                        sink.add(JSONUtil.parseObj(line.substring(1)));
+                    } catch (Exception e) {
+                        log.warn("无法解析常驻构建进程应答: {}", line.substring(1));
+                    }
+                } else {
+                    log.debug("[vite-worker] {}", line);
+                    currentProgress.log(line);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("读取常驻构建进程输出结束: {}", e.getMessage());
+        }
+        sink.add(EXITED);
+    }
+
+    /**
+     * 终止当前进程，下次使用时重新启动
+     */
+    private void destroy() {
+        if (process != null) {
+            process.destroyForcibly();
+            process = null;
+            stdin = null;
+            replies = null;
+        }
+    }
+
+    private Outcome record(Outcome outcome) {
+        meterRegistry.counter("vue.build.worker", "outcome", outcome.name().toLowerCase()).increment();
+        return outcome;
+    }
+}
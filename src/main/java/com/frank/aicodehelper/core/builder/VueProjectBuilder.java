@@ -1,30 +1,42 @@
 package com.frank.aicodehelper.core.builder;
 
-import cn.hutool.core.util.RuntimeUtil;
+import com.frank.aicodehelper.model.enums.BuildStatusEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class VueProjectBuilder {
 
+    @Resource
+    private DependencyCache dependencyCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private NodeBuildWorker nodeBuildWorker;
+
     /**
-     * 异步构建项目(不阻塞主流程)
+     * dist 是否已是当前源码和依赖的构建结果（无需重新构建）
      *
-     * @param projectPath 项目路径
+     * @param projectPath 项目根目录路径
+     * @return 构建戳与当前源码、依赖一致时返回 true
      */
-    public void buildProjectAsync(String projectPath) {
-        // 在单独的线程中执行构建,避免阻塞主流程
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis()).start(() -> {
-            try {
-                buildProject(projectPath);
-            } catch (Exception e) {
-                log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
-            }
-        });
+    public boolean isUpToDate(String projectPath) {
+        File projectDir = new File(projectPath);
+        BuildStamp stamp = BuildStamp.read(projectDir);
+        return stamp != null && stamp.matches(BuildStamp.sourceHash(projectDir), dependencyCache.keyOf(projectDir));
     }
 
     /**
@@ -34,6 +46,17 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, BuildProgress.NONE);
+    }
+
+    /**
+     * 构建 Vue 项目并报告进度
+     *
+     * @param projectPath 项目根目录路径
+     * @param progress    进度回调（阶段变化、命令输出）
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, BuildProgress progress) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -45,14 +68,31 @@ public class VueProjectBuilder {
             log.error("package.json 文件不存在: {}", packageJson.getAbsolutePath());
             return false;
         }
+        // 源码和依赖都未变化时直接复用上次的 dist
+        String sourceHash = BuildStamp.sourceHash(projectDir);
+        String dependencyKey = dependencyCache.keyOf(projectDir);
+        BuildStamp stamp = BuildStamp.read(projectDir);
+        if (stamp != null && stamp.matches(sourceHash, dependencyKey)) {
+            recordIncremental("build", true);
+            log.info("源码和依赖未变化，跳过构建: {}", projectPath);
+            return true;
+        }
+        recordIncremental("build", false);
         log.info("开始构建 Vue 项目: {}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
-            log.error("npm install 执行失败");
-            return false;
+        // 依赖未变化且 node_modules 完好时跳过安装，否则安装依赖（共享缓存命中时直接链接，不执行 npm install）
+        boolean dependenciesUnchanged = stamp != null && Objects.equals(stamp.dependencyKey(), dependencyKey)
+                && new File(projectDir, "node_modules").isDirectory();
+        recordIncremental("install", dependenciesUnchanged);
+        if (!dependenciesUnchanged) {
+            progress.stage(BuildStatusEnum.INSTALLING);
+            if (!installDependencies(projectDir, progress)) {
+                log.error("npm install 执行失败");
+                return false;
+            }
         }
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        progress.stage(BuildStatusEnum.BUILDING);
+        if (!executeNpmBuild(projectDir, progress)) {
             log.error("npm run build 执行失败");
             return false;
         }
@@ -62,65 +102,133 @@ public class VueProjectBuilder {
             log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
             return false;
         }
+        // 记录构建戳（依赖 key 在安装后重新计算：首次安装会生成 lockfile）
+        if (sourceHash != null) {
+            new BuildStamp(sourceHash, dependencyCache.keyOf(projectDir)).write(projectDir);
+        }
         log.info("Vue 项目构建成功,dist 目录: {}", distDir.getAbsolutePath());
         return true;
     }
 
+    /**
+     * 记录增量构建命中情况
+     *
+     * @param stage 阶段（install/build）
+     * @param hit   是否跳过
+     */
+    private void recordIncremental(String stage, boolean hit) {
+        meterRegistry.counter("vue.build.incremental", "stage", stage, "result", hit ? "hit" : "miss").increment();
+    }
+
+    /**
+     * 安装依赖：先查共享缓存，未命中时执行 npm install 并把结果发布到缓存
+     */
+    private boolean installDependencies(File projectDir, BuildProgress progress) {
+        String key = dependencyCache.keyOf(projectDir);
+        if (key != null && dependencyCache.link(projectDir, key)) {
+            log.info("依赖缓存命中，跳过 npm install: key={}", key);
+            progress.log("依赖缓存命中，跳过 npm install");
+            return true;
+        }
+        dependencyCache.detach(projectDir);
+        if (!executeNpmInstall(projectDir, progress)) {
+            return false;
+        }
+        if (key != null) {
+            dependencyCache.publish(projectDir, key);
+        }
+        return true;
+    }
+
     /**
      * 执行 npm install 命令
      */
-    private boolean executeNpmInstall(File projectDir) {
+    private boolean executeNpmInstall(File projectDir, BuildProgress progress) {
         log.info("执行 npm install...");
         String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+        return executeCommand(projectDir, command, 300, progress); // 5分钟超时
     }
 
     /**
-     * 执行 npm run build 命令
+     * 执行 npm run build 命令（常驻构建进程可用时在其中执行 vite build）
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, BuildProgress progress) {
+        NodeBuildWorker.Outcome outcome = nodeBuildWorker.build(projectDir, 180, progress);
+        if (outcome != NodeBuildWorker.Outcome.UNAVAILABLE) {
+            return outcome == NodeBuildWorker.Outcome.SUCCEEDED;
+        }
         log.info("执行 npm run build...");
         String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        return executeCommand(projectDir, command, 180, progress); // 3分钟超时
     }
 
     /**
      * 执行命令
+     * 标准错误合并到标准输出，由单独的虚拟线程持续读取并转发给进度回调，
+     * 避免输出较多时管道缓冲区写满导致进程阻塞到超时
      *
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间(秒)
+     * @param progress       进度回调（接收输出行）
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, int timeoutSeconds, BuildProgress progress) {
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
-            Process process = RuntimeUtil.exec(
-                    null,
-                    workingDir,
-                    command.split("\\s+") // 命令分割为数组
-            );
+            progress.log("$ " + command);
+            Process process = new ProcessBuilder(command.split("\\s+")) // 命令分割为数组
+                    .directory(workingDir)
+                    .redirectErrorStream(true)
+                    .start();
+            Thread drainer = Thread.ofVirtual().start(() -> drainOutput(process, progress));
             // 等待进程完成,设置超时
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
             if (!finished) {
                 log.error("命令执行超时({}秒),强制终止进程", timeoutSeconds);
+                progress.log("命令执行超时(" + timeoutSeconds + "秒)，已终止");
                 process.destroyForcibly();
                 return false;
             }
+            // 等待剩余输出读完
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
             int exitCode = process.exitValue();
             if (exitCode == 0) {
                 log.info("命令执行成功: {}", command);
                 return true;
             } else {
                 log.error("命令执行失败,退出码: {}", exitCode);
+                progress.log("命令执行失败，退出码: " + exitCode);
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("执行命令被中断: {}", command);
+            return false;
         } catch (Exception e) {
             log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
+            progress.log("执行命令失败: " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * 读取进程输出直到流关闭
+     */
+    private void drainOutput(Process process, BuildProgress progress) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                log.debug("[npm] {}", line);
+                progress.log(line);
+            }
+        } catch (IOException e) {
+            // 进程被强制终止时流会被关闭
+            log.debug("读取命令输出结束: {}", e.getMessage());
+        }
+    }
+
     /**
      * 检测操作系统
      */
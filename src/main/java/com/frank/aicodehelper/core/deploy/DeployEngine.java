@@ -0,0 +1,314 @@
+package com.frank.aicodehelper.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.core.builder.BuildStamp;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 原子、增量部署
+ * 部署内容先写入按内容寻址的发布目录，再原子替换部署目录的符号链接，访问者不会看到复制了一半的站点；
+ * 文件按 SHA-256 存入对象仓库，发布目录中的文件是对象的硬链接，重复部署只写入变化的内容；
+ * 内容完全相同的重复部署直接复用已有发布目录；prepare 未完整完成（如部分资源下载失败）的发布不会被复用，
+ * 下次部署重新生成
+ *
+ * 目录结构：
+ * - {releaseRoot}/objects/{hash前2位}/{hash}          文件内容
+ * - {releaseRoot}/apps/{deployKey}/{releaseId}/       发布目录（releaseId 由源目录的路径和文件哈希计算）
+ * - {releaseRoot}/apps/{deployKey}/{releaseId}-incomplete-{随机后缀}/ 未完整完成 prepare 的发布，不按内容复用
+ * - {releaseRoot}/apps/{deployKey}/{releaseId}.objects 发布引用的对象哈希，删除发布时用于回收对象
+ * - {releaseRoot}/apps/{deployKey}/history             激活顺序，最后一行是当前发布
+ * - {deployRoot}/{deployKey} -> 当前发布目录            nginx 直接访问的路径（符号链接）
+ */
+@Slf4j
+@Component
+public class DeployEngine {
+
+    private static final String OBJECTS = "objects";
+
+    private static final String APPS = "apps";
+
+    private static final String HISTORY = "history";
+
+    private static final String OBJECTS_SUFFIX = ".objects";
+
+    private static final String INCOMPLETE_INFIX = "-incomplete-";
+
+    /**
+     * 不部署的文件（构建戳只用于判断是否需要重新构建）
+     */
+    private static final Set<String> EXCLUDED_FILES = Set.of(BuildStamp.FILE_NAME);
+
+    private Path deployRoot = Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR);
+
+    private Path releaseRoot = Paths.get(AppConstant.CODE_RELEASE_ROOT_DIR);
+
+    /**
+     * 每个应用保留的发布数（含当前发布），用于回滚
+     */
+    @Value("${code.deploy.keep-releases:5}")
+    private int keepReleases = 5;
+
+    /**
+     * deployKey -> 锁，同一应用的发布、回滚串行执行
+     */
+    private final Cache<String, Object> locks = Caffeine.newBuilder()
+            .weakValues()
+            .build();
+
+    /**
+     * 发布源目录并切换为当前版本
+     *
+     * @param deployKey 部署标识
+     * @param sourceDir 源目录（Vue 项目为 dist）
+     * @param prepare   新发布目录生成后、激活前的处理（如资源本地化），复用已有发布时不执行；
+     *                  返回处理是否完整完成，未完整完成的发布仍会激活，但不会被后续相同内容的部署复用；
+     *                  抛出异常时放弃本次发布，当前版本保持不变；
+     *                  发布目录中的文件是共享对象的硬链接，修改文件必须写新文件再替换，不能原地写入
+     * @return 发布 ID
+     * @throws IOException 写入或切换失败
+     */
+    public String publish(String deployKey, File sourceDir, Predicate<Path> prepare) throws IOException {
+        long startTime = System.currentTimeMillis();
+        synchronized (lockFor(deployKey)) {
+            Path appDir = Files.createDirectories(releaseRoot.resolve(APPS).resolve(deployKey));
+            Map<String, String> manifest = manifestOf(sourceDir.toPath());
+            String releaseId = releaseIdOf(manifest);
+            Path releaseDir = appDir.resolve(releaseId);
+            int written = 0;
+            if (Files.isDirectory(releaseDir)) {
+                log.info("部署内容未变化，复用发布: deployKey={}, release={}", deployKey, releaseId);
+            } else {
+                Path staging = appDir.resolve(".staging-" + UUID.randomUUID());
+                try {
+                    written = stage(sourceDir.toPath(), manifest, staging);
+                    if (!prepare.test(staging)) {
+                        // 换一个目录名，相同内容的下次部署找不到它，会重新生成
+                        releaseId = releaseId + INCOMPLETE_INFIX + UUID.randomUUID().toString().substring(0, 8);
+                        releaseDir = appDir.resolve(releaseId);
+                        log.warn("发布处理未完整完成，本次发布不会被复用: deployKey={}, release={}", deployKey, releaseId);
+                    }
+                    Files.write(appDir.resolve(releaseId + OBJECTS_SUFFIX), new HashSet<>(manifest.values()));
+                    Files.move(staging, releaseDir, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    if (Files.exists(staging)) {
+                        FileUtil.del(staging.toFile());
+                    }
+                }
+            }
+            activate(deployKey, releaseDir);
+            List<String> history = readHistory(appDir);
+            history.remove(releaseId);
+            history.add(releaseId);
+            writeHistory(appDir, history);
+            prune(appDir, history);
+            log.info("部署发布完成: deployKey={}, release={}, 文件 {} 个, 新写入 {} 个, 耗时 {}ms",
+                    deployKey, releaseId, manifest.size(), written, System.currentTimeMillis() - startTime);
+            return releaseId;
+        }
+    }
+
+    /**
+     * 回滚到上一个发布
+     *
+     * @param deployKey 部署标识
+     * @return 回滚后的发布 ID，没有更早的发布时返回 null
+     * @throws IOException 切换失败
+     */
+    public String rollback(String deployKey) throws IOException {
+        synchronized (lockFor(deployKey)) {
+            Path appDir = releaseRoot.resolve(APPS).resolve(deployKey);
+            List<String> history = readHistory(appDir);
+            while (history.size() > 1) {
+                history.removeLast();
+                String releaseId = history.getLast();
+                Path releaseDir = appDir.resolve(releaseId);
+                if (Files.isDirectory(releaseDir)) {
+                    activate(deployKey, releaseDir);
+                    writeHistory(appDir, history);
+                    log.info("部署已回滚: deployKey={}, release={}", deployKey, releaseId);
+                    return releaseId;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 计算源目录的文件清单
+     *
+     * @return 相对路径（/ 分隔） -> 内容哈希，按路径排序
+     */
+    private Map<String, String> manifestOf(Path sourceDir) throws IOException {
+        Map<String, String> manifest = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (EXCLUDED_FILES.contains(file.getFileName().toString())) {
+                    continue;
+                }
+                String relativePath = sourceDir.relativize(file).toString().replace(File.separatorChar, '/');
+                manifest.put(relativePath, DigestUtil.sha256Hex(file.toFile()));
+            }
+        }
+        return manifest;
+    }
+
+    private static String releaseIdOf(Map<String, String> manifest) {
+        StringBuilder content = new StringBuilder();
+        manifest.forEach((path, hash) -> content.append(path).append('\0').append(hash).append('\n'));
+        return DigestUtil.sha256Hex(content.toString()).substring(0, 16);
+    }
+
+    /**
+     * 在临时目录中组装发布：对象仓库中没有的内容先写入仓库，再硬链接到发布目录
+     *
+     * @return 新写入仓库的文件数
+     */
+    private int stage(Path sourceDir, Map<String, String> manifest, Path staging) throws IOException {
+        int written = 0;
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            Path target = staging.resolve(entry.getKey());
+            Files.createDirectories(target.getParent());
+            Path object = objectPath(entry.getValue());
+            if (!Files.exists(object)) {
+                storeObject(sourceDir.resolve(entry.getKey()), object);
+                written++;
+            }
+            try {
+                Files.createLink(target, object);
+            } catch (NoSuchFileException e) {
+                // 对象刚被其他应用的清理删除，重新写入
+                storeObject(sourceDir.resolve(entry.getKey()), object);
+                written++;
+                Files.createLink(target, object);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // 文件系统不支持硬链接
+                Files.copy(object, target);
+            }
+        }
+        return written;
+    }
+
+    private void storeObject(Path source, Path object) throws IOException {
+        Files.createDirectories(object.getParent());
+        Path temp = object.resolveSibling(object.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.copy(source, temp);
+            Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return releaseRoot.resolve(OBJECTS).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * 把部署目录原子切换到指定发布：先建临时链接，再重命名覆盖
+     * 文件系统不支持符号链接时退化为复制
+     */
+    private void activate(String deployKey, Path releaseDir) throws IOException {
+        Files.createDirectories(deployRoot);
+        Path link = deployRoot.resolve(deployKey);
+        Path target = link.toAbsolutePath().getParent().relativize(releaseDir.toAbsolutePath());
+        Path tempLink = deployRoot.resolve("." + deployKey + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.createSymbolicLink(tempLink, target);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.warn("无法创建符号链接，改为复制部署: deployKey={}, error={}", deployKey, e.getMessage());
+            FileUtil.copyContent(releaseDir.toFile(), link.toFile(), true);
+            return;
+        }
+        Path legacyDir = null;
+        try {
+            if (Files.isDirectory(link, LinkOption.NOFOLLOW_LINKS)) {
+                // 之前直接复制生成的部署目录不能被重命名覆盖，先移开（仅首次切换时短暂不可访问）
+                legacyDir = link.resolveSibling("." + deployKey + ".legacy-" + UUID.randomUUID());
+                Files.move(link, legacyDir);
+            }
+            Files.move(tempLink, link, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempLink);
+        }
+        if (legacyDir != null) {
+            FileUtil.del(legacyDir.toFile());
+        }
+    }
+
+    /**
+     * 删除历史之外的发布（只保留最近 keepReleases 个），并回收不再被引用的对象
+     */
+    private void prune(Path appDir, List<String> history) throws IOException {
+        if (history.size() > keepReleases) {
+            history.subList(0, history.size() - keepReleases).clear();
+            writeHistory(appDir, history);
+        }
+        Set<String> kept = new HashSet<>(history);
+        List<Path> removable;
+        try (Stream<Path> entries = Files.list(appDir)) {
+            removable = entries.filter(Files::isDirectory)
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .filter(path -> !kept.contains(path.getFileName().toString()))
+                    .toList();
+        }
+        for (Path releaseDir : removable) {
+            Path objectList = appDir.resolve(releaseDir.getFileName() + OBJECTS_SUFFIX);
+            FileUtil.del(releaseDir.toFile());
+            if (Files.exists(objectList)) {
+                Files.readAllLines(objectList).forEach(this::deleteIfUnreferenced);
+                Files.delete(objectList);
+            }
+            log.info("删除过期发布: {}", releaseDir);
+        }
+    }
+
+    /**
+     * 对象只剩仓库自身一个链接时删除
+     */
+    private void deleteIfUnreferenced(String hash) {
+        Path object = objectPath(hash);
+        try {
+            if (Files.exists(object) && (Integer) Files.getAttribute(object, "unix:nlink") <= 1) {
+                Files.delete(object);
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // 无法获取链接数的文件系统不回收对象
+        } catch (IOException e) {
+            log.warn("回收部署对象失败: {}, error={}", object, e.getMessage());
+        }
+    }
+
+    private static List<String> readHistory(Path appDir) throws IOException {
+        Path file = appDir.resolve(HISTORY);
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+        List<String> history = new ArrayList<>(Files.readAllLines(file, StandardCharsets.UTF_8));
+        history.removeIf(String::isBlank);
+        return history;
+    }
+
+    private static void writeHistory(Path appDir, List<String> history) throws IOException {
+        Path temp = appDir.resolve(HISTORY + ".tmp");
+        Files.write(temp, history, StandardCharsets.UTF_8);
+        Files.move(temp, appDir.resolve(HISTORY), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Object lockFor(String deployKey) {
+        return locks.get(deployKey, key -> new Object());
+    }
+}
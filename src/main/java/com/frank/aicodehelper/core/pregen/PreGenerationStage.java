@@ -0,0 +1,189 @@
+package com.frank.aicodehelper.core.pregen;
+
+import com.frank.aicodehelper.ai.AiCodeGeneratorService;
+import com.frank.aicodehelper.ai.AiCodeGeneratorServiceFactory;
+import com.frank.aicodehelper.exception.BusinessException;
+import com.frank.aicodehelper.exception.ErrorCode;
+import com.frank.aicodehelper.model.enums.ChatHistoryMessageTypeEnum;
+import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.service.RagEnhancedMessageService;
+import com.frank.aicodehelper.service.ChatHistoryService;
+import com.frank.aicodehelper.service.ProjectSummaryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 代码生成前的准备阶段
+ * 校验通过后，以下步骤在虚拟线程上并行执行，全部就绪（或超时降级）后再开始调用模型：
+ * - history：保存用户消息（失败则整个请求失败；超时只记录日志，插入继续在后台完成，不阻塞生成）
+ * - service：预热 AI 服务实例（依赖 history：加载历史对话时会跳过最新一条用户消息）；
+ *   超时不影响结果，后续获取服务时 Caffeine 会等待同一个正在进行的创建
+ * - summary：生成项目结构摘要，超时或失败时不注入摘要
+ * - retrieval：查询向量化 + 检索，超时或失败时不注入代码上下文
+ * 每个步骤的超时都从阶段开始计时，所以阶段总耗时不超过最长的那个超时
+ * 指标：chat.pregen.step（tag step、outcome=success/error，记录步骤实际耗时）、
+ * chat.pregen.degraded（tag step、reason=timeout/error）、chat.pregen.total（阶段总耗时）
+ */
+@Slf4j
+@Component
+public class PreGenerationStage {
+
+    /**
+     * 准备步骤使用的虚拟线程执行器
+     */
+    private final ExecutorService stepExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private ProjectSummaryService projectSummaryService;
+
+    @Resource
+    private RagEnhancedMessageService ragEnhancedMessageService;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${code.pregen.history-timeout-ms:5000}")
+    private long historyTimeoutMs;
+
+    @Value("${code.pregen.service-timeout-ms:5000}")
+    private long serviceTimeoutMs;
+
+    @Value("${code.pregen.summary-timeout-ms:2000}")
+    private long summaryTimeoutMs;
+
+    @Value("${code.pregen.retrieval-timeout-ms:3000}")
+    private long retrievalTimeoutMs;
+
+    /**
+     * 执行准备阶段
+     *
+     * @param appId           应用ID
+     * @param message         用户原始消息
+     * @param codeGenTypeEnum 代码生成类型
+     * @param userId          用户ID
+     * @return 增强后的用户消息
+     */
+    public String prepare(Long appId, String message, CodeGenTypeEnum codeGenTypeEnum, Long userId) {
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<Boolean> history = step("history", () -> chatHistoryService.addChatMessage(
+                appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), userId));
+        CompletableFuture<AiCodeGeneratorService> service = history.thenComposeAsync(saved -> step("service",
+                () -> aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum)), stepExecutor);
+        CompletableFuture<String> summary = codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT
+                ? step("summary", () -> projectSummaryService.generateProjectSummary(appId, codeGenTypeEnum))
+                : CompletableFuture.completedFuture("");
+        CompletableFuture<List<ContextChunk>> retrieval = step("retrieval",
+                () -> ragEnhancedMessageService.retrieveContext(message, appId, codeGenTypeEnum));
+
+        // 用户消息必须保存成功，否则本次对话无法追溯；数据库慢时不阻塞生成，插入继续在后台完成
+        try {
+            await(history, startNanos, historyTimeoutMs);
+        } catch (TimeoutException e) {
+            recordDegraded("history", e);
+            log.warn("⚠️ [准备阶段] 保存用户消息超时({}ms)，继续生成: appId={}", historyTimeoutMs, appId);
+        } catch (Exception e) {
+            retrieval.cancel(true);
+            summary.cancel(true);
+            recordDegraded("history", e);
+            log.error("保存用户消息失败: appId={}, error={}", appId, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存对话记录失败");
+        }
+
+        String projectSummary = awaitOrDefault("summary", summary, startNanos, summaryTimeoutMs, "");
+        List<ContextChunk> chunks = awaitOrDefault("retrieval", retrieval, startNanos, retrievalTimeoutMs,
+                Collections.emptyList());
+        awaitOrDefault("service", service, startNanos, serviceTimeoutMs, null);
+
+        String enhancedMessage = ragEnhancedMessageService.assembleMessage(message, appId, codeGenTypeEnum,
+                projectSummary, chunks);
+        long totalNanos = System.nanoTime() - startNanos;
+        meterRegistry.timer("chat.pregen.total").record(totalNanos, TimeUnit.NANOSECONDS);
+        log.info("⚡ [准备阶段] 完成: appId={}, 耗时={}ms", appId, TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        return enhancedMessage;
+    }
+
+    /**
+     * 在虚拟线程上启动一个步骤，完成时记录实际耗时
+     */
+    private <T> CompletableFuture<T> step(String name, Supplier<T> supplier) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(supplier, stepExecutor);
+        future.whenComplete((result, error) -> Timer.builder("chat.pregen.step")
+                .tag("step", name)
+                .tag("outcome", error == null ? "success" : "error")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS));
+        return future;
+    }
+
+    /**
+     * 等待可降级的步骤，超时或失败时返回默认值（超时的步骤继续在后台运行，结果被丢弃）
+     */
+    private <T> T awaitOrDefault(String name, CompletableFuture<T> future, long startNanos, long timeoutMs,
+                                 T defaultValue) {
+        try {
+            return await(future, startNanos, timeoutMs);
+        } catch (Exception e) {
+            recordDegraded(name, e);
+            log.warn("⚠️ [准备阶段] 步骤 {} 降级: {}", name, e instanceof TimeoutException
+                    ? "超时(" + timeoutMs + "ms)" : e.getMessage());
+            return defaultValue;
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, long startNanos, long timeoutMs) throws Exception {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - startNanos);
+        try {
+            return future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * 停止接收新步骤，等待进行中的步骤（如保存用户消息）完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        stepExecutor.shutdown();
+        try {
+            if (!stepExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                stepExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            stepExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordDegraded(String name, Exception e) {
+        meterRegistry.counter("chat.pregen.degraded", "step", name,
+                "reason", e instanceof TimeoutException ? "timeout" : "error").increment();
+    }
+}
@@ -0,0 +1,148 @@
+package com.frank.aicodehelper.core.summary;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * 项目目录变更监听
+ * 文件工具在写入后会主动通知摘要缓存，这里用 WatchService 兜底确认其他途径的变更
+ * （整体保存代码、手动编辑、构建产物等），所有项目共用一个监听线程
+ * 只监听文件树显示范围内、未被忽略的目录
+ */
+@Slf4j
+@Component
+public class ProjectChangeWatcher {
+
+    private final Map<WatchKey, Registration> registrations = new ConcurrentHashMap<>();
+
+    private volatile WatchService watchService;
+
+    private volatile boolean closed;
+
+    private record Registration(Long appId, ProjectTree tree, Path dir, int depth) {
+    }
+
+    /**
+     * 开始监听项目目录
+     *
+     * @param appId 应用ID
+     * @param tree  项目文件树缓存
+     */
+    public void watch(Long appId, ProjectTree tree) {
+        try {
+            registerTree(appId, tree, tree.root(), 0);
+        } catch (IOException e) {
+            // 监听失败不影响摘要，只是外部变更要等缓存过期后才能看到
+            log.warn("监听项目目录失败: appId={}, error={}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 取消项目文件树对应的全部监听（按文件树实例区分，缓存重建时不会误删新实例的监听）
+     *
+     * @param tree 项目文件树缓存
+     */
+    public void unwatch(ProjectTree tree) {
+        registrations.entrySet().removeIf(entry -> {
+            if (entry.getValue().tree() == tree) {
+                entry.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void registerTree(Long appId, ProjectTree tree, Path dir, int depth) throws IOException {
+        if (depth >= ProjectTree.MAX_TREE_DEPTH) {
+            return;
+        }
+        WatchKey key = dir.register(service(), ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        registrations.put(key, new Registration(appId, tree, dir, depth));
+        List<Path> children;
+        try (Stream<Path> stream = Files.list(dir)) {
+            children = stream.filter(Files::isDirectory)
+                    .filter(child -> !ProjectTree.isIgnoredDir(child.getFileName().toString()))
+                    .toList();
+        }
+        for (Path child : children) {
+            registerTree(appId, tree, child, depth + 1);
+        }
+    }
+
+    private WatchService service() throws IOException {
+        if (watchService == null) {
+            synchronized (this) {
+                if (watchService == null) {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    Thread thread = new Thread(this::pollLoop, "project-change-watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+        }
+        return watchService;
+    }
+
+    private void pollLoop() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Registration registration = registrations.get(key);
+            if (registration != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    dispatch(registration, event);
+                }
+            } else {
+                key.pollEvents();
+            }
+            if (!key.reset()) {
+                registrations.remove(key);
+            }
+        }
+    }
+
+    private void dispatch(Registration registration, WatchEvent<?> event) {
+        ProjectTree tree = registration.tree();
+        if (event.kind() == OVERFLOW) {
+            tree.invalidateAll();
+            return;
+        }
+        Path path = registration.dir().resolve((Path) event.context());
+        if (event.kind() == ENTRY_DELETE) {
+            tree.onDeleted(path);
+        } else if (Files.isDirectory(path)) {
+            if (event.kind() == ENTRY_CREATE && !ProjectTree.isIgnoredDir(path.getFileName().toString())) {
+                tree.onDirectoryCreated(path);
+                try {
+                    registerTree(registration.appId(), tree, path, registration.depth() + 1);
+                } catch (IOException e) {
+                    log.debug("监听新目录失败: {}, error={}", path, e.getMessage());
+                }
+            }
+        } else {
+            tree.onFileChanged(path);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.frank.aicodehelper.core.summary;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * 单个项目的文件树缓存
+ * - 每个目录缓存自己的列表和渲染结果（不含外层缩进），文件增删只让所在目录重新列出、祖先目录重新拼接，
+ *   其他子树直接复用缓存，不再访问磁盘
+ * - 文件内容修改不改变树结构，只更新最近变更记录
+ * - 最近变更记录是固定容量的环：首次构建时按修改时间取前几个作为初始值，之后由变更事件维护，不再按 mtime 排序
+ * - 源码文件的符号概要按文件缓存，文件变更时丢弃该文件的概要，下次渲染时重新提取
+ * - 版本号在树结构、最近变更或符号概要发生变化时递增，渲染结果按版本号缓存
+ * 所有方法在对象锁内执行（工具线程与文件监听线程并发调用）
+ */
+public class ProjectTree {
+
+    /**
+     * 需要忽略的目录列表（这些目录文件数量多且对 AI 无意义）
+     */
+    private static final Set<String> IGNORED_DIRS = Set.of(
+            "node_modules",
+            ".git",
+            "dist",
+            ".idea",
+            ".vscode",
+            "__pycache__",
+            "target",
+            "build",
+            ".nuxt",
+            ".next"
+    );
+
+    /**
+     * 需要忽略的文件列表
+     */
+    private static final Set<String> IGNORED_FILES = Set.of(
+            ".DS_Store",
+            "package-lock.json",
+            "yarn.lock",
+            "pnpm-lock.yaml",
+            ".gitignore"
+    );
+
+    /**
+     * 文件树的最大深度（限制遍历深度以控制性能）
+     */
+    public static final int MAX_TREE_DEPTH = 4;
+
+    /**
+     * 单个目录下最大显示的文件数（避免文件过多导致摘要过长）
+     */
+    private static final int MAX_FILES_PER_DIR = 15;
+
+    /**
+     * 最近变更记录的容量
+     */
+    private static final int RECENT_LIMIT = 5;
+
+    private final Path root;
+
+    /**
+     * 符号概要提取：(相对路径, 绝对路径) -> 概要项
+     */
+    private final BiFunction<String, Path, List<String>> outliner;
+
+    /**
+     * 文件相对路径 -> 符号概要
+     */
+    private final Map<String, List<String>> outlines = new HashMap<>();
+
+    /**
+     * 相对目录路径（根目录为空串）-> 目录节点
+     */
+    private final Map<String, DirNode> dirs = new HashMap<>();
+
+    /**
+     * 最近变更的文件相对路径，最新的在前
+     */
+    private final ArrayDeque<String> recent = new ArrayDeque<>(RECENT_LIMIT);
+
+    private final AtomicLong version = new AtomicLong();
+
+    private long renderedVersion = -1;
+
+    private Snapshot rendered;
+
+    private boolean seeded;
+
+    /**
+     * 目录节点
+     */
+    private static final class DirNode {
+        /**
+         * 显示的子项（已过滤、排序、截断）
+         */
+        private final List<Entry> entries = new ArrayList<>();
+        /**
+         * 全部可显示子项的名称（判断新增/删除是否改变了列表）
+         */
+        private final Set<String> names = new HashSet<>();
+        private boolean listed;
+        /**
+         * 渲染结果（相对本目录的缩进），为空表示需要重新拼接
+         */
+        private String block;
+    }
+
+    private record Entry(String name, boolean directory) {
+    }
+
+    public ProjectTree(Path root) {
+        this(root, (relativePath, file) -> List.of());
+    }
+
+    public ProjectTree(Path root, BiFunction<String, Path, List<String>> outliner) {
+        this.root = root;
+        this.outliner = outliner;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 渲染结果
+     *
+     * @param tree        文件树
+     * @param recentFiles 最近变更的文件（相对路径，最新的在前）
+     * @param outlines    文件相对路径 -> 符号概要（按文件树顺序，不含没有概要的文件）
+     */
+    public record Snapshot(String tree, List<String> recentFiles, Map<String, List<String>> outlines) {
+    }
+
+    /**
+     * 渲染文件树和最近变更（版本号未变时直接返回缓存）
+     */
+    public synchronized Snapshot render() {
+        long currentVersion = version.get();
+        if (rendered == null || renderedVersion != currentVersion) {
+            String tree = renderDir("", 0);
+            if (!seeded) {
+                seedRecent();
+                seeded = true;
+            }
+            Map<String, List<String>> fileOutlines = new LinkedHashMap<>();
+            collectOutlines("", 0, fileOutlines);
+            rendered = new Snapshot(tree, List.copyOf(recent), Collections.unmodifiableMap(fileOutlines));
+            renderedVersion = currentVersion;
+        }
+        return rendered;
+    }
+
+    /**
+     * 文件被创建或修改
+     *
+     * @param file 文件绝对路径
+     */
+    public synchronized void onFileChanged(Path file) {
+        String relativePath = relativize(file);
+        if (relativePath == null || !isVisible(relativePath, false)) {
+            return;
+        }
+        boolean changed = markIfStructureChanged(relativePath, true);
+        changed |= touchRecent(relativePath);
+        changed |= outlines.remove(relativePath) != null;
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 文件或目录被删除
+     *
+     * @param path 绝对路径
+     */
+    public synchronized void onDeleted(Path path) {
+        String relativePath = relativize(path);
+        if (relativePath == null || relativePath.isEmpty()) {
+            return;
+        }
+        boolean changed = markIfStructureChanged(relativePath, false);
+        String dirPrefix = relativePath + "/";
+        changed |= recent.removeIf(recentPath -> recentPath.equals(relativePath) || recentPath.startsWith(dirPrefix));
+        changed |= outlines.keySet().removeIf(file -> file.equals(relativePath) || file.startsWith(dirPrefix));
+        dirs.keySet().removeIf(dir -> dir.equals(relativePath) || dir.startsWith(dirPrefix));
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 目录被创建
+     *
+     * @param dir 目录绝对路径
+     */
+    public synchronized void onDirectoryCreated(Path dir) {
+        String relativePath = relativize(dir);
+        if (relativePath == null || !isVisible(relativePath, true)) {
+            return;
+        }
+        if (markIfStructureChanged(relativePath, true)) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 丢弃全部缓存（监听事件溢出时使用）
+     */
+    public synchronized void invalidateAll() {
+        dirs.clear();
+        outlines.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * 目录是否需要显示在树中（用于决定是否监听）
+     */
+    public static boolean isIgnoredDir(String name) {
+        return IGNORED_DIRS.contains(name);
+    }
+
+    /**
+     * 新增时：路径上第一个"已列出但不包含该子项"的目录需要重新列出；删除时：直接父目录包含该子项则重新列出
+     *
+     * @return 树结构是否变化
+     */
+    private boolean markIfStructureChanged(String relativePath, boolean created) {
+        String[] segments = relativePath.split("/");
+        String dir = "";
+        for (int i = 0; i < segments.length; i++) {
+            DirNode node = dirs.get(dir);
+            if (node == null || !node.listed) {
+                // 该目录尚未列出（或已待重新列出），渲染时会读取最新内容
+                return false;
+            }
+            boolean last = i == segments.length - 1;
+            if (created ? !node.names.contains(segments[i]) : last && node.names.contains(segments[i])) {
+                markDirty(dir);
+                return true;
+            }
+            dir = dir.isEmpty() ? segments[i] : dir + "/" + segments[i];
+        }
+        return false;
+    }
+
+    private void markDirty(String dir) {
+        DirNode node = dirs.get(dir);
+        if (node != null) {
+            node.listed = false;
+            node.block = null;
+        }
+        // 祖先目录的渲染结果包含本目录，需要重新拼接（不需要重新列出）
+        String ancestor = dir;
+        while (!ancestor.isEmpty()) {
+            int slash = ancestor.lastIndexOf('/');
+            ancestor = slash < 0 ? "" : ancestor.substring(0, slash);
+            DirNode parent = dirs.get(ancestor);
+            if (parent != null) {
+                parent.block = null;
+            }
+        }
+    }
+
+    private boolean touchRecent(String relativePath) {
+        if (relativePath.equals(recent.peekFirst())) {
+            return false;
+        }
+        recent.remove(relativePath);
+        recent.addFirst(relativePath);
+        while (recent.size() > RECENT_LIMIT) {
+            recent.removeLast();
+        }
+        return true;
+    }
+
+    /**
+     * 渲染目录（相对本目录的缩进）
+     */
+    private String renderDir(String dir, int depth) {
+        if (depth >= MAX_TREE_DEPTH) {
+            return "└── ...\n";
+        }
+        DirNode node = dirs.computeIfAbsent(dir, key -> new DirNode());
+        if (node.block != null) {
+            return node.block;
+        }
+        if (!node.listed) {
+            list(dir, node);
+        }
+        StringBuilder tree = new StringBuilder();
+        boolean hasMore = node.names.size() > MAX_FILES_PER_DIR;
+        for (int i = 0; i < node.entries.size(); i++) {
+            Entry entry = node.entries.get(i);
+            boolean isLast = (i == node.entries.size() - 1) && !hasMore;
+            String connector = isLast ? "└── " : "├── ";
+            if (entry.directory()) {
+                tree.append(connector).append(entry.name()).append("/\n");
+                String child = dir.isEmpty() ? entry.name() : dir + "/" + entry.name();
+                appendIndented(tree, renderDir(child, depth + 1), isLast ? "    " : "│   ");
+            } else {
+                tree.append(connector).append(entry.name()).append("\n");
+            }
+        }
+        // 如果有更多文件被省略
+        if (hasMore) {
+            int omitted = node.names.size() - MAX_FILES_PER_DIR;
+            tree.append("└── ... (").append(omitted).append(" 个文件/目录省略)\n");
+        }
+        node.block = tree.toString();
+        return node.block;
+    }
+
+    private void list(String dir, DirNode node) {
+        node.entries.clear();
+        node.names.clear();
+        File[] files = resolve(dir).toFile().listFiles();
+        if (files != null) {
+            // 过滤并排序：目录在前，文件在后，按名称排序
+            Arrays.stream(files)
+                    .filter(file -> isIncluded(file.getName(), file.isDirectory()))
+                    .sorted(Comparator.comparing(File::isFile).thenComparing(File::getName))
+                    .forEach(file -> {
+                        node.names.add(file.getName());
+                        if (node.entries.size() < MAX_FILES_PER_DIR) {
+                            node.entries.add(new Entry(file.getName(), file.isDirectory()));
+                        }
+                    });
+        }
+        node.listed = true;
+    }
+
+    /**
+     * 按文件树顺序收集显示范围内文件的符号概要，未缓存的文件在此时提取
+     */
+    private void collectOutlines(String dir, int depth, Map<String, List<String>> target) {
+        DirNode node = dirs.get(dir);
+        if (depth >= MAX_TREE_DEPTH || node == null) {
+            return;
+        }
+        for (Entry entry : node.entries) {
+            String relativePath = dir.isEmpty() ? entry.name() : dir + "/" + entry.name();
+            if (entry.directory()) {
+                collectOutlines(relativePath, depth + 1, target);
+            } else if (SymbolOutliner.supports(relativePath)) {
+                List<String> outline = outlines.computeIfAbsent(relativePath,
+                        path -> outliner.apply(path, resolve(path)));
+                if (!outline.isEmpty()) {
+                    target.put(relativePath, outline);
+                }
+            }
+        }
+    }
+
+    /**
+     * 首次构建后按修改时间取最近的文件作为最近变更的初始值（有界小顶堆，不做全量排序）
+     */
+    private void seedRecent() {
+        PriorityQueue<Map.Entry<String, Long>> newest = new PriorityQueue<>(Map.Entry.comparingByValue());
+        dirs.forEach((dir, node) -> node.entries.stream()
+                .filter(entry -> !entry.directory())
+                .forEach(entry -> {
+                    String relativePath = dir.isEmpty() ? entry.name() : dir + "/" + entry.name();
+                    newest.add(Map.entry(relativePath, resolve(relativePath).toFile().lastModified()));
+                    if (newest.size() > RECENT_LIMIT) {
+                        newest.poll();
+                    }
+                }));
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(newest);
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        sorted.forEach(entry -> recent.addLast(entry.getKey()));
+    }
+
+    private static void appendIndented(StringBuilder target, String block, String indent) {
+        int start = 0;
+        while (start < block.length()) {
+            int end = block.indexOf('\n', start);
+            end = end < 0 ? block.length() : end + 1;
+            target.append(indent).append(block, start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * 路径上的每一段都不在忽略列表中，且深度在显示范围内
+     */
+    private static boolean isVisible(String relativePath, boolean directory) {
+        String[] segments = relativePath.split("/");
+        if (segments.length > MAX_TREE_DEPTH) {
+            return false;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            boolean isDir = directory || i < segments.length - 1;
+            if (!isIncluded(segments[i], isDir)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIncluded(String name, boolean directory) {
+        return directory ? !IGNORED_DIRS.contains(name) : !IGNORED_FILES.contains(name);
+    }
+
+    private String relativize(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (!normalized.startsWith(root)) {
+            return null;
+        }
+        return root.relativize(normalized).toString().replace('\\', '/');
+    }
+
+    private Path resolve(String relativePath) {
+        return relativePath.isEmpty() ? root : root.resolve(relativePath);
+    }
+}
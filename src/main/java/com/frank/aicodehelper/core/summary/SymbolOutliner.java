@@ -0,0 +1,342 @@
+package com.frank.aicodehelper.core.summary;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 轻量级符号概要提取
+ * 从 Vue/JS/TS/CSS 源码中提取 AI 最常需要 readFile 才能知道的信息：
+ * - Vue 组件：props、emits、模板中使用的组件、顶层函数、样式中的顶层 class
+ * - JS/TS：导出的符号；路由文件的路由表；Pinia store 的 id、state、getters、actions；Vuex modules
+ * - CSS：顶层 class 选择器
+ * 基于正则 + 括号配对，不做完整语法解析，提取不到的部分直接省略
+ */
+public final class SymbolOutliner {
+
+    /**
+     * 单项最多列出的名称数
+     */
+    private static final int MAX_NAMES = 8;
+
+    private static final Pattern SCRIPT_BLOCK = Pattern.compile("<script\\b[^>]*>([\\s\\S]*?)</script>");
+
+    private static final Pattern STYLE_BLOCK = Pattern.compile("<style\\b[^>]*>([\\s\\S]*?)</style>");
+
+    private static final Pattern COMPONENT_TAG =
+            Pattern.compile("<([A-Z][A-Za-z0-9]*|[a-z][a-z0-9]*(?:-[a-z0-9]+)+)\\b");
+
+    private static final Pattern QUOTED = Pattern.compile("['\"`]([^'\"`]+)['\"`]");
+
+    private static final Pattern OBJECT_KEY =
+            Pattern.compile("(?:async\\s+)?\\*?['\"]?([A-Za-z_$][\\w$-]*)['\"]?\\??\\s*(?=[:(,;}]|$)");
+
+    private static final Pattern TOP_LEVEL_FUNCTION = Pattern.compile(
+            "(?m)^(?:export\\s+)?(?:async\\s+)?function\\s*\\*?\\s*([A-Za-z_$][\\w$]*)"
+                    + "|^(?:export\\s+)?const\\s+([A-Za-z_$][\\w$]*)\\s*=\\s*(?:async\\s+)?(?:\\([^)]*\\)|[A-Za-z_$][\\w$]*)\\s*=>");
+
+    private static final Pattern NAMED_EXPORT = Pattern.compile(
+            "(?m)^export\\s+(?:default\\s+)?(?:async\\s+)?(?:function\\s*\\*?|class|const|let|var)\\s*([A-Za-z_$][\\w$]*)");
+
+    private static final Pattern EXPORT_LIST = Pattern.compile("(?m)^export\\s*\\{([^}]*)}");
+
+    private static final Pattern DEFAULT_EXPORT =
+            Pattern.compile("(?m)^export\\s+default\\b(?!\\s+(?:async\\s+)?(?:function|class)\\s*\\*?\\s*[A-Za-z_$])");
+
+    private static final Pattern ROUTE_PATH = Pattern.compile("path\\s*:\\s*['\"]([^'\"]+)['\"]");
+
+    private static final Pattern ROUTE_COMPONENT = Pattern.compile(
+            "component\\s*:\\s*(?:\\(\\)\\s*=>\\s*import\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)|([A-Za-z_$][\\w$]*))");
+
+    private static final Pattern STORE_ID = Pattern.compile("defineStore\\(\\s*['\"]([^'\"]+)['\"]");
+
+    private static final Pattern CSS_CLASS = Pattern.compile("\\.(-?[A-Za-z_][\\w-]*)");
+
+    private SymbolOutliner() {
+    }
+
+    /**
+     * 是否支持提取该文件的符号概要
+     */
+    public static boolean supports(String relativePath) {
+        return switch (extension(relativePath)) {
+            case "vue", "js", "ts", "jsx", "tsx", "mjs", "css", "scss", "less" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 提取符号概要
+     *
+     * @param relativePath 文件相对路径（用于判断文件类型和路由/store 文件）
+     * @param content      文件内容
+     * @return 概要项列表（如 "props: title, items"），无可提取内容时为空
+     */
+    public static List<String> outline(String relativePath, String content) {
+        if (content == null || content.isBlank()) {
+            return List.of();
+        }
+        List<String> parts = new ArrayList<>();
+        switch (extension(relativePath)) {
+            case "vue" -> outlineVue(content, parts);
+            case "js", "ts", "jsx", "tsx", "mjs" -> outlineScript(content, parts);
+            case "css", "scss", "less" -> add(parts, "classes", topLevelClasses(content));
+            default -> {
+            }
+        }
+        return parts;
+    }
+
+    private static void outlineVue(String content, List<String> parts) {
+        StringBuilder script = new StringBuilder();
+        Matcher scriptMatcher = SCRIPT_BLOCK.matcher(content);
+        while (scriptMatcher.find()) {
+            script.append(scriptMatcher.group(1)).append('\n');
+        }
+        String code = script.toString();
+
+        add(parts, "props", props(code));
+        add(parts, "emits", emits(code));
+
+        int templateStart = content.indexOf("<template");
+        int templateEnd = content.lastIndexOf("</template>");
+        if (templateStart >= 0 && templateEnd > templateStart) {
+            Set<String> tags = new LinkedHashSet<>();
+            Matcher tagMatcher = COMPONENT_TAG.matcher(content.substring(templateStart + "<template".length(), templateEnd));
+            while (tagMatcher.find()) {
+                tags.add(tagMatcher.group(1));
+            }
+            add(parts, "components", tags);
+        }
+
+        Set<String> functions = new LinkedHashSet<>(topLevelFunctions(code));
+        functions.addAll(keysOf(code, "methods\\s*:\\s*\\{"));
+        add(parts, "functions", functions);
+
+        StringBuilder style = new StringBuilder();
+        Matcher styleMatcher = STYLE_BLOCK.matcher(content);
+        while (styleMatcher.find()) {
+            style.append(styleMatcher.group(1)).append('\n');
+        }
+        add(parts, "classes", topLevelClasses(style.toString()));
+    }
+
+    private static void outlineScript(String code, List<String> parts) {
+        if (code.contains("createRouter") || code.contains("routes")) {
+            add(parts, "routes", routes(code));
+        }
+        Matcher storeMatcher = STORE_ID.matcher(code);
+        if (storeMatcher.find()) {
+            parts.add("store: " + storeMatcher.group(1));
+            add(parts, "state", keysOf(code, "state\\s*:\\s*\\(\\s*\\)\\s*=>\\s*\\(\\s*\\{"));
+            add(parts, "getters", keysOf(code, "getters\\s*:\\s*\\{"));
+            add(parts, "actions", keysOf(code, "actions\\s*:\\s*\\{"));
+        }
+        add(parts, "modules", keysOf(code, "modules\\s*:\\s*\\{"));
+
+        Set<String> exports = new LinkedHashSet<>();
+        Matcher named = NAMED_EXPORT.matcher(code);
+        while (named.find()) {
+            exports.add(named.group(1));
+        }
+        Matcher list = EXPORT_LIST.matcher(code);
+        while (list.find()) {
+            for (String item : list.group(1).split(",")) {
+                String[] words = item.trim().split("\\s+");
+                if (!words[words.length - 1].isEmpty()) {
+                    exports.add(words[words.length - 1]);
+                }
+            }
+        }
+        if (DEFAULT_EXPORT.matcher(code).find()) {
+            exports.add("default");
+        }
+        add(parts, "exports", exports);
+    }
+
+    private static List<String> props(String code) {
+        Matcher array = Pattern.compile("(?:defineProps\\s*\\(|props\\s*:)\\s*\\[([^\\]]*)]").matcher(code);
+        if (array.find()) {
+            return quoted(array.group(1));
+        }
+        List<String> keys = keysOf(code, "defineProps\\s*(?:<\\s*|\\(\\s*)\\{");
+        return keys.isEmpty() ? keysOf(code, "props\\s*:\\s*\\{") : keys;
+    }
+
+    private static List<String> emits(String code) {
+        Matcher array = Pattern.compile("(?:defineEmits\\s*\\(|emits\\s*:)\\s*\\[([^\\]]*)]").matcher(code);
+        return array.find() ? quoted(array.group(1)) : List.of();
+    }
+
+    private static List<String> topLevelFunctions(String code) {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = TOP_LEVEL_FUNCTION.matcher(code);
+        while (matcher.find()) {
+            names.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        }
+        return names;
+    }
+
+    /**
+     * 路由表：path -> 组件名（懒加载取文件名）
+     */
+    private static List<String> routes(String code) {
+        List<String> routes = new ArrayList<>();
+        Matcher pathMatcher = ROUTE_PATH.matcher(code);
+        while (pathMatcher.find()) {
+            String route = pathMatcher.group(1);
+            // 组件只在同一个路由对象内查找（到下一个 path 或 } 为止）
+            int end = code.indexOf('}', pathMatcher.end());
+            int nextPath = code.indexOf("path", pathMatcher.end());
+            if (nextPath >= 0 && (end < 0 || nextPath < end)) {
+                end = nextPath;
+            }
+            Matcher componentMatcher = ROUTE_COMPONENT.matcher(code);
+            componentMatcher.region(pathMatcher.end(), end < 0 ? code.length() : end);
+            if (componentMatcher.find()) {
+                String component = componentMatcher.group(1) != null
+                        ? baseName(componentMatcher.group(1)) : componentMatcher.group(2);
+                route += " -> " + component;
+            }
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /**
+     * 顶层 class 选择器（忽略 @media 等规则块内部的选择器）
+     */
+    private static Set<String> topLevelClasses(String css) {
+        String stripped = css.replaceAll("/\\*[\\s\\S]*?\\*/", "");
+        Set<String> classes = new LinkedHashSet<>();
+        int depth = 0;
+        int selectorStart = 0;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (c == '{') {
+                if (depth == 0) {
+                    String selector = stripped.substring(selectorStart, i).trim();
+                    if (!selector.startsWith("@")) {
+                        Matcher matcher = CSS_CLASS.matcher(selector);
+                        while (matcher.find()) {
+                            classes.add("." + matcher.group(1));
+                        }
+                    }
+                }
+                depth++;
+            } else if (c == '}') {
+                depth = Math.max(0, depth - 1);
+                if (depth == 0) {
+                    selectorStart = i + 1;
+                }
+            } else if (c == ';' && depth == 0) {
+                selectorStart = i + 1;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 查找第一个匹配 openPattern（以 { 结尾）的对象字面量，返回其第一层的键名
+     */
+    private static List<String> keysOf(String code, String openPattern) {
+        Matcher matcher = Pattern.compile(openPattern).matcher(code);
+        return matcher.find() ? objectKeys(code, matcher.end() - 1) : List.of();
+    }
+
+    private static List<String> objectKeys(String code, int openIndex) {
+        List<String> keys = new ArrayList<>();
+        Matcher keyMatcher = OBJECT_KEY.matcher(code);
+        int depth = 0;
+        boolean expectKey = true;
+        int i = openIndex;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (c == '/' && i + 1 < code.length() && (code.charAt(i + 1) == '/' || code.charAt(i + 1) == '*')) {
+                int end = code.charAt(i + 1) == '/' ? code.indexOf('\n', i) : code.indexOf("*/", i + 2) + 1;
+                i = end <= 0 ? code.length() : end + 1;
+                continue;
+            }
+            if (depth == 1 && expectKey && !Character.isWhitespace(c)) {
+                expectKey = false;
+                keyMatcher.region(i, code.length());
+                if (keyMatcher.lookingAt()) {
+                    keys.add(keyMatcher.group(1));
+                }
+            }
+            switch (c) {
+                case '\'', '"', '`' -> {
+                    i = skipString(code, i, c);
+                    continue;
+                }
+                case '{', '[', '(' -> depth++;
+                case '}', ']', ')' -> {
+                    depth--;
+                    if (depth == 0) {
+                        return keys;
+                    }
+                }
+                case ',', ';' -> {
+                    if (depth == 1) {
+                        expectKey = true;
+                    }
+                }
+                default -> {
+                }
+            }
+            i++;
+        }
+        return keys;
+    }
+
+    private static int skipString(String code, int start, char quote) {
+        int i = start + 1;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            i++;
+        }
+        return code.length();
+    }
+
+    private static List<String> quoted(String text) {
+        List<String> values = new ArrayList<>();
+        Matcher matcher = QUOTED.matcher(text);
+        while (matcher.find()) {
+            values.add(matcher.group(1));
+        }
+        return values;
+    }
+
+    /**
+     * 追加概要项，名称过多时只列出前 MAX_NAMES 个
+     */
+    private static void add(List<String> parts, String label, Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+        String joined = String.join(", ", distinct.subList(0, Math.min(MAX_NAMES, distinct.size())));
+        if (distinct.size() > MAX_NAMES) {
+            joined += " +" + (distinct.size() - MAX_NAMES);
+        }
+        parts.add(label + ": " + joined);
+    }
+
+    private static String baseName(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
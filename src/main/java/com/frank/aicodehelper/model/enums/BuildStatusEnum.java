@@ -0,0 +1,50 @@
+package com.frank.aicodehelper.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * Vue 项目构建状态
+ */
+@Getter
+public enum BuildStatusEnum {
+
+    QUEUED("排队中", "queued"),
+    INSTALLING("安装依赖", "installing"),
+    BUILDING("构建中", "building"),
+    SUCCEEDED("构建成功", "succeeded"),
+    FAILED("构建失败", "failed");
+
+    private final String text;
+    private final String value;
+
+    BuildStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 是否为终态
+     */
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static BuildStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (BuildStatusEnum anEnum : BuildStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
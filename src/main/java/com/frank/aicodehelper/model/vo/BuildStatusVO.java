@@ -0,0 +1,64 @@
+package com.frank.aicodehelper.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Vue 项目构建状态
+ */
+@Data
+public class BuildStatusVO implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 构建状态（queued/installing/building/succeeded/failed），从未构建时为空
+     */
+    private String status;
+
+    /**
+     * 预览是否可用（最近一次构建成功，或没有构建记录但 dist 已存在）
+     */
+    private Boolean ready;
+
+    /**
+     * 入队时间（毫秒时间戳）
+     */
+    private Long queuedAt;
+
+    /**
+     * 开始执行时间（毫秒时间戳）
+     */
+    private Long startedAt;
+
+    /**
+     * 结束时间（毫秒时间戳）
+     */
+    private Long finishedAt;
+
+    /**
+     * 排队耗时（毫秒）
+     */
+    private Long queueMillis;
+
+    /**
+     * 安装依赖耗时（毫秒）
+     */
+    private Long installMillis;
+
+    /**
+     * 构建耗时（毫秒）
+     */
+    private Long buildMillis;
+
+    /**
+     * 附加说明（如跳过构建的原因、失败原因）
+     */
+    private String message;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,168 @@
+package com.frank.aicodehelper.rag.cache;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * RAG 检索缓存
+ * - 查询向量缓存：规范化后的查询文本 -> 向量，LRU，总量约 16MB，访问后 1 小时过期
+ * - 检索结果缓存：appId + 索引代数 + 检索参数 + 查询哈希 -> 结果片段，总量约 32MB，写入后 5 分钟过期
+ * 每次索引写入/删除都会递增应用的索引代数，旧代数的结果自然失效
+ * ContextChunk 可变，写入和读取结果时都复制片段，调用方修改返回值不会影响缓存
+ */
+@Component
+public class RetrievalCache {
+
+    /**
+     * 查询向量缓存容量（字节）
+     */
+    private static final long EMBEDDING_CACHE_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * 检索结果缓存容量（字节）
+     */
+    private static final long RESULT_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * 单个对象的估算开销（字节）
+     */
+    private static final int OBJECT_OVERHEAD = 64;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Cache<String, Embedding> embeddingCache = Caffeine.newBuilder()
+            .maximumWeight(EMBEDDING_CACHE_BYTES)
+            .weigher((String text, Embedding embedding) ->
+                    OBJECT_OVERHEAD + text.length() * 2 + embedding.dimension() * Float.BYTES)
+            .expireAfterAccess(Duration.ofHours(1))
+            .recordStats()
+            .build();
+
+    private final Cache<String, List<ContextChunk>> resultCache = Caffeine.newBuilder()
+            .maximumWeight(RESULT_CACHE_BYTES)
+            .weigher((String key, List<ContextChunk> chunks) -> weigh(chunks))
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .recordStats()
+            .build();
+
+    /**
+     * 应用索引代数：appId -> 代数
+     */
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        CaffeineCacheMetrics.monitor(meterRegistry, embeddingCache, "rag.query.embedding");
+        CaffeineCacheMetrics.monitor(meterRegistry, resultCache, "rag.retrieval.result");
+    }
+
+    /**
+     * 获取查询向量，未命中时调用 loader 生成并缓存
+     *
+     * @param query  查询文本
+     * @param loader 向量生成函数
+     * @return 查询向量
+     */
+    public Embedding getEmbedding(String query, Function<String, Embedding> loader) {
+        return embeddingCache.get(normalize(query), key -> loader.apply(query));
+    }
+
+    /**
+     * 生成检索结果的缓存键（包含当前索引代数）
+     * 检索开始前生成一次，查询和写入使用同一个键：检索期间索引代数递增时，结果写在旧代数下，不会被新代数读到
+     *
+     * @return 缓存键
+     */
+    public String resultKey(Long appId, String query, int topK, double minScore) {
+        long generation = generations.computeIfAbsent(appId, id -> new AtomicLong()).get();
+        return appId + ":" + generation + ":" + topK + ":" + minScore + ":" + DigestUtil.md5Hex(normalize(query));
+    }
+
+    /**
+     * 获取缓存的检索结果
+     *
+     * @param key resultKey 生成的缓存键
+     * @return 结果副本（含片段副本），未命中返回 null
+     */
+    public List<ContextChunk> getResult(String key) {
+        List<ContextChunk> chunks = resultCache.getIfPresent(key);
+        return chunks == null ? null : copy(chunks);
+    }
+
+    /**
+     * 缓存检索结果
+     *
+     * @param key    检索开始前由 resultKey 生成的缓存键
+     * @param chunks 检索结果
+     */
+    public void putResult(String key, List<ContextChunk> chunks) {
+        resultCache.put(key, List.copyOf(copy(chunks)));
+    }
+
+    /**
+     * 递增应用的索引代数，使该应用已缓存的检索结果全部失效
+     *
+     * @param appId 应用ID
+     */
+    public void bumpGeneration(Long appId) {
+        generations.computeIfAbsent(appId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 规范化查询文本：去首尾空白、合并连续空白
+     */
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 复制片段列表及每个片段（含元数据）
+     */
+    private static List<ContextChunk> copy(List<ContextChunk> chunks) {
+        return chunks.stream()
+                .map(chunk -> ContextChunk.builder()
+                        .filePath(chunk.getFilePath())
+                        .content(chunk.getContent())
+                        .chunkType(chunk.getChunkType())
+                        .score(chunk.getScore())
+                        .metadata(chunk.getMetadata() == null ? null : new HashMap<>(chunk.getMetadata()))
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static int weigh(List<ContextChunk> chunks) {
+        long bytes = OBJECT_OVERHEAD;
+        for (ContextChunk chunk : chunks) {
+            bytes += OBJECT_OVERHEAD;
+            if (chunk.getContent() != null) {
+                bytes += chunk.getContent().length() * 2L;
+            }
+            if (chunk.getFilePath() != null) {
+                bytes += chunk.getFilePath().length() * 2L;
+            }
+            if (chunk.getMetadata() != null) {
+                bytes += chunk.getMetadata().size() * (long) OBJECT_OVERHEAD;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
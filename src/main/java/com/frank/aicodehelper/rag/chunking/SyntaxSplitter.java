@@ -0,0 +1,398 @@
+package com.frank.aicodehelper.rag.chunking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按语法边界切分代码
+ * 先计算每行行首的嵌套深度（脚本/JSON 按括号，样式按花括号，标记语言按标签），
+ * 再在某一深度的"语句起始行"处切开：脚本为顶层函数/变量/类（或对象的属性、方法），样式为规则块，
+ * JSON 为顶层键，模板为根元素的子元素。某个单元仍然过大时在其内部下一层继续切分
+ * 只做轻量词法分析（跳过字符串、注释），不构建语法树，对不完整的代码也能给出合理结果
+ */
+final class SyntaxSplitter {
+
+    /**
+     * 代码语言
+     */
+    enum Language {
+        SCRIPT, STYLE, JSON, MARKUP
+    }
+
+    /**
+     * 切分单元
+     *
+     * @param start   起始字符偏移（行首）
+     * @param end     结束字符偏移（不含）
+     * @param symbols 单元内的符号名
+     */
+    record Unit(int start, int end, List<String> symbols) {
+
+        int length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * 最多向下探测的嵌套层数
+     */
+    private static final int MAX_DEPTH_PROBE = 6;
+
+    /**
+     * 符号名最大长度
+     */
+    private static final int MAX_SYMBOL_LENGTH = 48;
+
+    private static final Pattern FUNCTION_DECL = Pattern.compile(
+            "^(?:export\\s+)?(?:default\\s+)?(?:async\\s+)?function\\s*\\*?\\s*([A-Za-z_$][\\w$]*)");
+
+    private static final Pattern VARIABLE_DECL = Pattern.compile(
+            "^(?:export\\s+)?(?:const|let|var)\\s+([A-Za-z_$][\\w$]*)");
+
+    private static final Pattern CLASS_DECL = Pattern.compile(
+            "^(?:export\\s+)?(?:default\\s+)?class\\s+([A-Za-z_$][\\w$]*)");
+
+    private static final Pattern EXPORT_DEFAULT = Pattern.compile("^export\\s+default\\b");
+
+    private static final Pattern METHOD_OR_CALL = Pattern.compile(
+            "^(?:async\\s+)?(?:get\\s+|set\\s+)?([A-Za-z_$][\\w$]*)\\s*\\(");
+
+    private static final Pattern PROPERTY = Pattern.compile("^['\"]?([A-Za-z_$][\\w$-]*)['\"]?\\s*:");
+
+    private static final Pattern JSON_KEY = Pattern.compile("^\"([^\"]+)\"\\s*:");
+
+    private static final Pattern MARKUP_TAG = Pattern.compile("^<([A-Za-z][\\w.-]*)([^>]*)");
+
+    private static final Pattern MARKUP_CLASS = Pattern.compile("\\bclass\\s*=\\s*\"([^\"\\s]+)");
+
+    private static final Pattern MARKUP_ID = Pattern.compile("\\bid\\s*=\\s*\"([^\"\\s]+)");
+
+    private static final Set<String> CONTROL_KEYWORDS = Set.of(
+            "if", "for", "while", "switch", "catch", "return", "function", "import", "export"
+    );
+
+    private static final Set<String> VOID_ELEMENTS = Set.of(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr"
+    );
+
+    private SyntaxSplitter() {
+    }
+
+    /**
+     * 按语法边界切分
+     *
+     * @param text       代码文本
+     * @param language   语言
+     * @param targetSize 单元超过该字符数时尝试在内部继续切分
+     * @return 首尾相接、覆盖全文的切分单元
+     */
+    static List<Unit> split(String text, Language language, int targetSize) {
+        int[] lineStarts = lineStarts(text);
+        int[] depths = lineDepths(text, lineStarts, language);
+        List<Unit> units = new ArrayList<>();
+        splitRange(text, language, lineStarts, depths, 0, lineStarts.length, 0, targetSize, units);
+        return units;
+    }
+
+    /**
+     * 切分 [fromLine, toLine) 行：从 minDepth 开始找第一个能切出多个单元的深度
+     */
+    private static void splitRange(String text, Language language, int[] lineStarts, int[] depths,
+                                   int fromLine, int toLine, int minDepth, int targetSize, List<Unit> out) {
+        for (int depth = minDepth; depth <= minDepth + MAX_DEPTH_PROBE; depth++) {
+            List<int[]> ranges = rangesAtDepth(text, language, lineStarts, depths, fromLine, toLine, depth);
+            if (ranges.size() < 2) {
+                continue;
+            }
+            for (int[] range : ranges) {
+                int start = lineStarts[range[0]];
+                int end = offsetOfLine(text, lineStarts, range[1]);
+                if (end - start > targetSize && range[1] - range[0] > 1) {
+                    splitRange(text, language, lineStarts, depths, range[0], range[1], depth + 1, targetSize, out);
+                } else {
+                    out.add(new Unit(start, end, symbolsOf(text, language, lineStarts, range[0], range[1])));
+                }
+            }
+            return;
+        }
+        int start = lineStarts[fromLine];
+        int end = offsetOfLine(text, lineStarts, toLine);
+        out.add(new Unit(start, end, symbolsOf(text, language, lineStarts, fromLine, toLine)));
+    }
+
+    /**
+     * 在指定深度的语句起始行处切开；前导注释/空行归属于其后的单元
+     */
+    private static List<int[]> rangesAtDepth(String text, Language language, int[] lineStarts, int[] depths,
+                                             int fromLine, int toLine, int depth) {
+        List<int[]> ranges = new ArrayList<>();
+        int unitStart = fromLine;
+        boolean unitHasCode = !isTrivia(line(text, lineStarts, fromLine));
+        for (int i = fromLine + 1; i < toLine; i++) {
+            String line = line(text, lineStarts, i);
+            if (depths[i] == depth && isUnitStart(line, language) && unitHasCode) {
+                ranges.add(new int[]{unitStart, i});
+                unitStart = i;
+                unitHasCode = false;
+            }
+            if (!isTrivia(line)) {
+                unitHasCode = true;
+            }
+        }
+        ranges.add(new int[]{unitStart, toLine});
+        return ranges;
+    }
+
+    private static boolean isUnitStart(String line, Language language) {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        char first = trimmed.charAt(0);
+        if (first == '}' || first == ')' || first == ']' || trimmed.startsWith("</") || trimmed.startsWith("-->")) {
+            return false;
+        }
+        if (language == Language.SCRIPT) {
+            // 链式调用、三元表达式、跨行运算符是上一条语句的延续
+            return first != '.' && first != '?' && first != ':' && first != ','
+                    && !trimmed.startsWith("&&") && !trimmed.startsWith("||") && first != '+';
+        }
+        return true;
+    }
+
+    private static boolean isTrivia(String line) {
+        String trimmed = line.strip();
+        return trimmed.isEmpty() || trimmed.startsWith("//") || trimmed.startsWith("/*")
+                || trimmed.startsWith("*") || trimmed.startsWith("<!--");
+    }
+
+    /**
+     * 单元的符号：取第一个非注释行声明的名称
+     */
+    private static List<String> symbolsOf(String text, Language language, int[] lineStarts, int fromLine, int toLine) {
+        for (int i = fromLine; i < toLine; i++) {
+            String line = line(text, lineStarts, i);
+            if (!isTrivia(line)) {
+                String symbol = symbolOf(line.strip(), language);
+                return symbol == null ? List.of() : List.of(symbol);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * 从语句首行提取符号名
+     */
+    static String symbolOf(String line, Language language) {
+        String symbol = switch (language) {
+            case SCRIPT -> scriptSymbol(line);
+            case STYLE -> {
+                int brace = line.indexOf('{');
+                String selector = (brace >= 0 ? line.substring(0, brace) : line).strip();
+                yield selector.isEmpty() || selector.startsWith("<") ? null : selector;
+            }
+            case JSON -> {
+                Matcher matcher = JSON_KEY.matcher(line);
+                yield matcher.find() ? matcher.group(1) : null;
+            }
+            case MARKUP -> markupSymbol(line);
+        };
+        if (symbol == null) {
+            return null;
+        }
+        symbol = symbol.replaceAll("\\s+", " ");
+        return symbol.length() > MAX_SYMBOL_LENGTH ? symbol.substring(0, MAX_SYMBOL_LENGTH) : symbol;
+    }
+
+    private static String scriptSymbol(String line) {
+        for (Pattern pattern : List.of(FUNCTION_DECL, VARIABLE_DECL, CLASS_DECL)) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        if (EXPORT_DEFAULT.matcher(line).find()) {
+            return "default";
+        }
+        for (Pattern pattern : List.of(METHOD_OR_CALL, PROPERTY)) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.find() && !CONTROL_KEYWORDS.contains(matcher.group(1))) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    private static String markupSymbol(String line) {
+        Matcher matcher = MARKUP_TAG.matcher(line);
+        if (!matcher.find()) {
+            return null;
+        }
+        String tag = matcher.group(1);
+        String attributes = matcher.group(2);
+        Matcher id = MARKUP_ID.matcher(attributes);
+        if (id.find()) {
+            return tag + "#" + id.group(1);
+        }
+        Matcher cls = MARKUP_CLASS.matcher(attributes);
+        return cls.find() ? tag + "." + cls.group(1) : tag;
+    }
+
+    // ==================== 行与深度 ====================
+
+    private static int[] lineStarts(String text) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && i + 1 < text.length()) {
+                starts.add(i + 1);
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int offsetOfLine(String text, int[] lineStarts, int line) {
+        return line < lineStarts.length ? lineStarts[line] : text.length();
+    }
+
+    private static String line(String text, int[] lineStarts, int line) {
+        int end = offsetOfLine(text, lineStarts, line + 1);
+        return text.substring(lineStarts[line], end);
+    }
+
+    /**
+     * 计算每行行首的嵌套深度
+     */
+    private static int[] lineDepths(String text, int[] lineStarts, Language language) {
+        int[] depths = new int[lineStarts.length];
+        int depth = 0;
+        int line = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (line + 1 < lineStarts.length && lineStarts[line + 1] <= i) {
+                depths[++line] = depth;
+            }
+            char c = text.charAt(i);
+            if (language == Language.MARKUP) {
+                if (c == '<') {
+                    depth = Math.max(0, depth + tagDelta(text, i));
+                    i = tagEnd(text, i);
+                    continue;
+                }
+                i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && text.charAt(i + 1) == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && text.charAt(i + 1) == '/' && language == Language.SCRIPT) {
+                int end = text.indexOf('\n', i);
+                i = end < 0 ? n : end;
+                continue;
+            }
+            if (c == '"' || c == '\'' || (c == '`' && language == Language.SCRIPT)) {
+                i = skipString(text, i, c);
+                continue;
+            }
+            if (language == Language.STYLE) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth = Math.max(0, depth - 1);
+                }
+            } else if (c == '{' || c == '[' || c == '(') {
+                depth++;
+            } else if (c == '}' || c == ']' || c == ')') {
+                depth = Math.max(0, depth - 1);
+            }
+            i++;
+        }
+        while (line + 1 < lineStarts.length) {
+            depths[++line] = depth;
+        }
+        return depths;
+    }
+
+    private static int skipString(String text, int start, char quote) {
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            // 普通字符串不跨行，遇到换行视为未闭合，避免吞掉后续代码
+            if (c == '\n' && quote != '`') {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 标签对嵌套深度的影响：开始标签 +1，结束标签 -1，自闭合/空元素/注释 0
+     */
+    private static int tagDelta(String text, int start) {
+        if (text.startsWith("<!--", start) || text.startsWith("<!", start) || text.startsWith("<?", start)) {
+            return 0;
+        }
+        if (text.startsWith("</", start)) {
+            return -1;
+        }
+        int nameEnd = start + 1;
+        while (nameEnd < text.length() && isTagNameChar(text.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (nameEnd == start + 1) {
+            // "<" 后不是标签名（如模板表达式中的比较运算）
+            return 0;
+        }
+        String name = text.substring(start + 1, nameEnd).toLowerCase();
+        int end = tagEnd(text, start);
+        boolean selfClosing = end >= 2 && text.charAt(end - 2) == '/';
+        return selfClosing || VOID_ELEMENTS.contains(name) ? 0 : 1;
+    }
+
+    /**
+     * 标签结束位置（'>' 之后），跳过引号中的 '>'（如 v-if="a > b"）
+     */
+    private static int tagEnd(String text, int start) {
+        if (text.startsWith("<!--", start)) {
+            int end = text.indexOf("-->", start + 4);
+            return end < 0 ? text.length() : end + 3;
+        }
+        int i = start + 1;
+        char quote = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            } else if (c == '<' && i > start + 1) {
+                // 未闭合的 "<"，不是标签
+                return start + 1;
+            }
+            i++;
+        }
+        return text.length();
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == '_';
+    }
+}
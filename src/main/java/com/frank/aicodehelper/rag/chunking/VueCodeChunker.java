@@ -7,14 +7,19 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Vue 项目代码分块器
- * 按文件为单位进行分块，保持语义完整性
+ * - 小文件整体作为一个片段
+ * - 大文件按语法边界切分：Vue 先按 template/script/style 区块，再按函数/组件、CSS 规则块、JSON 顶层键细分，
+ *   相邻小单元合并到 targetChunkSize，相邻片段之间保留 chunkOverlap 的重叠窗口
+ * - 片段元数据记录符号名（symbols）和在文件中的行号范围（startLine/endLine）
  */
 @Slf4j
 @Component
@@ -29,6 +34,23 @@ public class VueCodeChunker implements ChunkingStrategy {
     private static final Pattern COMPONENT_NAME_PATTERN =
             Pattern.compile("name:\\s*['\"]([^'\"]+)['\"]");
 
+    /**
+     * 匹配 <script> 块（支持 <script setup>、<script lang="ts"> 等）
+     */
+    private static final Pattern SCRIPT_PATTERN =
+            Pattern.compile("<script[^>]*>([\\s\\S]*?)</script>", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 匹配 Vue SFC 顶层的 <script> / <style> 区块（一个文件可能有多个）
+     */
+    private static final Pattern SFC_BLOCK_PATTERN =
+            Pattern.compile("<(script|style)\\b[^>]*>[\\s\\S]*?</\\1>", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Vue SFC 顶层区块名称
+     */
+    public static final List<String> VUE_SECTIONS = List.of("template", "script", "style");
+
     /**
      * 支持的文件扩展名
      */
@@ -42,22 +64,31 @@ public class VueCodeChunker implements ChunkingStrategy {
         }
 
         List<CodeContextDocument> chunks = new ArrayList<>();
-        int maxChunkSize = ragConfig.getIndexing().getMaxChunkSize();
-
-        // 根据文件类型确定分块策略
         String fileType = getFileType(filePath);
-        String chunkType = getChunkType(filePath);
-
-        if (content.length() <= maxChunkSize) {
-            // 整文件作为一个 chunk
-            chunks.add(createChunk(appId, filePath, content, fileType, chunkType, 0));
-        } else {
-            // 大文件分割策略
-            if (filePath.endsWith(".vue")) {
-                chunks.addAll(splitVueFile(appId, filePath, content, fileType));
-            } else {
-                chunks.addAll(splitBySize(appId, filePath, content, fileType, chunkType, maxChunkSize));
+        Map<String, Object> fileMetadata = extractMetadata(filePath, content, fileType);
+        LineIndex lines = new LineIndex(content);
+
+        if (content.length() <= ragConfig.getIndexing().getTargetChunkSize()) {
+            // 小文件整体作为一个 chunk
+            SyntaxSplitter.Language language = languageOf(filePath);
+            List<String> symbols = language == null ? List.of()
+                    : collectSymbols(SyntaxSplitter.split(content, language, Integer.MAX_VALUE));
+            chunks.add(createChunk(appId, filePath, content, fileType, getChunkType(filePath), 0,
+                    fileMetadata, symbols, lines, 0, content.length()));
+        } else if (filePath.endsWith(".vue")) {
+            // Vue 文件先按顶层区块分割，区块过大时再按语法边界细分
+            for (Section section : locateSections(content)) {
+                splitSection(chunks, appId, filePath + "#" + section.name(), ":", content, section.start(), section.end(),
+                        section.language(), fileType, section.chunkType(), fileMetadata, lines);
+            }
+            if (chunks.isEmpty()) {
+                splitSection(chunks, appId, filePath, "#", content, 0, content.length(),
+                        SyntaxSplitter.Language.MARKUP, fileType, "COMPONENT", fileMetadata, lines);
             }
+        } else {
+            SyntaxSplitter.Language language = languageOf(filePath);
+            splitSection(chunks, appId, filePath, "#", content, 0, content.length(),
+                    language, fileType, getChunkType(filePath), fileMetadata, lines);
         }
 
         log.debug("文件 {} 分块完成，共 {} 个片段", filePath, chunks.size());
@@ -65,124 +96,234 @@ public class VueCodeChunker implements ChunkingStrategy {
     }
 
     /**
-     * Vue 文件按 template/script/style 分割
+     * 并行分块多个文件（批量索引时使用，分块为纯 CPU 计算）
+     *
+     * @param files 待分块文件
+     * @return 与输入顺序一致的分块结果
      */
-    private List<CodeContextDocument> splitVueFile(Long appId, String filePath,
-                                                    String content, String fileType) {
-        List<CodeContextDocument> chunks = new ArrayList<>();
-        int index = 0;
-
-        // 提取 <template> 部分
-        String template = extractBlock(content, "<template>", "</template>");
-        if (StrUtil.isNotBlank(template)) {
-            chunks.add(createChunk(appId, filePath + "#template",
-                    "<template>" + template + "</template>",
-                    fileType, "TEMPLATE", index++));
-        }
+    public List<List<CodeContextDocument>> chunkAll(List<SourceFile> files) {
+        // 单核环境下并行只有调度开销（JMH: ChunkerBenchmark）
+        boolean parallel = files.size() > 1 && Runtime.getRuntime().availableProcessors() > 1;
+        Stream<SourceFile> stream = parallel ? files.parallelStream() : files.stream();
+        return stream.map(file -> chunk(file.appId(), file.filePath(), file.content())).toList();
+    }
+
+    /**
+     * 待分块文件
+     */
+    public record SourceFile(Long appId, String filePath, String content) {
+    }
 
-        // 提取 <script> 部分（支持 <script setup>）
-        String script = extractScriptBlock(content);
-        if (StrUtil.isNotBlank(script)) {
-            chunks.add(createChunk(appId, filePath + "#script",
-                    script, fileType, "SCRIPT", index++));
+    /**
+     * 将一个区块按语法边界切分、合并到目标大小，并为相邻片段加上重叠窗口
+     *
+     * @param keyPrefix    区块键（片段键 = 区块键 + 分隔符 + 首个符号名）
+     * @param keySeparator 区块键与符号名之间的分隔符
+     * @param language     区块语言，null 表示按行切分
+     */
+    private void splitSection(List<CodeContextDocument> chunks, Long appId, String keyPrefix, String keySeparator,
+                              String content, int from, int to, SyntaxSplitter.Language language,
+                              String fileType, String chunkType, Map<String, Object> fileMetadata, LineIndex lines) {
+        String text = content.substring(from, to);
+        if (StrUtil.isBlank(text)) {
+            return;
+        }
+        int targetSize = ragConfig.getIndexing().getTargetChunkSize();
+        List<SyntaxSplitter.Unit> units = language == null
+                ? List.of(new SyntaxSplitter.Unit(0, text.length(), List.of()))
+                : SyntaxSplitter.split(text, language, targetSize);
+        if (text.length() <= targetSize) {
+            chunks.add(createChunk(appId, keyPrefix, text, fileType, chunkType, chunks.size(),
+                    fileMetadata, collectSymbols(units), lines, from, to));
+            return;
         }
 
-        // 提取 <style> 部分
-        String style = extractBlock(content, "<style", "</style>");
-        if (StrUtil.isNotBlank(style)) {
-            // 找到完整的 style 标签
-            int styleStart = content.indexOf("<style");
-            int styleEnd = content.indexOf("</style>") + "</style>".length();
-            if (styleStart >= 0 && styleEnd > styleStart) {
-                String fullStyle = content.substring(styleStart, styleEnd);
-                chunks.add(createChunk(appId, filePath + "#style",
-                        fullStyle, fileType, "STYLE", index++));
+        // 1. 相邻小单元合并到目标大小；超过上限的单元按行切开
+        int maxSize = ragConfig.getIndexing().getMaxChunkSize();
+        List<SyntaxSplitter.Unit> groups = new ArrayList<>();
+        int groupStart = -1;
+        int groupEnd = -1;
+        List<String> groupSymbols = new ArrayList<>();
+        for (SyntaxSplitter.Unit unit : units) {
+            if (groupStart >= 0 && unit.end() - groupStart > targetSize) {
+                groups.add(new SyntaxSplitter.Unit(groupStart, groupEnd, List.copyOf(groupSymbols)));
+                groupStart = -1;
+                groupSymbols.clear();
+            }
+            if (groupStart < 0) {
+                groupStart = unit.start();
             }
+            groupEnd = unit.end();
+            unit.symbols().stream().filter(symbol -> !groupSymbols.contains(symbol)).forEach(groupSymbols::add);
         }
-
-        // 如果分割后没有任何内容，则保留整个文件
-        if (chunks.isEmpty()) {
-            chunks.add(createChunk(appId, filePath, content, fileType, "COMPONENT", 0));
+        if (groupStart >= 0) {
+            groups.add(new SyntaxSplitter.Unit(groupStart, groupEnd, List.copyOf(groupSymbols)));
+        }
+        List<SyntaxSplitter.Unit> pieces = new ArrayList<>();
+        for (SyntaxSplitter.Unit group : groups) {
+            if (group.length() > maxSize) {
+                pieces.addAll(splitByLines(text, group, maxSize));
+            } else {
+                pieces.add(group);
+            }
         }
 
-        return chunks;
+        // 2. 生成片段：除第一个外向前延伸 chunkOverlap 个字符（对齐到行首），避免语义在边界断裂
+        int overlap = ragConfig.getIndexing().getChunkOverlap();
+        Set<String> usedKeys = new HashSet<>();
+        int previousStart = -1;
+        for (int i = 0; i < pieces.size(); i++) {
+            SyntaxSplitter.Unit piece = pieces.get(i);
+            int start = piece.start();
+            if (i > 0 && overlap > 0) {
+                int extended = text.lastIndexOf('\n', Math.max(0, start - overlap - 1)) + 1;
+                if (extended > previousStart && extended < start) {
+                    start = extended;
+                }
+            }
+            previousStart = piece.start();
+            String name = piece.symbols().isEmpty() ? "part" + i : piece.symbols().get(0);
+            String key = keyPrefix + keySeparator + name;
+            for (int n = 2; !usedKeys.add(key); n++) {
+                key = keyPrefix + keySeparator + name + "~" + n;
+            }
+            chunks.add(createChunk(appId, key, text.substring(start, piece.end()), fileType, chunkType,
+                    chunks.size(), fileMetadata, piece.symbols(), lines, from + start, from + piece.end()));
+        }
     }
 
     /**
-     * 按大小分割文件
+     * 按行切分超大单元（每段不超过 maxSize，单行超长时按字符截断）
      */
-    private List<CodeContextDocument> splitBySize(Long appId, String filePath,
-                                                   String content, String fileType,
-                                                   String chunkType, int maxSize) {
-        List<CodeContextDocument> chunks = new ArrayList<>();
-        int index = 0;
-
-        // 按行分割，尽量在行边界切分
-        String[] lines = content.split("\n");
-        StringBuilder currentChunk = new StringBuilder();
-
-        for (String line : lines) {
-            if (currentChunk.length() + line.length() + 1 > maxSize && currentChunk.length() > 0) {
-                // 保存当前 chunk
-                chunks.add(createChunk(appId, filePath + "#part" + index,
-                        currentChunk.toString(), fileType, chunkType, index));
-                currentChunk = new StringBuilder();
-                index++;
+    private static List<SyntaxSplitter.Unit> splitByLines(String text, SyntaxSplitter.Unit unit, int maxSize) {
+        List<SyntaxSplitter.Unit> pieces = new ArrayList<>();
+        int start = unit.start();
+        while (start < unit.end()) {
+            int limit = Math.min(unit.end(), start + maxSize);
+            int end = limit;
+            if (limit < unit.end()) {
+                int newline = text.lastIndexOf('\n', limit - 1);
+                end = newline >= start ? newline + 1 : limit;
             }
-            if (currentChunk.length() > 0) {
-                currentChunk.append("\n");
-            }
-            currentChunk.append(line);
+            pieces.add(new SyntaxSplitter.Unit(start, end, unit.symbols()));
+            start = end;
         }
+        return pieces;
+    }
 
-        // 保存最后一个 chunk
-        if (currentChunk.length() > 0) {
-            chunks.add(createChunk(appId, filePath + "#part" + index,
-                    currentChunk.toString(), fileType, chunkType, index));
+    private static List<String> collectSymbols(List<SyntaxSplitter.Unit> units) {
+        List<String> symbols = new ArrayList<>();
+        for (SyntaxSplitter.Unit unit : units) {
+            unit.symbols().stream().filter(symbol -> !symbols.contains(symbol)).forEach(symbols::add);
         }
+        return symbols;
+    }
 
-        return chunks;
+    /**
+     * Vue SFC 顶层区块
+     */
+    private record Section(String name, int start, int end, SyntaxSplitter.Language language, String chunkType) {
     }
 
     /**
-     * 提取代码块内容
+     * 定位 Vue SFC 的全部顶层区块（template 一个，script/style 可能有多个）
      */
-    private String extractBlock(String content, String startTag, String endTag) {
-        int start = content.indexOf(startTag);
-        int end = content.indexOf(endTag);
-        if (start >= 0 && end > start) {
-            start += startTag.length();
-            return content.substring(start, end).trim();
+    private static List<Section> locateSections(String content) {
+        List<Section> sections = new ArrayList<>();
+        int[] template = locateSection(content, "template");
+        if (template != null) {
+            sections.add(new Section("template", template[0], template[1], SyntaxSplitter.Language.MARKUP, "TEMPLATE"));
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        Matcher matcher = SFC_BLOCK_PATTERN.matcher(content);
+        while (matcher.find()) {
+            if (template != null && matcher.start() > template[0] && matcher.start() < template[1]) {
+                continue;
+            }
+            String type = matcher.group(1).toLowerCase();
+            int count = counts.merge(type, 1, Integer::sum);
+            String name = count == 1 ? type : type + count;
+            SyntaxSplitter.Language language = "script".equals(type)
+                    ? SyntaxSplitter.Language.SCRIPT : SyntaxSplitter.Language.STYLE;
+            sections.add(new Section(name, matcher.start(), matcher.end(), language, type.toUpperCase()));
         }
+        sections.sort(Comparator.comparingInt(Section::start));
+        return sections;
+    }
+
+    private static SyntaxSplitter.Language languageOf(String filePath) {
+        String lowerPath = filePath.toLowerCase();
+        if (lowerPath.endsWith(".js") || lowerPath.endsWith(".ts")) return SyntaxSplitter.Language.SCRIPT;
+        if (lowerPath.endsWith(".css")) return SyntaxSplitter.Language.STYLE;
+        if (lowerPath.endsWith(".json")) return SyntaxSplitter.Language.JSON;
+        if (lowerPath.endsWith(".html") || lowerPath.endsWith(".vue")) return SyntaxSplitter.Language.MARKUP;
         return null;
     }
 
     /**
-     * 提取 script 块（支持 <script setup> 和普通 <script>）
+     * 定位 Vue SFC 顶层区块（含起止标签）在文件中的字符区间
+     * - template：第一个 <template 到最后一个 </template>（兼容内部嵌套的 <template v-if>）
+     * - script：第一个完整的 <script ...>...</script>
+     * - style：第一个 <style 到随后的 </style>
+     *
+     * @param content 文件内容
+     * @param section 区块名称：template / script / style
+     * @return [start, end) 字符区间，未找到返回 null
      */
-    private String extractScriptBlock(String content) {
-        // 匹配 <script> 或 <script setup> 或 <script lang="ts"> 等
-        Pattern scriptPattern = Pattern.compile("<script[^>]*>([\\s\\S]*?)</script>",
-                Pattern.CASE_INSENSITIVE);
-        Matcher matcher = scriptPattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(0);  // 返回完整的 script 标签
+    public static int[] locateSection(String content, String section) {
+        if (content == null || section == null) {
+            return null;
+        }
+        switch (section.toLowerCase()) {
+            case "template" -> {
+                int start = content.indexOf("<template");
+                int end = content.lastIndexOf("</template>");
+                if (start >= 0 && end > start) {
+                    return new int[]{start, end + "</template>".length()};
+                }
+            }
+            case "script" -> {
+                Matcher matcher = SCRIPT_PATTERN.matcher(content);
+                if (matcher.find()) {
+                    return new int[]{matcher.start(), matcher.end()};
+                }
+            }
+            case "style" -> {
+                int start = content.indexOf("<style");
+                int end = start >= 0 ? content.indexOf("</style>", start) : -1;
+                if (start >= 0 && end > start) {
+                    return new int[]{start, end + "</style>".length()};
+                }
+            }
+            default -> {
+                return null;
+            }
         }
         return null;
     }
 
     /**
      * 创建 CodeContextDocument
+     * 片段 ID 由 应用 + 片段键 + 内容 确定：内容不变则 ID 不变，向量存储与词法索引中的同一片段 ID 一致
      */
-    private CodeContextDocument createChunk(Long appId, String filePath, String content,
-                                            String fileType, String chunkType, int index) {
-        Map<String, Object> metadata = extractMetadata(filePath, content, fileType);
+    private CodeContextDocument createChunk(Long appId, String chunkKey, String content,
+                                            String fileType, String chunkType, int index,
+                                            Map<String, Object> fileMetadata, List<String> symbols,
+                                            LineIndex lines, int start, int end) {
+        Map<String, Object> metadata = new HashMap<>(fileMetadata);
+        if (!symbols.isEmpty()) {
+            metadata.put("symbols", String.join(",", symbols));
+        }
+        metadata.put("startLine", lines.lineOf(start));
+        metadata.put("endLine", lines.lineOf(Math.max(start, end - 1)));
         LocalDateTime now = LocalDateTime.now();
+        String chunkId = UUID.nameUUIDFromBytes((appId + ":" + chunkKey + ":" + content)
+                .getBytes(StandardCharsets.UTF_8)).toString();
 
         return CodeContextDocument.builder()
                 .appId(appId)
-                .chunkId(UUID.randomUUID().toString())
-                .filePath(filePath)
+                .chunkId(chunkId)
+                .filePath(chunkKey)
                 .content(content)
                 .fileType(fileType)
                 .chunkType(chunkType)
@@ -194,7 +335,7 @@ public class VueCodeChunker implements ChunkingStrategy {
     }
 
     /**
-     * 提取元数据
+     * 提取文件级元数据
      */
     private Map<String, Object> extractMetadata(String filePath, String content, String fileType) {
         Map<String, Object> metadata = new HashMap<>();
@@ -224,6 +365,30 @@ public class VueCodeChunker implements ChunkingStrategy {
         return metadata;
     }
 
+    /**
+     * 字符偏移 -> 行号（从 1 开始）
+     */
+    private static final class LineIndex {
+
+        private final int[] lineStarts;
+
+        private LineIndex(String content) {
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+            for (int i = 0; i < content.length(); i++) {
+                if (content.charAt(i) == '\n') {
+                    starts.add(i + 1);
+                }
+            }
+            this.lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int lineOf(int offset) {
+            int index = Arrays.binarySearch(lineStarts, offset);
+            return (index >= 0 ? index : -index - 2) + 1;
+        }
+    }
+
     /**
      * 获取文件类型
      */
@@ -1,8 +1,12 @@
 package com.frank.aicodehelper.rag.config;
 
+import com.frank.aicodehelper.rag.store.PartitionedLocalEmbeddingStore;
 import dev.langchain4j.community.model.dashscope.QwenEmbeddingModel;
 import dev.langchain4j.community.store.embedding.redis.RedisEmbeddingStore;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.data.segment.TextSegment;
 import lombok.Data;
@@ -11,10 +15,18 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * 阿里通义千问 Embedding 模型配置
- * 使用 text-embedding-v2 模型进行文本向量化
- * 向量存储使用 Redis Stack / RediSearch（持久化）
+ * Embedding 模型与向量存储配置
+ * 默认使用阿里通义千问 text-embedding-v2 远程向量化，可切换为进程内 ONNX 模型（all-MiniLM 类，384 维，无需网络）
+ * 向量存储默认使用 Redis Stack / RediSearch（持久化），可切换为进程内分区存储
+ * 不同模型的向量不可混用：非默认向量空间的索引名、键前缀、本地目录都会带上向量空间后缀，互不覆盖
  */
 @Slf4j
 @Data
@@ -22,6 +34,21 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "rag.embedding")
 public class DashScopeEmbeddingConfig {
 
+    /**
+     * 默认向量空间（DashScope 1536 维），沿用无后缀的索引名，兼容已有索引
+     */
+    private static final String DEFAULT_SPACE = "dashscope_1536";
+
+    /**
+     * Embedding 提供方：dashscope（远程 API）/ onnx（进程内推理）
+     */
+    private String provider = "dashscope";
+
+    /**
+     * 向量空间变化（切换模型或维度）后，启动时是否自动按项目目录重建全部应用的索引
+     */
+    private boolean reindexOnSpaceChange = true;
+
     /**
      * DashScope API Key
      */
@@ -37,11 +64,26 @@ public class DashScopeEmbeddingConfig {
      */
     private int dimension = 1536;
 
+    /**
+     * 向量存储类型：redis（RediSearch，多实例共享）/ local（进程内按应用分区，持久化到本地文件）
+     */
+    private String storeType = "redis";
+
     /**
      * Redis Vector Store 配置（需要 RediSearch 支持）
      */
     private RedisConfig redis = new RedisConfig();
 
+    /**
+     * 本地分区向量存储配置（storeType=local 时生效）
+     */
+    private LocalStoreConfig local = new LocalStoreConfig();
+
+    /**
+     * 进程内 ONNX 模型配置（provider=onnx 时生效）
+     */
+    private OnnxConfig onnx = new OnnxConfig();
+
     @Data
     public static class RedisConfig {
         private String host = "localhost";
@@ -57,11 +99,100 @@ public class DashScopeEmbeddingConfig {
         private String distanceType = "COSINE";
     }
 
+    @Data
+    public static class LocalStoreConfig {
+        /**
+         * 分区文件目录
+         */
+        private String dir = System.getProperty("user.dir") + "/tmp/vector_index";
+        /**
+         * 单个应用向量数达到该值后建立 HNSW 索引，否则全量扫描
+         */
+        private int hnswThreshold = 2000;
+        /**
+         * HNSW 每个节点的邻居数
+         */
+        private int hnswM = 16;
+        /**
+         * HNSW 建图时的搜索宽度
+         */
+        private int efConstruction = 100;
+        /**
+         * HNSW 检索时的搜索宽度
+         */
+        private int efSearch = 64;
+    }
+
+    @Data
+    public static class OnnxConfig {
+        /**
+         * ONNX 模型文件路径，为空时使用内置的 all-MiniLM-L6-v2
+         */
+        private String modelPath;
+        /**
+         * 与模型配套的 tokenizer.json 路径（modelPath 非空时必填）
+         */
+        private String tokenizerPath;
+        /**
+         * 池化方式：MEAN / CLS
+         */
+        private String poolingMode = "MEAN";
+        /**
+         * 向量维度（all-MiniLM 类模型为 384）
+         */
+        private int dimension = 384;
+        /**
+         * 推理线程数，embedAll 的多个片段在这些线程上并行推理
+         */
+        private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * 是否使用进程内 ONNX 模型
+     */
+    public boolean usesOnnx() {
+        return "onnx".equalsIgnoreCase(provider);
+    }
+
+    /**
+     * 当前模型输出的向量维度
+     */
+    public int effectiveDimension() {
+        return usesOnnx() ? onnx.getDimension() : dimension;
+    }
+
+    /**
+     * 当前向量空间标识：提供方_维度，如 dashscope_1536、onnx_384
+     */
+    public String embeddingSpace() {
+        return (usesOnnx() ? "onnx" : "dashscope") + "_" + effectiveDimension();
+    }
+
     /**
-     * 创建阿里通义千问 Embedding 模型 Bean
+     * 向量空间命名后缀：默认空间为空串，其他空间为 _{空间标识}
+     */
+    public String spaceSuffix() {
+        String space = embeddingSpace();
+        return DEFAULT_SPACE.equals(space) ? "" : "_" + space;
+    }
+
+    /**
+     * Redis 向量存储中片段 key 的前缀（key = 前缀 + 片段ID），非默认空间带空间标识
+     */
+    public String vectorKeyPrefix() {
+        String suffix = spaceSuffix();
+        return suffix.isEmpty() ? redis.getPrefix() : redis.getPrefix() + suffix.substring(1) + ":";
+    }
+
+    /**
+     * 创建 Embedding 模型 Bean
+     * Bean 名称沿用 dashScopeEmbeddingModel，注入方无需改动；provider=onnx 时返回进程内模型
      */
     @Bean
     public EmbeddingModel dashScopeEmbeddingModel() {
+        if (usesOnnx()) {
+            return createOnnxModel();
+        }
         log.info("初始化阿里通义千问 Embedding 模型: {}", modelName);
         return QwenEmbeddingModel.builder()
                 .apiKey(apiKey)
@@ -70,21 +201,78 @@ public class DashScopeEmbeddingConfig {
     }
 
     /**
-     * 创建内存向量存储 Bean
-     * 使用 RedisEmbeddingStore（依赖 RediSearch）
+     * 创建进程内 ONNX Embedding 模型
+     * 推理线程池为守护线程，embedAll 时各片段并行推理
+     */
+    private EmbeddingModel createOnnxModel() {
+        boolean builtin = onnx.getModelPath() == null || onnx.getModelPath().isBlank();
+        // 自定义模型时先校验配置，缺失时启动失败并指出具体的配置项
+        Path modelPath = builtin ? null : requireFile(onnx.getModelPath(), "rag.embedding.onnx.model-path");
+        Path tokenizerPath = builtin ? null : requireFile(onnx.getTokenizerPath(), "rag.embedding.onnx.tokenizer-path");
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(onnx.getThreads(), r -> {
+            Thread thread = new Thread(r, "rag-onnx-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (builtin) {
+            log.info("初始化进程内 Embedding 模型: all-MiniLM-L6-v2（内置），推理线程数={}", onnx.getThreads());
+            return new AllMiniLmL6V2EmbeddingModel(executor);
+        }
+        log.info("初始化进程内 Embedding 模型: {}，推理线程数={}", modelPath, onnx.getThreads());
+        return new OnnxEmbeddingModel(modelPath, tokenizerPath,
+                PoolingMode.valueOf(onnx.getPoolingMode().toUpperCase()), executor);
+    }
+
+    /**
+     * 校验配置的文件路径非空且文件存在
+     *
+     * @param value    配置值
+     * @param property 配置项名称（用于错误信息）
+     * @return 文件路径
+     */
+    private static Path requireFile(String value, String property) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("使用自定义 ONNX 模型时必须配置 " + property);
+        }
+        Path path = Paths.get(value);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalStateException(property + " 指向的文件不存在: " + path.toAbsolutePath());
+        }
+        return path;
+    }
+
+    /**
+     * 创建向量存储 Bean
+     * - redis：RedisEmbeddingStore（依赖 RediSearch）
+     * - local：PartitionedLocalEmbeddingStore（进程内按应用分区，无需 Redis Stack）
      */
     @Bean
     public EmbeddingStore<TextSegment> embeddingStore() {
+        String suffix = spaceSuffix();
+        if ("local".equalsIgnoreCase(storeType)) {
+            LocalStoreConfig options = new LocalStoreConfig();
+            options.setDir(local.getDir() + (suffix.isEmpty() ? "" : "/" + suffix.substring(1)));
+            options.setHnswThreshold(local.getHnswThreshold());
+            options.setHnswM(local.getHnswM());
+            options.setEfConstruction(local.getEfConstruction());
+            options.setEfSearch(local.getEfSearch());
+            log.info("初始化本地分区向量存储: 目录={}, HNSW 阈值={}, 维度: {}",
+                    options.getDir(), options.getHnswThreshold(), effectiveDimension());
+            return new PartitionedLocalEmbeddingStore(options);
+        }
+
+        String indexName = redis.getIndexName() + suffix;
+        String prefix = vectorKeyPrefix();
         log.info("初始化 Redis 向量存储: {}:{}, 索引名: {}, 维度: {}, 距离度量: {}",
-                redis.getHost(), redis.getPort(), redis.getIndexName(), dimension, redis.getDistanceType());
+                redis.getHost(), redis.getPort(), indexName, effectiveDimension(), redis.getDistanceType());
 
         return RedisEmbeddingStore.builder()
                 .host(redis.getHost())
                 .port(redis.getPort())
-                .indexName(redis.getIndexName())
-                .prefix(redis.getPrefix())
-                .dimension(dimension)
+                .indexName(indexName)
+                .prefix(prefix)
+                .dimension(effectiveDimension())
                 .build();
     }
 }
-
@@ -35,6 +35,21 @@ public class RagConfig {
          */
         private int defaultTopK = 1;
 
+        /**
+         * 消息增强时检索的候选片段数（由打包器按 token 预算取舍）
+         */
+        private int packCandidates = 8;
+
+        /**
+         * 消息增强注入上下文的 token 预算（项目结构摘要 + 代码片段）
+         */
+        private int contextTokenBudget = 4000;
+
+        /**
+         * 整段注入上限：命中片段所在的 Vue 区块或文件不超过该 token 数时，注入完整区块/文件
+         */
+        private int wholeSectionMaxTokens = 1500;
+
         /**
          * 默认最低相似度阈值（设为 0 保证始终返回 top1）
          */
@@ -45,6 +60,36 @@ public class RagConfig {
          * 注：当 minScore=0 时此配置不再需要，保留用于配置灵活性
          */
         private boolean guaranteeTopOne = true;
+
+        /**
+         * 是否启用混合检索（BM25 词法检索 + 向量检索，RRF 融合）
+         */
+        private boolean hybridEnabled = true;
+
+        /**
+         * 向量检索在 RRF 融合中的权重
+         */
+        private double vectorWeight = 1.0;
+
+        /**
+         * BM25 词法检索在 RRF 融合中的权重
+         */
+        private double lexicalWeight = 1.0;
+
+        /**
+         * RRF 平滑常数
+         */
+        private int rrfK = 60;
+
+        /**
+         * 混合检索时每一路取回的候选数（不少于 topK）
+         */
+        private int candidatePoolSize = 20;
+
+        /**
+         * 查询中的代码标识符全部被词法检索第一名命中时，跳过查询向量化直接返回词法结果
+         */
+        private boolean lexicalShortCircuit = true;
     }
 
     @Data
@@ -54,8 +99,15 @@ public class RagConfig {
          */
         private boolean async = true;
 
+        /**
+         * 单个 chunk 的目标字符数
+         * 不超过该大小的文件（或 Vue 区块）整体作为一个 chunk，超过时按函数、CSS 规则块等语法边界切分后合并到该大小
+         */
+        private int targetChunkSize = 2000;
+
         /**
          * 单个 chunk 的最大字符数
+         * 单个语法单元（如超长函数）超过该大小时按行强制切开
          */
         private int maxChunkSize = 8000;
 
@@ -64,6 +116,49 @@ public class RagConfig {
          * 避免语义在分片边界断裂
          */
         private int chunkOverlap = 150;
+
+        /**
+         * 单个文件的防抖时间（毫秒）
+         * 同一文件在该时间内的多次写入/修改只索引最后一个版本
+         */
+        private long debounceMillis = 1500;
+
+        /**
+         * 单个文件的最长等待时间（毫秒）
+         * 文件持续被修改时，最晚在该时间后强制索引，避免饿死
+         */
+        private long maxDebounceMillis = 10000;
+
+        /**
+         * 每次 embedAll 调用的最大片段数（DashScope 文本向量接口单次最多 10 条）
+         */
+        private int embedBatchSize = 10;
+
+        /**
+         * 向量化失败的文件重新入队的最大次数，超过后放弃（留给批量重建）
+         */
+        private int maxRetries = 5;
+
+        /**
+         * 失败重试的初始退避时间（毫秒），每次失败翻倍，最长 1 分钟
+         */
+        private long retryBackoffMillis = 2000;
+
+        /**
+         * 全局 Embedding 调用速率上限（次/秒，所有实例共享，<= 0 表示不限制）
+         * 批量重建索引时由该限流保护 Embedding 服务配额
+         */
+        private int embedRatePerSecond = 20;
+
+        /**
+         * 批量重建索引时并行处理的项目数
+         */
+        private int reindexConcurrency = 8;
+
+        /**
+         * 工具执行后索引任务的排队上限（按文件有序执行器的容量）
+         */
+        private int dispatchCapacity = 1000;
     }
 }
 
@@ -0,0 +1,317 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 片段哈希登记表
+ * 记录每个文件当前已索引的片段：片段键（filePath#section）-> 内容哈希 + 向量存储 ID
+ * 用于增量索引：内容未变的片段跳过向量化，消失的片段按 ID 精确删除
+ * 存储结构：Redis Hash，key = rag:chunks:{appId}:{filePath}，field = 片段键，value = hash|id
+ * 非默认向量空间的登记带空间前缀（rag:chunks:onnx_384:...），切换模型后旧登记不会让新空间跳过向量化
+ * 同时维护应用 -> 已登记文件集合（Redis Set，key = rag:chunks:{appId}），删除整个应用时无需 SCAN；
+ * 以及"已完整登记"的应用集合（key = rag:chunks:tracked）：其中的应用所有向量都有登记，
+ * 未登记的文件一定没有向量，删除/替换时不必再按元数据过滤搜索
+ * 向量存储为本地文件时登记仍在 Redis 中，两者可能不一致（如本地目录被清空），启动时由 reconcile 校验
+ */
+@Slf4j
+@Component
+public class ChunkHashRegistry {
+
+    private static final String REDIS_KEY_PREFIX = "rag:chunks:";
+
+    private static final String SEPARATOR = "|";
+
+    private static final String TRACKED_KEY = "tracked";
+
+    /**
+     * Redis 不可用时（如单元测试）退化为进程内存储
+     */
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired(required = false)
+    private DashScopeEmbeddingConfig embeddingConfig;
+
+    private final Map<String, Map<String, ChunkRecord>> localStore = new ConcurrentHashMap<>();
+
+    private final Set<Long> localTracked = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已索引片段
+     *
+     * @param hash 片段内容哈希
+     * @param id   向量存储中的 ID
+     */
+    public record ChunkRecord(String hash, String id) {
+    }
+
+    /**
+     * 获取文件已登记的片段
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @return 片段键 -> 记录；从未登记过返回 null（可能是旧版本写入的索引）
+     */
+    public Map<String, ChunkRecord> get(Long appId, String filePath) {
+        String key = buildKey(appId, filePath);
+        if (stringRedisTemplate == null) {
+            return localStore.get(key);
+        }
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Map<String, ChunkRecord> records = new HashMap<>();
+        entries.forEach((field, value) -> {
+            String raw = value.toString();
+            int split = raw.indexOf(SEPARATOR);
+            if (split > 0) {
+                records.put(field.toString(), new ChunkRecord(raw.substring(0, split), raw.substring(split + 1)));
+            }
+        });
+        return records;
+    }
+
+    /**
+     * 覆盖文件已登记的片段
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param records  片段键 -> 记录
+     */
+    public void put(Long appId, String filePath, Map<String, ChunkRecord> records) {
+        String key = buildKey(appId, filePath);
+        if (stringRedisTemplate == null) {
+            localStore.put(key, new HashMap<>(records));
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        records.forEach((field, record) -> values.put(field, record.hash() + SEPARATOR + record.id()));
+        stringRedisTemplate.delete(key);
+        if (!values.isEmpty()) {
+            stringRedisTemplate.opsForHash().putAll(key, values);
+            stringRedisTemplate.opsForSet().add(filesKey(appId), filePath);
+        } else {
+            stringRedisTemplate.opsForSet().remove(filesKey(appId), filePath);
+        }
+    }
+
+    /**
+     * 移除文件的登记
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     */
+    public void remove(Long appId, String filePath) {
+        String key = buildKey(appId, filePath);
+        if (stringRedisTemplate == null) {
+            localStore.remove(key);
+            return;
+        }
+        stringRedisTemplate.delete(key);
+        stringRedisTemplate.opsForSet().remove(filesKey(appId), filePath);
+    }
+
+    /**
+     * 移除应用下所有文件的登记
+     *
+     * @param appId 应用ID
+     * @return 被移除登记中记录的全部向量片段ID（调用方据此直接删除向量）
+     */
+    public List<String> removeApp(Long appId) {
+        String prefix = keyPrefix() + appId + ":";
+        List<String> ids = new ArrayList<>();
+        if (stringRedisTemplate == null) {
+            localStore.entrySet().removeIf(entry -> {
+                if (!entry.getKey().startsWith(prefix)) {
+                    return false;
+                }
+                entry.getValue().values().forEach(record -> ids.add(record.id()));
+                return true;
+            });
+            localTracked.remove(appId);
+            return ids;
+        }
+        List<String> keys = appKeys(appId);
+        ids.addAll(readIds(keys));
+        keys.add(filesKey(appId));
+        stringRedisTemplate.unlink(keys);
+        stringRedisTemplate.opsForSet().remove(keyPrefix() + TRACKED_KEY, String.valueOf(appId));
+        log.debug("已删除应用 {} 的片段登记, 文件数={}, 片段数={}", appId, keys.size() - 1, ids.size());
+        return ids;
+    }
+
+    /**
+     * 校验登记与向量存储一致：登记中的片段ID在存储中缺失的应用，整体移除其登记
+     * 移除后该应用的文件会被重新向量化，而不是因哈希未变被跳过
+     *
+     * @param storeContains 向量存储中是否存在指定ID
+     * @return 登记被移除的应用ID
+     */
+    public List<Long> reconcile(Predicate<String> storeContains) {
+        List<Long> cleared = new ArrayList<>();
+        for (Long appId : registeredApps()) {
+            List<String> ids = readAppIds(appId);
+            if (ids.stream().allMatch(storeContains)) {
+                continue;
+            }
+            long missing = ids.stream().filter(storeContains.negate()).count();
+            log.warn("应用 {} 的片段登记与向量存储不一致（{}/{} 个片段缺失），已移除其登记", appId, missing, ids.size());
+            removeApp(appId);
+            cleared.add(appId);
+        }
+        return cleared;
+    }
+
+    /**
+     * 有片段登记的全部应用
+     */
+    private Set<Long> registeredApps() {
+        String prefix = keyPrefix();
+        Set<Long> apps = new TreeSet<>();
+        if (stringRedisTemplate == null) {
+            localStore.keySet().forEach(key -> addApp(apps, key.substring(prefix.length())));
+            return apps;
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(500).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            cursor.forEachRemaining(key -> addApp(apps, key.substring(prefix.length())));
+        }
+        return apps;
+    }
+
+    /**
+     * 从去掉前缀的登记 key（{appId} 或 {appId}:{filePath}）中解析应用ID，其他向量空间和 tracked 等 key 跳过
+     */
+    private static void addApp(Set<Long> apps, String rest) {
+        int split = rest.indexOf(':');
+        String appId = split < 0 ? rest : rest.substring(0, split);
+        if (!appId.isEmpty() && appId.chars().allMatch(Character::isDigit)) {
+            apps.add(Long.parseLong(appId));
+        }
+    }
+
+    /**
+     * 读取应用登记中的全部片段ID（不修改登记）
+     */
+    private List<String> readAppIds(Long appId) {
+        if (stringRedisTemplate == null) {
+            String prefix = keyPrefix() + appId + ":";
+            List<String> ids = new ArrayList<>();
+            localStore.forEach((key, records) -> {
+                if (key.startsWith(prefix)) {
+                    records.values().forEach(record -> ids.add(record.id()));
+                }
+            });
+            return ids;
+        }
+        return readIds(appKeys(appId));
+    }
+
+    /**
+     * 应用下全部文件登记的 key
+     */
+    private List<String> appKeys(Long appId) {
+        String prefix = keyPrefix() + appId + ":";
+        List<String> keys = new ArrayList<>();
+        Set<String> files = stringRedisTemplate.opsForSet().members(filesKey(appId));
+        if (files != null) {
+            files.forEach(filePath -> keys.add(prefix + filePath));
+        }
+        if (!isTracked(appId)) {
+            // 文件集合之前写入的登记不在集合中，只能 SCAN 补齐
+            ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(500).build();
+            Set<String> known = new HashSet<>(keys);
+            try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+                cursor.forEachRemaining(key -> {
+                    if (known.add(key)) {
+                        keys.add(key);
+                    }
+                });
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 管道批量读取文件登记中的片段ID
+     */
+    private List<String> readIds(List<String> keys) {
+        List<String> ids = new ArrayList<>();
+        if (!keys.isEmpty()) {
+            List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                keys.forEach(key -> connection.hashCommands().hVals(key.getBytes(StandardCharsets.UTF_8)));
+                return null;
+            });
+            for (Object value : values) {
+                if (value instanceof List<?> list) {
+                    list.forEach(raw -> {
+                        String record = raw.toString();
+                        int split = record.indexOf(SEPARATOR);
+                        if (split > 0) {
+                            ids.add(record.substring(split + 1));
+                        }
+                    });
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 应用是否已完整登记：是则该应用的每个向量片段都能在登记中找到
+     *
+     * @param appId 应用ID
+     */
+    public boolean isTracked(Long appId) {
+        if (stringRedisTemplate == null) {
+            return localTracked.contains(appId);
+        }
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForSet()
+                .isMember(keyPrefix() + TRACKED_KEY, String.valueOf(appId)));
+    }
+
+    /**
+     * 标记应用已完整登记（新建的应用、或刚完成全量索引的应用）
+     *
+     * @param appId 应用ID
+     */
+    public void markTracked(Long appId) {
+        if (stringRedisTemplate == null) {
+            localTracked.add(appId);
+            return;
+        }
+        stringRedisTemplate.opsForSet().add(keyPrefix() + TRACKED_KEY, String.valueOf(appId));
+    }
+
+    private String buildKey(Long appId, String filePath) {
+        return keyPrefix() + appId + ":" + filePath;
+    }
+
+    private String filesKey(Long appId) {
+        return keyPrefix() + appId;
+    }
+
+    private String keyPrefix() {
+        String suffix = embeddingConfig == null ? "" : embeddingConfig.spaceSuffix();
+        return suffix.isEmpty() ? REDIS_KEY_PREFIX : REDIS_KEY_PREFIX + suffix.substring(1) + ":";
+    }
+}
@@ -0,0 +1,785 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.lexical.Bm25Index;
+import com.frank.aicodehelper.rag.model.CodeContextDocument;
+import com.frank.aicodehelper.rag.store.VectorKeyUnlinker;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * 代码索引流水线
+ * 1. 按文件防抖合并：同一文件在防抖窗口内的多次写入/修改/删除只处理最后一次
+ * 2. 跨文件批量向量化：一次刷新中所有文件的片段按 embedBatchSize 合批调用 embedAll
+ * 3. 批量写入：一次刷新的所有片段通过一次 addAll 写入向量存储
+ * 4. 增量向量化：按片段内容哈希比对，未变化的片段直接复用，只删除变化或消失的片段
+ * 5. 向量存储写入成功后同步更新 BM25 词法索引，两路检索看到的是同一版本的片段
+ * 6. 版本号：每次提交都带一个递增版本号（由调用方在事件发生时领取），写入阶段串行执行并丢弃比已写入版本更旧的提交，
+ *    防抖刷新与批量重建并发处理同一文件时，旧内容不会覆盖新内容
+ * 7. 删除/替换按登记的片段ID直接删除；只有未完整登记的应用才退回按元数据过滤删除（先检索再删除）
+ * 8. 向量化失败的文件带原版本号重新入队，按指数退避重试（期间提交的新版本优先）；超过重试次数后放弃，由批量重建补齐
+ * 9. 复用的片段在写入阶段（持锁）按最新登记重新核对：向量化期间被其他写入者删除的片段立即补做向量化，
+ *    避免登记表记录了片段而向量存储中没有
+ * 刷新在单线程调度器上串行执行（flush 加锁），保证同一文件的索引顺序
+ */
+@Slf4j
+@Component
+public class CodeIndexingPipeline {
+
+    /**
+     * 调度器检查待索引队列的间隔（毫秒）
+     */
+    private static final long TICK_MILLIS = 200;
+
+    /**
+     * 失败重试的最长退避时间（毫秒）
+     */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 60_000;
+
+    @Resource
+    private EmbeddingModel dashScopeEmbeddingModel;
+
+    @Resource
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Resource
+    private VueCodeChunker vueCodeChunker;
+
+    @Resource
+    private RagConfig ragConfig;
+
+    @Resource
+    private ChunkHashRegistry chunkHashRegistry;
+
+    @Resource
+    private RetrievalCache retrievalCache;
+
+    @Resource
+    private Bm25Index bm25Index;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private EmbeddingRateLimiter embeddingRateLimiter;
+
+    /**
+     * 按 ID 直接删除向量（单元测试中为空时退化为 embeddingStore.removeAll(ids)）
+     */
+    @Autowired(required = false)
+    private VectorKeyUnlinker vectorKeyUnlinker;
+
+    /**
+     * 待索引文件：appId:filePath -> 最新版本
+     */
+    private final Map<String, PendingFile> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 提交版本号序列
+     */
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    /**
+     * 每个文件（appId:filePath）已写入的最新版本
+     */
+    private final Cache<String, Long> appliedVersions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 写入阶段锁：向量化在锁外并发执行，删除旧片段/写入新片段/更新登记在锁内串行执行
+     */
+    private final Object writeLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+
+    private Counter submittedCounter;
+    private Counter coalescedCounter;
+    private Counter embeddingCallCounter;
+    private Counter embeddedChunkCounter;
+    private Counter skippedChunkCounter;
+    private Counter removedChunkCounter;
+    private Counter failedFileCounter;
+    private Counter retriedFileCounter;
+    private Counter staleDroppedCounter;
+    private Counter filterRemovalCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        submittedCounter = meterRegistry.counter("rag.indexing.submitted");
+        coalescedCounter = meterRegistry.counter("rag.indexing.coalesced");
+        embeddingCallCounter = meterRegistry.counter("rag.indexing.embedding.calls");
+        embeddedChunkCounter = meterRegistry.counter("rag.indexing.chunks.embedded");
+        skippedChunkCounter = meterRegistry.counter("rag.indexing.chunks.skipped");
+        removedChunkCounter = meterRegistry.counter("rag.indexing.chunks.removed");
+        failedFileCounter = meterRegistry.counter("rag.indexing.failed");
+        retriedFileCounter = meterRegistry.counter("rag.indexing.retried");
+        staleDroppedCounter = meterRegistry.counter("rag.indexing.stale.dropped");
+        filterRemovalCounter = meterRegistry.counter("rag.indexing.filter.removals");
+        flushTimer = meterRegistry.timer("rag.indexing.flush");
+        Gauge.builder("rag.indexing.queue.depth", pending, Map::size)
+                .description("等待索引的文件数")
+                .register(meterRegistry);
+        Gauge.builder("rag.indexing.queue.lag", this, CodeIndexingPipeline::currentLagMillis)
+                .description("最早一个待索引文件已等待的毫秒数")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rag-indexing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushSafely, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前把剩余文件处理完，避免丢失最后几次修改
+        flush(true);
+    }
+
+    /**
+     * 提交文件索引（覆盖该文件尚未处理的旧版本）
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param content  文件完整内容
+     */
+    public void submit(Long appId, String filePath, String content) {
+        enqueue(appId, filePath, content, nextVersion());
+    }
+
+    /**
+     * 提交文件索引，使用调用方在事件发生时领取的版本号
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param content  文件完整内容
+     * @param version  版本号（见 nextVersion）
+     */
+    public void submit(Long appId, String filePath, String content, long version) {
+        enqueue(appId, filePath, content, version);
+    }
+
+    /**
+     * 提交文件索引删除（覆盖该文件尚未处理的写入）
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     */
+    public void submitDelete(Long appId, String filePath) {
+        enqueue(appId, filePath, null, nextVersion());
+    }
+
+    /**
+     * 提交文件索引删除，使用调用方在事件发生时领取的版本号
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param version  版本号（见 nextVersion）
+     */
+    public void submitDelete(Long appId, String filePath, long version) {
+        enqueue(appId, filePath, null, version);
+    }
+
+    /**
+     * 领取一个新版本号
+     * 调用方应在文件变化发生时（异步派发之前）领取，版本号顺序即文件变化的真实顺序
+     *
+     * @return 单调递增的版本号
+     */
+    public long nextVersion() {
+        return versionSequence.incrementAndGet();
+    }
+
+    /**
+     * 丢弃应用所有尚未处理的索引任务（应用被删除时调用）
+     *
+     * @param appId 应用ID
+     */
+    public void discard(Long appId) {
+        String prefix = appId + ":";
+        pending.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void enqueue(Long appId, String filePath, String content, long version) {
+        submittedCounter.increment();
+        long now = System.currentTimeMillis();
+        pending.compute(appId + ":" + filePath, (key, previous) -> {
+            if (previous == null) {
+                return new PendingFile(appId, filePath, content, now, now, version, 0, 0L);
+            }
+            coalescedCounter.increment();
+            if (previous.version() > version) {
+                // 晚到的旧版本，保留队列中较新的内容
+                staleDroppedCounter.increment();
+                return previous;
+            }
+            return new PendingFile(appId, filePath, content, previous.firstSubmitMillis(), now, version, 0, 0L);
+        });
+    }
+
+    private void flushSafely() {
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("RAG 索引刷新失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 处理到期的待索引文件
+     *
+     * @param force 是否忽略防抖窗口立即处理全部文件
+     */
+    synchronized void flush(boolean force) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long debounce = ragConfig.getIndexing().getDebounceMillis();
+        long maxDebounce = ragConfig.getIndexing().getMaxDebounceMillis();
+
+        List<PendingFile> ready = new ArrayList<>();
+        for (Map.Entry<String, PendingFile> entry : pending.entrySet()) {
+            PendingFile file = entry.getValue();
+            // 重试的文件已经过防抖，只需等待退避时间
+            boolean due = force || (file.attempts() > 0
+                    ? now >= file.retryAtMillis()
+                    : now - file.lastSubmitMillis() >= debounce || now - file.firstSubmitMillis() >= maxDebounce);
+            // remove(key, value) 失败说明刚被新版本覆盖，留给下一轮处理
+            if (due && pending.remove(entry.getKey(), file)) {
+                ready.add(file);
+            }
+        }
+        if (!ready.isEmpty()) {
+            try {
+                List<PendingFile> failed = flushTimer.record(() -> process(ready));
+                failed.forEach(this::retryLater);
+            } finally {
+                // 索引已变化，使相关应用已缓存的检索结果失效
+                ready.stream().map(PendingFile::appId).distinct().forEach(retrievalCache::bumpGeneration);
+            }
+        }
+    }
+
+    /**
+     * 立即处理全部待索引文件
+     */
+    public void flushAll() {
+        flush(true);
+    }
+
+    /**
+     * 同步索引一个应用的全部文件（批量重建使用，不经过防抖队列，可在多个线程上并发调用）
+     *
+     * @param appId       应用ID
+     * @param files       项目全部文件：相对路径 -> 文件内容
+     * @param fullRebuild 是否忽略片段哈希登记、全部重新向量化（向量存储被清空时使用）
+     * @param version     版本号，应在读取文件内容之前领取（见 nextVersion）
+     * @return 索引失败的文件数
+     */
+    public int indexNow(Long appId, Map<String, String> files, boolean fullRebuild, long version) {
+        if (files.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        List<PendingFile> batch = files.entrySet().stream()
+                .map(entry -> new PendingFile(appId, entry.getKey(), entry.getValue(), now, now, version, 0, 0L))
+                .toList();
+        // 未完整登记的应用（登记表之前写入的索引）：本次写入时未登记的文件按路径过滤清理旧片段，
+        // 项目全部文件成功登记后标记为完整登记
+        boolean adopt = !chunkHashRegistry.isTracked(appId);
+        try {
+            int failed = flushTimer.record(() -> process(batch, fullRebuild)).size();
+            if (adopt && failed == 0) {
+                chunkHashRegistry.markTracked(appId);
+            }
+            return failed;
+        } finally {
+            retrievalCache.bumpGeneration(appId);
+        }
+    }
+
+    /**
+     * 删除应用的全部向量与登记
+     * 已完整登记的应用按登记的片段ID直接删除（Redis 下为管道批量 UNLINK）；否则按 appId 过滤删除
+     *
+     * @param appId 应用ID
+     * @return 按ID删除的片段数
+     */
+    public int removeApp(Long appId) {
+        synchronized (writeLock) {
+            boolean tracked = chunkHashRegistry.isTracked(appId);
+            List<String> ids = chunkHashRegistry.removeApp(appId);
+            removeIds(appId, "*", ids);
+            if (!tracked) {
+                removeByFilter(appId, null);
+            }
+            bm25Index.invalidate(appId);
+            return ids.size();
+        }
+    }
+
+    /**
+     * 失败的文件带原版本号重新入队，按指数退避延后处理；队列中已有的同版本或更新版本优先
+     */
+    private void retryLater(PendingFile file) {
+        int attempts = file.attempts() + 1;
+        if (attempts > ragConfig.getIndexing().getMaxRetries()) {
+            log.error("RAG 索引重试次数用尽，放弃: appId={}, file={}, 版本={}",
+                    file.appId(), file.filePath(), file.version());
+            return;
+        }
+        long backoff = Math.min(ragConfig.getIndexing().getRetryBackoffMillis() << (attempts - 1),
+                MAX_RETRY_BACKOFF_MILLIS);
+        long now = System.currentTimeMillis();
+        PendingFile retry = new PendingFile(file.appId(), file.filePath(), file.content(),
+                file.firstSubmitMillis(), file.lastSubmitMillis(), file.version(), attempts, now + backoff);
+        pending.compute(file.appId() + ":" + file.filePath(),
+                (key, current) -> current != null && current.version() >= file.version() ? current : retry);
+        retriedFileCounter.increment();
+        log.warn("RAG 索引失败，{}ms 后重试: appId={}, file={}, 第 {} 次", backoff, file.appId(), file.filePath(), attempts);
+    }
+
+    private List<PendingFile> process(List<PendingFile> files) {
+        return process(files, false);
+    }
+
+    /**
+     * @return 索引失败的文件
+     */
+    private List<PendingFile> process(List<PendingFile> files, boolean fullRebuild) {
+        // 1. 分块，并与已登记的片段哈希比对，只有内容变化的片段需要向量化
+        List<FilePlan> plans = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        List<String> segmentIds = new ArrayList<>();
+        List<FilePlan> owners = new ArrayList<>();
+        // 分块是纯 CPU 计算，批量提交（如重建索引）时跨文件并行
+        List<PendingFile> writes = files.stream().filter(file -> !file.isDelete()).toList();
+        List<List<CodeContextDocument>> chunked = vueCodeChunker.chunkAll(writes.stream()
+                .map(file -> new VueCodeChunker.SourceFile(file.appId(), file.filePath(), file.content()))
+                .toList());
+        Map<PendingFile, List<CodeContextDocument>> chunksByFile = new IdentityHashMap<>();
+        for (int i = 0; i < writes.size(); i++) {
+            chunksByFile.put(writes.get(i), chunked.get(i));
+        }
+        for (PendingFile file : files) {
+            Map<String, ChunkHashRegistry.ChunkRecord> previous = fullRebuild
+                    ? null : chunkHashRegistry.get(file.appId(), file.filePath());
+            if (file.isDelete()) {
+                synchronized (writeLock) {
+                    if (claimVersion(file)) {
+                        removeFile(file.appId(), file.filePath(), chunkHashRegistry.get(file.appId(), file.filePath()));
+                    }
+                }
+                continue;
+            }
+            FilePlan plan = new FilePlan(file, previous);
+            plan.chunks = chunksByFile.get(file);
+            for (CodeContextDocument chunk : plan.chunks) {
+                String chunkKey = chunk.getFilePath();
+                String hash = DigestUtil.sha256Hex(chunk.getContent());
+                ChunkHashRegistry.ChunkRecord old = previous == null ? null : previous.get(chunkKey);
+                if (old != null && old.hash().equals(hash)) {
+                    // 沿用已写入向量存储的 ID，保证词法索引与向量存储中的片段 ID 一致
+                    chunk.setChunkId(old.id());
+                    plan.records.put(chunkKey, old);
+                    plan.reused.add(chunk);
+                    skippedChunkCounter.increment();
+                    continue;
+                }
+                plan.records.put(chunkKey, new ChunkHashRegistry.ChunkRecord(hash, chunk.getChunkId()));
+                segments.add(TextSegment.from(chunk.getContent(), toMetadata(chunk, hash, file.version())));
+                segmentIds.add(chunk.getChunkId());
+                owners.add(plan);
+                plan.changed++;
+            }
+            plans.add(plan);
+        }
+        if (plans.isEmpty()) {
+            return List.of();
+        }
+
+        // 2. 跨文件合批向量化；某一批失败时只放弃涉及的文件
+        int batchSize = Math.max(1, ragConfig.getIndexing().getEmbedBatchSize());
+        Embedding[] embeddings = new Embedding[segments.size()];
+        int embedCalls = 0;
+        for (int from = 0; from < segments.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, segments.size());
+            try {
+                embedCalls++;
+                List<Embedding> batch = embed(segments.subList(from, to));
+                for (int j = 0; j < batch.size(); j++) {
+                    embeddings[from + j] = batch.get(j);
+                }
+            } catch (Exception e) {
+                log.error("RAG 批量向量化失败: 片段 {}-{}, error={}", from, to, e.getMessage(), e);
+                for (int j = from; j < to; j++) {
+                    owners.get(j).failed = true;
+                }
+            }
+        }
+
+        // 3. 删除变化/消失的旧片段，再一次性批量写入新片段（串行执行，丢弃过期版本）
+        int written;
+        synchronized (writeLock) {
+            written = write(plans, segments, segmentIds, owners, embeddings, fullRebuild);
+        }
+        int total = plans.stream().mapToInt(plan -> plan.records.size()).sum();
+        log.info("✅ [RAG索引] 批量索引完成: 文件数={}, 片段数={}, 重新向量化={}, 跳过未变化={}, embedAll 调用数={}",
+                plans.size(), total, written, total - segments.size(), embedCalls);
+        return plans.stream().filter(plan -> plan.failed).map(plan -> plan.file).toList();
+    }
+
+    /**
+     * 调用向量模型（受限流器约束）
+     */
+    private List<Embedding> embed(List<TextSegment> segments) {
+        if (embeddingRateLimiter != null) {
+            embeddingRateLimiter.acquire();
+        }
+        embeddingCallCounter.increment();
+        List<Embedding> embeddings = dashScopeEmbeddingModel.embedAll(segments).content();
+        embeddedChunkCounter.increment(embeddings.size());
+        return embeddings;
+    }
+
+    /**
+     * 写入阶段（调用方持有 writeLock）
+     *
+     * @return 写入向量存储的片段数
+     */
+    private int write(List<FilePlan> plans, List<TextSegment> segments, List<String> segmentIds,
+                      List<FilePlan> owners, Embedding[] embeddings, boolean fullRebuild) {
+        List<String> storeIds = new ArrayList<>();
+        List<Embedding> storeEmbeddings = new ArrayList<>();
+        List<TextSegment> storeSegments = new ArrayList<>();
+        for (FilePlan plan : plans) {
+            if (plan.failed) {
+                failedFileCounter.increment();
+                continue;
+            }
+            PendingFile file = plan.file;
+            if (!claimVersion(file)) {
+                plan.stale = true;
+                continue;
+            }
+            // 向量化期间可能有其他写入者更新了该文件，按最新登记计算需要删除的旧片段
+            Map<String, ChunkHashRegistry.ChunkRecord> registered = chunkHashRegistry.get(file.appId(), file.filePath());
+            if (!fullRebuild) {
+                plan.previous = registered;
+            }
+            // 先补做向量化再删除旧片段：补做失败时放弃本次写入，登记与向量存储保持一致
+            reembedMissing(plan, registered, storeIds, storeEmbeddings, storeSegments);
+            if (plan.failed) {
+                continue;
+            }
+            if (registered == null) {
+                // 未登记：已完整登记的应用中说明是新文件，无需删除；否则可能是旧版本写入的索引，按文件路径清理
+                if (!chunkHashRegistry.isTracked(file.appId())) {
+                    removeByFilter(file.appId(), file.filePath());
+                }
+            } else {
+                List<String> staleIds = new ArrayList<>();
+                registered.forEach((chunkKey, record) -> {
+                    ChunkHashRegistry.ChunkRecord current = plan.records.get(chunkKey);
+                    if (current == null || !current.id().equals(record.id())) {
+                        staleIds.add(record.id());
+                    }
+                });
+                removeIds(file.appId(), file.filePath(), staleIds);
+            }
+        }
+        for (int j = 0; j < segments.size(); j++) {
+            FilePlan owner = owners.get(j);
+            if (!owner.failed && !owner.stale) {
+                storeIds.add(segmentIds.get(j));
+                storeEmbeddings.add(embeddings[j]);
+                storeSegments.add(segments.get(j));
+            }
+        }
+        if (CollUtil.isNotEmpty(storeEmbeddings)) {
+            embeddingStore.addAll(storeIds, storeEmbeddings, storeSegments);
+        }
+        for (FilePlan plan : plans) {
+            if (plan.failed || plan.stale) {
+                continue;
+            }
+            if (plan.isDirty()) {
+                chunkHashRegistry.put(plan.file.appId(), plan.file.filePath(), plan.records);
+            }
+            bm25Index.replaceFile(plan.file.appId(), plan.file.filePath(), plan.chunks);
+        }
+        return storeSegments.size();
+    }
+
+    /**
+     * 复用的片段 ID 来自向量化之前读取的登记快照，向量化期间其他写入者可能已删除这些向量；
+     * 按最新登记核对，不再登记的片段在此补做向量化（调用方持有 writeLock，只在并发写同一文件时发生）
+     */
+    private void reembedMissing(FilePlan plan, Map<String, ChunkHashRegistry.ChunkRecord> registered,
+                                List<String> storeIds, List<Embedding> storeEmbeddings,
+                                List<TextSegment> storeSegments) {
+        if (plan.reused.isEmpty()) {
+            return;
+        }
+        Set<String> registeredIds = registered == null ? Set.of() : registered.values().stream()
+                .map(ChunkHashRegistry.ChunkRecord::id)
+                .collect(Collectors.toSet());
+        List<TextSegment> missing = new ArrayList<>();
+        List<String> missingIds = new ArrayList<>();
+        for (CodeContextDocument chunk : plan.reused) {
+            if (!registeredIds.contains(chunk.getChunkId())) {
+                String hash = plan.records.get(chunk.getFilePath()).hash();
+                missing.add(TextSegment.from(chunk.getContent(), toMetadata(chunk, hash, plan.file.version())));
+                missingIds.add(chunk.getChunkId());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        log.info("复用的片段已被并发写入删除，重新向量化: appId={}, file={}, 数量={}",
+                plan.file.appId(), plan.file.filePath(), missing.size());
+        try {
+            storeEmbeddings.addAll(embed(missing));
+            storeIds.addAll(missingIds);
+            storeSegments.addAll(missing);
+            plan.changed += missing.size();
+        } catch (Exception e) {
+            log.error("RAG 补做向量化失败: appId={}, file={}, error={}",
+                    plan.file.appId(), plan.file.filePath(), e.getMessage(), e);
+            plan.failed = true;
+            failedFileCounter.increment();
+        }
+    }
+
+    /**
+     * 登记文件的写入版本（调用方持有 writeLock）
+     *
+     * @return false 表示已有更新的版本写入，本次提交已过期
+     */
+    private boolean claimVersion(PendingFile file) {
+        String key = file.appId() + ":" + file.filePath();
+        Long applied = appliedVersions.getIfPresent(key);
+        if (applied != null && applied > file.version()) {
+            staleDroppedCounter.increment();
+            log.info("丢弃过期的索引提交: file={}, 版本={}, 已写入版本={}", key, file.version(), applied);
+            return false;
+        }
+        appliedVersions.put(key, file.version());
+        return true;
+    }
+
+    /**
+     * 构建片段元数据
+     */
+    private Metadata toMetadata(CodeContextDocument chunk, String contentHash, long version) {
+        Metadata metadata = new Metadata();
+        metadata.put("appId", chunk.getAppId().toString());
+        metadata.put("chunkId", chunk.getChunkId());
+        metadata.put("filePath", chunk.getFilePath());
+        metadata.put("fileType", chunk.getFileType());
+        metadata.put("chunkType", chunk.getChunkType());
+        metadata.put("chunkIndex", String.valueOf(chunk.getChunkIndex()));
+        metadata.put("contentHash", contentHash);
+        metadata.put("version", String.valueOf(version));
+
+        // 添加扩展元数据
+        if (chunk.getMetadata() != null) {
+            chunk.getMetadata().forEach((k, v) -> {
+                if (v != null) {
+                    metadata.put(k, v.toString());
+                }
+            });
+        }
+        return metadata;
+    }
+
+    /**
+     * 删除文件在向量存储中的全部片段并清除登记
+     */
+    private void removeFile(Long appId, String filePath, Map<String, ChunkHashRegistry.ChunkRecord> previous) {
+        if (previous == null) {
+            if (!chunkHashRegistry.isTracked(appId)) {
+                removeByFilter(appId, filePath);
+            }
+        } else {
+            removeIds(appId, filePath, previous.values().stream().map(ChunkHashRegistry.ChunkRecord::id).toList());
+        }
+        chunkHashRegistry.remove(appId, filePath);
+        bm25Index.removeFile(appId, filePath);
+    }
+
+    /**
+     * 按 ID 精确删除片段
+     */
+    private void removeIds(Long appId, String filePath, List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            if (vectorKeyUnlinker != null) {
+                vectorKeyUnlinker.unlinkAll(ids);
+            } else {
+                embeddingStore.removeAll(ids);
+            }
+            removedChunkCounter.increment(ids.size());
+            log.debug("已删除文件片段: appId={}, file={}, 数量={}", appId, filePath, ids.size());
+        } catch (Exception e) {
+            log.error("删除文件片段失败: appId={}, file={}, error={}", appId, filePath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按 appId + filePath 过滤删除（兼容未登记片段哈希的旧索引，需要先检索再删除）
+     *
+     * @param filePath 为空时删除应用的全部片段
+     */
+    private void removeByFilter(Long appId, String filePath) {
+        try {
+            // 构建复合过滤条件：appId AND filePath 精确匹配
+            Filter filter = metadataKey("appId").isEqualTo(appId.toString());
+            if (filePath != null) {
+                filter = filter.and(metadataKey("filePath").isEqualTo(filePath));
+            }
+            filterRemovalCounter.increment();
+            embeddingStore.removeAll(filter);
+            log.debug("已删除文件索引: appId={}, file={}", appId, filePath);
+        } catch (JedisDataException jde) {
+            // Jedis 在 DEL 0 key 时会抛出“wrong number of arguments”错误，视为无匹配安全忽略
+            if (jde.getMessage() != null && jde.getMessage().contains("wrong number of arguments for 'del'")) {
+                log.debug("未找到需删除的文件索引，跳过: appId={}, file={}", appId, filePath);
+            } else {
+                log.error("删除文件索引失败: appId={}, file={}, error={}", appId, filePath, jde.getMessage(), jde);
+            }
+        } catch (Exception e) {
+            log.error("删除文件索引失败: appId={}, file={}, error={}", appId, filePath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 最早一个待索引文件已等待的毫秒数
+     */
+    private double currentLagMillis() {
+        long now = System.currentTimeMillis();
+        return pending.values().stream()
+                .mapToLong(file -> now - file.firstSubmitMillis())
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * 待索引文件
+     *
+     * @param content           文件内容，为 null 表示删除
+     * @param firstSubmitMillis 首次提交时间（合并后保留最早值，用于最长等待和延迟统计）
+     * @param lastSubmitMillis  最后一次提交时间（用于防抖）
+     * @param version           版本号（合并后保留最新值）
+     * @param attempts          已失败的次数
+     * @param retryAtMillis     失败重试的最早处理时间（0 表示不是重试）
+     */
+    private record PendingFile(Long appId, String filePath, String content,
+                               long firstSubmitMillis, long lastSubmitMillis, long version,
+                               int attempts, long retryAtMillis) {
+
+        boolean isDelete() {
+            return content == null;
+        }
+    }
+
+    /**
+     * 单个文件的增量索引计划
+     */
+    private static final class FilePlan {
+
+        private final PendingFile file;
+
+        /**
+         * 索引前已登记的片段（null 表示未登记）
+         */
+        private Map<String, ChunkHashRegistry.ChunkRecord> previous;
+
+        /**
+         * 索引后应登记的片段
+         */
+        private final Map<String, ChunkHashRegistry.ChunkRecord> records = new HashMap<>();
+
+        /**
+         * 内容未变、沿用登记快照中 ID 的片段
+         */
+        private final List<CodeContextDocument> reused = new ArrayList<>();
+
+        /**
+         * 文件最新的全部片段（用于更新词法索引）
+         */
+        private List<CodeContextDocument> chunks = List.of();
+
+        private int changed;
+
+        private boolean failed;
+
+        /**
+         * 写入时发现已有更新版本，放弃本次写入
+         */
+        private boolean stale;
+
+        private FilePlan(PendingFile file, Map<String, ChunkHashRegistry.ChunkRecord> previous) {
+            this.file = file;
+            this.previous = previous;
+        }
+
+        /**
+         * 登记内容是否需要更新（有片段变化、新增或消失）
+         */
+        private boolean isDirty() {
+            return changed > 0 || previous == null || !previous.keySet().equals(records.keySet());
+        }
+    }
+}
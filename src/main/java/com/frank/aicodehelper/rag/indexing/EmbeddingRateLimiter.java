@@ -0,0 +1,59 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.rag.config.RagConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Embedding 调用全局限流
+ * 使用 Redisson 分布式令牌桶（与接口限流 RateLimitAspect 相同的机制），所有实例、所有索引线程共享同一速率，
+ * 批量重建索引并发再高也不会超出 Embedding 服务的配额；Redis 不可用时（如单元测试）不限流
+ */
+@Slf4j
+@Component
+public class EmbeddingRateLimiter {
+
+    private static final String LIMITER_KEY = "rate_limit:rag:embedding";
+
+    @Resource
+    private RagConfig ragConfig;
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    private volatile RRateLimiter rateLimiter;
+
+    /**
+     * 获取一次 Embedding 调用许可（阻塞直到令牌可用）
+     */
+    public void acquire() {
+        RRateLimiter limiter = limiter();
+        if (limiter != null) {
+            limiter.acquire();
+        }
+    }
+
+    private RRateLimiter limiter() {
+        int rate = ragConfig.getIndexing().getEmbedRatePerSecond();
+        if (redissonClient == null || rate <= 0) {
+            return null;
+        }
+        if (rateLimiter == null) {
+            synchronized (this) {
+                if (rateLimiter == null) {
+                    RRateLimiter limiter = redissonClient.getRateLimiter(LIMITER_KEY);
+                    limiter.trySetRate(RateType.OVERALL, rate, 1, RateIntervalUnit.SECONDS);
+                    rateLimiter = limiter;
+                    log.info("Embedding 全局限流已启用: {} 次/秒", rate);
+                }
+            }
+        }
+        return rateLimiter;
+    }
+}
@@ -0,0 +1,107 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.store.PartitionedLocalEmbeddingStore;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 向量空间迁移
+ * 切换 Embedding 模型或维度后，旧向量与新查询向量不可比较。新空间使用独立的索引名/键前缀（见 DashScopeEmbeddingConfig），
+ * 启动时比对 Redis 中记录的上一次向量空间，发生变化则启动批量重建索引任务（ProjectReindexJob），
+ * 在新空间中重建索引；旧空间的数据保留不动，回滚配置即可恢复
+ * 使用本地向量存储时，片段哈希登记（Redis）可能比本地文件新（如本地目录丢失），
+ * 启动时校验登记的片段ID都在本地存储中，缺失的应用移除登记并重建索引
+ */
+@Slf4j
+@Component
+public class EmbeddingSpaceMigration {
+
+    private static final String SPACE_KEY = "rag:embedding:space";
+
+    @Resource
+    private DashScopeEmbeddingConfig embeddingConfig;
+
+    @Resource
+    private RagConfig ragConfig;
+
+    @Resource
+    private ProjectReindexJob projectReindexJob;
+
+    @Resource
+    private ChunkHashRegistry chunkHashRegistry;
+
+    @Resource
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 启动完成后检查向量空间是否变化（异步执行，不阻塞启动）
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!ragConfig.isEnabled() || stringRedisTemplate == null) {
+            return;
+        }
+        String current = embeddingConfig.embeddingSpace();
+        boolean registryCleared = reconcileLocalStore();
+        try {
+            String previous = stringRedisTemplate.opsForValue().get(SPACE_KEY);
+            // 首次记录：默认空间视为已有索引有效；非默认空间说明刚切换过来，需要重建
+            boolean changed = previous == null
+                    ? !embeddingConfig.spaceSuffix().isEmpty()
+                    : !previous.equals(current);
+            if (changed) {
+                log.warn("Embedding 向量空间已变化: {} -> {}", previous, current);
+                if (embeddingConfig.isReindexOnSpaceChange()) {
+                    // 新空间的片段哈希登记为空，全部项目都会重新向量化；任务可断点续跑
+                    projectReindexJob.start(false, true);
+                    log.info("已启动向量空间迁移重建: 空间={}", current);
+                } else {
+                    log.warn("未开启自动重建，新向量空间 {} 中的应用将在文件下次修改时才会被索引", current);
+                }
+            }
+            stringRedisTemplate.opsForValue().set(SPACE_KEY, current);
+            if (registryCleared) {
+                // 登记已移除的应用会全部重新向量化，其余应用按哈希跳过；重建已在运行时直接返回
+                projectReindexJob.start(false, true);
+                log.info("已启动本地向量存储恢复重建: 空间={}", current);
+            }
+        } catch (Exception e) {
+            log.error("检查 Embedding 向量空间失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 本地向量存储时校验片段登记，登记了但本地缺失的应用移除登记
+     *
+     * @return 是否有应用的登记被移除
+     */
+    private boolean reconcileLocalStore() {
+        if (!(embeddingStore instanceof PartitionedLocalEmbeddingStore localStore)) {
+            return false;
+        }
+        try {
+            List<Long> cleared = chunkHashRegistry.reconcile(localStore::contains);
+            return !cleared.isEmpty();
+        } catch (Exception e) {
+            log.error("校验片段登记与本地向量存储失败: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按键有序执行器
+ * - 同一个键的任务严格按提交顺序串行执行，不同键之间并行
+ * - 每个任务运行在独立的虚拟线程上
+ * - 有界：排队 + 执行中的任务总数不超过 capacity，队列满时提交线程最多等待 submitTimeoutMillis，
+ *   仍无空位则在提交线程上直接执行（调用方需能容忍乱序，例如依赖版本号丢弃过期写入）
+ * 指标（tag executor=名称）：keyed.executor.submitted / completed / failed / caller.runs（计数），
+ * keyed.executor.queued / keys（当前排队任务数、活跃键数），keyed.executor.wait / run（排队耗时、执行耗时）
+ */
+@Slf4j
+public class KeyedOrderedExecutor implements AutoCloseable {
+
+    private final String name;
+
+    private final ExecutorService executor;
+
+    /**
+     * 每个键最后一个任务的 future，新任务接在其后执行
+     */
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    private final Semaphore capacity;
+
+    private final long submitTimeoutMillis;
+
+    private final Counter submittedCounter;
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+    private final Counter callerRunsCounter;
+    private final Timer waitTimer;
+    private final Timer runTimer;
+
+    /**
+     * @param name                执行器名称（线程名前缀、指标 tag）
+     * @param capacity            排队 + 执行中的任务数上限
+     * @param submitTimeoutMillis 队列满时提交线程的最长等待时间
+     * @param meterRegistry       指标注册表
+     */
+    public KeyedOrderedExecutor(String name, int capacity, long submitTimeoutMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        this.capacity = new Semaphore(Math.max(1, capacity));
+        this.submitTimeoutMillis = submitTimeoutMillis;
+
+        submittedCounter = meterRegistry.counter("keyed.executor.submitted", "executor", name);
+        completedCounter = meterRegistry.counter("keyed.executor.completed", "executor", name);
+        failedCounter = meterRegistry.counter("keyed.executor.failed", "executor", name);
+        callerRunsCounter = meterRegistry.counter("keyed.executor.caller.runs", "executor", name);
+        waitTimer = meterRegistry.timer("keyed.executor.wait", "executor", name);
+        runTimer = meterRegistry.timer("keyed.executor.run", "executor", name);
+        int limit = Math.max(1, capacity);
+        Gauge.builder("keyed.executor.queued", this.capacity, s -> limit - s.availablePermits())
+                .description("排队及执行中的任务数")
+                .tag("executor", name)
+                .register(meterRegistry);
+        Gauge.builder("keyed.executor.keys", tails, Map::size)
+                .description("有未完成任务的键数")
+                .tag("executor", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param key  排序键，同一个键的任务按提交顺序执行
+     * @param task 任务
+     */
+    public void submit(String key, Runnable task) {
+        submittedCounter.increment();
+        boolean acquired;
+        try {
+            acquired = capacity.tryAcquire(submitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            callerRunsCounter.increment();
+            log.warn("执行器 {} 队列已满，在提交线程上直接执行: key={}", name, key);
+            runQuietly(key, task);
+            return;
+        }
+
+        long submitNanos = System.nanoTime();
+        Runnable wrapped = () -> {
+            waitTimer.record(System.nanoTime() - submitNanos, TimeUnit.NANOSECONDS);
+            try {
+                runQuietly(key, task);
+            } finally {
+                capacity.release();
+            }
+        };
+        // compute 在键级别原子：保证同一键的任务按 submit 的调用顺序串接
+        CompletableFuture<Void> future = tails.compute(key, (k, tail) -> tail == null
+                ? CompletableFuture.runAsync(wrapped, executor)
+                : tail.thenRunAsync(wrapped, executor));
+        future.whenComplete((result, error) -> tails.remove(key, future));
+    }
+
+    /**
+     * 等待当前所有已提交任务完成（测试、停机时使用）
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否全部完成
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!tails.isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private void runQuietly(String key, Runnable task) {
+        long startNanos = System.nanoTime();
+        try {
+            task.run();
+            completedCounter.increment();
+        } catch (Exception e) {
+            // 任务异常不能让后续同键任务被跳过
+            failedCounter.increment();
+            log.error("执行器 {} 任务失败: key={}, error={}", name, key, e.getMessage(), e);
+        } finally {
+            runTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.model.ReindexProgress;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量重建索引任务
+ * 遍历 CODE_OUTPUT_ROOT_DIR 下全部项目，每个项目在一个虚拟线程上扫描、分块、向量化（同一时刻最多 reindexConcurrency 个项目），
+ * 所有 Embedding 调用受 EmbeddingRateLimiter 全局限流
+ * 断点续跑：任务状态和已完成的应用ID记录在 Redis，服务崩溃或重启后自动从未完成的项目继续；
+ * 同一项目中途中断时，已写入的片段由片段哈希登记跳过，不会重复向量化
+ */
+@Slf4j
+@Component
+public class ProjectReindexJob {
+
+    private static final String JOB_KEY = "rag:reindex:job";
+
+    private static final String DONE_KEY = "rag:reindex:done";
+
+    private static final String FAILED_KEY = "rag:reindex:failed";
+
+    @Resource
+    private CodeIndexingPipeline codeIndexingPipeline;
+
+    @Resource
+    private VueCodeChunker vueCodeChunker;
+
+    @Resource
+    private RagConfig ragConfig;
+
+    @Resource
+    private DashScopeEmbeddingConfig embeddingConfig;
+
+    /**
+     * Redis 不可用时（如单元测试）任务状态只保存在内存中，不支持断点续跑
+     */
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Object lock = new Object();
+
+    private volatile ReindexProgress.Status status = ReindexProgress.Status.IDLE;
+
+    private volatile boolean stopRequested;
+
+    private volatile boolean shuttingDown;
+
+    private volatile boolean fullRebuild;
+
+    private volatile long startTime;
+
+    private volatile long finishTime;
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger resumed = new AtomicInteger();
+
+    private final AtomicInteger completed = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final AtomicLong files = new AtomicLong();
+
+    private final Set<Long> localDone = Collections.synchronizedSet(new HashSet<>());
+
+    private ExecutorService executor;
+
+    /**
+     * 启动后检查是否有被中断的任务，有则继续
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (!ragConfig.isEnabled() || stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            Map<Object, Object> job = stringRedisTemplate.opsForHash().entries(JOB_KEY);
+            if (ReindexProgress.Status.RUNNING.name().equals(job.get("status"))) {
+                boolean previousFullRebuild = Boolean.parseBoolean(String.valueOf(job.get("fullRebuild")));
+                log.warn("检测到未完成的批量重建索引任务，继续执行: fullRebuild={}", previousFullRebuild);
+                start(previousFullRebuild, false);
+            }
+        } catch (Exception e) {
+            log.error("恢复批量重建索引任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 启动批量重建索引（已在运行时直接返回当前进度）
+     *
+     * @param fullRebuild 是否忽略片段哈希、全部重新向量化（向量存储被清空时使用）
+     * @param restart     是否丢弃上一次被中断任务的完成记录、从头开始；false 时续跑（跳过已完成的项目）
+     * @return 当前进度
+     */
+    public ReindexProgress start(boolean fullRebuild, boolean restart) {
+        synchronized (lock) {
+            if (status == ReindexProgress.Status.RUNNING) {
+                return progress();
+            }
+            if (restart || !resumable()) {
+                clearCheckpoint();
+            }
+            Set<Long> done = loadDone();
+            List<Long> pendingAppIds = ProjectSourceScanner.listAppIds().stream()
+                    .filter(appId -> !done.contains(appId))
+                    .toList();
+
+            this.fullRebuild = fullRebuild;
+            stopRequested = false;
+            startTime = System.currentTimeMillis();
+            finishTime = 0;
+            total.set(pendingAppIds.size() + done.size());
+            resumed.set(done.size());
+            completed.set(0);
+            failed.set(0);
+            files.set(0);
+            status = ReindexProgress.Status.RUNNING;
+            saveJob();
+
+            if (executor != null) {
+                executor.shutdown();
+            }
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            executor.submit(() -> run(pendingAppIds));
+            log.info("🔁 [RAG重建] 批量重建索引启动: 待处理项目={}, 已完成(续跑跳过)={}, fullRebuild={}, 并发={}, 限流={}次/秒",
+                    pendingAppIds.size(), done.size(), fullRebuild,
+                    ragConfig.getIndexing().getReindexConcurrency(), ragConfig.getIndexing().getEmbedRatePerSecond());
+            return progress();
+        }
+    }
+
+    /**
+     * 请求停止：不再启动新项目，正在处理的项目完成后退出；完成记录保留，可续跑
+     *
+     * @return 当前进度
+     */
+    public ReindexProgress stop() {
+        stopRequested = true;
+        return progress();
+    }
+
+    /**
+     * 当前进度
+     */
+    public ReindexProgress progress() {
+        int done = resumed.get() + completed.get();
+        long end = finishTime > 0 ? finishTime : System.currentTimeMillis();
+        long elapsed = startTime > 0 ? end - startTime : 0;
+        double perMinute = elapsed > 0 ? completed.get() * 60000.0 / elapsed : 0;
+        int remaining = Math.max(0, total.get() - done - failed.get());
+        Long etaSeconds = perMinute > 0 && status == ReindexProgress.Status.RUNNING
+                ? Math.round(remaining / perMinute * 60) : null;
+        return ReindexProgress.builder()
+                .status(status)
+                .fullRebuild(fullRebuild)
+                .embeddingSpace(embeddingConfig.embeddingSpace())
+                .totalProjects(total.get())
+                .completedProjects(done)
+                .resumedProjects(resumed.get())
+                .failedProjects(failed.get())
+                .indexedFiles(files.get())
+                .elapsedMillis(elapsed)
+                .projectsPerMinute(Math.round(perMinute * 10) / 10.0)
+                .etaSeconds(etaSeconds)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 不清除 RUNNING 状态：重启后由 resumeInterrupted 继续
+        shuttingDown = true;
+        stopRequested = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(List<Long> appIds) {
+        Semaphore slots = new Semaphore(Math.max(1, ragConfig.getIndexing().getReindexConcurrency()));
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long appId : appIds) {
+                if (stopRequested) {
+                    break;
+                }
+                slots.acquire();
+                workers.submit(() -> {
+                    try {
+                        reindexProject(appId);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            finishTime = System.currentTimeMillis();
+            status = stopRequested ? ReindexProgress.Status.STOPPED : ReindexProgress.Status.COMPLETED;
+            if (!shuttingDown) {
+                saveJob();
+            }
+        }
+        log.info("🔁 [RAG重建] 批量重建索引结束: 状态={}, 完成={}/{}, 失败={}, 文件数={}, 耗时={}ms",
+                status, resumed.get() + completed.get(), total.get(), failed.get(), files.get(),
+                finishTime - startTime);
+    }
+
+    private void reindexProject(Long appId) {
+        try {
+            // 先领取版本号再读文件：读取期间发生的工具写入版本更新，不会被本次读到的旧内容覆盖
+            long version = codeIndexingPipeline.nextVersion();
+            Path root = ProjectSourceScanner.resolveProjectRoot(appId);
+            Map<String, String> sources = new LinkedHashMap<>();
+            if (root != null) {
+                ProjectSourceScanner.forEachSourceFile(root, vueCodeChunker::supports, sources::put);
+            }
+            int failedFiles = codeIndexingPipeline.indexNow(appId, sources, fullRebuild, version);
+            files.addAndGet(sources.size() - failedFiles);
+            if (failedFiles > 0) {
+                markFailed(appId);
+                log.warn("项目索引部分失败: appId={}, 失败文件数={}", appId, failedFiles);
+            } else {
+                markDone(appId);
+            }
+        } catch (Exception e) {
+            markFailed(appId);
+            log.error("项目索引失败: appId={}, error={}", appId, e.getMessage(), e);
+        }
+    }
+
+    private void markDone(Long appId) {
+        completed.incrementAndGet();
+        localDone.add(appId);
+        if (stringRedisTemplate != null) {
+            stringRedisTemplate.opsForSet().add(DONE_KEY, String.valueOf(appId));
+            stringRedisTemplate.opsForSet().remove(FAILED_KEY, String.valueOf(appId));
+        }
+    }
+
+    private void markFailed(Long appId) {
+        // 失败的项目不记入完成集合，续跑时会重试
+        failed.incrementAndGet();
+        if (stringRedisTemplate != null) {
+            stringRedisTemplate.opsForSet().add(FAILED_KEY, String.valueOf(appId));
+        }
+    }
+
+    /**
+     * 上一次任务是否被中断（运行中崩溃或手动停止）且属于当前向量空间，只有这种情况才续跑
+     */
+    private boolean resumable() {
+        if (stringRedisTemplate == null) {
+            return status == ReindexProgress.Status.STOPPED;
+        }
+        Map<Object, Object> job = stringRedisTemplate.opsForHash().entries(JOB_KEY);
+        Object previousStatus = job.get("status");
+        boolean interrupted = ReindexProgress.Status.RUNNING.name().equals(previousStatus)
+                || ReindexProgress.Status.STOPPED.name().equals(previousStatus);
+        return interrupted && embeddingConfig.embeddingSpace().equals(job.get("space"));
+    }
+
+    private Set<Long> loadDone() {
+        if (stringRedisTemplate == null) {
+            return new HashSet<>(localDone);
+        }
+        Set<String> members = stringRedisTemplate.opsForSet().members(DONE_KEY);
+        Set<Long> done = new HashSet<>();
+        if (members != null) {
+            members.forEach(member -> done.add(Long.parseLong(member)));
+        }
+        return done;
+    }
+
+    private void clearCheckpoint() {
+        localDone.clear();
+        if (stringRedisTemplate != null) {
+            stringRedisTemplate.delete(List.of(DONE_KEY, FAILED_KEY));
+        }
+    }
+
+    private void saveJob() {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        stringRedisTemplate.opsForHash().putAll(JOB_KEY, Map.of(
+                "status", status.name(),
+                "fullRebuild", String.valueOf(fullRebuild),
+                "space", embeddingConfig.embeddingSpace(),
+                "startTime", String.valueOf(startTime),
+                "updateTime", String.valueOf(System.currentTimeMillis())
+        ));
+    }
+}
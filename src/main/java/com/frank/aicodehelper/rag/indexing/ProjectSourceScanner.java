@@ -0,0 +1,128 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.constant.AppConstant;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 项目源码扫描
+ * 定位应用的项目目录并遍历其中可索引的源码文件，供词法索引重建、向量索引重建使用
+ */
+@Slf4j
+public final class ProjectSourceScanner {
+
+    /**
+     * 项目目录前缀（与 BaseTool 解析项目目录的规则一致）
+     */
+    private static final String[] PROJECT_DIR_PREFIXES = {"vue_project_", "html_", "multi_file_"};
+
+    /**
+     * 跳过的目录
+     */
+    private static final Set<String> IGNORED_DIRS = Set.of(
+            "node_modules", ".git", "dist", "build", "target", ".idea", ".vscode", "coverage"
+    );
+
+    /**
+     * 单个文件大小上限（超过则不索引，通常是打包产物或数据文件）
+     */
+    private static final long MAX_FILE_SIZE = 512 * 1024;
+
+    private ProjectSourceScanner() {
+    }
+
+    /**
+     * 解析应用的项目目录
+     *
+     * @param appId 应用ID
+     * @return 项目根目录，不存在返回 null
+     */
+    public static Path resolveProjectRoot(Long appId) {
+        for (String prefix : PROJECT_DIR_PREFIXES) {
+            Path root = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, prefix + appId);
+            if (Files.isDirectory(root)) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 列出磁盘上存在项目目录的全部应用
+     *
+     * @return 升序排列的应用ID
+     */
+    public static List<Long> listAppIds() {
+        Set<Long> appIds = new TreeSet<>();
+        Path outputRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR);
+        if (!Files.isDirectory(outputRoot)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> dirs = Files.list(outputRoot)) {
+            dirs.filter(Files::isDirectory).forEach(dir -> {
+                String name = dir.getFileName().toString();
+                for (String prefix : PROJECT_DIR_PREFIXES) {
+                    if (name.startsWith(prefix)) {
+                        try {
+                            appIds.add(Long.parseLong(name.substring(prefix.length())));
+                        } catch (NumberFormatException ignored) {
+                            // 非应用目录（如 vue_project_xxx_backup）
+                        }
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.warn("列出项目目录失败: {}, 错误: {}", outputRoot, e.getMessage());
+        }
+        return new ArrayList<>(appIds);
+    }
+
+    /**
+     * 遍历项目中的源码文件
+     *
+     * @param root     项目根目录
+     * @param filter   按相对路径过滤（如分块器是否支持）
+     * @param consumer 相对路径（/ 分隔）、文件内容
+     */
+    public static void forEachSourceFile(Path root, Predicate<String> filter, BiConsumer<String, String> consumer) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return IGNORED_DIRS.contains(dir.getFileName().toString())
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String relativePath = root.relativize(file).toString().replace('\\', '/');
+                    if (attrs.size() > MAX_FILE_SIZE || !filter.test(relativePath)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        consumer.accept(relativePath, Files.readString(file));
+                    } catch (IOException e) {
+                        log.debug("读取文件失败，跳过: {}", file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("遍历项目目录失败: {}, 错误: {}", root, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.frank.aicodehelper.rag.lexical;
+
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.indexing.ProjectSourceScanner;
+import com.frank.aicodehelper.rag.model.CodeContextDocument;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 代码片段 BM25 倒排索引
+ * 每个应用维护一份内存索引，文档粒度与向量存储中的片段一致（同一个 chunkId），便于与向量检索结果融合
+ * 索引由索引流水线在片段写入/删除时增量维护；服务重启或缓存回收后，首次访问时从项目目录重新分块构建
+ */
+@Slf4j
+@Component
+public class Bm25Index {
+
+    /**
+     * BM25 词频饱和参数
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 文档长度归一化参数
+     */
+    private static final double B = 0.75;
+
+    @Resource
+    private VueCodeChunker vueCodeChunker;
+
+    /**
+     * 应用索引缓存：appId -> 索引，长时间未访问自动回收
+     */
+    private final Cache<Long, AppIndex> indexCache = Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * BM25 检索
+     *
+     * @param appId 应用ID
+     * @param query 查询文本
+     * @param topK  最大返回数量
+     * @return 按得分降序排列的命中片段
+     */
+    public List<Hit> search(Long appId, String query, int topK) {
+        List<String> terms = CodeTokenizer.tokenize(query);
+        if (terms.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        return index(appId).search(new LinkedHashSet<>(terms), topK);
+    }
+
+    /**
+     * 用文件的最新片段替换索引中该文件的全部片段
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param chunks   文件分块结果
+     */
+    public void replaceFile(Long appId, String filePath, List<CodeContextDocument> chunks) {
+        index(appId).replace(filePath, chunks);
+    }
+
+    /**
+     * 删除文件的全部片段（索引尚未构建时忽略）
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     */
+    public void removeFile(Long appId, String filePath) {
+        AppIndex index = indexCache.getIfPresent(appId);
+        if (index != null) {
+            index.replace(filePath, List.of());
+        }
+    }
+
+    /**
+     * 丢弃应用的索引
+     *
+     * @param appId 应用ID
+     */
+    public void invalidate(Long appId) {
+        indexCache.invalidate(appId);
+    }
+
+    private AppIndex index(Long appId) {
+        return indexCache.get(appId, this::build);
+    }
+
+    /**
+     * 从项目目录重新分块构建索引
+     */
+    private AppIndex build(Long appId) {
+        AppIndex index = new AppIndex();
+        Path root = ProjectSourceScanner.resolveProjectRoot(appId);
+        if (root == null) {
+            return index;
+        }
+        long startTime = System.currentTimeMillis();
+        List<VueCodeChunker.SourceFile> files = new ArrayList<>();
+        ProjectSourceScanner.forEachSourceFile(root, vueCodeChunker::supports, (relativePath, content) ->
+                files.add(new VueCodeChunker.SourceFile(appId, relativePath, content)));
+        List<List<CodeContextDocument>> chunked = vueCodeChunker.chunkAll(files);
+        for (int i = 0; i < files.size(); i++) {
+            index.replace(files.get(i).filePath(), chunked.get(i));
+        }
+        log.info("词法索引构建完成: appId={}, 片段数={}, 耗时={}ms",
+                appId, index.size(), System.currentTimeMillis() - startTime);
+        return index;
+    }
+
+    /**
+     * 检索命中
+     *
+     * @param document 命中的片段
+     * @param score    BM25 得分
+     */
+    public record Hit(Document document, double score) {
+    }
+
+    /**
+     * 索引中的片段
+     *
+     * @param chunkId   片段ID（与向量存储中的 ID 一致）
+     * @param filePath  片段路径（Vue 分段为 file#section）
+     * @param chunkType 片段类型
+     * @param content   片段内容
+     * @param metadata  片段元数据
+     * @param terms     词 -> 词频
+     * @param length    词数
+     */
+    public record Document(String chunkId, String filePath, String chunkType, String content,
+                           Map<String, String> metadata, Map<String, Integer> terms, int length) {
+
+        /**
+         * 片段是否包含全部给定词
+         */
+        public boolean containsAll(Collection<String> required) {
+            return terms.keySet().containsAll(required);
+        }
+    }
+
+    /**
+     * 单个应用的索引
+     */
+    private static final class AppIndex {
+
+        /**
+         * 文件相对路径 -> 片段ID
+         */
+        private final Map<String, List<String>> files = new HashMap<>();
+
+        /**
+         * 片段ID -> 片段
+         */
+        private final Map<String, Document> documents = new HashMap<>();
+
+        /**
+         * 词 -> (片段ID -> 词频)
+         */
+        private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+
+        private long totalLength;
+
+        synchronized void replace(String filePath, List<CodeContextDocument> chunks) {
+            List<String> previous = files.remove(filePath);
+            if (previous != null) {
+                previous.forEach(this::removeDocument);
+            }
+            if (chunks.isEmpty()) {
+                return;
+            }
+            List<String> ids = new ArrayList<>(chunks.size());
+            for (CodeContextDocument chunk : chunks) {
+                Document document = toDocument(chunk);
+                removeDocument(document.chunkId());
+                documents.put(document.chunkId(), document);
+                document.terms().forEach((term, tf) ->
+                        postings.computeIfAbsent(term, k -> new HashMap<>()).put(document.chunkId(), tf));
+                totalLength += document.length();
+                ids.add(document.chunkId());
+            }
+            files.put(filePath, ids);
+        }
+
+        synchronized List<Hit> search(Set<String> terms, int topK) {
+            int n = documents.size();
+            if (n == 0) {
+                return List.of();
+            }
+            double avgLength = Math.max(1d, (double) totalLength / n);
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((chunkId, tf) -> {
+                    double norm = K1 * (1 - B + B * documents.get(chunkId).length() / avgLength);
+                    scores.merge(chunkId, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                });
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(topK)
+                    .map(entry -> new Hit(documents.get(entry.getKey()), entry.getValue()))
+                    .toList();
+        }
+
+        synchronized int size() {
+            return documents.size();
+        }
+
+        private void removeDocument(String chunkId) {
+            Document document = documents.remove(chunkId);
+            if (document == null) {
+                return;
+            }
+            totalLength -= document.length();
+            document.terms().keySet().forEach(term -> {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(chunkId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            });
+        }
+
+        private static Document toDocument(CodeContextDocument chunk) {
+            List<String> tokens = CodeTokenizer.tokenize(chunk.getContent());
+            // 路径本身也参与检索：查询 "NavBar" 应能命中 components/NavBar.vue
+            tokens.addAll(CodeTokenizer.tokenize(chunk.getFilePath()));
+            Map<String, Integer> terms = new HashMap<>();
+            tokens.forEach(token -> terms.merge(token, 1, Integer::sum));
+
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put("appId", String.valueOf(chunk.getAppId()));
+            metadata.put("chunkId", chunk.getChunkId());
+            metadata.put("filePath", chunk.getFilePath());
+            metadata.put("fileType", chunk.getFileType());
+            metadata.put("chunkType", chunk.getChunkType());
+            metadata.put("chunkIndex", String.valueOf(chunk.getChunkIndex()));
+            if (chunk.getMetadata() != null) {
+                chunk.getMetadata().forEach((k, v) -> {
+                    if (v != null) {
+                        metadata.put(k, v.toString());
+                    }
+                });
+            }
+            return new Document(chunk.getChunkId(), chunk.getFilePath(), chunk.getChunkType(),
+                    chunk.getContent(), metadata, terms, tokens.size());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.frank.aicodehelper.rag.lexical;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 面向代码的分词器
+ * - 标识符整体作为一个词（NavBar -> navbar，hero-title -> hero-title），同时拆出子词（nav、bar、hero、title）
+ * - 中文按相邻两字切分（导航栏 -> 导航、航栏）
+ * 索引和查询使用同一套规则，保证 "NavBar"、"nav-bar"、"navBar" 之间能互相命中子词
+ */
+public final class CodeTokenizer {
+
+    /**
+     * 标识符：字母/下划线/$ 开头，允许以 - 连接（CSS 类名、组件标签）
+     */
+    private static final Pattern WORD = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*(?:-[A-Za-z0-9_$]+)*");
+
+    /**
+     * 驼峰边界：fooBar、XMLHttp
+     */
+    private static final Pattern CAMEL_BOUNDARY = Pattern.compile("(?<=[a-z0-9])(?=[A-Z])|(?<=[A-Z])(?=[A-Z][a-z])");
+
+    private static final Pattern PART_SEPARATOR = Pattern.compile("[-_$]+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "an", "to", "of", "and", "or", "in", "is", "it", "for", "on", "with", "this", "that", "be"
+    );
+
+    private CodeTokenizer() {
+    }
+
+    /**
+     * 分词（保留重复，用于统计词频）
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        Matcher matcher = WORD.matcher(text);
+        while (matcher.find()) {
+            addWord(matcher.group(), tokens);
+        }
+        addCjkBigrams(text, tokens);
+        return tokens;
+    }
+
+    /**
+     * 提取查询中"像代码标识符"的词：驼峰、带 - 或 _ 的词，以及以 . # < @ 开头的词（CSS 选择器、组件标签、指令）
+     * 这类词在代码中几乎是精确出现的，词法检索比语义检索更可靠
+     *
+     * @return 小写后的标识符（去重，保持出现顺序）
+     */
+    public static Set<String> identifiers(String query) {
+        Set<String> identifiers = new LinkedHashSet<>();
+        if (query == null) {
+            return identifiers;
+        }
+        Matcher matcher = WORD.matcher(query);
+        while (matcher.find()) {
+            String word = matcher.group();
+            char before = matcher.start() > 0 ? query.charAt(matcher.start() - 1) : ' ';
+            boolean prefixed = before == '.' || before == '#' || before == '<' || before == '@';
+            boolean compound = word.indexOf('-') > 0 || word.indexOf('_') > 0
+                    || CAMEL_BOUNDARY.matcher(word).find();
+            if ((prefixed || compound) && word.length() >= 2) {
+                identifiers.add(word.toLowerCase(Locale.ROOT));
+            }
+        }
+        return identifiers;
+    }
+
+    private static void addWord(String word, List<String> tokens) {
+        String whole = word.toLowerCase(Locale.ROOT);
+        if (whole.length() < 2 || STOP_WORDS.contains(whole)) {
+            return;
+        }
+        tokens.add(whole);
+        for (String piece : PART_SEPARATOR.split(word)) {
+            for (String part : CAMEL_BOUNDARY.split(piece)) {
+                String lower = part.toLowerCase(Locale.ROOT);
+                if (lower.length() >= 2 && !lower.equals(whole) && !STOP_WORDS.contains(lower)) {
+                    tokens.add(lower);
+                }
+            }
+        }
+    }
+
+    private static void addCjkBigrams(String text, List<String> tokens) {
+        int runStart = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean cjk = i < text.length() && isCjk(text.charAt(i));
+            if (cjk && runStart < 0) {
+                runStart = i;
+            } else if (!cjk && runStart >= 0) {
+                if (i - runStart == 1) {
+                    tokens.add(text.substring(runStart, i));
+                } else {
+                    for (int j = runStart; j + 2 <= i; j++) {
+                        tokens.add(text.substring(j, j + 2));
+                    }
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        return c >= '一' && c <= '鿿';
+    }
+}
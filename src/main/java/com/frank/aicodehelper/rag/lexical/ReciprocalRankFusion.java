@@ -0,0 +1,54 @@
+package com.frank.aicodehelper.rag.lexical;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 倒数排名融合（RRF）
+ * score(d) = Σ weight_i / (k + rank_i(d))，rank 从 1 开始
+ * 只依赖名次，不需要把 BM25 得分和余弦相似度换算到同一量纲
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * 一路检索的排名
+     *
+     * @param ids    按相关度降序排列的片段ID
+     * @param weight 该路检索的权重
+     */
+    public record Ranking(List<String> ids, double weight) {
+    }
+
+    /**
+     * 融合多路排名
+     *
+     * @param k        平滑常数，越大名次差异的影响越小
+     * @param rankings 各路排名
+     * @return 片段ID -> 归一化融合得分（0-1，所有路都排第一时为 1），按得分降序
+     */
+    public static Map<String, Double> fuse(int k, List<Ranking> rankings) {
+        Map<String, Double> scores = new HashMap<>();
+        double maxScore = 0;
+        for (Ranking ranking : rankings) {
+            if (ranking.weight() <= 0) {
+                continue;
+            }
+            maxScore += ranking.weight() / (k + 1d);
+            List<String> ids = ranking.ids();
+            for (int i = 0; i < ids.size(); i++) {
+                scores.merge(ids.get(i), ranking.weight() / (k + i + 1d), Double::sum);
+            }
+        }
+        double norm = maxScore;
+        Map<String, Double> fused = new LinkedHashMap<>();
+        scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .forEach(entry -> fused.put(entry.getKey(), norm > 0 ? entry.getValue() / norm : 0d));
+        return fused;
+    }
+}
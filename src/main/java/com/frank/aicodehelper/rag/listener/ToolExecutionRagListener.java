@@ -2,25 +2,65 @@ package com.frank.aicodehelper.rag.listener;
 
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.indexing.KeyedOrderedExecutor;
+import com.frank.aicodehelper.rag.indexing.ProjectSourceScanner;
 import com.frank.aicodehelper.rag.service.ProjectContextService;
 import dev.langchain4j.service.tool.ToolExecution;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
 /**
  * 工具执行 RAG 监听器
  * 在文件写入/修改/删除后触发向量索引更新
  * 实现方案A：工具执行后实时（异步）索引
+ * 索引任务按 appId + 文件路径派发到有序执行器：同一文件的任务按工具执行顺序串行处理，不同文件并行；
+ * 派发前领取版本号，即使任务因队列满在调用线程上执行，旧版本也不会覆盖新版本
  */
 @Slf4j
 @Component
 public class ToolExecutionRagListener {
 
+    /**
+     * 触发索引更新的工具
+     */
+    private static final Set<String> INDEXED_TOOLS = Set.of("writeFile", "modifyFile", "deleteFile");
+
+    /**
+     * 队列满时提交线程的最长等待时间（毫秒）
+     */
+    private static final long DISPATCH_TIMEOUT_MILLIS = 200;
+
     @Resource
     private ProjectContextService projectContextService;
 
+    @Resource
+    private RagConfig ragConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private KeyedOrderedExecutor indexExecutor;
+
+    @PostConstruct
+    public void init() {
+        indexExecutor = new KeyedOrderedExecutor("rag-index", ragConfig.getIndexing().getDispatchCapacity(),
+                DISPATCH_TIMEOUT_MILLIS, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexExecutor.close();
+    }
+
     /**
      * 处理工具执行事件
      * 异步执行，不阻塞主流程
@@ -28,94 +68,85 @@ public class ToolExecutionRagListener {
      * @param toolExecution 工具执行信息
      * @param appId         应用ID
      */
-    @Async
     public void onToolExecuted(ToolExecution toolExecution, Long appId) {
         if (!projectContextService.isEnabled()) {
             return;
         }
 
         String toolName = toolExecution.request().name();
+        if (!INDEXED_TOOLS.contains(toolName)) {
+            // 其他工具不触发索引更新
+            log.trace("工具 {} 不触发 RAG 索引更新", toolName);
+            return;
+        }
         String arguments = toolExecution.request().arguments();
-
+        JSONObject args;
         try {
-            switch (toolName) {
-                case "writeFile" -> handleWriteFile(appId, arguments);
-                case "modifyFile" -> handleModifyFile(appId, arguments, toolExecution.result());
-                case "deleteFile" -> handleDeleteFile(appId, arguments);
-                default -> {
-                    // 其他工具不触发索引更新
-                    log.trace("工具 {} 不触发 RAG 索引更新", toolName);
-                }
-            }
+            args = JSONUtil.parseObj(arguments);
         } catch (Exception e) {
-            log.error("RAG 索引更新失败: appId={}, tool={}, error={}",
-                    appId, toolName, e.getMessage(), e);
+            log.warn("{} 参数解析失败: {}", toolName, arguments);
+            return;
         }
+        // 工具参数名称为 relativeFilePath，这里兼容 filePath/relativeFilePath 两种写法
+        String filePath = args.getStr("relativeFilePath", args.getStr("filePath"));
+        if (filePath == null) {
+            log.warn("{} 参数不完整: {}", toolName, arguments);
+            return;
+        }
+
+        // 派发前领取版本号：版本顺序即工具执行顺序
+        long version = projectContextService.nextIndexVersion();
+        indexExecutor.submit(appId + ":" + filePath, () -> {
+            try {
+                switch (toolName) {
+                    case "writeFile" -> handleWriteFile(appId, filePath, args, version);
+                    case "modifyFile" -> handleModifyFile(appId, filePath, version);
+                    default -> handleDeleteFile(appId, filePath, version);
+                }
+            } catch (Exception e) {
+                log.error("RAG 索引更新失败: appId={}, tool={}, error={}",
+                        appId, toolName, e.getMessage(), e);
+            }
+        });
     }
 
     /**
      * 处理 writeFile 工具执行
-     * 从工具参数中提取文件路径和内容，触发索引
+     * 从工具参数中提取文件内容，触发索引
      */
-    private void handleWriteFile(Long appId, String arguments) {
-        JSONObject args = JSONUtil.parseObj(arguments);
-        String filePath = args.getStr("relativeFilePath");
+    private void handleWriteFile(Long appId, String filePath, JSONObject args, long version) {
         String content = args.getStr("content");
-
-        if (filePath == null || content == null) {
-            log.warn("writeFile 参数不完整: {}", arguments);
+        if (content == null) {
+            log.warn("writeFile 参数不完整: file={}", filePath);
             return;
         }
 
         log.info("📥 [RAG索引] 触发索引更新 [writeFile]: appId={}, file={}, 内容长度={}",
                 appId, filePath, content.length());
-        projectContextService.indexCodeFile(appId, filePath, content);
+        projectContextService.indexCodeFile(appId, filePath, content, version);
     }
 
     /**
      * 处理 modifyFile 工具执行
-     * modifyFile 通常只替换部分内容，需要重新读取整个文件来更新索引
-     * 这里从工具参数中获取修改后的内容
+     * modifyFile 只替换部分内容，工具结果也只是成功提示，需要从文件系统重新读取整个文件来更新索引
      */
-    private void handleModifyFile(Long appId, String arguments, String result) {
-        JSONObject args = JSONUtil.parseObj(arguments);
-        // modifyFile 工具参数名称为 relativeFilePath，这里兼容 filePath/relativeFilePath 两种写法
-        String filePath = args.getStr("relativeFilePath", args.getStr("filePath"));
-
-        // modifyFile 的参数结构：relativeFilePath, oldContent, newContent
-        // 我们需要获取修改后的完整文件内容
-        // 但工具执行后的 result 通常只是成功提示，不含完整内容
-        // 所以这里需要从文件系统重新读取
-
-        if (filePath == null) {
-            log.warn("modifyFile 参数不完整: {}", arguments);
-            return;
-        }
-
+    private void handleModifyFile(Long appId, String filePath, long version) {
         log.info("📝 [RAG索引] 触发索引更新 [modifyFile]: appId={}, file={}", appId, filePath);
 
         // 从文件系统读取最新内容
         String content = readFileFromDisk(appId, filePath);
         if (content != null) {
             log.info("📝 [RAG索引] 已读取修改后文件内容: file={}, 长度={}", filePath, content.length());
-            projectContextService.indexCodeFile(appId, filePath, content);
+            projectContextService.indexCodeFile(appId, filePath, content, version);
         }
     }
 
     /**
      * 处理 deleteFile 工具执行
      */
-    private void handleDeleteFile(Long appId, String arguments) {
-        JSONObject args = JSONUtil.parseObj(arguments);
-        String filePath = args.getStr("relativeFilePath");
-
-        if (filePath == null) {
-            log.warn("deleteFile 参数不完整: {}", arguments);
-            return;
-        }
-
+    private void handleDeleteFile(Long appId, String filePath, long version) {
         log.info("🗑️ [RAG索引] 触发索引删除 [deleteFile]: appId={}, file={}", appId, filePath);
-        projectContextService.deleteByFilePath(appId, filePath);
+        projectContextService.deleteByFilePath(appId, filePath, version);
     }
 
     /**
@@ -124,17 +155,12 @@ public class ToolExecutionRagListener {
      */
     private String readFileFromDisk(Long appId, String relativeFilePath) {
         try {
-            // 构建文件路径（与 BaseTool.resolveFilePath 逻辑一致）
-            String codeOutputDir = System.getProperty("user.dir") + "/tmp/code_output";
-            String[] prefixes = {"vue_project_", "html_", "multi_file_"};
-
-            for (String prefix : prefixes) {
-                java.nio.file.Path projectRoot = java.nio.file.Paths.get(codeOutputDir, prefix + appId);
-                if (java.nio.file.Files.exists(projectRoot)) {
-                    java.nio.file.Path filePath = projectRoot.resolve(relativeFilePath);
-                    if (java.nio.file.Files.exists(filePath) && java.nio.file.Files.isRegularFile(filePath)) {
-                        return java.nio.file.Files.readString(filePath);
-                    }
+            // 项目目录解析规则与 BaseTool 一致
+            Path projectRoot = ProjectSourceScanner.resolveProjectRoot(appId);
+            if (projectRoot != null) {
+                Path filePath = projectRoot.resolve(relativeFilePath).normalize();
+                if (filePath.startsWith(projectRoot) && Files.isRegularFile(filePath)) {
+                    return Files.readString(filePath);
                 }
             }
 
@@ -147,5 +173,3 @@ public class ToolExecutionRagListener {
         }
     }
 }
-
-
@@ -0,0 +1,75 @@
+package com.frank.aicodehelper.rag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量重建索引进度
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReindexProgress {
+
+    /**
+     * 任务状态
+     */
+    private Status status;
+
+    /**
+     * 是否忽略片段哈希、全部重新向量化
+     */
+    private boolean fullRebuild;
+
+    /**
+     * 当前向量空间
+     */
+    private String embeddingSpace;
+
+    /**
+     * 项目总数（含续跑时跳过的已完成项目）
+     */
+    private int totalProjects;
+
+    /**
+     * 已完成项目数（含续跑时跳过的已完成项目）
+     */
+    private int completedProjects;
+
+    /**
+     * 续跑时跳过的已完成项目数
+     */
+    private int resumedProjects;
+
+    /**
+     * 失败项目数（续跑时会重试）
+     */
+    private int failedProjects;
+
+    /**
+     * 本次已索引的文件数
+     */
+    private long indexedFiles;
+
+    /**
+     * 已耗时（毫秒）
+     */
+    private long elapsedMillis;
+
+    /**
+     * 本次处理速度（项目/分钟）
+     */
+    private double projectsPerMinute;
+
+    /**
+     * 预计剩余时间（秒），无法估算时为 null
+     */
+    private Long etaSeconds;
+
+    public enum Status {
+        IDLE, RUNNING, STOPPED, COMPLETED
+    }
+}
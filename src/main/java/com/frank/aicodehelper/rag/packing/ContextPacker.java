@@ -0,0 +1,468 @@
+package com.frank.aicodehelper.rag.packing;
+
+import cn.hutool.core.util.StrUtil;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.indexing.ProjectSourceScanner;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 检索上下文打包器
+ * 在 token 预算内把检索到的片段组织成注入消息的上下文：
+ * 1. 同一文件（Vue 为同一区块）的片段归为一组，组得分 = 最高分 + 其余命中的加成
+ * 2. 区块/文件不超过 wholeSectionMaxTokens 时整段注入（可直接用于 modifyFile），否则注入命中的片段，相邻或重叠的片段按行号合并
+ * 3. 得分最高的组优先，其余按 得分/token 从高到低装入，装不下时退回更小的候选（整段 -> 片段），直到预算用完
+ * token 按本地 BPE 分词器（o200k）估算，不需要调用模型接口
+ */
+@Slf4j
+@Component
+public class ContextPacker {
+
+    /**
+     * 本地分词器（jtokkit 实现，线程安全）
+     */
+    private static final TokenCountEstimator TOKEN_ESTIMATOR =
+            new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_4_O);
+
+    /**
+     * 同组每多一个命中片段的得分加成
+     */
+    private static final double EXTRA_HIT_BONUS = 0.1;
+
+    @Resource
+    private RagConfig ragConfig;
+
+    /**
+     * 打包结果
+     *
+     * @param text       注入文本
+     * @param tokens     注入文本的 token 数
+     * @param blocks     注入的代码块数
+     * @param candidates 候选片段数
+     * @param omitted    因预算不足未注入的组数
+     */
+    public record PackedContext(String text, int tokens, int blocks, int candidates, int omitted) {
+    }
+
+    /**
+     * 估算文本 token 数
+     */
+    public int countTokens(String text) {
+        return StrUtil.isEmpty(text) ? 0 : TOKEN_ESTIMATOR.estimateTokenCountInText(text);
+    }
+
+    /**
+     * 按行截断文本，使其（含截断提示）不超过 token 预算
+     *
+     * @param text        文本
+     * @param tokenBudget token 预算
+     * @return 未超出预算时返回原文本
+     */
+    public String truncateToTokens(String text, int tokenBudget) {
+        if (countTokens(text) <= tokenBudget) {
+            return text;
+        }
+        String marker = "\n...(内容已截断)\n";
+        int budget = tokenBudget - countTokens(marker);
+        String[] lines = text.split("\n", -1);
+        int keep = lines.length;
+        String result = text;
+        while (keep > 0 && countTokens(result) > budget) {
+            keep = keep * 3 / 4;
+            result = String.join("\n", Arrays.copyOf(lines, keep));
+        }
+        return keep == 0 ? "" : result + marker;
+    }
+
+    /**
+     * 在 token 预算内打包检索片段
+     *
+     * @param appId       应用ID（用于读取完整区块）
+     * @param candidates  按得分降序排列的检索片段
+     * @param tokenBudget token 预算
+     * @return 打包结果
+     */
+    public PackedContext pack(Long appId, List<ContextChunk> candidates, int tokenBudget) {
+        if (candidates == null || candidates.isEmpty() || tokenBudget <= 0) {
+            return new PackedContext("", 0, 0, candidates == null ? 0 : candidates.size(), 0);
+        }
+
+        // 1. 按文件/区块分组，为每组准备从大到小的候选注入方式
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (ContextChunk chunk : candidates) {
+            ChunkKey key = ChunkKey.parse(chunk.getFilePath());
+            groups.computeIfAbsent(key.groupKey(), k -> new Group(key)).chunks.add(chunk);
+        }
+        List<Group> ordered = new ArrayList<>(groups.values());
+        for (Group group : ordered) {
+            group.options = buildOptions(appId, group);
+        }
+
+        // 2. 最高分的组优先，其余按得分/token 降序
+        List<Group> queue = new ArrayList<>(ordered);
+        queue.sort(Comparator.comparingDouble(Group::score).reversed());
+        if (queue.size() > 2) {
+            queue.subList(1, queue.size()).sort(Comparator.comparingDouble(Group::density).reversed());
+        }
+
+        StringBuilder text = new StringBuilder();
+        int used = 0;
+        int blocks = 0;
+        int omitted = 0;
+        for (Group group : queue) {
+            int remaining = tokenBudget - used;
+            List<Block> chosen = choose(group, remaining);
+            if (chosen.isEmpty() && blocks == 0) {
+                // 预算连最小的片段都放不下：截断最相关的片段，保证至少注入一段
+                Block truncated = truncate(group.options.get(group.options.size() - 1).get(0), remaining);
+                chosen = truncated == null ? List.of() : List.of(truncated);
+            }
+            if (chosen.isEmpty()) {
+                omitted++;
+                continue;
+            }
+            for (Block block : chosen) {
+                text.append(block.text());
+                used += block.tokens();
+                blocks++;
+            }
+        }
+        return new PackedContext(text.toString(), used, blocks, candidates.size(), omitted);
+    }
+
+    /**
+     * 选择组内能装进剩余预算的最大注入方式；片段方式下按得分逐个装入
+     */
+    private List<Block> choose(Group group, int remaining) {
+        for (List<Block> option : group.options) {
+            int tokens = option.stream().mapToInt(Block::tokens).sum();
+            if (tokens <= remaining) {
+                return option;
+            }
+        }
+        List<Block> spans = new ArrayList<>(group.options.get(group.options.size() - 1));
+        spans.sort(Comparator.comparingDouble(Block::score).reversed());
+        List<Block> chosen = new ArrayList<>();
+        int used = 0;
+        for (Block span : spans) {
+            if (used + span.tokens() <= remaining) {
+                chosen.add(span);
+                used += span.tokens();
+            }
+        }
+        chosen.sort(Comparator.comparingInt(Block::startLine));
+        return chosen;
+    }
+
+    /**
+     * 候选注入方式（从大到小）：已是完整文件/区块的片段；可整段注入的完整区块；合并后的命中片段
+     */
+    private List<List<Block>> buildOptions(Long appId, Group group) {
+        List<List<Block>> options = new ArrayList<>();
+        ChunkKey key = group.key;
+        double score = group.score();
+        Optional<ContextChunk> whole = group.chunks.stream()
+                .filter(chunk -> ChunkKey.parse(chunk.getFilePath()).isWhole())
+                .findFirst();
+        if (whole.isPresent()) {
+            options.add(List.of(render(key, whole.get().getContent(), score, Kind.WHOLE, 0, 0, List.of())));
+            return options;
+        }
+
+        String section = loadSection(appId, key);
+        if (section != null && countTokens(section) <= ragConfig.getRetrieval().getWholeSectionMaxTokens()) {
+            options.add(List.of(render(key, section, score, Kind.WHOLE, 0, 0, List.of())));
+        }
+        List<Block> spans = new ArrayList<>();
+        for (Span span : mergeSpans(group.chunks)) {
+            spans.add(render(key, span.content(), span.score(), Kind.PART, span.startLine(), span.endLine(), span.symbols()));
+        }
+        options.add(spans);
+        return options;
+    }
+
+    /**
+     * 按行号合并相邻或重叠的片段
+     */
+    private static List<Span> mergeSpans(List<ContextChunk> chunks) {
+        List<Span> spans = new ArrayList<>();
+        for (ContextChunk chunk : chunks) {
+            spans.add(Span.of(chunk));
+        }
+        spans.sort(Comparator.comparingInt(Span::startLine));
+        List<Span> merged = new ArrayList<>();
+        for (Span span : spans) {
+            Span last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.hasLines() && span.hasLines() && span.startLine() <= last.endLine() + 1) {
+                merged.set(merged.size() - 1, last.merge(span));
+            } else {
+                merged.add(span);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 从磁盘读取片段所在的完整区块（Vue 的 template/script/style）或完整文件
+     */
+    private static String loadSection(Long appId, ChunkKey key) {
+        Path root = ProjectSourceScanner.resolveProjectRoot(appId);
+        if (root == null) {
+            return null;
+        }
+        Path file = root.resolve(key.basePath()).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(file);
+            if (key.section() == null) {
+                return content;
+            }
+            if (!VueCodeChunker.VUE_SECTIONS.contains(key.section())) {
+                return null;
+            }
+            int[] range = VueCodeChunker.locateSection(content, key.section());
+            return range == null ? null : content.substring(range[0], range[1]);
+        } catch (Exception e) {
+            log.debug("读取完整区块失败: {}, {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 截断代码块使其不超过预算：先按行截断，只剩一行仍超出时按字符截断该行
+     *
+     * @return 截断后的代码块；预算连代码块标题都放不下时返回 null
+     */
+    private Block truncate(Block block, int budget) {
+        String[] lines = block.content().split("\n", -1);
+        int keep = lines.length;
+        Block result = block;
+        while (keep > 1 && result.tokens() > budget) {
+            keep = Math.max(1, keep * 3 / 4);
+            result = renderTruncated(block, String.join("\n", Arrays.copyOf(lines, keep)), keep);
+        }
+        if (result.tokens() <= budget) {
+            return result;
+        }
+        // 单行过长：二分查找能放进预算的最长前缀
+        String line = lines[0];
+        int low = 0;
+        int high = line.length();
+        Block fitted = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Block candidate = renderTruncated(block, line.substring(0, mid), 1);
+            if (candidate.tokens() <= budget) {
+                fitted = candidate;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return fitted == null || fitted.content().isEmpty() ? null : fitted;
+    }
+
+    private Block renderTruncated(Block block, String content, int keep) {
+        return render(block.key(), content, block.score(), Kind.TRUNCATED, block.startLine(),
+                block.startLine() > 0 ? block.startLine() + keep - 1 : 0, block.symbols());
+    }
+
+    /**
+     * 渲染注入的代码块，标注内容完整性：完整内容可直接用于 modifyFile，片段需要时用 readFileRange 补充上下文
+     */
+    private Block render(ChunkKey key, String content, double score, Kind kind,
+                         int startLine, int endLine, List<String> symbols) {
+        StringBuilder sb = new StringBuilder();
+        String displayPath = key.basePath();
+        switch (kind) {
+            case WHOLE -> {
+                if (key.section() != null) {
+                    sb.append(String.format("📄 [%s] <%s>部分 相关度: %.2f\n", displayPath, key.section(), score));
+                    sb.append("✅ 此为文件的 ").append(key.section()).append(" 部分，内容完整，可直接用于 modifyFile\n");
+                } else {
+                    sb.append(String.format("📄 [%s] 相关度: %.2f\n", displayPath, score));
+                    sb.append("✅ 内容完整，可直接用于 modifyFile，无需调用 readFile\n");
+                }
+            }
+            case PART -> {
+                sb.append(String.format("📄 [%s]%s 相关度: %.2f\n", displayPath, lineLabel(startLine, endLine), score));
+                sb.append("✂️ 此为文件片段");
+                if (!symbols.isEmpty()) {
+                    sb.append("（").append(String.join(", ", symbols)).append("）");
+                }
+                sb.append("，内容与文件一致，可直接作为 modifyFile 的原内容；需要更多上下文请调用 readFileRange\n");
+            }
+            case TRUNCATED -> {
+                sb.append(String.format("📄 [%s]%s 相关度: %.2f\n", displayPath, lineLabel(startLine, endLine), score));
+                sb.append("⚠️ 内容已截断，如需修改此文件请先调用 readFileRange 或 readFile 获取完整内容\n");
+            }
+        }
+        sb.append("```").append(languageTag(displayPath)).append("\n");
+        sb.append(content);
+        if (!content.endsWith("\n")) {
+            sb.append("\n");
+        }
+        sb.append("```\n\n");
+        String text = sb.toString();
+        return new Block(key, content, text, countTokens(text), score, startLine, endLine, symbols);
+    }
+
+    private static String lineLabel(int startLine, int endLine) {
+        return startLine > 0 ? String.format(" 第 %d-%d 行", startLine, endLine) : "";
+    }
+
+    /**
+     * 根据文件路径获取代码块语言标识
+     */
+    private static String languageTag(String filePath) {
+        String lowerPath = filePath.toLowerCase();
+        if (lowerPath.endsWith(".vue")) return "vue";
+        if (lowerPath.endsWith(".js")) return "javascript";
+        if (lowerPath.endsWith(".ts")) return "typescript";
+        if (lowerPath.endsWith(".css")) return "css";
+        if (lowerPath.endsWith(".json")) return "json";
+        if (lowerPath.endsWith(".html")) return "html";
+        return "";
+    }
+
+    private enum Kind {
+        WHOLE, PART, TRUNCATED
+    }
+
+    /**
+     * 渲染后的代码块
+     */
+    private record Block(ChunkKey key, String content, String text, int tokens, double score,
+                         int startLine, int endLine, List<String> symbols) {
+    }
+
+    /**
+     * 片段键解析：Vue 为 file#section 或 file#section:符号，其他文件为 file 或 file#符号
+     *
+     * @param basePath 文件相对路径
+     * @param section  Vue 区块名，非 Vue 文件为 null
+     * @param whole    片段是否为完整文件/区块
+     */
+    private record ChunkKey(String basePath, String section, boolean whole) {
+
+        static ChunkKey parse(String chunkKey) {
+            int hash = chunkKey.indexOf('#');
+            if (hash < 0) {
+                return new ChunkKey(chunkKey, null, true);
+            }
+            String basePath = chunkKey.substring(0, hash);
+            String rest = chunkKey.substring(hash + 1);
+            if (!basePath.endsWith(".vue")) {
+                return new ChunkKey(basePath, null, false);
+            }
+            int colon = rest.indexOf(':');
+            return colon < 0
+                    ? new ChunkKey(basePath, rest, true)
+                    : new ChunkKey(basePath, rest.substring(0, colon), false);
+        }
+
+        String groupKey() {
+            return section == null ? basePath : basePath + "#" + section;
+        }
+
+        boolean isWhole() {
+            return whole;
+        }
+    }
+
+    /**
+     * 同一文件/区块的命中片段
+     */
+    private static final class Group {
+
+        private final ChunkKey key;
+
+        private final List<ContextChunk> chunks = new ArrayList<>();
+
+        private List<List<Block>> options = List.of();
+
+        private Group(ChunkKey key) {
+            this.key = key;
+        }
+
+        double score() {
+            double max = 0;
+            for (ContextChunk chunk : chunks) {
+                max = Math.max(max, chunk.getScore() == null ? 0 : chunk.getScore());
+            }
+            return max + EXTRA_HIT_BONUS * (chunks.size() - 1);
+        }
+
+        /**
+         * 得分/token：按首选注入方式计算
+         */
+        double density() {
+            int tokens = options.isEmpty() ? 1 : options.get(0).stream().mapToInt(Block::tokens).sum();
+            return score() / Math.max(1, tokens);
+        }
+    }
+
+    /**
+     * 带行号的片段（行号来自分块元数据，旧索引没有行号时不参与合并）
+     */
+    private record Span(List<String> lines, String content, double score, int startLine, int endLine,
+                        List<String> symbols) {
+
+        static Span of(ContextChunk chunk) {
+            Map<String, String> metadata = chunk.getMetadata() == null ? Map.of() : chunk.getMetadata();
+            int startLine = parseInt(metadata.get("startLine"));
+            int endLine = parseInt(metadata.get("endLine"));
+            List<String> symbols = StrUtil.isBlank(metadata.get("symbols"))
+                    ? List.of() : List.of(metadata.get("symbols").split(","));
+            String content = chunk.getContent();
+            List<String> lines = new ArrayList<>(List.of(content.split("\n", -1)));
+            if (content.endsWith("\n")) {
+                lines.remove(lines.size() - 1);
+            }
+            // 行数与行号不一致（内容不是整行）时不参与合并
+            if (startLine <= 0 || endLine - startLine + 1 != lines.size()) {
+                startLine = 0;
+                endLine = 0;
+            }
+            double score = chunk.getScore() == null ? 0 : chunk.getScore();
+            return new Span(lines, content, score, startLine, endLine, symbols);
+        }
+
+        boolean hasLines() {
+            return startLine > 0;
+        }
+
+        Span merge(Span next) {
+            List<String> mergedLines = new ArrayList<>(lines);
+            int skip = endLine - next.startLine + 1;
+            if (skip < next.lines.size()) {
+                mergedLines.addAll(next.lines.subList(Math.max(0, skip), next.lines.size()));
+            }
+            List<String> mergedSymbols = new ArrayList<>(symbols);
+            next.symbols.stream().filter(symbol -> !mergedSymbols.contains(symbol)).forEach(mergedSymbols::add);
+            int mergedEnd = Math.max(endLine, next.endLine);
+            return new Span(mergedLines, String.join("\n", mergedLines) + "\n", Math.max(score, next.score),
+                    startLine, mergedEnd, mergedSymbols);
+        }
+
+        private static int parseInt(String value) {
+            try {
+                return value == null ? 0 : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
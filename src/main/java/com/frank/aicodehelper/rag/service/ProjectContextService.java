@@ -19,6 +19,24 @@ public interface ProjectContextService {
      */
     void indexCodeFile(Long appId, String filePath, String content);
 
+    /**
+     * 索引代码文件（带版本号，旧版本晚到时被丢弃）
+     *
+     * @param appId    应用ID
+     * @param filePath 文件相对路径
+     * @param content  文件内容
+     * @param version  文件变化发生时领取的版本号（见 nextIndexVersion）
+     */
+    void indexCodeFile(Long appId, String filePath, String content, long version);
+
+    /**
+     * 领取索引版本号
+     * 应在文件变化发生时、异步派发索引任务之前领取
+     *
+     * @return 单调递增的版本号
+     */
+    long nextIndexVersion();
+
     /**
      * 搜索相关代码上下文
      *
@@ -46,6 +64,13 @@ public interface ProjectContextService {
      */
     void deleteByAppId(Long appId);
 
+    /**
+     * 登记新建的应用：其索引从一开始就完整登记，之后文件的删除/替换不需要按元数据过滤检索
+     *
+     * @param appId 应用ID
+     */
+    void trackNewApp(Long appId);
+
     /**
      * 删除指定文件的索引
      *
@@ -54,6 +79,15 @@ public interface ProjectContextService {
      */
     void deleteByFilePath(Long appId, String filePath);
 
+    /**
+     * 删除指定文件的索引（带版本号，旧版本晚到时被丢弃）
+     *
+     * @param appId    应用ID
+     * @param filePath 文件路径
+     * @param version  文件变化发生时领取的版本号（见 nextIndexVersion）
+     */
+    void deleteByFilePath(Long appId, String filePath, long version);
+
     /**
      * 检查 RAG 是否启用
      *
@@ -1,6 +1,9 @@
 package com.frank.aicodehelper.rag.service;
 
 import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+
+import java.util.List;
 
 /**
  * RAG 消息增强服务接口
@@ -18,6 +21,29 @@ public interface RagEnhancedMessageService {
      * @return 增强后的用户消息
      */
     String enhanceMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType);
+
+    /**
+     * 检索与用户消息相关的代码片段（只读，可与项目摘要生成并行执行）
+     *
+     * @param userMessage 原始用户消息
+     * @param appId       应用ID
+     * @param codeGenType 代码生成类型
+     * @return 候选代码片段，非 VUE_PROJECT 类型或 RAG 未启用时返回空列表
+     */
+    List<ContextChunk> retrieveContext(String userMessage, Long appId, CodeGenTypeEnum codeGenType);
+
+    /**
+     * 用已经得到的项目摘要和检索结果组装增强消息
+     *
+     * @param userMessage    原始用户消息
+     * @param appId          应用ID
+     * @param codeGenType    代码生成类型
+     * @param projectSummary 项目结构摘要，可为空
+     * @param chunks         检索到的候选代码片段，可为空
+     * @return 增强后的用户消息
+     */
+    String assembleMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType,
+                           String projectSummary, List<ContextChunk> chunks);
 }
 
 
@@ -1,10 +1,14 @@
 package com.frank.aicodehelper.rag.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
 import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
 import com.frank.aicodehelper.rag.config.RagConfig;
-import com.frank.aicodehelper.rag.model.CodeContextDocument;
+import com.frank.aicodehelper.rag.indexing.ChunkHashRegistry;
+import com.frank.aicodehelper.rag.indexing.CodeIndexingPipeline;
+import com.frank.aicodehelper.rag.lexical.Bm25Index;
+import com.frank.aicodehelper.rag.lexical.CodeTokenizer;
+import com.frank.aicodehelper.rag.lexical.ReciprocalRankFusion;
 import com.frank.aicodehelper.rag.model.ContextChunk;
 import com.frank.aicodehelper.rag.service.ProjectContextService;
 import dev.langchain4j.data.document.Metadata;
@@ -16,23 +20,23 @@ import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import redis.clients.jedis.exceptions.JedisDataException;
 
 import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
 
 /**
  * 项目上下文服务实现
- * 使用 LangChain4j 进行向量化索引和检索
+ * 使用 LangChain4j 进行向量化索引和检索；检索时可同时走 BM25 词法检索，两路排名按 RRF 融合
  */
 @Slf4j
 @Service
@@ -50,9 +54,28 @@ public class ProjectContextServiceImpl implements ProjectContextService {
     @Resource
     private RagConfig ragConfig;
 
+    @Resource
+    private CodeIndexingPipeline codeIndexingPipeline;
+
+    @Resource
+    private ChunkHashRegistry chunkHashRegistry;
+
+    @Resource
+    private RetrievalCache retrievalCache;
+
+    @Resource
+    private Bm25Index bm25Index;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     @Override
-    @Async
     public void indexCodeFile(Long appId, String filePath, String content) {
+        indexCodeFile(appId, filePath, content, nextIndexVersion());
+    }
+
+    @Override
+    public void indexCodeFile(Long appId, String filePath, String content, long version) {
         if (!isEnabled()) {
             log.debug("RAG 未启用，跳过索引");
             return;
@@ -69,63 +92,13 @@ public class ProjectContextServiceImpl implements ProjectContextService {
             return;
         }
 
-        try {
-            // 1. 先删除该文件的旧索引
-            deleteByFilePath(appId, filePath);
-
-            // 2. 对文件进行分块
-            List<CodeContextDocument> chunks = vueCodeChunker.chunk(appId, filePath, content);
-
-            if (CollUtil.isEmpty(chunks)) {
-                log.debug("分块结果为空，跳过索引: {}", filePath);
-                return;
-            }
-
-            // 3. 批量向量化并存储
-            for (CodeContextDocument chunk : chunks) {
-                indexChunk(chunk);
-            }
-
-            log.info("✅ [RAG索引] 索引完成: appId={}, file={}, 分片数={}", appId, filePath, chunks.size());
-        } catch (Exception e) {
-            log.error("RAG 索引失败: appId={}, file={}, error={}",
-                    appId, filePath, e.getMessage(), e);
-        }
+        // 交给索引流水线：防抖合并后批量向量化、批量写入
+        codeIndexingPipeline.submit(appId, filePath, content, version);
     }
 
-    /**
-     * 索引单个代码片段
-     */
-    private void indexChunk(CodeContextDocument chunk) {
-        // 1. 生成嵌入向量
-        Embedding embedding = dashScopeEmbeddingModel.embed(chunk.getContent()).content();
-
-        // 2. 构建元数据
-        Metadata metadata = new Metadata();
-        metadata.put("appId", chunk.getAppId().toString());
-        metadata.put("chunkId", chunk.getChunkId());
-        metadata.put("filePath", chunk.getFilePath());
-        metadata.put("fileType", chunk.getFileType());
-        metadata.put("chunkType", chunk.getChunkType());
-        metadata.put("chunkIndex", String.valueOf(chunk.getChunkIndex()));
-
-        // 添加扩展元数据
-        if (chunk.getMetadata() != null) {
-            chunk.getMetadata().forEach((k, v) -> {
-                if (v != null) {
-                    metadata.put(k, v.toString());
-                }
-            });
-        }
-
-        // 3. 创建文本段
-        TextSegment segment = TextSegment.from(chunk.getContent(), metadata);
-
-        // 4. 存储到向量数据库
-        embeddingStore.add(embedding, segment);
-
-        log.debug("索引代码片段: appId={}, file={}, type={}",
-                chunk.getAppId(), chunk.getFilePath(), chunk.getChunkType());
+    @Override
+    public long nextIndexVersion() {
+        return codeIndexingPipeline.nextVersion();
     }
 
     @Override
@@ -138,38 +111,130 @@ public class ProjectContextServiceImpl implements ProjectContextService {
             return new ArrayList<>();
         }
 
+        // 0. 检索结果缓存（索引写入后自动失效；键在检索前确定，检索期间的索引写入不会让旧结果进入新代数）
+        String resultKey = retrievalCache.resultKey(appId, query, topK, minScore);
+        List<ContextChunk> cached = retrievalCache.getResult(resultKey);
+        if (cached != null) {
+            log.debug("🔎 [RAG检索] 命中检索结果缓存: appId={}, 命中片段数={}", appId, cached.size());
+            return cached;
+        }
+
+        RagConfig.RetrievalConfig retrieval = ragConfig.getRetrieval();
+        boolean hybrid = retrieval.isHybridEnabled();
+        int poolSize = hybrid ? Math.max(topK, retrieval.getCandidatePoolSize()) : topK;
+
+        // 1. BM25 词法检索（纯内存，无网络调用）
+        List<Bm25Index.Hit> lexicalHits = List.of();
+        if (hybrid) {
+            try {
+                lexicalHits = bm25Index.search(appId, query, poolSize);
+            } catch (Exception e) {
+                log.warn("词法检索失败，仅使用向量检索: appId={}, error={}", appId, e.getMessage());
+            }
+        }
+
+        // 2. 查询以代码标识符为主且词法检索已精确命中时，跳过向量化
+        if (hybrid && retrieval.isLexicalShortCircuit() && canSkipEmbedding(query, lexicalHits)) {
+            List<ContextChunk> chunks = fuse(List.of(), lexicalHits, topK);
+            meterRegistry.counter("rag.retrieval.embedding.skipped").increment();
+            log.info("🔎 [RAG检索] 标识符查询由词法检索直接命中，跳过向量化: appId={}, 命中片段数={}",
+                    appId, chunks.size());
+            retrievalCache.putResult(resultKey, chunks);
+            return chunks;
+        }
+
+        List<EmbeddingMatch<TextSegment>> vectorMatches;
         try {
-            // 1. 将查询文本向量化
-            log.debug("🔢 [RAG检索] 正在生成查询向量...");
-            Embedding queryEmbedding = dashScopeEmbeddingModel.embed(query).content();
-            log.debug("🔢 [RAG检索] 查询向量生成完成, 维度={}", queryEmbedding.dimension());
+            // 3. 将查询文本向量化（相同查询复用缓存的向量）
+            Embedding queryEmbedding = retrievalCache.getEmbedding(query, text -> {
+                log.debug("🔢 [RAG检索] 正在生成查询向量...");
+                return dashScopeEmbeddingModel.embed(text).content();
+            });
+            log.debug("🔢 [RAG检索] 查询向量就绪, 维度={}", queryEmbedding.dimension());
 
-            // 2. 构建搜索请求（带过滤条件）
+            // 4. 构建搜索请求（带过滤条件）
             Filter appFilter = metadataKey("appId").isEqualTo(appId.toString());
 
             EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
                     .queryEmbedding(queryEmbedding)
-                    .maxResults(topK)
+                    .maxResults(poolSize)
                     .minScore(minScore)
                     .filter(appFilter)
                     .build();
 
-            // 3. 执行搜索
+            // 5. 执行搜索
             EmbeddingSearchResult<TextSegment> result = embeddingStore.search(request);
+            vectorMatches = result.matches();
+        } catch (Exception e) {
+            log.error("RAG 检索失败: appId={}, error={}", appId, e.getMessage(), e);
+            if (lexicalHits.isEmpty()) {
+                return new ArrayList<>();
+            }
+            // 向量检索不可用时降级为词法检索结果（不缓存，避免降级结果滞留）
+            log.info("🔄 [RAG检索] 向量检索失败，降级为词法检索结果: appId={}", appId);
+            return fuse(List.of(), lexicalHits, topK);
+        }
 
-            // 4. 转换结果
-            List<ContextChunk> chunks = result.matches().stream()
-                    .map(this::toContextChunk)
-                    .collect(Collectors.toList());
+        // 6. 转换结果（混合检索时按 RRF 融合两路排名）
+        List<ContextChunk> chunks = hybrid
+                ? fuse(vectorMatches, lexicalHits, topK)
+                : vectorMatches.stream().map(this::toContextChunk).collect(Collectors.toList());
 
-            log.info("🔎 [RAG检索] 检索完成: appId={}, query长度={}, 命中片段数={}",
-                    appId, query.length(), chunks.size());
+        log.info("🔎 [RAG检索] 检索完成: appId={}, query长度={}, 向量命中={}, 词法命中={}, 返回片段数={}",
+                appId, query.length(), vectorMatches.size(), lexicalHits.size(), chunks.size());
 
-            return chunks;
-        } catch (Exception e) {
-            log.error("RAG 检索失败: appId={}, error={}", appId, e.getMessage(), e);
-            return new ArrayList<>();
+        retrievalCache.putResult(resultKey, chunks);
+        return chunks;
+    }
+
+    /**
+     * 查询中出现代码标识符，且词法检索第一名包含全部标识符时，认为无需语义检索
+     */
+    private boolean canSkipEmbedding(String query, List<Bm25Index.Hit> lexicalHits) {
+        if (lexicalHits.isEmpty()) {
+            return false;
+        }
+        Set<String> identifiers = CodeTokenizer.identifiers(query);
+        return !identifiers.isEmpty() && lexicalHits.get(0).document().containsAll(identifiers);
+    }
+
+    /**
+     * 按 RRF 融合向量检索与词法检索的排名，得分归一化到 0-1
+     */
+    private List<ContextChunk> fuse(List<EmbeddingMatch<TextSegment>> vectorMatches,
+                                    List<Bm25Index.Hit> lexicalHits, int topK) {
+        RagConfig.RetrievalConfig retrieval = ragConfig.getRetrieval();
+        Map<String, ContextChunk> candidates = new HashMap<>();
+        List<String> vectorIds = new ArrayList<>(vectorMatches.size());
+        for (EmbeddingMatch<TextSegment> match : vectorMatches) {
+            // 旧版本写入的片段存储 ID 是随机 UUID，用元数据中的 chunkId 与词法索引对齐
+            String chunkId = match.embedded().metadata().getString("chunkId");
+            String id = chunkId != null ? chunkId : match.embeddingId();
+            vectorIds.add(id);
+            candidates.put(id, toContextChunk(match));
+        }
+        List<String> lexicalIds = new ArrayList<>(lexicalHits.size());
+        for (Bm25Index.Hit hit : lexicalHits) {
+            String id = hit.document().chunkId();
+            lexicalIds.add(id);
+            candidates.putIfAbsent(id, toContextChunk(hit));
+        }
+
+        List<ReciprocalRankFusion.Ranking> rankings = new ArrayList<>();
+        if (!vectorMatches.isEmpty() || lexicalHits.isEmpty()) {
+            rankings.add(new ReciprocalRankFusion.Ranking(vectorIds, retrieval.getVectorWeight()));
         }
+        if (!lexicalHits.isEmpty()) {
+            rankings.add(new ReciprocalRankFusion.Ranking(lexicalIds, retrieval.getLexicalWeight()));
+        }
+        return ReciprocalRankFusion.fuse(retrieval.getRrfK(), rankings).entrySet().stream()
+                .limit(topK)
+                .map(entry -> {
+                    ContextChunk chunk = candidates.get(entry.getKey());
+                    chunk.setScore(entry.getValue());
+                    return chunk;
+                })
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -212,49 +277,57 @@ public class ProjectContextServiceImpl implements ProjectContextService {
                 .build();
     }
 
+    /**
+     * 将词法检索命中转换为 ContextChunk
+     */
+    private ContextChunk toContextChunk(Bm25Index.Hit hit) {
+        Bm25Index.Document document = hit.document();
+        return ContextChunk.builder()
+                .filePath(document.filePath())
+                .content(document.content())
+                .chunkType(document.chunkType())
+                .score(hit.score())
+                .metadata(new HashMap<>(document.metadata()))
+                .build();
+    }
+
     @Override
     public void deleteByAppId(Long appId) {
         if (!isEnabled()) {
             return;
         }
 
+        codeIndexingPipeline.discard(appId);
         try {
-            // 使用过滤器删除所有该 appId 的索引
-            Filter appFilter = metadataKey("appId").isEqualTo(appId.toString());
-            embeddingStore.removeAll(appFilter);
-            log.info("已删除应用 {} 的所有代码索引", appId);
+            // 按片段登记直接删除（Redis 下管道批量 UNLINK），未完整登记的应用退回按 appId 过滤删除
+            int removed = codeIndexingPipeline.removeApp(appId);
+            retrievalCache.bumpGeneration(appId);
+            log.info("已删除应用 {} 的所有代码索引, 按ID删除片段数={}", appId, removed);
         } catch (Exception e) {
             log.error("删除应用索引失败: appId={}, error={}", appId, e.getMessage(), e);
         }
     }
 
     @Override
-    public void deleteByFilePath(Long appId, String filePath) {
+    public void trackNewApp(Long appId) {
         if (!isEnabled()) {
             return;
         }
+        chunkHashRegistry.markTracked(appId);
+    }
 
-        try {
-            // 构建复合过滤条件：appId AND filePath 精确匹配
-            // 分片时 filePath 已带 #fragment，因此这里使用基础路径即可避免误删其他文件
-            Filter filter = metadataKey("appId").isEqualTo(appId.toString())
-                    .and(metadataKey("filePath").isEqualTo(filePath));
+    @Override
+    public void deleteByFilePath(Long appId, String filePath) {
+        deleteByFilePath(appId, filePath, nextIndexVersion());
+    }
 
-            try {
-                embeddingStore.removeAll(filter);
-                log.debug("已删除文件索引: appId={}, file={}", appId, filePath);
-            } catch (JedisDataException jde) {
-                // Jedis 在 DEL 0 key 时会抛出“wrong number of arguments”错误，视为无匹配安全忽略
-                if (jde.getMessage() != null && jde.getMessage().contains("wrong number of arguments for 'del'")) {
-                    log.debug("未找到需删除的文件索引，跳过: appId={}, file={}", appId, filePath);
-                } else {
-                    throw jde;
-                }
-            }
-        } catch (Exception e) {
-            log.error("删除文件索引失败: appId={}, file={}, error={}",
-                    appId, filePath, e.getMessage(), e);
+    @Override
+    public void deleteByFilePath(Long appId, String filePath, long version) {
+        if (!isEnabled()) {
+            return;
         }
+        // 与写入走同一条流水线，按版本号保证同一文件的写入/删除按发生顺序生效
+        codeIndexingPipeline.submitDelete(appId, filePath, version);
     }
 
     @Override
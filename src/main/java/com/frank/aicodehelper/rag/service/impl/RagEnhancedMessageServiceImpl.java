@@ -1,10 +1,10 @@
 package com.frank.aicodehelper.rag.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
 import com.frank.aicodehelper.rag.config.RagConfig;
 import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.packing.ContextPacker;
 import com.frank.aicodehelper.rag.service.ProjectContextService;
 import com.frank.aicodehelper.rag.service.RagEnhancedMessageService;
 import com.frank.aicodehelper.service.ProjectSummaryService;
@@ -12,11 +12,13 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
  * RAG 消息增强服务实现
  * 将 RAG 检索结果和项目结构信息注入到用户消息中
+ * 注入内容受 token 预算约束（rag.retrieval.contextTokenBudget），代码片段由 ContextPacker 打包
  */
 @Slf4j
 @Service
@@ -31,81 +33,87 @@ public class RagEnhancedMessageServiceImpl implements RagEnhancedMessageService
     @Resource
     private RagConfig ragConfig;
 
-    /**
-     * 单个代码片段的最大展示字符数（避免注入过多内容）
-     */
-    private static final int MAX_CHUNK_DISPLAY_SIZE = 6000;
-
-    /**
-     * RAG 注入的最大总字符数（现在只返回 1 个 chunk，放宽单个限制）
-     */
-    private static final int MAX_RAG_TOTAL_SIZE = 6000;
+    @Resource
+    private ContextPacker contextPacker;
 
     @Override
     public String enhanceMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType) {
-        // 非 VUE_PROJECT 类型，使用原有的 ProjectSummaryService
+        String projectSummary = codeGenType == CodeGenTypeEnum.VUE_PROJECT
+                ? projectSummaryService.generateProjectSummary(appId, codeGenType) : "";
+        List<ContextChunk> chunks = retrieveContext(userMessage, appId, codeGenType);
+        return assembleMessage(userMessage, appId, codeGenType, projectSummary, chunks);
+    }
+
+    @Override
+    public List<ContextChunk> retrieveContext(String userMessage, Long appId, CodeGenTypeEnum codeGenType) {
+        if (codeGenType != CodeGenTypeEnum.VUE_PROJECT || !ragConfig.isEnabled()) {
+            return Collections.emptyList();
+        }
+        // RAG 检索多个候选片段，由 assembleMessage 在预算内打包
+        log.info("🔎 [RAG] 正在进行语义检索: appId={}, query=\"{}...\"", appId,
+                userMessage.length() > 50 ? userMessage.substring(0, 50) : userMessage);
+        RagConfig.RetrievalConfig retrieval = ragConfig.getRetrieval();
+        return projectContextService.searchContext(appId, userMessage,
+                retrieval.getPackCandidates(), retrieval.getDefaultMinScore());
+    }
+
+    @Override
+    public String assembleMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType,
+                                  String projectSummary, List<ContextChunk> chunks) {
+        // 非 VUE_PROJECT 类型不注入项目状态（与 ProjectSummaryService.enhanceUserMessage 一致）
         if (codeGenType != CodeGenTypeEnum.VUE_PROJECT) {
             log.info("📝 [RAG] 非 VUE_PROJECT 类型({}), 使用原有消息增强逻辑", codeGenType);
-            return projectSummaryService.enhanceUserMessage(userMessage, appId, codeGenType);
+            return userMessage;
         }
 
-        // RAG 未启用，降级到原有逻辑
+        // RAG 未启用，降级到原有逻辑：只拼接项目状态摘要
         if (!ragConfig.isEnabled()) {
             log.info("⚠️ [RAG] RAG 未启用 (rag.enabled=false), 降级到原有消息增强逻辑");
-            return projectSummaryService.enhanceUserMessage(userMessage, appId, codeGenType);
+            return StrUtil.isBlank(projectSummary) ? userMessage : projectSummary + "用户需求:\n" + userMessage;
         }
 
         log.info("🔍 [RAG] 开始 RAG 增强消息: appId={}, 用户消息长度={}", appId, userMessage.length());
 
         StringBuilder enhanced = new StringBuilder();
+        int tokenBudget = ragConfig.getRetrieval().getContextTokenBudget();
 
-        // 1. 添加项目结构（复用现有 ProjectSummaryService）
-        String projectSummary = projectSummaryService.generateProjectSummary(appId, codeGenType);
+        // 1. 添加项目结构，占用 token 预算
+        // 有候选片段时摘要最多占一半预算（超出部分截断），代码上下文至少保留另一半，摘要 + 代码不超过总预算
+        List<ContextChunk> relevantChunks = chunks == null ? Collections.emptyList() : chunks;
+        int summaryBudget = relevantChunks.isEmpty() ? tokenBudget : tokenBudget - tokenBudget / 2;
+        int summaryTokens = 0;
         if (StrUtil.isNotBlank(projectSummary)) {
-            enhanced.append(projectSummary).append("\n");
-            log.debug("📁 [RAG] 已注入项目结构摘要, 长度={}", projectSummary.length());
+            String summary = contextPacker.truncateToTokens(projectSummary, summaryBudget);
+            enhanced.append(summary).append("\n");
+            summaryTokens = contextPacker.countTokens(summary);
+            log.debug("📁 [RAG] 已注入项目结构摘要, 长度={}, tokens={}{}", summary.length(), summaryTokens,
+                    summary.equals(projectSummary) ? "" : "（已截断）");
         }
 
-        // 2. RAG 检索相关代码上下文
-        log.info("🔎 [RAG] 正在进行语义检索: query=\"{}...\"", 
-                userMessage.length() > 50 ? userMessage.substring(0, 50) : userMessage);
-        List<ContextChunk> relevantChunks = projectContextService.searchContext(appId, userMessage);
+        // 2. 在剩余预算内按相关度/token 打包候选片段
+        int chunkBudget = tokenBudget - summaryTokens;
+        ContextPacker.PackedContext packed = contextPacker.pack(appId, relevantChunks, chunkBudget);
 
-        if (CollUtil.isNotEmpty(relevantChunks)) {
+        if (packed.blocks() > 0) {
             enhanced.append("=== 相关代码上下文 (RAG检索) ===\n");
             enhanced.append("以下是与您需求语义相关的代码片段，系统已自动检索提供：\n");
             enhanced.append("⚠️ 重要：这些代码已在此提供，请直接使用，无需再调用 readFile 读取。\n\n");
-
-            int totalSize = 0;
-            for (ContextChunk chunk : relevantChunks) {
-                // 控制总大小
-                if (totalSize >= MAX_RAG_TOTAL_SIZE) {
-                    enhanced.append("...(更多相关代码已省略)\n\n");
-                    break;
-                }
-
-                String chunkContent = formatChunkForDisplay(chunk);
-                totalSize += chunkContent.length();
-                enhanced.append(chunkContent);
-                
-                log.debug("📄 [RAG] 检索到片段: file={}, score={}", 
-                        chunk.getFilePath(), String.format("%.2f", chunk.getScore()));
+            enhanced.append(packed.text());
+            if (packed.omitted() > 0) {
+                enhanced.append("...(更多相关代码已省略)\n\n");
             }
 
-            log.info("✅ [RAG] RAG 增强完成: appId={}, 检索到 {} 个相关片段, 注入字符数={}",
-                    appId, relevantChunks.size(), totalSize);
-            
+            log.info("✅ [RAG] RAG 增强完成: appId={}, 候选片段={}, 注入代码块={}, 省略={}, 代码 tokens={}/{}, 摘要 tokens={}",
+                    appId, packed.candidates(), packed.blocks(), packed.omitted(), packed.tokens(), chunkBudget,
+                    summaryTokens);
+
             // 打印检索到的文件列表
             StringBuilder fileList = new StringBuilder();
             for (ContextChunk chunk : relevantChunks) {
-                String displayPath = chunk.getFilePath();
-                if (displayPath.contains("#")) {
-                    displayPath = displayPath.substring(0, displayPath.indexOf("#"));
-                }
-                fileList.append("\n    - ").append(displayPath)
+                fileList.append("\n    - ").append(chunk.getFilePath())
                         .append(" (score: ").append(String.format("%.2f", chunk.getScore())).append(")");
             }
-            log.info("📋 [RAG] 检索到的相关文件:{}", fileList);
+            log.info("📋 [RAG] 检索到的相关片段:{}", fileList);
         } else {
             log.info("⚠️ [RAG] 未检索到相关代码片段: appId={} (可能是首次对话或索引为空)", appId);
         }
@@ -116,69 +124,4 @@ public class RagEnhancedMessageServiceImpl implements RagEnhancedMessageService
 
         return enhanced.toString();
     }
-
-    /**
-     * 格式化代码片段用于展示
-     * 标注内容完整性：完整内容可直接用于 modifyFile，截断内容需要先 readFile
-     */
-    private String formatChunkForDisplay(ContextChunk chunk) {
-        StringBuilder sb = new StringBuilder();
-
-        // 提取文件基础路径（去掉 #template, #script 等后缀）
-        String displayPath = chunk.getFilePath();
-        String chunkSection = "";
-        if (displayPath.contains("#")) {
-            chunkSection = displayPath.substring(displayPath.indexOf("#") + 1);
-            displayPath = displayPath.substring(0, displayPath.indexOf("#"));
-        }
-
-        // 添加代码内容
-        String content = chunk.getContent();
-        String language = getLanguageTag(chunk.getFilePath());
-
-        // 判断是否需要截断
-        boolean isTruncated = content.length() > MAX_CHUNK_DISPLAY_SIZE;
-        boolean isPartialFile = StrUtil.isNotBlank(chunkSection);
-
-        // 根据完整性添加不同标注
-        if (isTruncated) {
-            // 内容被截断：需要 readFile
-            sb.append(String.format("📄 [%s] 相关度: %.2f\n", displayPath, chunk.getScore()));
-            sb.append("⚠️ 内容已截断，如需修改此文件请先调用 readFile 获取完整内容\n");
-            content = content.substring(0, MAX_CHUNK_DISPLAY_SIZE) + "\n// ... 内容已截断 ...";
-        } else if (isPartialFile) {
-            // Vue SFC 部分片段（template/script/style）：可用于 modifyFile，但需注意是部分内容
-            sb.append(String.format("📄 [%s] <%s>部分 相关度: %.2f\n", displayPath, chunkSection, chunk.getScore()));
-            sb.append("✅ 此为文件的 " + chunkSection + " 部分，内容完整，可直接用于 modifyFile\n");
-        } else {
-            // 完整内容：可直接用于 modifyFile
-            sb.append(String.format("📄 [%s] 相关度: %.2f\n", displayPath, chunk.getScore()));
-            sb.append("✅ 内容完整，可直接用于 modifyFile，无需调用 readFile\n");
-        }
-
-        sb.append("```").append(language).append("\n");
-        sb.append(content);
-        if (!content.endsWith("\n")) {
-            sb.append("\n");
-        }
-        sb.append("```\n\n");
-
-        return sb.toString();
-    }
-
-    /**
-     * 根据文件路径获取代码块语言标识
-     */
-    private String getLanguageTag(String filePath) {
-        String lowerPath = filePath.toLowerCase();
-        if (lowerPath.contains(".vue")) return "vue";
-        if (lowerPath.endsWith(".js")) return "javascript";
-        if (lowerPath.endsWith(".ts")) return "typescript";
-        if (lowerPath.endsWith(".css")) return "css";
-        if (lowerPath.endsWith(".json")) return "json";
-        if (lowerPath.endsWith(".html")) return "html";
-        return "";
-    }
 }
-
-
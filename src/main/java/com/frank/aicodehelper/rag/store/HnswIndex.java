@@ -0,0 +1,200 @@
+package com.frank.aicodehelper.rag.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * HNSW（分层可导航小世界图）近似最近邻索引
+ * 节点编号即分区中的槽位号，向量通过回调读取（需已归一化，相似度为点积）
+ * 删除由分区以墓碑方式处理：已删除节点仍参与导航，只是不出现在结果中
+ * 非线程安全，由所属分区的读写锁保护
+ */
+final class HnswIndex {
+
+    private final int m;
+
+    private final int maxConnectionsLevel0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final IntFunction<float[]> vectors;
+
+    /**
+     * links.get(node)[level] = 该节点在该层的邻居
+     */
+    private final List<int[][]> links = new ArrayList<>();
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    HnswIndex(int m, int efConstruction, IntFunction<float[]> vectors) {
+        this.m = m;
+        this.maxConnectionsLevel0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1d / Math.log(m);
+        this.vectors = vectors;
+    }
+
+    /**
+     * 相似度候选
+     */
+    record Candidate(int node, float similarity) {
+    }
+
+    /**
+     * 插入节点
+     *
+     * @param node 槽位号
+     */
+    void insert(int node) {
+        float[] query = vectors.apply(node);
+        int level = (int) Math.floor(-Math.log(1d - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[0];
+        }
+        while (links.size() <= node) {
+            links.add(null);
+        }
+        links.set(node, nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(query, current, efConstruction, l);
+            int[] selected = new int[Math.min(m, found.size())];
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = found.get(i).node();
+            }
+            nodeLinks[l] = selected;
+            int maxConnections = l == 0 ? maxConnectionsLevel0 : m;
+            for (int neighbor : selected) {
+                connect(neighbor, node, l, maxConnections);
+            }
+            current = found.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 近似搜索
+     *
+     * @param query 已归一化的查询向量
+     * @param ef    搜索宽度（结果数上限）
+     * @return 按相似度降序排列的候选
+     */
+    List<Candidate> search(float[] query, int ef) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(query, current, l);
+        }
+        return searchLayer(query, current, ef, 0);
+    }
+
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = VectorMath.dot(query, vectors.apply(current));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbor : links.get(current)[level]) {
+                float similarity = VectorMath.dot(query, vectors.apply(neighbor));
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(links.size());
+        PriorityQueue<Candidate> candidates =
+                new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity).reversed());
+        PriorityQueue<Candidate> results =
+                new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+
+        Candidate first = new Candidate(entry, VectorMath.dot(query, vectors.apply(entry)));
+        visited.set(entry);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int neighbor : links.get(candidate.node())[level]) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = VectorMath.dot(query, vectors.apply(neighbor));
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate next = new Candidate(neighbor, similarity);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        return sorted;
+    }
+
+    /**
+     * 为 target 添加邻居 node；超过连接上限时只保留与 target 最相似的邻居
+     */
+    private void connect(int target, int node, int level, int maxConnections) {
+        int[][] targetLinks = links.get(target);
+        int[] current = targetLinks[level];
+        int[] extended = new int[current.length + 1];
+        System.arraycopy(current, 0, extended, 0, current.length);
+        extended[current.length] = node;
+        if (extended.length <= maxConnections) {
+            targetLinks[level] = extended;
+            return;
+        }
+        float[] base = vectors.apply(target);
+        List<Candidate> scored = new ArrayList<>(extended.length);
+        for (int neighbor : extended) {
+            scored.add(new Candidate(neighbor, VectorMath.dot(base, vectors.apply(neighbor))));
+        }
+        scored.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        int[] pruned = new int[maxConnections];
+        for (int i = 0; i < maxConnections; i++) {
+            pruned[i] = scored.get(i).node();
+        }
+        targetLinks[level] = pruned;
+    }
+}
@@ -0,0 +1,270 @@
+package com.frank.aicodehelper.rag.store;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 进程内按应用分区的向量存储
+ * 每个应用一个独立分区（文件 app_{appId}.vec），检索只扫描目标应用的数据，没有网络往返：
+ * - 小应用：归一化向量全量点积扫描
+ * - 大应用（向量数 >= hnswThreshold）：HNSW 近似检索
+ * 分区由片段元数据中的 appId 决定，检索时从过滤条件中解析 appId 定位分区
+ */
+@Slf4j
+public class PartitionedLocalEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final String APP_ID_KEY = "appId";
+
+    private static final String FILE_PREFIX = "app_";
+
+    private static final String FILE_SUFFIX = ".vec";
+
+    /**
+     * 没有 appId 元数据的条目放入共享分区
+     */
+    private static final long SHARED_PARTITION = 0L;
+
+    private final Path root;
+
+    private final DashScopeEmbeddingConfig.LocalStoreConfig options;
+
+    private final Map<Long, VectorPartition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * 条目 ID -> 所属分区，用于按 ID 删除
+     */
+    private final Map<String, Long> owners = new ConcurrentHashMap<>();
+
+    public PartitionedLocalEmbeddingStore(DashScopeEmbeddingConfig.LocalStoreConfig options) {
+        this.options = options;
+        this.root = Path.of(options.getDir());
+        loadPartitions();
+    }
+
+    /**
+     * 启动时加载全部已持久化的分区
+     */
+    private void loadPartitions() {
+        try {
+            Files.createDirectories(root);
+            try (Stream<Path> files = Files.list(root)) {
+                files.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                }).forEach(path -> {
+                    String name = path.getFileName().toString();
+                    long appId = Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+                    VectorPartition partition = VectorPartition.open(path, options);
+                    partitions.put(appId, partition);
+                    partition.ids().forEach(id -> owners.put(id, appId));
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载本地向量存储失败: " + root, e);
+        }
+        log.info("本地向量存储已加载: 目录={}, 分区数={}, 向量数={}", root, partitions.size(), owners.size());
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != ids.size())) {
+            throw new IllegalArgumentException("ids、embeddings、embedded 数量不一致");
+        }
+        // 按应用分组，每个分区一次批量写入
+        Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            TextSegment segment = embedded == null ? null : embedded.get(i);
+            groups.computeIfAbsent(partitionOf(segment), k -> new ArrayList<>()).add(i);
+        }
+        groups.forEach((appId, indexes) -> {
+            List<String> groupIds = indexes.stream().map(ids::get).toList();
+            List<Embedding> groupEmbeddings = indexes.stream().map(embeddings::get).toList();
+            List<TextSegment> groupSegments = embedded == null ? null : indexes.stream().map(embedded::get).toList();
+            partition(appId).addAll(groupIds, groupEmbeddings, groupSegments);
+            groupIds.forEach(id -> {
+                Long previous = owners.put(id, appId);
+                if (previous != null && !previous.equals(appId)) {
+                    partition(previous).removeAll(List.of(id));
+                }
+            });
+        });
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        Map<Long, List<String>> groups = new HashMap<>();
+        for (String id : ids) {
+            Long appId = owners.remove(id);
+            if (appId != null) {
+                groups.computeIfAbsent(appId, k -> new ArrayList<>()).add(id);
+            }
+        }
+        groups.forEach((appId, groupIds) -> {
+            VectorPartition partition = partitions.get(appId);
+            if (partition != null) {
+                partition.removeAll(groupIds);
+            }
+        });
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        Long appId = extractAppId(filter);
+        if (appId != null && isAppOnly(filter)) {
+            // 只按应用过滤：直接丢弃整个分区
+            VectorPartition partition = partitions.remove(appId);
+            if (partition != null) {
+                owners.values().removeIf(appId::equals);
+                partition.destroy();
+            }
+            return;
+        }
+        Collection<Long> targets = appId != null ? List.of(appId) : List.copyOf(partitions.keySet());
+        for (Long target : targets) {
+            VectorPartition partition = partitions.get(target);
+            if (partition == null) {
+                continue;
+            }
+            partition.removeIf(filter).forEach(owners::remove);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        partitions.values().forEach(VectorPartition::destroy);
+        partitions.clear();
+        owners.clear();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = VectorMath.normalize(request.queryEmbedding().vector());
+        Filter filter = request.filter();
+        Long appId = extractAppId(filter);
+        boolean allowIndex = filter == null || isAppOnly(filter);
+        // 分区即应用，纯 appId 过滤无需逐条再判断
+        Filter residual = allowIndex ? null : filter;
+
+        Collection<VectorPartition> targets;
+        if (appId != null) {
+            VectorPartition partition = partitions.get(appId);
+            targets = partition == null ? List.of() : List.of(partition);
+        } else {
+            targets = partitions.values();
+        }
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (VectorPartition partition : targets) {
+            matches.addAll(partition.search(query, request.maxResults(), request.minScore(), residual, allowIndex));
+        }
+        if (targets.size() > 1) {
+            matches.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> match) -> match.score()).reversed());
+            if (matches.size() > request.maxResults()) {
+                matches = new ArrayList<>(matches.subList(0, request.maxResults()));
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 存储中是否存在指定ID的向量（启动时校验片段登记使用）
+     */
+    public boolean contains(String id) {
+        return owners.containsKey(id);
+    }
+
+    /**
+     * 应用分区中的向量数（用于监控和测试）
+     */
+    public int size(Long appId) {
+        VectorPartition partition = partitions.get(appId);
+        return partition == null ? 0 : partition.liveCount();
+    }
+
+    /**
+     * 应用分区当前是否使用 HNSW 索引
+     */
+    public boolean usesHnsw(Long appId) {
+        VectorPartition partition = partitions.get(appId);
+        return partition != null && partition.usesHnsw();
+    }
+
+    @Override
+    public void close() {
+        partitions.values().forEach(VectorPartition::close);
+    }
+
+    private VectorPartition partition(Long appId) {
+        return partitions.computeIfAbsent(appId,
+                id -> VectorPartition.open(root.resolve(FILE_PREFIX + id + FILE_SUFFIX), options));
+    }
+
+    private static long partitionOf(TextSegment segment) {
+        if (segment == null) {
+            return SHARED_PARTITION;
+        }
+        String appId = segment.metadata().getString(APP_ID_KEY);
+        return appId == null ? SHARED_PARTITION : Long.parseLong(appId);
+    }
+
+    /**
+     * 从过滤条件中解析 appId（支持 appId == x 以及 And 组合）
+     */
+    static Long extractAppId(Filter filter) {
+        if (filter instanceof IsEqualTo isEqualTo && APP_ID_KEY.equals(isEqualTo.key())) {
+            return Long.valueOf(isEqualTo.comparisonValue().toString());
+        }
+        if (filter instanceof And and) {
+            Long left = extractAppId(and.left());
+            return left != null ? left : extractAppId(and.right());
+        }
+        return null;
+    }
+
+    private static boolean isAppOnly(Filter filter) {
+        return filter instanceof IsEqualTo isEqualTo && APP_ID_KEY.equals(isEqualTo.key());
+    }
+}
@@ -0,0 +1,92 @@
+package com.frank.aicodehelper.rag.store;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import dev.langchain4j.community.store.embedding.redis.RedisEmbeddingStore;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按片段 ID 直接删除向量
+ * Redis 向量存储下片段 key = 前缀 + ID，已知 ID 时无需 FT.SEARCH：按批 UNLINK 并通过管道发送，
+ * 整个应用的删除只需一次往返，且 UNLINK 在 Redis 后台线程释放内存，不阻塞其他命令
+ * 其他存储（本地分区存储）直接调用 removeAll(ids)
+ */
+@Slf4j
+@Component
+public class VectorKeyUnlinker {
+
+    /**
+     * 每条 UNLINK 命令携带的 key 数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    @Resource
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Resource
+    private DashScopeEmbeddingConfig embeddingConfig;
+
+    private volatile JedisPooled jedis;
+
+    /**
+     * 删除片段
+     *
+     * @param ids 向量存储中的片段ID
+     * @return 实际删除的 key 数（非 Redis 存储返回请求删除的数量）
+     */
+    public long unlinkAll(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        if (!(embeddingStore instanceof RedisEmbeddingStore)) {
+            embeddingStore.removeAll(ids);
+            return ids.size();
+        }
+        String prefix = embeddingConfig.vectorKeyPrefix();
+        List<String> keys = ids.stream().map(id -> prefix + id).toList();
+        long removed = 0;
+        try (Pipeline pipeline = client().pipelined()) {
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(from + BATCH_SIZE, keys.size()));
+                pipeline.unlink(batch.toArray(new String[0]));
+            }
+            for (Object result : pipeline.syncAndReturnAll()) {
+                if (result instanceof Long count) {
+                    removed += count;
+                }
+            }
+        }
+        log.debug("UNLINK 向量片段: 请求={}, 删除={}, 命令数={}", ids.size(), removed,
+                (keys.size() + BATCH_SIZE - 1) / BATCH_SIZE);
+        return removed;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (jedis != null) {
+            jedis.close();
+        }
+    }
+
+    private JedisPooled client() {
+        if (jedis == null) {
+            synchronized (this) {
+                if (jedis == null) {
+                    DashScopeEmbeddingConfig.RedisConfig redis = embeddingConfig.getRedis();
+                    jedis = new JedisPooled(redis.getHost(), redis.getPort());
+                }
+            }
+        }
+        return jedis;
+    }
+}
@@ -0,0 +1,58 @@
+package com.frank.aicodehelper.rag.store;
+
+/**
+ * 向量运算工具
+ * 写成多累加器展开的简单循环，便于 JIT（C2 SuperWord）自动向量化；
+ * Java 21 中 Vector API 仍处于孵化阶段，这里不直接依赖
+ */
+final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * 点积（两个向量均已归一化时即为余弦相似度）
+     */
+    static float dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 返回归一化后的副本（零向量原样返回）
+     */
+    static float[] normalize(float[] vector) {
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        float[] result = new float[vector.length];
+        if (norm == 0f) {
+            return result;
+        }
+        float inv = 1f / norm;
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * inv;
+        }
+        return result;
+    }
+
+    /**
+     * 余弦相似度 [-1, 1] 转换为 LangChain4j 约定的相关度 [0, 1]
+     */
+    static double toRelevance(float cosine) {
+        return (cosine + 1d) / 2d;
+    }
+}
@@ -0,0 +1,548 @@
+package com.frank.aicodehelper.rag.store;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个应用的向量分区
+ * 内存中保存归一化向量 + 文本段，向量数达到阈值后建立 HNSW 索引，否则全量扫描
+ * 持久化为追加写日志（ADD / REMOVE 记录），启动时通过内存映射读取并重放，无需重新向量化；
+ * 删除记录累积过多时压缩重写日志
+ */
+@Slf4j
+final class VectorPartition {
+
+    private static final byte OP_ADD = 1;
+
+    private static final byte OP_REMOVE = 2;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_DOUBLE = 4;
+
+    private final Path file;
+
+    private final DashScopeEmbeddingConfig.LocalStoreConfig options;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private String[] ids = new String[16];
+
+    private float[][] vectors = new float[16][];
+
+    private TextSegment[] segments = new TextSegment[16];
+
+    private final BitSet alive = new BitSet();
+
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * 已使用的槽位数（含已删除）
+     */
+    private int size;
+
+    private HnswIndex hnsw;
+
+    private FileChannel channel;
+
+    private VectorPartition(Path file, DashScopeEmbeddingConfig.LocalStoreConfig options) {
+        this.file = file;
+        this.options = options;
+    }
+
+    /**
+     * 打开分区：存在日志文件时重放恢复
+     */
+    static VectorPartition open(Path file, DashScopeEmbeddingConfig.LocalStoreConfig options) {
+        VectorPartition partition = new VectorPartition(file, options);
+        try {
+            if (Files.exists(file)) {
+                partition.replay();
+            }
+            partition.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量分区失败: " + file, e);
+        }
+        partition.refreshIndex();
+        return partition;
+    }
+
+    int liveCount() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean usesHnsw() {
+        lock.readLock().lock();
+        try {
+            return hnsw != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量添加（同 ID 已存在时覆盖）
+     *
+     * @param newIds     ID 列表
+     * @param embeddings 原始向量（内部归一化）
+     * @param embedded   文本段，可为 null
+     */
+    void addAll(List<String> newIds, List<Embedding> embeddings, List<TextSegment> embedded) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer log = ByteBuffer.allocate(64);
+            for (int i = 0; i < newIds.size(); i++) {
+                String id = newIds.get(i);
+                float[] vector = VectorMath.normalize(embeddings.get(i).vector());
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                log = encodeAdd(log, id, vector, segment);
+                removeSlot(id);
+                insert(id, vector, segment);
+            }
+            append(log);
+            refreshIndex();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按 ID 删除
+     *
+     * @return 实际删除的数量
+     */
+    int removeAll(Collection<String> removeIds) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer log = ByteBuffer.allocate(64);
+            int removed = 0;
+            for (String id : removeIds) {
+                if (removeSlot(id)) {
+                    log = encodeRemove(log, id);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                append(log);
+                compactIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除元数据满足过滤条件的条目
+     *
+     * @return 被删除的 ID
+     */
+    List<String> removeIf(Filter filter) {
+        List<String> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = alive.nextSetBit(0); slot >= 0; slot = alive.nextSetBit(slot + 1)) {
+                if (segments[slot] != null && filter.test(segments[slot].metadata())) {
+                    matched.add(ids[slot]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!matched.isEmpty()) {
+            removeAll(matched);
+        }
+        return matched;
+    }
+
+    /**
+     * 当前存活的全部 ID
+     */
+    List<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(slots.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索
+     *
+     * @param query      已归一化的查询向量
+     * @param maxResults 返回数量
+     * @param minScore   最低相关度（0-1）
+     * @param filter     元数据过滤条件，可为 null
+     * @param allowIndex 是否允许走 HNSW（附加过滤条件时走精确扫描，避免近似结果被过滤后数量不足）
+     */
+    List<EmbeddingMatch<TextSegment>> search(float[] query, int maxResults, double minScore,
+                                             Filter filter, boolean allowIndex) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<HnswIndex.Candidate> top = new PriorityQueue<>(
+                    Comparator.comparingDouble(HnswIndex.Candidate::similarity));
+            if (hnsw != null && allowIndex) {
+                int ef = Math.max(options.getEfSearch(), maxResults);
+                for (HnswIndex.Candidate candidate : hnsw.search(query, ef)) {
+                    offer(top, candidate, maxResults, minScore, filter);
+                }
+            } else {
+                for (int slot = alive.nextSetBit(0); slot >= 0; slot = alive.nextSetBit(slot + 1)) {
+                    offer(top, new HnswIndex.Candidate(slot, VectorMath.dot(query, vectors[slot])),
+                            maxResults, minScore, filter);
+                }
+            }
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                HnswIndex.Candidate candidate = top.poll();
+                int slot = candidate.node();
+                matches.add(new EmbeddingMatch<>(VectorMath.toRelevance(candidate.similarity()),
+                        ids[slot], Embedding.from(vectors[slot]), segments[slot]));
+            }
+            Collections.reverse(matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void offer(PriorityQueue<HnswIndex.Candidate> top, HnswIndex.Candidate candidate,
+                       int maxResults, double minScore, Filter filter) {
+        int slot = candidate.node();
+        if (!alive.get(slot) || VectorMath.toRelevance(candidate.similarity()) < minScore) {
+            return;
+        }
+        if (top.size() >= maxResults && candidate.similarity() <= top.peek().similarity()) {
+            return;
+        }
+        if (filter != null && (segments[slot] == null || !filter.test(segments[slot].metadata()))) {
+            return;
+        }
+        top.add(candidate);
+        if (top.size() > maxResults) {
+            top.poll();
+        }
+    }
+
+    /**
+     * 关闭并删除分区文件
+     */
+    void destroy() {
+        lock.writeLock().lock();
+        try {
+            close();
+            Files.deleteIfExists(file);
+            slots.clear();
+            alive.clear();
+            size = 0;
+            hnsw = null;
+        } catch (IOException e) {
+            log.warn("删除向量分区文件失败: {}, 错误: {}", file, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void close() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭向量分区文件失败: {}, 错误: {}", file, e.getMessage());
+        }
+    }
+
+    // ==================== 内存结构 ====================
+
+    private void insert(String id, float[] vector, TextSegment segment) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            vectors = Arrays.copyOf(vectors, capacity);
+            segments = Arrays.copyOf(segments, capacity);
+        }
+        int slot = size++;
+        ids[slot] = id;
+        vectors[slot] = vector;
+        segments[slot] = segment;
+        alive.set(slot);
+        slots.put(id, slot);
+        if (hnsw != null) {
+            hnsw.insert(slot);
+        }
+    }
+
+    private boolean removeSlot(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        alive.clear(slot);
+        segments[slot] = null;
+        return true;
+    }
+
+    /**
+     * 根据当前规模建立或丢弃 HNSW 索引（丢弃阈值为建立阈值的一半，避免来回切换）
+     */
+    private void refreshIndex() {
+        int live = slots.size();
+        if (hnsw == null && live >= options.getHnswThreshold()) {
+            rebuildIndex();
+        } else if (hnsw != null && live < options.getHnswThreshold() / 2) {
+            hnsw = null;
+        }
+    }
+
+    private void rebuildIndex() {
+        long startTime = System.currentTimeMillis();
+        HnswIndex index = new HnswIndex(options.getHnswM(), options.getEfConstruction(), slot -> vectors[slot]);
+        for (int slot = alive.nextSetBit(0); slot >= 0; slot = alive.nextSetBit(slot + 1)) {
+            index.insert(slot);
+        }
+        hnsw = index;
+        log.info("向量分区 {} 已建立 HNSW 索引: 向量数={}, 耗时={}ms",
+                file.getFileName(), slots.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 已删除槽位超过存活数量时压缩：重排槽位、重写日志、重建索引
+     */
+    private void compactIfNeeded() {
+        int dead = size - slots.size();
+        if (dead < 64 || dead < slots.size()) {
+            refreshIndex();
+            return;
+        }
+        String[] oldIds = ids;
+        float[][] oldVectors = vectors;
+        TextSegment[] oldSegments = segments;
+        BitSet oldAlive = (BitSet) alive.clone();
+        boolean hadIndex = hnsw != null;
+
+        int capacity = Math.max(16, slots.size() * 2);
+        ids = new String[capacity];
+        vectors = new float[capacity][];
+        segments = new TextSegment[capacity];
+        alive.clear();
+        slots.clear();
+        size = 0;
+        hnsw = null;
+
+        ByteBuffer log = ByteBuffer.allocate(64);
+        for (int slot = oldAlive.nextSetBit(0); slot >= 0; slot = oldAlive.nextSetBit(slot + 1)) {
+            insert(oldIds[slot], oldVectors[slot], oldSegments[slot]);
+            log = encodeAdd(log, oldIds[slot], oldVectors[slot], oldSegments[slot]);
+        }
+        rewrite(log);
+        if (hadIndex) {
+            rebuildIndex();
+        }
+        refreshIndex();
+    }
+
+    // ==================== 持久化 ====================
+
+    private void append(ByteBuffer log) {
+        log.flip();
+        try {
+            while (log.hasRemaining()) {
+                channel.write(log);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入向量分区日志失败: " + file, e);
+        }
+    }
+
+    private void rewrite(ByteBuffer log) {
+        log.flip();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            close();
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (log.hasRemaining()) {
+                    out.write(log);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("压缩向量分区日志失败: " + file, e);
+        }
+    }
+
+    /**
+     * 内存映射读取日志并重放；末尾不完整的记录（写入中途崩溃）会被截断
+     */
+    private void replay() throws IOException {
+        long validLength = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length == 0) {
+                return;
+            }
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            try {
+                while (buffer.hasRemaining()) {
+                    byte op = buffer.get();
+                    String id = readString(buffer);
+                    if (op == OP_ADD) {
+                        float[] vector = new float[buffer.getInt()];
+                        buffer.asFloatBuffer().get(vector);
+                        buffer.position(buffer.position() + vector.length * Float.BYTES);
+                        TextSegment segment = readSegment(buffer);
+                        removeSlot(id);
+                        insert(id, vector, segment);
+                    } else if (op == OP_REMOVE) {
+                        removeSlot(id);
+                    } else {
+                        break;
+                    }
+                    validLength = buffer.position();
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+                log.warn("向量分区日志末尾不完整，已截断: {}, 有效长度={}", file, validLength);
+            }
+        }
+        if (validLength < Files.size(file)) {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                out.truncate(validLength);
+            }
+        }
+        log.info("向量分区 {} 已从磁盘恢复: 向量数={}", file.getFileName(), slots.size());
+    }
+
+    private static ByteBuffer encodeAdd(ByteBuffer buffer, String id, float[] vector, TextSegment segment) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] text = segment == null ? null : segment.text().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> metadata = segment == null ? List.of() : encodeMetadata(segment.metadata());
+        int metadataBytes = metadata.stream().mapToInt(bytes -> bytes.length).sum();
+        int required = 1 + 4 + idBytes.length + 4 + vector.length * Float.BYTES
+                + 4 + (text == null ? 0 : text.length) + 4 + metadataBytes;
+        buffer = ensureCapacity(buffer, required);
+        buffer.put(OP_ADD);
+        buffer.putInt(idBytes.length).put(idBytes);
+        buffer.putInt(vector.length);
+        for (float value : vector) {
+            buffer.putFloat(value);
+        }
+        if (text == null) {
+            buffer.putInt(-1);
+            return buffer;
+        }
+        buffer.putInt(text.length).put(text);
+        buffer.putInt(metadata.size() / 3);
+        for (byte[] bytes : metadata) {
+            buffer.put(bytes);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer encodeRemove(ByteBuffer buffer, String id) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        buffer = ensureCapacity(buffer, 1 + 4 + idBytes.length);
+        buffer.put(OP_REMOVE);
+        buffer.putInt(idBytes.length).put(idBytes);
+        return buffer;
+    }
+
+    /**
+     * 元数据编码为 [key][type][value] 三段，每段自带长度前缀
+     */
+    private static List<byte[]> encodeMetadata(Metadata metadata) {
+        List<byte[]> parts = new ArrayList<>();
+        metadata.toMap().forEach((key, value) -> {
+            if (value == null) {
+                return;
+            }
+            byte type = switch (value) {
+                case Integer ignored -> TYPE_INTEGER;
+                case Long ignored -> TYPE_LONG;
+                case Float ignored -> TYPE_FLOAT;
+                case Double ignored -> TYPE_DOUBLE;
+                default -> TYPE_STRING;
+            };
+            parts.add(lengthPrefixed(key.getBytes(StandardCharsets.UTF_8)));
+            parts.add(new byte[]{type});
+            parts.add(lengthPrefixed(value.toString().getBytes(StandardCharsets.UTF_8)));
+        });
+        return parts;
+    }
+
+    private static TextSegment readSegment(ByteBuffer buffer) {
+        int textLength = buffer.getInt();
+        if (textLength < 0) {
+            return null;
+        }
+        byte[] text = new byte[textLength];
+        buffer.get(text);
+        int entries = buffer.getInt();
+        Map<String, Object> metadata = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            String key = readString(buffer);
+            byte type = buffer.get();
+            String raw = readString(buffer);
+            metadata.put(key, switch (type) {
+                case TYPE_INTEGER -> Integer.valueOf(raw);
+                case TYPE_LONG -> Long.valueOf(raw);
+                case TYPE_FLOAT -> Float.valueOf(raw);
+                case TYPE_DOUBLE -> Double.valueOf(raw);
+                default -> raw;
+            });
+        }
+        return TextSegment.from(new String(text, StandardCharsets.UTF_8), Metadata.from(metadata));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] lengthPrefixed(byte[] bytes) {
+        return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if (buffer.remaining() >= required) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
@@ -49,6 +49,15 @@ public interface AppService extends IService<App> {
      */
     String deployApp(Long appId, User loginUser);
 
+    /**
+     * 回滚应用部署到上一个发布
+     *
+     * @param appId     应用 ID
+     * @param loginUser 登录用户
+     * @return 可访问的部署地址
+     */
+    String rollbackDeploy(Long appId, User loginUser);
+
     /**
      * 异步生成应用截图并更新封面
      *
@@ -2,6 +2,8 @@ package com.frank.aicodehelper.service;
 
 import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
 
+import java.nio.file.Path;
+
 /**
  * 项目状态摘要服务
  * 用于在每次用户请求时动态生成项目状态摘要，注入到 AI 请求中
@@ -30,5 +32,27 @@ public interface ProjectSummaryService {
      * @return 增强后的用户消息
      */
     String enhanceUserMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType);
-}
 
+    /**
+     * 文件被创建或修改后通知摘要缓存（未缓存的应用忽略）
+     *
+     * @param appId 应用ID
+     * @param file  文件绝对路径
+     */
+    void onFileChanged(Long appId, Path file);
+
+    /**
+     * 文件被删除后通知摘要缓存（未缓存的应用忽略）
+     *
+     * @param appId 应用ID
+     * @param file  文件绝对路径
+     */
+    void onFileDeleted(Long appId, Path file);
+
+    /**
+     * 丢弃应用的摘要缓存
+     *
+     * @param appId 应用ID
+     */
+    void invalidate(Long appId);
+}
@@ -2,14 +2,18 @@ package com.frank.aicodehelper.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.frank.aicodehelper.ai.AiCodeGenTypeRoutingService;
+import com.frank.aicodehelper.ai.tools.support.CodeSearchIndex;
 import com.frank.aicodehelper.constant.AppConstant;
 import com.frank.aicodehelper.core.AiCodeGeneratorFacade;
-import com.frank.aicodehelper.core.builder.VueProjectBuilder;
+import com.frank.aicodehelper.core.asset.AssetLocalizer;
+import com.frank.aicodehelper.core.deploy.DeployEngine;
+import com.frank.aicodehelper.core.builder.BuildPriority;
+import com.frank.aicodehelper.core.builder.BuildScheduler;
 import com.frank.aicodehelper.core.handler.StreamHandlerExecutor;
+import com.frank.aicodehelper.core.pregen.PreGenerationStage;
 import com.frank.aicodehelper.exception.BusinessException;
 import com.frank.aicodehelper.exception.ErrorCode;
 import com.frank.aicodehelper.exception.ThrowUtils;
@@ -18,7 +22,6 @@ import com.frank.aicodehelper.model.dto.app.AppAddRequest;
 import com.frank.aicodehelper.model.dto.app.AppQueryRequest;
 import com.frank.aicodehelper.model.entity.App;
 import com.frank.aicodehelper.model.entity.User;
-import com.frank.aicodehelper.model.enums.ChatHistoryMessageTypeEnum;
 import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
 import com.frank.aicodehelper.model.vo.AppVO;
 import com.frank.aicodehelper.model.vo.UserVO;
@@ -64,11 +67,20 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
     private StreamHandlerExecutor streamHandlerExecutor;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private BuildScheduler buildScheduler;
 
     @Resource
     private ScreenshotService screenshotService;
 
+    @Resource
+    private AssetLocalizer assetLocalizer;
+
+    @Resource
+    private DeployEngine deployEngine;
+
+    @Resource
+    private CodeSearchIndex codeSearchIndex;
+
     @Resource
     @Lazy
     private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
@@ -77,7 +89,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
     private ProjectSummaryService projectSummaryService;
 
     @Resource
-    private com.frank.aicodehelper.rag.service.RagEnhancedMessageService ragEnhancedMessageService;
+    private PreGenerationStage preGenerationStage;
 
     @Resource
     private com.frank.aicodehelper.rag.service.ProjectContextService projectContextService;
@@ -88,6 +100,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
     @Value("${code.deploy-host:http://localhost}")
     private String codeDeployHost;
 
+    /**
+     * 部署时等待 Vue 项目构建的最长时间（秒，含排队）
+     */
+    @Value("${code.build.deploy-timeout-seconds:600}")
+    private long deployBuildTimeoutSeconds;
+
     @Override
     public AppVO getAppVO(App app) {
         if (app == null) {
@@ -179,14 +197,13 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenTypeStr); // 在错误信息中显示实际值
         }
-        // 5. 通过校验后，添加用户消息到对话历史（存储原始消息，不含项目状态摘要）
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 使用 RAG 增强用户消息（注入项目结构 + 语义检索相关代码上下文）
-        String enhancedMessage = ragEnhancedMessageService.enhanceMessage(message, appId, codeGenTypeEnum);
-        // 7. 调用 AI 生成代码（流式）- 传递 userId 用于在 TokenStream 回调中保存对话记录
+        // 5. 通过校验后并行执行准备阶段：保存用户消息（存储原始消息，不含项目状态摘要）、预热 AI 服务实例、
+        //    生成项目结构摘要、语义检索相关代码上下文，最后组装 RAG 增强消息
+        String enhancedMessage = preGenerationStage.prepare(appId, message, codeGenTypeEnum, loginUser.getId());
+        // 6. 调用 AI 生成代码（流式）- 传递 userId 用于在 TokenStream 回调中保存对话记录
         Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 enhancedMessage, codeGenTypeEnum, appId, loginUser.getId());
-        // 8. 处理流并格式化输出（VUE_PROJECT 类型的保存逻辑已移至 AiCodeGeneratorFacade.processTokenStream）
+        // 7. 处理流并格式化输出（VUE_PROJECT 类型的保存逻辑已移至 AiCodeGeneratorFacade.processTokenStream）
         return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
     }
 
@@ -210,6 +227,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         // 插入数据库
         boolean result = this.save(app);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        projectContextService.trackNewApp(app.getId());
         log.info("应用创建成功,ID: {}, 类型: {}", app.getId(), selectedCodeGenType.getValue());
         return app.getId();
     }
@@ -244,8 +262,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         // 7. Vue 项目特殊处理: 执行构建
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            // Vue 项目需要构建（部署优先于后台预览构建；该应用已有构建在运行时直接复用其结果）
+            boolean buildSuccess = buildScheduler.buildAndWait(appId, sourceDirPath, BuildPriority.DEPLOY,
+                    deployBuildTimeoutSeconds);
             ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败,请检查代码和依赖");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath, "dist");
@@ -254,10 +273,10 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
             sourceDir = distDir;
             log.info("Vue 项目构建成功,将部署 dist 目录: {}", distDir.getAbsolutePath());
         }
-        // 8. 复制文件到部署目录
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
+        // 8. 发布到部署目录（只写入变化的文件，完成后原子切换），激活前做第三方图片本地化（失败时保留原始 URL）
         try {
-            FileUtil.copyContent(sourceDir, new File(deployDirPath), true);
+            // 本地化不完整（部分资源下载失败）时仍然部署，但该发布不会被复用，下次部署重试
+            deployEngine.publish(deployKey, sourceDir, releaseDir -> assetLocalizer.localize(releaseDir).complete());
         } catch (Exception e) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "部署失败：" + e.getMessage());
         }
@@ -274,6 +293,30 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         generateAppScreenshotAsync(appId, appDeployUrl);
         return appDeployUrl;
     }
+
+    @Override
+    public String rollbackDeploy(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR, "用户未登录");
+        App app = this.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        if (!app.getUserId().equals(loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限回滚该应用");
+        }
+        String deployKey = app.getDeployKey();
+        ThrowUtils.throwIf(StrUtil.isBlank(deployKey), ErrorCode.OPERATION_ERROR, "应用尚未部署");
+        String releaseId;
+        try {
+            releaseId = deployEngine.rollback(deployKey);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "回滚失败：" + e.getMessage());
+        }
+        ThrowUtils.throwIf(releaseId == null, ErrorCode.OPERATION_ERROR, "没有可回滚的历史版本");
+        String appDeployUrl = String.format("%s/%s/", codeDeployHost, deployKey);
+        generateAppScreenshotAsync(appId, appDeployUrl);
+        return appDeployUrl;
+    }
+
     private static final int MAX_DEPLOY_KEY_RETRY = 5;
 
     private String generateUniqueDeployKey(Long appId) {
@@ -343,6 +386,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         } catch (Exception e) {
             log.error("删除应用关联 RAG 索引失败: {}", e.getMessage());
         }
+        // 丢弃代码搜索索引和项目摘要缓存
+        codeSearchIndex.invalidate(appId);
+        projectSummaryService.invalidate(appId);
         // 删除应用
         return super.removeById(id);
     }
@@ -1,22 +1,31 @@
 package com.frank.aicodehelper.service.impl;
 
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.core.summary.ProjectChangeWatcher;
+import com.frank.aicodehelper.core.summary.ProjectTree;
+import com.frank.aicodehelper.core.summary.SymbolOutliner;
 import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.packing.ContextPacker;
 import com.frank.aicodehelper.service.ProjectSummaryService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
 
 /**
  * 项目状态摘要服务实现
@@ -26,7 +35,12 @@ import java.util.stream.Stream;
  * - 文件树遍历深度限制为 4 层
  * - 每个目录最多显示 15 个文件
  * - 忽略 node_modules、.git 等大型目录
- * - 典型 Vue 项目（50-100个源文件）生成时间约 5-15ms
+ * - 每个应用缓存一份文件树（{@link ProjectTree}），文件工具写入/删除时主动通知，
+ *   WatchService 确认其他途径的变更；只有变更所在目录重新读取磁盘，未变更时直接返回缓存
+ * - 最近修改的文件由变更事件维护，不再遍历全部文件按修改时间排序
+ * - 源码文件附带符号概要（组件、props、路由、store、导出、顶层 class），按 路径+内容哈希 缓存，
+ *   同一版本的文件只提取一次（不同应用中相同的模板文件也共用）；概要按 token 预算截断，
+ *   路由和 store 文件优先，减少 AI 为了解项目结构而调用 readFile 的次数
  *
  * @author Frank
  */
@@ -35,41 +49,49 @@ import java.util.stream.Stream;
 public class ProjectSummaryServiceImpl implements ProjectSummaryService {
 
     /**
-     * 需要忽略的目录列表（这些目录文件数量多且对 AI 无意义）
+     * 超过此大小的文件不提取符号概要
      */
-    private static final Set<String> IGNORED_DIRS = Set.of(
-            "node_modules",
-            ".git",
-            "dist",
-            ".idea",
-            ".vscode",
-            "__pycache__",
-            "target",
-            "build",
-            ".nuxt",
-            ".next"
-    );
+    private static final long MAX_OUTLINE_FILE_BYTES = 256 * 1024;
+
+    @Resource
+    private ProjectChangeWatcher projectChangeWatcher;
+
+    @Resource
+    private ContextPacker contextPacker;
 
     /**
-     * 需要忽略的文件列表
+     * 符号概要的 token 预算
      */
-    private static final Set<String> IGNORED_FILES = Set.of(
-            ".DS_Store",
-            "package-lock.json",
-            "yarn.lock",
-            "pnpm-lock.yaml",
-            ".gitignore"
-    );
+    @Value("${code.summary.outline-token-budget:600}")
+    private int outlineTokenBudget = 600;
 
     /**
-     * 文件树的最大深度（限制遍历深度以控制性能）
+     * 相对路径:内容哈希 -> 符号概要
      */
-    private static final int MAX_TREE_DEPTH = 4;
+    private final Cache<String, List<String>> outlineCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
 
     /**
-     * 单个目录下最大显示的文件数（避免文件过多导致摘要过长）
+     * 文件树快照 -> 完整摘要文本（快照按引用比较，版本变化后旧快照随之回收）
      */
-    private static final int MAX_FILES_PER_DIR = 15;
+    private final Cache<ProjectTree.Snapshot, String> summaryCache = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(500)
+            .build();
+
+    /**
+     * 应用ID -> 项目文件树缓存，移除时取消目录监听
+     */
+    private final Cache<Long, ProjectTree> treeCache = Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .removalListener((Long appId, ProjectTree tree, RemovalCause cause) -> {
+                if (tree != null) {
+                    projectChangeWatcher.unwatch(tree);
+                }
+            })
+            .build();
 
     @Override
     public String generateProjectSummary(Long appId, CodeGenTypeEnum codeGenType) {
@@ -86,29 +108,35 @@ public class ProjectSummaryServiceImpl implements ProjectSummaryService {
             return "";
         }
 
-        StringBuilder summary = new StringBuilder();
-        summary.append("=== 当前项目状态 ===\n");
-        summary.append("项目目录: ").append(projectDirName).append("\n\n");
-        summary.append("文件结构:\n");
-        summary.append(generateFileTree(projectDir, "", 0));
-
-        // 添加最近修改的文件信息（帮助 AI 了解最近的改动）
-        List<File> recentFiles = getRecentModifiedFiles(projectDir, 5);
-        if (!recentFiles.isEmpty()) {
-            summary.append("\n最近修改的文件:\n");
-            for (File file : recentFiles) {
-                String relativePath = getRelativePath(projectDir, file);
-                summary.append("  - ").append(relativePath).append("\n");
-            }
-        }
+        ProjectTree.Snapshot snapshot = getTree(appId, projectDir.toPath()).render();
+        String summary = summaryCache.get(snapshot, key -> formatSummary(projectDirName, key));
 
-        summary.append("\n=== 项目状态结束 ===\n\n");
-        
         long duration = System.currentTimeMillis() - startTime;
         log.debug("项目状态摘要生成完成，appId: {}, 耗时: {}ms, 摘要长度: {} 字符", 
                 appId, duration, summary.length());
         
-        return summary.toString();
+        return summary;
+    }
+
+    @Override
+    public void onFileChanged(Long appId, Path file) {
+        ProjectTree tree = treeCache.getIfPresent(appId);
+        if (tree != null) {
+            tree.onFileChanged(file);
+        }
+    }
+
+    @Override
+    public void onFileDeleted(Long appId, Path file) {
+        ProjectTree tree = treeCache.getIfPresent(appId);
+        if (tree != null) {
+            tree.onDeleted(file);
+        }
+    }
+
+    @Override
+    public void invalidate(Long appId) {
+        treeCache.invalidate(appId);
     }
 
     @Override
@@ -129,98 +157,98 @@ public class ProjectSummaryServiceImpl implements ProjectSummaryService {
         return projectSummary + "用户需求:\n" + userMessage;
     }
 
-    /**
-     * 生成文件树结构
-     *
-     * @param dir    目录
-     * @param prefix 前缀（用于缩进）
-     * @param depth  当前深度
-     * @return 文件树字符串
-     */
-    private String generateFileTree(File dir, String prefix, int depth) {
-        if (depth >= MAX_TREE_DEPTH) {
-            return prefix + "└── ...\n";
-        }
-
-        StringBuilder tree = new StringBuilder();
-        File[] files = dir.listFiles();
+    private String formatSummary(String projectDirName, ProjectTree.Snapshot snapshot) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("=== 当前项目状态 ===\n");
+        summary.append("项目目录: ").append(projectDirName).append("\n\n");
+        summary.append("文件结构:\n");
+        summary.append(snapshot.tree());
 
-        if (files == null || files.length == 0) {
-            return "";
+        // 添加符号概要（帮助 AI 直接引用已有组件、路由和函数）
+        if (!snapshot.outlines().isEmpty()) {
+            summary.append("\n代码符号概要:\n");
+            summary.append(formatOutlines(snapshot.outlines()));
         }
 
-        // 过滤并排序：目录在前，文件在后，按名称排序
-        List<File> filteredFiles = Arrays.stream(files)
-                .filter(this::shouldInclude)
-                .sorted(Comparator.comparing(File::isFile).thenComparing(File::getName))
-                .limit(MAX_FILES_PER_DIR)
-                .collect(Collectors.toList());
-
-        int totalCount = (int) Arrays.stream(files).filter(this::shouldInclude).count();
-        boolean hasMore = totalCount > MAX_FILES_PER_DIR;
-
-        for (int i = 0; i < filteredFiles.size(); i++) {
-            File file = filteredFiles.get(i);
-            boolean isLast = (i == filteredFiles.size() - 1) && !hasMore;
-            String connector = isLast ? "└── " : "├── ";
-            String childPrefix = prefix + (isLast ? "    " : "│   ");
-
-            if (file.isDirectory()) {
-                tree.append(prefix).append(connector).append(file.getName()).append("/\n");
-                tree.append(generateFileTree(file, childPrefix, depth + 1));
-            } else {
-                tree.append(prefix).append(connector).append(file.getName()).append("\n");
+        // 添加最近修改的文件信息（帮助 AI 了解最近的改动）
+        if (!snapshot.recentFiles().isEmpty()) {
+            summary.append("\n最近修改的文件:\n");
+            for (String relativePath : snapshot.recentFiles()) {
+                summary.append("  - ").append(relativePath).append("\n");
             }
         }
 
-        // 如果有更多文件被省略
-        if (hasMore) {
-            int omitted = totalCount - MAX_FILES_PER_DIR;
-            tree.append(prefix).append("└── ... (").append(omitted).append(" 个文件/目录省略)\n");
-        }
-
-        return tree.toString();
+        summary.append("\n=== 项目状态结束 ===\n\n");
+        return summary.toString();
     }
 
     /**
-     * 判断文件是否应该被包含在文件树中
+     * 在 token 预算内输出符号概要：路由、store 优先，其次组件、脚本、样式
      */
-    private boolean shouldInclude(File file) {
-        String name = file.getName();
-        if (file.isDirectory()) {
-            return !IGNORED_DIRS.contains(name);
-        } else {
-            return !IGNORED_FILES.contains(name);
+    private String formatOutlines(Map<String, List<String>> outlines) {
+        List<String> files = new ArrayList<>(outlines.keySet());
+        files.sort(Comparator.comparingInt(ProjectSummaryServiceImpl::outlinePriority));
+        StringBuilder text = new StringBuilder();
+        int usedTokens = 0;
+        for (int i = 0; i < files.size(); i++) {
+            String line = "  - " + files.get(i) + ": " + String.join("; ", outlines.get(files.get(i))) + "\n";
+            int tokens = contextPacker.countTokens(line);
+            if (usedTokens + tokens > outlineTokenBudget) {
+                text.append("  - ... (").append(files.size() - i).append(" 个文件的概要省略)\n");
+                break;
+            }
+            text.append(line);
+            usedTokens += tokens;
+        }
+        return text.toString();
+    }
+
+    private static int outlinePriority(String relativePath) {
+        if (relativePath.contains("router")) {
+            return 0;
         }
+        if (relativePath.contains("store")) {
+            return 1;
+        }
+        if (relativePath.endsWith(".vue")) {
+            return 2;
+        }
+        return relativePath.matches(".*\\.(css|scss|less)$") ? 4 : 3;
     }
 
     /**
-     * 获取最近修改的文件列表
-     *
-     * @param dir   目录
-     * @param limit 最大数量
-     * @return 最近修改的文件列表
+     * 提取文件符号概要（按 路径+内容哈希 缓存）
      */
-    private List<File> getRecentModifiedFiles(File dir, int limit) {
-        try (Stream<Path> paths = Files.walk(dir.toPath(), MAX_TREE_DEPTH)) {
-            return paths
-                    .filter(Files::isRegularFile)
-                    .filter(path -> shouldInclude(path.toFile()))
-                    .map(Path::toFile)
-                    .sorted(Comparator.comparingLong(File::lastModified).reversed())
-                    .limit(limit)
-                    .collect(Collectors.toList());
+    private List<String> outlineFile(String relativePath, Path file) {
+        try {
+            if (Files.size(file) > MAX_OUTLINE_FILE_BYTES) {
+                return List.of();
+            }
+            String content = Files.readString(file);
+            return outlineCache.get(relativePath + ":" + DigestUtil.sha256Hex(content),
+                    key -> List.copyOf(SymbolOutliner.outline(relativePath, content)));
         } catch (IOException e) {
-            log.warn("获取最近修改文件失败: {}", e.getMessage());
+            log.debug("读取文件失败，跳过符号概要: {}, error={}", file, e.getMessage());
             return List.of();
         }
     }
 
     /**
-     * 获取相对路径
+     * 获取项目文件树缓存，项目目录变化（生成类型变更）时重建
      */
-    private String getRelativePath(File baseDir, File file) {
-        return baseDir.toPath().relativize(file.toPath()).toString().replace("\\", "/");
+    private ProjectTree getTree(Long appId, Path projectRoot) {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        ProjectTree tree = treeCache.get(appId, key -> newTree(key, root));
+        if (!tree.root().equals(root)) {
+            tree = newTree(appId, root);
+            treeCache.put(appId, tree);
+        }
+        return tree;
     }
-}
 
+    private ProjectTree newTree(Long appId, Path root) {
+        ProjectTree tree = new ProjectTree(root, this::outlineFile);
+        projectChangeWatcher.watch(appId, tree);
+        return tree;
+    }
+}
@@ -0,0 +1,61 @@
+// 常驻 Vite 构建进程，由 NodeBuildWorker 启动和监管
+// 协议：标准输入每行一个 JSON 请求；标准输出中以 \u0001 开头的行是 JSON 应答，其余输出都是当前任务的构建日志
+//   {"id":1,"type":"build","root":"/path/to/project"} -> {"id":1,"type":"done","ok":true}
+//   {"id":2,"type":"ping"}                            -> {"id":2,"type":"pong"}
+// vite 从项目自己的 node_modules 解析，按解析到的真实路径缓存模块：共享依赖缓存的项目复用同一个已加载的 vite
+import { createInterface } from 'node:readline';
+import { createRequire } from 'node:module';
+import { readFileSync } from 'node:fs';
+import { dirname, join } from 'node:path';
+import { pathToFileURL } from 'node:url';
+
+const reply = (message) => process.stdout.write('\u0001' + JSON.stringify(message) + '\n');
+
+const vites = new Map();
+
+async function loadVite(root) {
+  const require = createRequire(join(root, 'package.json'));
+  const pkgPath = require.resolve('vite/package.json');
+  let vite = vites.get(pkgPath);
+  if (!vite) {
+    const pkg = JSON.parse(readFileSync(pkgPath, 'utf8'));
+    let entry = pkg.exports?.['.']?.import ?? pkg.module ?? pkg.main;
+    if (entry && typeof entry === 'object') {
+      entry = entry.default;
+    }
+    vite = await import(pathToFileURL(join(dirname(pkgPath), entry)).href);
+    vites.set(pkgPath, vite);
+  }
+  return vite;
+}
+
+async function build(request) {
+  try {
+    // 部分插件按 process.cwd() 解析路径，任务串行执行，可以安全切换
+    process.chdir(request.root);
+    const vite = await loadVite(request.root);
+    await vite.build({ root: request.root, mode: 'production', clearScreen: false });
+    reply({ id: request.id, type: 'done', ok: true });
+  } catch (e) {
+    console.error(e?.stack ?? String(e));
+    reply({ id: request.id, type: 'done', ok: false, error: e?.message ?? String(e) });
+  }
+}
+
+let queue = Promise.resolve();
+
+createInterface({ input: process.stdin }).on('line', (line) => {
+  let request;
+  try {
+    request = JSON.parse(line);
+  } catch {
+    return;
+  }
+  if (request.type === 'ping') {
+    reply({ id: request.id, type: 'pong' });
+  } else if (request.type === 'build') {
+    queue = queue.then(() => build(request));
+  }
+}).on('close', () => process.exit(0));
+
+reply({ type: 'ready' });
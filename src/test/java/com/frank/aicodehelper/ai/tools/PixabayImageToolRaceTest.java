@@ -0,0 +1,149 @@
+package com.frank.aicodehelper.ai.tools;
+
+import com.frank.aicodehelper.ai.tools.support.ImageSearchCache;
+import com.frank.aicodehelper.ai.tools.support.ProviderCircuitBreaker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 图片搜索缓存、多源竞速与熔断测试（基于本地桩 HTTP 服务，不访问外网）
+ */
+public class PixabayImageToolRaceTest {
+
+    private static final String PIXABAY_BODY = """
+            {"total":1,"hits":[{"tags":"business, office","largeImageURL":"http://img/pixabay.jpg","webformatURL":"http://img/pixabay-small.jpg"}]}
+            """;
+
+    private static final String PEXELS_BODY = """
+            {"photos":[{"src":{"large2x":"http://img/pexels.jpg","medium":"http://img/pexels-medium.jpg"}}]}
+            """;
+
+    private HttpServer server;
+
+    private final AtomicInteger pixabayHits = new AtomicInteger();
+    private final AtomicInteger pexelsHits = new AtomicInteger();
+
+    private volatile long pixabayDelayMs = 0;
+    private volatile int pixabayStatus = 200;
+
+    private PixabayImageTool tool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/pixabay", exchange -> {
+            pixabayHits.incrementAndGet();
+            sleep(pixabayDelayMs);
+            respond(exchange, pixabayStatus, PIXABAY_BODY);
+        });
+        server.createContext("/pexels", exchange -> {
+            pexelsHits.incrementAndGet();
+            respond(exchange, 200, PEXELS_BODY);
+        });
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        tool = new PixabayImageTool();
+        ReflectionTestUtils.setField(tool, "pixabayApiUrl", base + "/pixabay");
+        ReflectionTestUtils.setField(tool, "pexelsApiUrl", base + "/pexels");
+        ReflectionTestUtils.setField(tool, "pixabayApiKey", "test-key");
+        ReflectionTestUtils.setField(tool, "pexelsApiKey", "test-key");
+        ReflectionTestUtils.setField(tool, "imageSearchCache", new ImageSearchCache());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void fastestProviderWins() {
+        pixabayDelayMs = 3000;
+        long start = System.currentTimeMillis();
+        String result = tool.searchImages("business office", 1, "hero");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(result.contains("Pexels"), result);
+        assertTrue(elapsed < 2000, "竞速应在慢源返回前结束，实际耗时 " + elapsed + "ms");
+    }
+
+    @Test
+    void repeatedQueryHitsCache() {
+        String first = tool.searchImages("Business  Office", 1, "hero");
+        int requests = pixabayHits.get() + pexelsHits.get();
+
+        String second = tool.searchImages("business office", 1, "HERO");
+
+        assertEquals(first, second);
+        assertEquals(requests, pixabayHits.get() + pexelsHits.get(), "规范化后相同的查询不应再请求图片源");
+    }
+
+    @Test
+    void failingProviderIsCircuitBroken() {
+        pixabayStatus = 500;
+        ReflectionTestUtils.setField(tool, "pexelsApiKey", "");
+        for (int i = 0; i < 6; i++) {
+            String result = tool.searchImages("office " + i, 1, "hero");
+            assertTrue(result.startsWith("[搜索失败]"), result);
+        }
+        // 连续失败 3 次后熔断，后续请求不再打到 Pixabay
+        assertEquals(3, pixabayHits.get());
+    }
+
+    @Test
+    void cancelledHalfOpenProbeReleasesBreaker() throws InterruptedException {
+        ProviderCircuitBreaker breaker = (ProviderCircuitBreaker) ReflectionTestUtils.getField(tool, "pixabayBreaker");
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        // 熔断到期，进入半开状态
+        ReflectionTestUtils.setField(breaker, "openedAt", 1L);
+
+        // 半开的 Pixabay 探测请求较慢，Pexels 先返回，探测请求被取消
+        pixabayDelayMs = 3000;
+        String result = tool.searchImages("half open", 1, "hero");
+        assertTrue(result.contains("Pexels"), result);
+        assertEquals(1, pixabayHits.get());
+
+        // 探测名额归还后，下一个探测请求可以通过
+        long deadline = System.currentTimeMillis() + 2000;
+        boolean allowed = false;
+        while (!allowed && System.currentTimeMillis() < deadline) {
+            allowed = breaker.tryAcquire() != null;
+            if (!allowed) {
+                Thread.sleep(20);
+            }
+        }
+        assertTrue(allowed, "被取消的探测请求未归还名额，熔断器卡在半开状态");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 代码搜索索引测试
+ */
+public class CodeSearchIndexTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void searchesAndTracksFileChanges() throws Exception {
+        Files.createDirectories(root.resolve("src/components"));
+        Files.createDirectories(root.resolve("node_modules/vue"));
+        Files.writeString(root.resolve("src/App.vue"), "<template>\n  <NavBar class=\"hero-title\" />\n</template>\n");
+        Files.writeString(root.resolve("src/components/NavBar.vue"), "<template>\n  <nav class=\"navbar\"></nav>\n</template>\n");
+        Files.writeString(root.resolve("node_modules/vue/index.js"), "export const NavBar = 1\n");
+
+        CodeSearchIndex index = new CodeSearchIndex();
+        CodeSearchIndex.SearchResult result = index.search(1L, root, "navbar", 10);
+        assertEquals(2, result.totalHits());
+        assertEquals("src/App.vue", result.hits().get(0).filePath());
+        assertEquals(2, result.hits().get(0).line());
+        assertEquals("<NavBar class=\"hero-title\" />", result.hits().get(0).snippet());
+
+        // 写入新文件后增量更新
+        Path footer = root.resolve("src/components/Footer.vue");
+        Files.writeString(footer, "<div class=\"hero-title\">footer</div>\n");
+        index.onFileChanged(1L, footer);
+        assertEquals(2, index.search(1L, root, "hero-title", 10).totalHits());
+
+        // 修改后旧内容不再命中
+        Files.writeString(footer, "<div class=\"footer\">footer</div>\n");
+        index.onFileChanged(1L, footer);
+        assertEquals(1, index.search(1L, root, "hero-title", 10).totalHits());
+
+        // 删除后不再命中，结果条数受上限约束
+        Files.delete(footer);
+        index.onFileDeleted(1L, footer);
+        assertEquals(0, index.search(1L, root, "footer", 10).totalHits());
+        CodeSearchIndex.SearchResult capped = index.search(1L, root, "template", 1);
+        assertEquals(4, capped.totalHits());
+        assertEquals(1, capped.hits().size());
+    }
+}
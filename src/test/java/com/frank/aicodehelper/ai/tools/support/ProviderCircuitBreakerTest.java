@@ -0,0 +1,55 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器半开探测名额测试
+ */
+public class ProviderCircuitBreakerTest {
+
+    @Test
+    void lateNormalCallDoesNotReleaseAnotherThreadsProbe() throws Exception {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker("test", 2, 50);
+        CountDownLatch normalStarted = new CountDownLatch(1);
+        CountDownLatch probeAcquired = new CountDownLatch(1);
+
+        // 熔断前发出的普通请求，在半开探测进行中才结束
+        CompletableFuture<Void> slowCall = CompletableFuture.runAsync(() -> {
+            ProviderCircuitBreaker.Permit permit = breaker.tryAcquire();
+            assertNotNull(permit);
+            assertFalse(permit.isProbe());
+            normalStarted.countDown();
+            try {
+                assertTrue(probeAcquired.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                breaker.releaseProbe(permit);
+            }
+        });
+        assertTrue(normalStarted.await(5, TimeUnit.SECONDS));
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertNull(breaker.tryAcquire(), "熔断期间不应放行");
+        Thread.sleep(80);
+
+        ProviderCircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertTrue(probe.isProbe());
+        probeAcquired.countDown();
+        slowCall.get(5, TimeUnit.SECONDS);
+
+        // 普通请求结束后探测名额仍被占用，不能放出第二个探测请求
+        assertNull(breaker.tryAcquire(), "普通请求释放了其他线程的探测名额");
+
+        breaker.releaseProbe(probe);
+        assertNotNull(breaker.tryAcquire(), "探测请求归还名额后应放行下一个探测");
+    }
+}
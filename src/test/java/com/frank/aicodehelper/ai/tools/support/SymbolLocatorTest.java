@@ -0,0 +1,78 @@
+package com.frank.aicodehelper.ai.tools.support;
+
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 符号定位与行偏移索引测试
+ */
+public class SymbolLocatorTest {
+
+    private static final String VUE_FILE = """
+            <template>
+              <div class="home">
+                <NavBar :title="title" />
+                <template v-if="show"><span>hi</span></template>
+              </div>
+            </template>
+
+            <script setup>
+            import { ref, computed } from 'vue'
+            const title = ref('首页')
+            const upper = computed(() => {
+              return title.value.toUpperCase()
+            })
+            function toggle(flag) {
+              if (flag) {
+                console.log('}')
+              }
+            }
+            </script>
+
+            <style scoped>
+            .home {
+              color: red;
+            }
+            </style>
+            """;
+
+    private String read(String symbol) {
+        LineOffsetIndex index = new LineOffsetIndex(VUE_FILE, 0, VUE_FILE.length());
+        int[] range = VueCodeChunker.VUE_SECTIONS.contains(symbol)
+                ? VueCodeChunker.locateSection(VUE_FILE, symbol)
+                : SymbolLocator.locate(VUE_FILE, symbol);
+        assertNotNull(range, "未定位到 " + symbol);
+        return index.slice(index.lineOf(range[0]), index.lineOf(range[1] - 1));
+    }
+
+    @Test
+    void locatesSectionsAndSymbols() {
+        String template = read("template");
+        assertTrue(template.startsWith("<template>"));
+        assertTrue(template.trim().endsWith("</template>"));
+        assertTrue(template.contains("v-if"));
+
+        assertEquals("const title = ref('首页')\n", read("title"));
+        assertTrue(read("upper").trim().endsWith("})"));
+        String toggle = read("toggle");
+        assertTrue(toggle.startsWith("function toggle"));
+        assertTrue(toggle.contains("console.log('}')"));
+        assertTrue(toggle.trim().endsWith("}"));
+        assertEquals(5, toggle.split("\n").length);
+
+        assertEquals(".home {\n  color: red;\n}\n", read(".home"));
+        assertTrue(read("NavBar").contains("<NavBar"));
+        assertNull(SymbolLocator.locate(VUE_FILE, "missing"));
+    }
+
+    @Test
+    void slicesByLine() {
+        LineOffsetIndex index = new LineOffsetIndex("a\nb\nc", 0, 5);
+        assertEquals(3, index.lineCount());
+        assertEquals("b\n", index.slice(2, 2));
+        assertEquals("b\nc", index.slice(2, 99));
+        assertEquals(3, index.lineOf(4));
+    }
+}
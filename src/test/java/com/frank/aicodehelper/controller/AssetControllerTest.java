@@ -0,0 +1,45 @@
+package com.frank.aicodehelper.controller;
+
+import com.frank.aicodehelper.core.asset.AssetStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地化资源访问测试：第三方内容（含 SVG 脚本）不能在本站源上执行
+ */
+public class AssetControllerTest {
+
+    @TempDir
+    Path storeRoot;
+
+    @Test
+    void assetResponsesAreSandboxed() throws IOException {
+        String assetName = "ab".repeat(32) + ".svg";
+        Path file = Files.createDirectories(storeRoot.resolve("ab")).resolve(assetName);
+        Files.writeString(file, "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>");
+        AssetStore assetStore = new AssetStore();
+        ReflectionTestUtils.setField(assetStore, "storeRoot", storeRoot);
+        AssetController controller = new AssetController();
+        ReflectionTestUtils.setField(controller, "assetStore", assetStore);
+
+        ResponseEntity<Resource> response = controller.serveAsset(assetName);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        HttpHeaders headers = response.getHeaders();
+        assertEquals("image/svg+xml", String.valueOf(headers.getContentType()));
+        assertEquals("default-src 'none'; style-src 'unsafe-inline'; sandbox",
+                headers.getFirst("Content-Security-Policy"));
+        assertEquals("nosniff", headers.getFirst("X-Content-Type-Options"));
+    }
+}
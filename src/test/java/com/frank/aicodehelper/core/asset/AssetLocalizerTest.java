@@ -0,0 +1,162 @@
+package com.frank.aicodehelper.core.asset;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 部署资源本地化测试（基于本地桩 HTTP 源站）
+ */
+public class AssetLocalizerTest {
+
+    private static final byte[] PHOTO = "fake-jpeg-bytes".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] LOGO = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+
+    private final AtomicInteger originHits = new AtomicInteger();
+
+    private final AtomicInteger internalHits = new AtomicInteger();
+
+    private String origin;
+
+    private AssetLocalizer localizer;
+
+    private AssetStore assetStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/photo.jpg", exchange -> respond(exchange, "image/jpeg", PHOTO));
+        // 不同 URL 返回相同内容，应只存一份
+        server.createContext("/photo-copy.jpg", exchange -> respond(exchange, "image/jpeg", PHOTO));
+        server.createContext("/logo", exchange -> respond(exchange, "image/svg+xml", LOGO));
+        server.createContext("/page.html", exchange -> respond(exchange, "text/html", "<html/>".getBytes()));
+        // 白名单内的重定向可以跟随；重定向到白名单外的地址（如内网服务）不下载
+        server.createContext("/moved.jpg", exchange -> redirect(exchange, "/photo.jpg"));
+        server.createContext("/escape.jpg", exchange -> redirect(exchange,
+                "http://localhost:" + server.getAddress().getPort() + "/internal"));
+        server.createContext("/internal", exchange -> {
+            internalHits.incrementAndGet();
+            respond(exchange, "image/png", "internal".getBytes());
+        });
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        assetStore = new AssetStore();
+        ReflectionTestUtils.setField(assetStore, "storeRoot", tempDir.resolve("store"));
+        localizer = new AssetLocalizer();
+        ReflectionTestUtils.setField(localizer, "assetStore", assetStore);
+        ReflectionTestUtils.setField(localizer, "assetBaseUrl", "/api/assets");
+        ReflectionTestUtils.setField(localizer, "assetHosts", Set.of("127.0.0.1"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void rewritesReferencesAndDeduplicatesContent() throws IOException {
+        Path site = tempDir.resolve("site");
+        Files.createDirectories(site);
+        Files.writeString(site.resolve("index.html"), """
+                <img src="%1$s/photo.jpg">
+                <img src="%1$s/photo-copy.jpg">
+                <img src="%1$s/logo?name=AB&amp;size=64">
+                <a href="%1$s/page.html">link</a>
+                <img src="https://example.com/keep.png">
+                """.formatted(origin));
+        Files.writeString(site.resolve("style.css"), ".hero { background: url(%s/photo.jpg); }".formatted(origin));
+
+        AssetLocalizer.Result result = localizer.localize(site);
+
+        assertEquals(4, result.rewritten());
+        // page.html 不是图片，保留原始引用并计为未本地化
+        assertEquals(1, result.failed());
+        String html = Files.readString(site.resolve("index.html"));
+        assertFalse(html.contains(origin + "/photo.jpg"));
+        assertFalse(html.contains(origin + "/logo"));
+        assertTrue(html.contains("/api/assets/"));
+        // 非图片资源和非白名单域名保持原样
+        assertTrue(html.contains(origin + "/page.html"));
+        assertTrue(html.contains("https://example.com/keep.png"));
+        assertTrue(Files.readString(site.resolve("style.css")).contains("url(/api/assets/"));
+
+        try (Stream<Path> files = Files.walk(tempDir.resolve("store"))) {
+            long assetCount = files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getParent().getFileName().toString().equals("index"))
+                    .count();
+            assertEquals(2, assetCount, "相同内容的图片应只存储一份");
+        }
+    }
+
+    @Test
+    void assetsAreFetchedOnceAcrossApps() throws IOException {
+        for (String app : new String[]{"app1", "app2"}) {
+            Path site = tempDir.resolve(app);
+            Files.createDirectories(site);
+            Files.writeString(site.resolve("index.html"), "<img src=\"%s/photo.jpg\">".formatted(origin));
+            localizer.localize(site);
+        }
+        assertEquals(1, originHits.get());
+
+        String html = Files.readString(tempDir.resolve("app2").resolve("index.html"));
+        String assetName = html.substring(html.indexOf("/api/assets/") + "/api/assets/".length(), html.lastIndexOf('"'));
+        assertNotNull(assetStore.resolve(assetName));
+        assertNull(assetStore.resolve("../secret.jpg"));
+    }
+
+    @Test
+    void redirectTargetsAreCheckedAgainstAllowList() throws IOException {
+        Path site = tempDir.resolve("redirects");
+        Files.createDirectories(site);
+        Files.writeString(site.resolve("index.html"), """
+                <img src="%1$s/moved.jpg">
+                <img src="%1$s/escape.jpg">
+                """.formatted(origin));
+
+        AssetLocalizer.Result result = localizer.localize(site);
+        assertEquals(1, result.rewritten());
+        assertFalse(result.complete());
+        String html = Files.readString(site.resolve("index.html"));
+        assertFalse(html.contains(origin + "/moved.jpg"));
+        assertTrue(html.contains(origin + "/escape.jpg"));
+        assertEquals(0, internalHits.get(), "重定向到白名单外的地址不应被请求");
+    }
+
+    private void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+        exchange.close();
+    }
+
+    private void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        originHits.incrementAndGet();
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
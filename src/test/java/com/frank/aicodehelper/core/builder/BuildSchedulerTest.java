@@ -0,0 +1,138 @@
+package com.frank.aicodehelper.core.builder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 构建调度器测试（用可控的桩构建器代替 npm）
+ */
+public class BuildSchedulerTest {
+
+    private final BlockingBuilder builder = new BlockingBuilder();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BuildScheduler scheduler;
+
+    /**
+     * 每次构建阻塞到测试放行，记录构建顺序和最大并发
+     */
+    private static class BlockingBuilder extends VueProjectBuilder {
+        private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+        private final Semaphore release = new Semaphore(0);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+        private volatile Error failure;
+
+        @Override
+        public boolean isUpToDate(String projectPath) {
+            return false;
+        }
+
+        @Override
+        public boolean buildProject(String projectPath, BuildProgress progress) {
+            if (failure != null) {
+                throw failure;
+            }
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            started.add(projectPath);
+            try {
+                release.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                active.decrementAndGet();
+            }
+            return true;
+        }
+
+        private String awaitStart() throws InterruptedException {
+            String path = started.poll(5, TimeUnit.SECONDS);
+            assertNotNull(path, "构建未启动");
+            return path;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new BuildScheduler();
+        ReflectionTestUtils.setField(scheduler, "vueProjectBuilder", builder);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "buildTracker", new BuildTracker());
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 1);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        builder.release.release(100);
+        scheduler.stop();
+    }
+
+    @Test
+    void coalescesRequestsPerAppAndReusesRunningBuildForDeploy() throws Exception {
+        CompletableFuture<Boolean> first = scheduler.submit(1L, "app-1", BuildPriority.PREVIEW);
+        assertEquals("app-1", builder.awaitStart());
+
+        // 运行中：部署复用当前构建，预览排在其后，后续预览合并到排队的那次
+        CompletableFuture<Boolean> deploy = scheduler.submit(1L, "app-1", BuildPriority.DEPLOY);
+        CompletableFuture<Boolean> second = scheduler.submit(1L, "app-1", BuildPriority.PREVIEW);
+        CompletableFuture<Boolean> third = scheduler.submit(1L, "app-1", BuildPriority.PREVIEW);
+        assertSame(first, deploy);
+        assertSame(second, third);
+
+        builder.release.release();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertEquals("app-1", builder.awaitStart());
+        builder.release.release();
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+
+        assertNull(builder.started.poll(200, TimeUnit.MILLISECONDS), "多余的构建");
+        assertEquals(1, meterRegistry.counter("vue.build.coalesced", "target", "running").count());
+        assertEquals(1, meterRegistry.counter("vue.build.coalesced", "target", "pending").count());
+    }
+
+    @Test
+    void runsDeploysBeforePreviewsWithinConcurrencyLimit() throws Exception {
+        scheduler.submit(1L, "app-1", BuildPriority.PREVIEW);
+        assertEquals("app-1", builder.awaitStart());
+
+        scheduler.submit(2L, "app-2", BuildPriority.PREVIEW);
+        scheduler.submit(3L, "app-3", BuildPriority.PREVIEW);
+        scheduler.submit(4L, "app-4", BuildPriority.DEPLOY);
+        // 合并到排队中的预览请求时提升其优先级
+        scheduler.submit(3L, "app-3", BuildPriority.DEPLOY);
+
+        builder.release.release(4);
+        List<String> order = List.of(builder.awaitStart(), builder.awaitStart(), builder.awaitStart());
+        assertEquals(List.of("app-3", "app-4", "app-2"), order);
+        assertEquals(1, builder.maxActive.get());
+    }
+
+    @Test
+    void abnormalBuildTerminationStillReleasesApp() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 2);
+        scheduler.stop();
+        scheduler.start();
+        builder.failure = new OutOfMemoryError("simulated");
+
+        // 构建以 Error 结束（不被 catch Exception 捕获），结果仍要完成，应用不能卡在运行中
+        assertFalse(scheduler.submit(1L, "app-1", BuildPriority.PREVIEW).get(5, TimeUnit.SECONDS));
+
+        builder.failure = null;
+        CompletableFuture<Boolean> retry = scheduler.submit(1L, "app-1", BuildPriority.DEPLOY);
+        assertEquals("app-1", builder.awaitStart());
+        builder.release.release();
+        assertTrue(retry.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,63 @@
+package com.frank.aicodehelper.core.builder;
+
+import com.frank.aicodehelper.model.enums.BuildStatusEnum;
+import com.frank.aicodehelper.model.vo.BuildStatusVO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 构建状态跟踪测试
+ */
+public class BuildTrackerTest {
+
+    private final BuildTracker tracker = new BuildTracker();
+
+    @Test
+    void recordsStagesAndReplaysLogsToLateSubscribers() {
+        BuildTracker.BuildRun run = tracker.queued(1L);
+        assertEquals("queued", tracker.status(1L).getStatus());
+        assertFalse(tracker.status(1L).getReady());
+
+        run.started();
+        run.stage(BuildStatusEnum.INSTALLING);
+        run.log("added 120 packages");
+        run.stage(BuildStatusEnum.BUILDING);
+        run.log("vite build");
+        run.finish(true, null);
+
+        BuildStatusVO status = tracker.status(1L);
+        assertEquals("succeeded", status.getStatus());
+        assertTrue(status.getReady());
+        assertNotNull(status.getInstallMillis());
+        assertNotNull(status.getBuildMillis());
+
+        // 构建结束后订阅：回放日志和最终状态后立即结束
+        List<BuildTracker.BuildEvent> events = tracker.stream(1L).collectList().block(Duration.ofSeconds(5));
+        assertNotNull(events);
+        assertEquals(List.of("log", "log", "status"), events.stream().map(BuildTracker.BuildEvent::type).toList());
+        assertEquals("added 120 packages", events.get(0).data());
+    }
+
+    @Test
+    void liveSubscriberCompletesWhenBuildFails() {
+        BuildTracker.BuildRun run = tracker.queued(2L);
+        run.started();
+        List<BuildTracker.BuildEvent> received = new CopyOnWriteArrayList<>();
+        var subscription = tracker.stream(2L).doOnNext(received::add).then().toFuture();
+
+        run.stage(BuildStatusEnum.BUILDING);
+        run.log("error: unexpected token");
+        run.finish(false, "构建失败");
+
+        assertDoesNotThrow(() -> subscription.get(5, TimeUnit.SECONDS));
+        assertTrue(received.stream().anyMatch(event -> event.data().equals("error: unexpected token")));
+        assertTrue(received.getLast().data().contains("\"failed\""));
+        assertFalse(tracker.status(2L).getReady());
+    }
+}
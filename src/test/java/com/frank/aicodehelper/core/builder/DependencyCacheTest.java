@@ -0,0 +1,86 @@
+package com.frank.aicodehelper.core.builder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * node_modules 共享缓存测试（用写文件模拟 npm install）
+ */
+public class DependencyCacheTest {
+
+    private static final String PACKAGE_JSON = "{\"dependencies\":{\"vue\":\"^3.5.0\"}}";
+
+    @TempDir
+    Path tempDir;
+
+    private DependencyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DependencyCache();
+        ReflectionTestUtils.setField(cache, "cacheRoot", tempDir.resolve("cache"));
+    }
+
+    @Test
+    void publishesInstallAndLinksProjectsWithSameDependencies() throws IOException {
+        Path first = project("vue_project_1", PACKAGE_JSON);
+        String key = cache.keyOf(first.toFile());
+        assertFalse(cache.link(first.toFile(), key));
+
+        // 模拟 npm install：生成 node_modules 和 lockfile（lockfile 改变了 key）
+        fakeInstall(first);
+        cache.publish(first.toFile(), key);
+        assertTrue(Files.isSymbolicLink(first.resolve("node_modules")));
+        assertEquals("export default {}", Files.readString(first.resolve("node_modules/vue/index.js")));
+
+        // 依赖相同的新项目（尚无 lockfile）直接命中，并补上 lockfile
+        Path second = project("vue_project_2", PACKAGE_JSON);
+        String secondKey = cache.keyOf(second.toFile());
+        assertEquals(key, secondKey);
+        assertTrue(cache.link(second.toFile(), secondKey));
+        assertTrue(Files.isSymbolicLink(second.resolve("node_modules")));
+        assertTrue(Files.exists(second.resolve("package-lock.json")));
+        // 有了 lockfile 之后的 key 同样命中
+        assertTrue(cache.link(second.toFile(), cache.keyOf(second.toFile())));
+
+        // 依赖不同则未命中；真实安装前断开链接，不会写入共享缓存
+        Files.writeString(second.resolve("package.json"), "{\"dependencies\":{\"vue\":\"^3.4.0\"}}");
+        assertFalse(cache.link(second.toFile(), cache.keyOf(second.toFile())));
+        cache.detach(second.toFile());
+        assertFalse(Files.exists(second.resolve("node_modules")));
+        assertTrue(Files.exists(first.resolve("node_modules/vue/index.js")));
+    }
+
+    @Test
+    void replacesLocalNodeModulesOnHit() throws IOException {
+        Path first = project("vue_project_1", PACKAGE_JSON);
+        String key = cache.keyOf(first.toFile());
+        fakeInstall(first);
+        cache.publish(first.toFile(), key);
+
+        Path second = project("vue_project_2", PACKAGE_JSON);
+        fakeInstall(second);
+        assertTrue(cache.link(second.toFile(), cache.keyOf(second.toFile())));
+        assertTrue(Files.isSymbolicLink(second.resolve("node_modules")));
+    }
+
+    private Path project(String name, String packageJson) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve(name));
+        Files.writeString(dir.resolve("package.json"), packageJson);
+        return dir;
+    }
+
+    private static void fakeInstall(Path project) throws IOException {
+        Path vue = Files.createDirectories(project.resolve("node_modules/vue"));
+        Files.writeString(vue.resolve("index.js"), "export default {}");
+        Files.writeString(project.resolve("package-lock.json"), "{\"lockfileVersion\":3}");
+    }
+}
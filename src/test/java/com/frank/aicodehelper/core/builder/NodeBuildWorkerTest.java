@@ -0,0 +1,126 @@
+package com.frank.aicodehelper.core.builder;
+
+import com.frank.aicodehelper.model.enums.BuildStatusEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 常驻 Node 构建进程测试（用桩 vite 模块代替真实构建，需要本机安装 node）
+ */
+public class NodeBuildWorkerTest {
+
+    /**
+     * 桩 vite：把进程 pid 写入 dist/index.html，src/fail 存在时构建失败
+     */
+    private static final String STUB_VITE = """
+            import { mkdirSync, writeFileSync, existsSync } from 'node:fs';
+            import { join } from 'node:path';
+            export async function build({ root }) {
+              console.log('building ' + root);
+              if (existsSync(join(root, 'src/fail'))) {
+                throw new Error('stub build failed');
+              }
+              mkdirSync(join(root, 'dist'), { recursive: true });
+              writeFileSync(join(root, 'dist/index.html'), String(process.pid));
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private NodeBuildWorker worker;
+
+    private final List<String> logs = new CopyOnWriteArrayList<>();
+
+    private final BuildProgress progress = new BuildProgress() {
+        @Override
+        public void stage(BuildStatusEnum status) {
+        }
+
+        @Override
+        public void log(String line) {
+            logs.add(line);
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(nodeAvailable(), "需要 node");
+        worker = new NodeBuildWorker();
+        ReflectionTestUtils.setField(worker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(worker, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+
+    @Test
+    void reusesOneNodeProcessAcrossBuilds() throws IOException {
+        Path first = project("app-1", "vite build");
+        Path second = project("app-2", "vite build");
+
+        assertEquals(NodeBuildWorker.Outcome.SUCCEEDED, worker.build(first.toFile(), 30, progress));
+        assertEquals(NodeBuildWorker.Outcome.SUCCEEDED, worker.build(second.toFile(), 30, progress));
+        // 两次构建在同一个 Node 进程中执行
+        assertEquals(Files.readString(first.resolve("dist/index.html")), Files.readString(second.resolve("dist/index.html")));
+        assertTrue(logs.contains("building " + second));
+        assertEquals(1, meterRegistry.counter("vue.build.worker.starts").count());
+
+        Files.createFile(second.resolve("src/fail"));
+        assertEquals(NodeBuildWorker.Outcome.FAILED, worker.build(second.toFile(), 30, progress));
+        assertTrue(logs.stream().anyMatch(line -> line.contains("stub build failed")));
+    }
+
+    @Test
+    void restartsAfterProcessDiesAndSkipsCustomBuildScripts() throws IOException {
+        Path app = project("app-1", "vite build");
+        assertEquals(NodeBuildWorker.Outcome.SUCCEEDED, worker.build(app.toFile(), 30, progress));
+        String firstPid = Files.readString(app.resolve("dist/index.html"));
+        ProcessHandle.of(Long.parseLong(firstPid)).ifPresent(ProcessHandle::destroyForcibly);
+        ProcessHandle.of(Long.parseLong(firstPid)).ifPresent(handle -> handle.onExit().join());
+
+        assertEquals(NodeBuildWorker.Outcome.SUCCEEDED, worker.build(app.toFile(), 30, progress));
+        assertNotEquals(firstPid, Files.readString(app.resolve("dist/index.html")));
+
+        Path typed = project("app-2", "vue-tsc -b && vite build");
+        assertEquals(NodeBuildWorker.Outcome.UNAVAILABLE, worker.build(typed.toFile(), 30, progress));
+    }
+
+    private Path project(String name, String buildScript) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve(name));
+        Files.writeString(root.resolve("package.json"), "{\"scripts\":{\"build\":\"" + buildScript + "\"}}");
+        Files.createDirectories(root.resolve("src"));
+        Path vite = Files.createDirectories(root.resolve("node_modules/vite"));
+        Files.writeString(vite.resolve("package.json"),
+                "{\"name\":\"vite\",\"type\":\"module\",\"exports\":{\".\":{\"import\":\"./index.js\"},\"./package.json\":\"./package.json\"}}");
+        Files.writeString(vite.resolve("index.js"), STUB_VITE);
+        return root;
+    }
+
+    private static boolean nodeAvailable() {
+        try {
+            return new ProcessBuilder("node", "--version").start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.frank.aicodehelper.core.builder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Vue 项目增量构建测试（构建戳一致时不启动 npm）
+ */
+public class VueProjectBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DependencyCache dependencyCache = new DependencyCache();
+
+    private VueProjectBuilder builder;
+
+    private Path project;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(dependencyCache, "cacheRoot", tempDir.resolve("cache"));
+        builder = new VueProjectBuilder();
+        ReflectionTestUtils.setField(builder, "dependencyCache", dependencyCache);
+        ReflectionTestUtils.setField(builder, "meterRegistry", meterRegistry);
+
+        project = Files.createDirectories(tempDir.resolve("vue_project_1"));
+        Files.writeString(project.resolve("package.json"), "{\"dependencies\":{\"vue\":\"^3.5.0\"}}");
+        Files.writeString(project.resolve("package-lock.json"), "{\"lockfileVersion\":3}");
+        Files.createDirectories(project.resolve("src"));
+        Files.writeString(project.resolve("src/App.vue"), "<template><h1>Hi</h1></template>");
+        Files.createDirectories(project.resolve("node_modules/vue"));
+        Files.createDirectories(project.resolve("dist"));
+        new BuildStamp(BuildStamp.sourceHash(project.toFile()), dependencyCache.keyOf(project.toFile()))
+                .write(project.toFile());
+    }
+
+    @Test
+    void skipsBuildWhenSourcesAndDependenciesAreUnchanged() throws IOException {
+        assertTrue(builder.isUpToDate(project.toString()));
+        assertTrue(builder.buildProject(project.toString()));
+        assertEquals(1, meterRegistry.counter("vue.build.incremental", "stage", "build", "result", "hit").count());
+
+        // 依赖目录和构建产物不参与源码哈希
+        Files.writeString(project.resolve("node_modules/vue/index.js"), "export default {}");
+        Files.writeString(project.resolve("dist/index.html"), "<html></html>");
+        assertTrue(builder.isUpToDate(project.toString()));
+
+        // lockfile 变化改变依赖 key
+        Files.writeString(project.resolve("package-lock.json"), "{\"lockfileVersion\":3,\"packages\":{}}");
+        assertFalse(builder.isUpToDate(project.toString()));
+    }
+
+    @Test
+    void detectsSourceChanges() throws IOException {
+        Files.writeString(project.resolve("src/App.vue"), "<template><h1>Hello</h1></template>");
+        assertFalse(builder.isUpToDate(project.toString()));
+
+        Files.writeString(project.resolve("src/App.vue"), "<template><h1>Hi</h1></template>");
+        assertTrue(builder.isUpToDate(project.toString()));
+
+        Files.writeString(project.resolve("src/main.js"), "import App from './App.vue'");
+        assertFalse(builder.isUpToDate(project.toString()));
+    }
+}
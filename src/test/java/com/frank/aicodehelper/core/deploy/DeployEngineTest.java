@@ -0,0 +1,129 @@
+package com.frank.aicodehelper.core.deploy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 原子增量部署测试
+ */
+public class DeployEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DeployEngine engine = new DeployEngine();
+
+    private Path deployRoot;
+
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        deployRoot = tempDir.resolve("deploy");
+        ReflectionTestUtils.setField(engine, "deployRoot", deployRoot);
+        ReflectionTestUtils.setField(engine, "releaseRoot", tempDir.resolve("releases"));
+        ReflectionTestUtils.setField(engine, "keepReleases", 2);
+        source = Files.createDirectories(tempDir.resolve("dist"));
+        Files.writeString(source.resolve("index.html"), "<h1>v1</h1>");
+        Files.createDirectories(source.resolve("assets"));
+        Files.writeString(source.resolve("assets/app.js"), "console.log(1)");
+        Files.writeString(source.resolve(".build-stamp"), "{}");
+    }
+
+    @Test
+    void publishesBySwappingSymlinkAndReusesUnchangedContent() throws IOException {
+        String first = engine.publish("abc123", source.toFile(), dir -> true);
+        Path site = deployRoot.resolve("abc123");
+        assertTrue(Files.isSymbolicLink(site));
+        assertEquals("<h1>v1</h1>", Files.readString(site.resolve("index.html")));
+        assertFalse(Files.exists(site.resolve(".build-stamp")));
+
+        // 内容不变：同一个发布，不执行 prepare
+        assertEquals(first, engine.publish("abc123", source.toFile(), dir -> fail("不应重新生成发布")));
+
+        // 只改一个文件：未变化的文件与上个发布共享同一个对象
+        Files.writeString(source.resolve("index.html"), "<h1>v2</h1>");
+        String second = engine.publish("abc123", source.toFile(), dir -> true);
+        assertNotEquals(first, second);
+        assertEquals("<h1>v2</h1>", Files.readString(site.resolve("index.html")));
+        Path releases = tempDir.resolve("releases/apps/abc123");
+        assertTrue(Files.isSameFile(releases.resolve(first).resolve("assets/app.js"),
+                releases.resolve(second).resolve("assets/app.js")));
+
+        assertEquals(first, engine.rollback("abc123"));
+        assertEquals("<h1>v1</h1>", Files.readString(site.resolve("index.html")));
+        assertNull(engine.rollback("abc123"));
+    }
+
+    @Test
+    void prepareRewritesOnlyTheNewReleaseAndOldReleasesArePruned() throws IOException {
+        String first = engine.publish("k1", source.toFile(), dir -> true);
+        // 另一个应用部署相同内容，prepare 以替换方式改写文件，不影响共享对象
+        engine.publish("k2", source.toFile(), dir -> {
+            try {
+                Path index = dir.resolve("index.html");
+                Path temp = dir.resolve("index.html.tmp");
+                Files.writeString(temp, "<h1>rewritten</h1>");
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertEquals("<h1>rewritten</h1>", Files.readString(deployRoot.resolve("k2/index.html")));
+        assertEquals("<h1>v1</h1>", Files.readString(deployRoot.resolve("k1/index.html")));
+
+        // 保留 2 个发布，第三次部署后最早的发布被删除
+        Files.writeString(source.resolve("index.html"), "<h1>v2</h1>");
+        engine.publish("k1", source.toFile(), dir -> true);
+        Files.writeString(source.resolve("index.html"), "<h1>v3</h1>");
+        engine.publish("k1", source.toFile(), dir -> true);
+        assertFalse(Files.exists(tempDir.resolve("releases/apps/k1").resolve(first)));
+        assertEquals("<h1>v3</h1>", Files.readString(deployRoot.resolve("k1/index.html")));
+        // k2 仍在使用的对象没有被回收
+        assertEquals("console.log(1)", Files.readString(deployRoot.resolve("k2/assets/app.js")));
+    }
+
+    @Test
+    void incompleteReleaseIsActivatedButNotReused() throws IOException {
+        String partial = engine.publish("p1", source.toFile(), dir -> false);
+        assertTrue(partial.contains("-incomplete-"), partial);
+        assertEquals("<h1>v1</h1>", Files.readString(deployRoot.resolve("p1/index.html")));
+
+        // 相同内容再次部署：重新执行 prepare，完整完成后生成可复用的发布
+        AtomicInteger prepared = new AtomicInteger();
+        String complete = engine.publish("p1", source.toFile(), dir -> prepared.incrementAndGet() > 0);
+        assertEquals(1, prepared.get());
+        assertNotEquals(partial, complete);
+        assertEquals(complete, engine.publish("p1", source.toFile(), dir -> fail("不应重新生成发布")));
+
+        // prepare 抛出异常时放弃发布，当前版本不变
+        Files.writeString(source.resolve("index.html"), "<h1>v2</h1>");
+        assertThrows(IllegalStateException.class, () -> engine.publish("p1", source.toFile(), dir -> {
+            throw new IllegalStateException("localize failed");
+        }));
+        assertEquals("<h1>v1</h1>", Files.readString(deployRoot.resolve("p1/index.html")));
+    }
+
+    @Test
+    void replacesDirectoryLeftByCopyDeploy() throws IOException {
+        Path legacy = Files.createDirectories(deployRoot.resolve("old1"));
+        Files.writeString(legacy.resolve("index.html"), "<h1>old</h1>");
+        engine.publish("old1", source.toFile(), dir -> true);
+        assertTrue(Files.isSymbolicLink(deployRoot.resolve("old1")));
+        assertEquals("<h1>v1</h1>", Files.readString(deployRoot.resolve("old1/index.html")));
+        try (var entries = Files.list(deployRoot)) {
+            assertEquals(1, entries.count());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.frank.aicodehelper.core.pregen;
+
+import com.frank.aicodehelper.ai.AiCodeGeneratorService;
+import com.frank.aicodehelper.ai.AiCodeGeneratorServiceFactory;
+import com.frank.aicodehelper.exception.BusinessException;
+import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.service.RagEnhancedMessageService;
+import com.frank.aicodehelper.service.ChatHistoryService;
+import com.frank.aicodehelper.service.ProjectSummaryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 生成前准备阶段测试：步骤并行执行、保存消息失败时整体失败、保存超时时继续生成
+ */
+public class PreGenerationStageTest {
+
+    private static final long APP_ID = 1L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * summary 与 retrieval 都到达后才放行，串行执行时先到的一方会等待超时
+     */
+    private final CountDownLatch bothStarted = new CountDownLatch(2);
+
+    private final AtomicBoolean summarySawRetrieval = new AtomicBoolean();
+
+    private final AtomicBoolean retrievalSawSummary = new AtomicBoolean();
+
+    private volatile long historyDelayMs;
+
+    private volatile RuntimeException historyFailure;
+
+    private PreGenerationStage stage;
+
+    @BeforeEach
+    void setUp() {
+        stage = new PreGenerationStage();
+        ReflectionTestUtils.setField(stage, "chatHistoryService", stub(ChatHistoryService.class, "addChatMessage", () -> {
+            sleep(historyDelayMs);
+            if (historyFailure != null) {
+                throw historyFailure;
+            }
+            return true;
+        }));
+        ReflectionTestUtils.setField(stage, "projectSummaryService", stub(ProjectSummaryService.class,
+                "generateProjectSummary", () -> {
+                    summarySawRetrieval.set(awaitBoth());
+                    return "summary\n";
+                }));
+        ReflectionTestUtils.setField(stage, "ragEnhancedMessageService", new RagEnhancedMessageService() {
+            @Override
+            public String enhanceMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public List<ContextChunk> retrieveContext(String userMessage, Long appId, CodeGenTypeEnum codeGenType) {
+                retrievalSawSummary.set(awaitBoth());
+                return List.of();
+            }
+
+            @Override
+            public String assembleMessage(String userMessage, Long appId, CodeGenTypeEnum codeGenType,
+                                          String projectSummary, List<ContextChunk> chunks) {
+                return projectSummary + userMessage;
+            }
+        });
+        ReflectionTestUtils.setField(stage, "aiCodeGeneratorServiceFactory", new AiCodeGeneratorServiceFactory() {
+            @Override
+            public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
+                return null;
+            }
+        });
+        ReflectionTestUtils.setField(stage, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(stage, "historyTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(stage, "serviceTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(stage, "summaryTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(stage, "retrievalTimeoutMs", 2000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stage.shutdown();
+    }
+
+    @Test
+    void stepsRunConcurrently() {
+        String message = stage.prepare(APP_ID, "做一个导航栏", CodeGenTypeEnum.VUE_PROJECT, 1L);
+
+        assertEquals("summary\n做一个导航栏", message);
+        assertTrue(summarySawRetrieval.get() && retrievalSawSummary.get(), "summary 与 retrieval 应同时运行");
+    }
+
+    @Test
+    void historyFailurePropagates() {
+        historyFailure = new IllegalStateException("db down");
+
+        assertThrows(BusinessException.class,
+                () -> stage.prepare(APP_ID, "做一个导航栏", CodeGenTypeEnum.VUE_PROJECT, 1L));
+        assertEquals(1, meterRegistry.counter("chat.pregen.degraded", "step", "history", "reason", "error").count());
+    }
+
+    @Test
+    void historyTimeoutDoesNotFailRequest() {
+        historyDelayMs = 1000;
+        ReflectionTestUtils.setField(stage, "historyTimeoutMs", 100L);
+
+        assertEquals("summary\n做一个导航栏", stage.prepare(APP_ID, "做一个导航栏", CodeGenTypeEnum.VUE_PROJECT, 1L));
+        assertEquals(1, meterRegistry.counter("chat.pregen.degraded", "step", "history", "reason", "timeout").count());
+    }
+
+    private boolean awaitBoth() {
+        bothStarted.countDown();
+        try {
+            return bothStarted.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 只实现一个方法的接口桩
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, String method, Supplier<Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            if (m.getName().equals(method)) {
+                return answer.get();
+            }
+            throw new UnsupportedOperationException(m.getName());
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.frank.aicodehelper.core.summary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 项目文件树缓存测试
+ */
+public class ProjectTreeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rendersTreeAndServesCacheUntilChanged() throws IOException {
+        write("package.json", 1);
+        write("src/App.vue", 3);
+        write("src/components/Header.vue", 2);
+        write("node_modules/vue/index.js", 4);
+        ProjectTree tree = new ProjectTree(tempDir);
+
+        ProjectTree.Snapshot first = tree.render();
+        assertEquals("""
+                ├── src/
+                │   ├── components/
+                │   │   └── Header.vue
+                │   └── App.vue
+                └── package.json
+                """, first.tree());
+        // 初始最近变更按修改时间排序，忽略 node_modules
+        assertEquals(List.of("src/App.vue", "src/components/Header.vue", "package.json"), first.recentFiles());
+        assertSame(first, tree.render());
+
+        // 修改已有文件：树结构不变，只更新最近变更
+        tree.onFileChanged(tempDir.resolve("package.json"));
+        ProjectTree.Snapshot modified = tree.render();
+        assertEquals(first.tree(), modified.tree());
+        assertEquals("package.json", modified.recentFiles().get(0));
+
+        // 新增文件：所在目录重新列出
+        write("src/views/Home.vue", 5);
+        tree.onFileChanged(tempDir.resolve("src/views/Home.vue"));
+        ProjectTree.Snapshot created = tree.render();
+        assertTrue(created.tree().contains("│   ├── views/\n│   │   └── Home.vue\n"), created.tree());
+        assertEquals("src/views/Home.vue", created.recentFiles().get(0));
+
+        // 删除文件：从树和最近变更中移除
+        Files.delete(tempDir.resolve("src/components/Header.vue"));
+        tree.onDeleted(tempDir.resolve("src/components/Header.vue"));
+        ProjectTree.Snapshot deleted = tree.render();
+        assertFalse(deleted.tree().contains("Header.vue"));
+        assertFalse(deleted.recentFiles().contains("src/components/Header.vue"));
+
+        // 忽略目录中的变更不影响缓存
+        tree.onFileChanged(tempDir.resolve("node_modules/vue/index.js"));
+        assertSame(deleted, tree.render());
+    }
+
+    @Test
+    void watcherPicksUpExternalChanges() throws Exception {
+        write("src/App.vue", 1);
+        ProjectTree tree = new ProjectTree(tempDir);
+        ProjectChangeWatcher watcher = new ProjectChangeWatcher();
+        try {
+            watcher.watch(1L, tree);
+            tree.render();
+            long version = tree.version();
+
+            write("src/main.js", 2);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (tree.version() == version && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(tree.render().tree().contains("main.js"));
+        } finally {
+            watcher.unwatch(tree);
+            watcher.close();
+        }
+    }
+
+    private void write(String relativePath, int ageRank) throws IOException {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, relativePath);
+        // ageRank 越大越新
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L + ageRank * 1000L));
+    }
+}
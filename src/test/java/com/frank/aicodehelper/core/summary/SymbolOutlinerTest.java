@@ -0,0 +1,63 @@
+package com.frank.aicodehelper.core.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 符号概要提取测试（基于 RAG 测试用的示例项目）
+ */
+public class SymbolOutlinerTest {
+
+    private static final Path SHOP = Path.of("src/test/resources/rag/fixtures/shop");
+
+    private static final Path BLOG = Path.of("src/test/resources/rag/fixtures/blog");
+
+    @Test
+    void outlinesRoutesStoresAndExports() throws IOException {
+        assertEquals(List.of(
+                "routes: / -> HomeView, /products -> ProductsView, /cart -> CartView",
+                "exports: default"
+        ), outline(SHOP, "src/router/index.js"));
+
+        assertEquals(List.of(
+                "store: cart",
+                "state: items",
+                "getters: count, totalPrice",
+                "actions: addItem, removeItem",
+                "exports: useCartStore"
+        ), outline(SHOP, "src/stores/cart.js"));
+
+        assertEquals(List.of("exports: fetchPosts, fetchPostById, createComment, likePost"),
+                outline(BLOG, "src/api/posts.js"));
+    }
+
+    @Test
+    void outlinesVueComponents() throws IOException {
+        List<String> app = outline(SHOP, "src/App.vue");
+        assertTrue(app.contains("components: NavBar, HeroBanner, router-view, FooterBar"), app.toString());
+
+        List<String> productList = outline(SHOP, "src/components/ProductList.vue");
+        assertTrue(productList.contains("props: products"), productList.toString());
+        assertTrue(productList.contains("functions: addToCart"), productList.toString());
+
+        List<String> commentList = outline(BLOG, "src/components/CommentList.vue");
+        assertTrue(commentList.contains("props: comments"), commentList.toString());
+        assertTrue(commentList.contains("classes: .comment-item, .comment-avatar"), commentList.toString());
+
+        assertEquals(List.of("props: title, count"), SymbolOutliner.outline("src/components/Badge.vue", """
+                <script setup lang="ts">
+                const props = defineProps<{ title: string; count?: number }>()
+                </script>
+                """));
+    }
+
+    private static List<String> outline(Path project, String relativePath) throws IOException {
+        return SymbolOutliner.outline(relativePath, Files.readString(project.resolve(relativePath)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.frank.aicodehelper.rag.benchmark;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地 Embedding 替身：哈希词袋向量，无需网络、结果确定
+ * 按非字母数字切分整词（不理解驼峰/连字符拆分），中文按单字，哈希到固定维度后归一化，
+ * 模拟语义模型对代码标识符不敏感的情况
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    public HashingEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        calls.incrementAndGet();
+        return Response.from(segments.stream().map(segment -> hashedBagOfWords(segment.text())).toList());
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * embedAll 的累计调用次数（单条 embed 也经由 embedAll）
+     */
+    public int calls() {
+        return calls.get();
+    }
+
+    private Embedding hashedBagOfWords(String text) {
+        float[] vector = new float[dimension];
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9\\u4e00-\\u9fff]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (word.codePointAt(0) >= 0x4e00) {
+                word.chars().forEach(c -> vector[Math.floorMod(Character.hashCode((char) c), dimension)] += 1f);
+            } else {
+                vector[Math.floorMod(word.hashCode(), dimension)] += 1f;
+            }
+        }
+        Embedding embedding = Embedding.from(vector);
+        embedding.normalize();
+        return embedding;
+    }
+}
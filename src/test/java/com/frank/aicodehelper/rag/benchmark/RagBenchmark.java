@@ -0,0 +1,392 @@
+package com.frank.aicodehelper.rag.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.core.summary.ProjectChangeWatcher;
+import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.indexing.ChunkHashRegistry;
+import com.frank.aicodehelper.rag.indexing.CodeIndexingPipeline;
+import com.frank.aicodehelper.rag.lexical.Bm25Index;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.packing.ContextPacker;
+import com.frank.aicodehelper.rag.service.impl.ProjectContextServiceImpl;
+import com.frank.aicodehelper.rag.service.impl.RagEnhancedMessageServiceImpl;
+import com.frank.aicodehelper.service.impl.ProjectSummaryServiceImpl;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * RAG 检索质量与延迟基准
+ * 对每个 fixture 项目（src/test/resources/rag/fixtures/{name}，标注查询在 {name}.queries.json）：
+ * 1. 复制到 CODE_OUTPUT_ROOT_DIR 作为一个 Vue 项目，经 VueCodeChunker + CodeIndexingPipeline 建立索引
+ *    （向量模型为 HashingEmbeddingModel，向量存储为 InMemoryEmbeddingStore）
+ * 2. 每条查询调用 ProjectContextService.searchContext 计算 recall@k、MRR，
+ *    再调用 RagEnhancedMessageServiceImpl.enhanceMessage 统计注入的 token 数、期望文件是否进入上下文
+ * 3. 两者各重复 iterations 次（每次使用新的检索缓存）统计 p50/p99 延迟
+ * 查询的 expected 为文件路径（命中该文件任意片段）或 文件#区块（命中该区块或其拆分片段），可以是单个字符串或数组
+ * 结果以 JSON 输出，可用 main 方法单独运行并与基线结果对比：
+ * RagBenchmark [输出文件] [基线文件]
+ */
+public class RagBenchmark {
+
+    public static final List<String> DEFAULT_FIXTURES = List.of("shop", "blog");
+
+    public static final int[] RECALL_KS = {1, 3, 5};
+
+    private static final long APP_ID_BASE = 987650000L;
+
+    private static final int DIMENSION = 256;
+
+    private static final String FIXTURE_ROOT = "src/test/resources/rag/fixtures";
+
+    private final RagConfig ragConfig;
+
+    private final int iterations;
+
+    public RagBenchmark(RagConfig ragConfig, int iterations) {
+        this.ragConfig = ragConfig;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : "target/rag-benchmark/latest.json");
+        JSONObject report = new RagBenchmark(new RagConfig(), 20).run(DEFAULT_FIXTURES);
+        write(report, output);
+        System.out.println(summarize(report));
+        if (args.length > 1) {
+            JSONObject baseline = JSONUtil.parseObj(Files.readString(Paths.get(args[1])));
+            System.out.println(compare(baseline, report));
+        }
+    }
+
+    /**
+     * 运行全部 fixture 并汇总
+     */
+    public JSONObject run(List<String> fixtures) throws IOException {
+        List<QueryResult> all = new ArrayList<>();
+        JSONArray projects = new JSONArray();
+        for (int i = 0; i < fixtures.size(); i++) {
+            List<QueryResult> results = new ArrayList<>();
+            JSONObject project = runProject(fixtures.get(i), APP_ID_BASE + i, results);
+            projects.add(project);
+            all.addAll(results);
+        }
+        JSONObject report = new JSONObject(true);
+        report.set("timestamp", LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        report.set("config", configSnapshot());
+        report.set("overall", aggregate(all));
+        report.set("projects", projects);
+        return report;
+    }
+
+    private JSONObject runProject(String fixture, long appId, List<QueryResult> results) throws IOException {
+        Path source = Paths.get(FIXTURE_ROOT, fixture);
+        Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, CodeGenTypeEnum.VUE_PROJECT.getValue() + "_" + appId);
+        FileUtil.del(projectRoot);
+        FileUtil.copyContent(source.toFile(), projectRoot.toFile(), true);
+
+        Components components = new Components(ragConfig);
+        try {
+            // 1. 建立索引
+            long indexStart = System.nanoTime();
+            int files = 0;
+            try (Stream<Path> paths = Files.walk(projectRoot)) {
+                for (Path file : paths.filter(Files::isRegularFile).toList()) {
+                    String relativePath = projectRoot.relativize(file).toString().replace('\\', '/');
+                    components.service.indexCodeFile(appId, relativePath, Files.readString(file));
+                    files++;
+                }
+            }
+            components.pipeline.flushAll();
+            double indexMillis = (System.nanoTime() - indexStart) / 1e6;
+
+            // 2. 逐条查询评估质量，并重复测量延迟
+            List<JSONObject> queries = JSONUtil.parseArray(Files.readString(Paths.get(FIXTURE_ROOT, fixture + ".queries.json")))
+                    .toList(JSONObject.class);
+            int topK = Math.max(RECALL_KS[RECALL_KS.length - 1], ragConfig.getRetrieval().getPackCandidates());
+            for (JSONObject query : queries) {
+                String text = query.getStr("query");
+                List<String> expected = expectedTargets(query.get("expected"));
+                QueryResult result = new QueryResult(text, expected);
+                for (int i = 0; i < iterations; i++) {
+                    components.resetCache();
+                    long start = System.nanoTime();
+                    List<ContextChunk> chunks = components.service.searchContext(appId, text, topK, 0.0);
+                    result.searchMillis.add((System.nanoTime() - start) / 1e6);
+
+                    components.resetCache();
+                    start = System.nanoTime();
+                    String enhanced = components.enhancer.enhanceMessage(text, appId, CodeGenTypeEnum.VUE_PROJECT);
+                    result.enhanceMillis.add((System.nanoTime() - start) / 1e6);
+
+                    if (i == 0) {
+                        result.evaluate(chunks, enhanced, components.packer);
+                    }
+                }
+                results.add(result);
+            }
+
+            JSONObject project = new JSONObject(true);
+            project.set("name", fixture);
+            project.set("files", files);
+            project.set("chunks", (long) components.meterRegistry.get("rag.indexing.chunks.embedded").counter().count());
+            project.set("indexMillis", round(indexMillis));
+            project.set("metrics", aggregate(results));
+            JSONArray details = new JSONArray();
+            results.forEach(result -> details.add(result.toJson()));
+            project.set("queries", details);
+            return project;
+        } finally {
+            components.pipeline.shutdown();
+            FileUtil.del(projectRoot);
+        }
+    }
+
+    private JSONObject configSnapshot() {
+        JSONObject config = new JSONObject(true);
+        config.set("embedding", "hashing-bow-" + DIMENSION);
+        config.set("iterations", iterations);
+        config.set("targetChunkSize", ragConfig.getIndexing().getTargetChunkSize());
+        config.set("maxChunkSize", ragConfig.getIndexing().getMaxChunkSize());
+        config.set("hybridEnabled", ragConfig.getRetrieval().isHybridEnabled());
+        config.set("packCandidates", ragConfig.getRetrieval().getPackCandidates());
+        config.set("contextTokenBudget", ragConfig.getRetrieval().getContextTokenBudget());
+        return config;
+    }
+
+    private static JSONObject aggregate(List<QueryResult> results) {
+        JSONObject metrics = new JSONObject(true);
+        metrics.set("queries", results.size());
+        for (int k : RECALL_KS) {
+            metrics.set("recall@" + k, round(results.stream().mapToDouble(r -> r.recallAt(k)).average().orElse(0)));
+        }
+        metrics.set("mrr", round(results.stream().mapToDouble(QueryResult::reciprocalRank).average().orElse(0)));
+        metrics.set("contextHitRate", round(results.stream().mapToDouble(r -> r.contextHit ? 1 : 0).average().orElse(0)));
+        double[] tokens = results.stream().mapToDouble(r -> r.injectedTokens).toArray();
+        metrics.set("injectedTokensMean", round(Arrays.stream(tokens).average().orElse(0)));
+        metrics.set("injectedTokensP50", percentile(tokens, 50));
+        metrics.set("injectedTokensMax", Arrays.stream(tokens).max().orElse(0));
+        double[] search = results.stream().flatMap(r -> r.searchMillis.stream()).mapToDouble(Double::doubleValue).toArray();
+        double[] enhance = results.stream().flatMap(r -> r.enhanceMillis.stream()).mapToDouble(Double::doubleValue).toArray();
+        metrics.set("searchP50Millis", percentile(search, 50));
+        metrics.set("searchP99Millis", percentile(search, 99));
+        metrics.set("enhanceP50Millis", percentile(enhance, 50));
+        metrics.set("enhanceP99Millis", percentile(enhance, 99));
+        return metrics;
+    }
+
+    /**
+     * 写出结果：指定文件 + 同目录下带时间戳的副本，便于保留历史
+     */
+    public static void write(JSONObject report, Path output) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        String json = JSONUtil.toJsonPrettyStr(report);
+        Files.writeString(output, json);
+        String stamp = report.getStr("timestamp").replace(":", "").replace("-", "");
+        Files.writeString(output.resolveSibling("rag-benchmark-" + stamp + ".json"), json);
+    }
+
+    /**
+     * 单行摘要
+     */
+    public static String summarize(JSONObject report) {
+        JSONObject overall = report.getJSONObject("overall");
+        StringBuilder sb = new StringBuilder("[rag-benchmark]");
+        overall.forEach((key, value) -> sb.append(' ').append(key).append('=').append(value));
+        return sb.toString();
+    }
+
+    /**
+     * 与基线逐项对比整体指标
+     */
+    public static String compare(JSONObject baseline, JSONObject current) {
+        JSONObject before = baseline.getJSONObject("overall");
+        JSONObject after = current.getJSONObject("overall");
+        StringBuilder sb = new StringBuilder("[rag-benchmark] 与基线对比:");
+        after.forEach((key, value) -> {
+            Double old = before.getDouble(key);
+            Double now = after.getDouble(key);
+            if (old != null && now != null) {
+                sb.append(String.format("%n  %-20s %10.3f -> %10.3f (%+.3f)", key, old, now, now - old));
+            }
+        });
+        return sb.toString();
+    }
+
+    static List<String> expectedTargets(Object expected) {
+        if (expected instanceof JSONArray array) {
+            return array.toList(String.class);
+        }
+        return List.of(String.valueOf(expected));
+    }
+
+    /**
+     * 片段键是否命中期望目标：目标为文件时命中该文件的任意片段，为 文件#区块 时命中该区块及其拆分片段
+     */
+    static boolean matches(String chunkKey, String target) {
+        if (!target.contains("#")) {
+            int hash = chunkKey.indexOf('#');
+            return (hash < 0 ? chunkKey : chunkKey.substring(0, hash)).equals(target);
+        }
+        return chunkKey.equals(target) || chunkKey.startsWith(target + ":") || chunkKey.startsWith(target + "~");
+    }
+
+    private static double percentile(double[] values, int percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return round(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * 单条查询的评估结果
+     */
+    private static final class QueryResult {
+
+        private final String query;
+
+        private final List<String> expected;
+
+        private final List<Double> searchMillis = new ArrayList<>();
+
+        private final List<Double> enhanceMillis = new ArrayList<>();
+
+        private List<String> ranked = List.of();
+
+        private int injectedTokens;
+
+        private boolean contextHit;
+
+        private QueryResult(String query, List<String> expected) {
+            this.query = query;
+            this.expected = expected;
+        }
+
+        private void evaluate(List<ContextChunk> chunks, String enhanced, ContextPacker packer) {
+            ranked = chunks.stream().map(ContextChunk::getFilePath).toList();
+            injectedTokens = packer.countTokens(enhanced) - packer.countTokens(query);
+            contextHit = expected.stream().allMatch(target -> {
+                int hash = target.indexOf('#');
+                return enhanced.contains("[" + (hash < 0 ? target : target.substring(0, hash)) + "]");
+            });
+        }
+
+        private double recallAt(int k) {
+            List<String> top = ranked.subList(0, Math.min(k, ranked.size()));
+            long found = expected.stream().filter(target -> top.stream().anyMatch(key -> matches(key, target))).count();
+            return (double) found / expected.size();
+        }
+
+        private double reciprocalRank() {
+            for (int i = 0; i < ranked.size(); i++) {
+                String key = ranked.get(i);
+                if (expected.stream().anyMatch(target -> matches(key, target))) {
+                    return 1.0 / (i + 1);
+                }
+            }
+            return 0;
+        }
+
+        private JSONObject toJson() {
+            JSONObject json = new JSONObject(true);
+            json.set("query", query);
+            json.set("expected", expected);
+            json.set("top", ranked.subList(0, Math.min(RECALL_KS[RECALL_KS.length - 1], ranked.size())));
+            json.set("reciprocalRank", round(reciprocalRank()));
+            for (int k : RECALL_KS) {
+                json.set("recall@" + k, round(recallAt(k)));
+            }
+            json.set("injectedTokens", injectedTokens);
+            json.set("contextHit", contextHit);
+            return json;
+        }
+    }
+
+    /**
+     * 一个 fixture 项目使用的一套独立组件（与生产一致的装配，只替换向量模型和向量存储）
+     */
+    private static final class Components {
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private final CodeIndexingPipeline pipeline = new CodeIndexingPipeline();
+
+        private final ProjectContextServiceImpl service = new ProjectContextServiceImpl();
+
+        private final ContextPacker packer = new ContextPacker();
+
+        private final RagEnhancedMessageServiceImpl enhancer = new RagEnhancedMessageServiceImpl();
+
+        private Components(RagConfig ragConfig) {
+            HashingEmbeddingModel model = new HashingEmbeddingModel(DIMENSION);
+            InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+            VueCodeChunker chunker = new VueCodeChunker();
+            ReflectionTestUtils.setField(chunker, "ragConfig", ragConfig);
+            Bm25Index bm25Index = new Bm25Index();
+            ReflectionTestUtils.setField(bm25Index, "vueCodeChunker", chunker);
+            ChunkHashRegistry registry = new ChunkHashRegistry();
+
+            ReflectionTestUtils.setField(pipeline, "dashScopeEmbeddingModel", model);
+            ReflectionTestUtils.setField(pipeline, "embeddingStore", store);
+            ReflectionTestUtils.setField(pipeline, "vueCodeChunker", chunker);
+            ReflectionTestUtils.setField(pipeline, "ragConfig", ragConfig);
+            ReflectionTestUtils.setField(pipeline, "chunkHashRegistry", registry);
+            ReflectionTestUtils.setField(pipeline, "retrievalCache", new RetrievalCache());
+            ReflectionTestUtils.setField(pipeline, "bm25Index", bm25Index);
+            ReflectionTestUtils.setField(pipeline, "meterRegistry", meterRegistry);
+            pipeline.init();
+
+            ReflectionTestUtils.setField(service, "dashScopeEmbeddingModel", model);
+            ReflectionTestUtils.setField(service, "embeddingStore", store);
+            ReflectionTestUtils.setField(service, "vueCodeChunker", chunker);
+            ReflectionTestUtils.setField(service, "ragConfig", ragConfig);
+            ReflectionTestUtils.setField(service, "codeIndexingPipeline", pipeline);
+            ReflectionTestUtils.setField(service, "chunkHashRegistry", registry);
+            ReflectionTestUtils.setField(service, "bm25Index", bm25Index);
+            ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+            resetCache();
+
+            ReflectionTestUtils.setField(packer, "ragConfig", ragConfig);
+            ReflectionTestUtils.setField(enhancer, "projectContextService", service);
+            ProjectSummaryServiceImpl projectSummaryService = new ProjectSummaryServiceImpl();
+            ReflectionTestUtils.setField(projectSummaryService, "projectChangeWatcher", new ProjectChangeWatcher());
+            ReflectionTestUtils.setField(projectSummaryService, "contextPacker", packer);
+            ReflectionTestUtils.setField(enhancer, "projectSummaryService", projectSummaryService);
+            ReflectionTestUtils.setField(enhancer, "ragConfig", ragConfig);
+            ReflectionTestUtils.setField(enhancer, "contextPacker", packer);
+        }
+
+        /**
+         * 换用新的检索缓存，保证每次测量都是冷缓存
+         */
+        private void resetCache() {
+            ReflectionTestUtils.setField(service, "retrievalCache", new RetrievalCache());
+        }
+    }
+}
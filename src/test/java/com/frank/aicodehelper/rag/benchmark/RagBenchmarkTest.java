@@ -0,0 +1,44 @@
+package com.frank.aicodehelper.rag.benchmark;
+
+import cn.hutool.json.JSONObject;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RAG 基准冒烟测试：在全部 fixture 上跑一遍，输出 target/rag-benchmark/latest.json，并校验指标在合理范围
+ */
+public class RagBenchmarkTest {
+
+    @Test
+    void runsAllFixturesAndWritesReport() throws Exception {
+        JSONObject report = new RagBenchmark(new RagConfig(), 3).run(RagBenchmark.DEFAULT_FIXTURES);
+        Path output = Paths.get("target/rag-benchmark/latest.json");
+        RagBenchmark.write(report, output);
+        System.out.println(RagBenchmark.summarize(report));
+
+        assertTrue(Files.exists(output));
+        JSONObject overall = report.getJSONObject("overall");
+        assertEquals(23, overall.getInt("queries"));
+        assertTrue(overall.getDouble("recall@5") >= 0.6, "recall@5=" + overall.getDouble("recall@5"));
+        assertTrue(overall.getDouble("recall@5") >= overall.getDouble("recall@1"));
+        assertTrue(overall.getDouble("mrr") > 0);
+        assertTrue(overall.getDouble("injectedTokensMax") <= new RagConfig().getRetrieval().getContextTokenBudget() * 1.5);
+        assertTrue(overall.getDouble("searchP99Millis") >= overall.getDouble("searchP50Millis"));
+        assertEquals(2, report.getJSONArray("projects").size());
+    }
+
+    @Test
+    void matchesFilesAndSections() {
+        assertTrue(RagBenchmark.matches("src/views/PostDetail.vue#script", "src/views/PostDetail.vue"));
+        assertTrue(RagBenchmark.matches("src/views/PostDetail.vue#script:submitComment", "src/views/PostDetail.vue#script"));
+        assertTrue(RagBenchmark.matches("src/api/posts.js#fetchPosts", "src/api/posts.js"));
+        assertFalse(RagBenchmark.matches("src/views/PostDetail.vue#style", "src/views/PostDetail.vue#script"));
+        assertFalse(RagBenchmark.matches("src/views/PostDetail.vue#script2", "src/views/PostDetail.vue#script"));
+    }
+}
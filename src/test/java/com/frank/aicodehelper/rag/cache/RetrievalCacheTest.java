@@ -0,0 +1,94 @@
+package com.frank.aicodehelper.rag.cache;
+
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索缓存测试
+ */
+public class RetrievalCacheTest {
+
+    @Test
+    void cachesEmbeddingsAndInvalidatesResultsOnIndexWrite() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalCache cache = new RetrievalCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.init();
+
+        AtomicInteger embedCalls = new AtomicInteger();
+        cache.getEmbedding("修改  导航栏颜色", q -> {
+            embedCalls.incrementAndGet();
+            return Embedding.from(new float[]{1f, 2f});
+        });
+        cache.getEmbedding(" 修改 导航栏颜色 ", q -> {
+            embedCalls.incrementAndGet();
+            return Embedding.from(new float[]{1f, 2f});
+        });
+        assertEquals(1, embedCalls.get());
+
+        List<ContextChunk> chunks = List.of(ContextChunk.builder()
+                .filePath("src/components/NavBar.vue#style").content(".nav { color: red }").score(0.9).build());
+        cache.putResult(cache.resultKey(1L, "修改导航栏颜色", 1, 0.0), chunks);
+        assertEquals(1, cache.getResult(cache.resultKey(1L, "修改导航栏颜色", 1, 0.0)).size());
+        assertNull(cache.getResult(cache.resultKey(2L, "修改导航栏颜色", 1, 0.0)));
+
+        // 索引写入后旧结果失效，其他应用不受影响
+        cache.putResult(cache.resultKey(2L, "修改导航栏颜色", 1, 0.0), chunks);
+        cache.bumpGeneration(1L);
+        assertNull(cache.getResult(cache.resultKey(1L, "修改导航栏颜色", 1, 0.0)));
+        assertNotNull(cache.getResult(cache.resultKey(2L, "修改导航栏颜色", 1, 0.0)));
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "rag.query.embedding")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void resultComputedBeforeGenerationBumpIsNotServedAfterIt() {
+        RetrievalCache cache = new RetrievalCache();
+        List<ContextChunk> staleChunks = List.of(ContextChunk.builder()
+                .filePath("src/App.vue").content("<template>old</template>").score(0.9).build());
+
+        // 检索开始：确定键并查询未命中
+        String key = cache.resultKey(1L, "修改标题", 3, 0.0);
+        assertNull(cache.getResult(key));
+        // 检索期间索引写入，代数递增
+        cache.bumpGeneration(1L);
+        // 检索结束：结果写在检索开始时的键下
+        cache.putResult(key, staleChunks);
+
+        assertNull(cache.getResult(cache.resultKey(1L, "修改标题", 3, 0.0)));
+    }
+
+    @Test
+    void mutatingReturnedChunksDoesNotAffectCache() {
+        RetrievalCache cache = new RetrievalCache();
+        String key = cache.resultKey(1L, "修改标题", 3, 0.0);
+        ContextChunk stored = ContextChunk.builder()
+                .filePath("src/App.vue").content("<template>title</template>").score(0.9)
+                .metadata(new HashMap<>(Map.of("startLine", "1"))).build();
+        cache.putResult(key, List.of(stored));
+        // 写入后修改调用方持有的片段
+        stored.setContent("changed by caller");
+
+        ContextChunk first = cache.getResult(key).get(0);
+        assertEquals("<template>title</template>", first.getContent());
+        first.setContent("changed by packer");
+        first.setScore(0.1);
+        first.getMetadata().put("startLine", "99");
+
+        ContextChunk second = cache.getResult(key).get(0);
+        assertEquals("<template>title</template>", second.getContent());
+        assertEquals(0.9, second.getScore());
+        assertEquals("1", second.getMetadata().get("startLine"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.frank.aicodehelper.rag.chunking;
+
+import com.frank.aicodehelper.rag.config.RagConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 分块 JMH 基准：逐文件串行分块 vs chunkAll 并行分块
+ * 输入为 fixture 项目的源码按倍数放大（模拟大组件），运行方式：
+ * mvn test-compile 后以测试 classpath 执行本类的 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkerBenchmark {
+
+    private static final Path FIXTURE_ROOT = Paths.get("src/test/resources/rag/fixtures/shop");
+
+    /**
+     * 每个文件内容放大的倍数
+     */
+    @Param({"1", "20"})
+    public int scale;
+
+    private VueCodeChunker chunker;
+
+    private List<VueCodeChunker.SourceFile> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", new RagConfig());
+        files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(FIXTURE_ROOT)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                String relativePath = FIXTURE_ROOT.relativize(path).toString().replace('\\', '/');
+                if (chunker.supports(relativePath)) {
+                    files.add(new VueCodeChunker.SourceFile(1L, relativePath, amplify(relativePath, Files.readString(path))));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int sequential() {
+        int total = 0;
+        for (VueCodeChunker.SourceFile file : files) {
+            total += chunker.chunk(file.appId(), file.filePath(), file.content()).size();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int parallel() {
+        return chunker.chunkAll(files).stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * 放大文件：Vue 文件重复 script/style 区块内部内容，其他文件整体重复
+     */
+    private String amplify(String filePath, String content) {
+        if (scale <= 1) {
+            return content;
+        }
+        if (!filePath.endsWith(".vue")) {
+            return content.repeat(scale);
+        }
+        String result = content;
+        for (String section : List.of("script", "style")) {
+            int[] range = VueCodeChunker.locateSection(result, section);
+            if (range == null) {
+                continue;
+            }
+            String block = result.substring(range[0], range[1]);
+            int bodyStart = block.indexOf('>') + 1;
+            int bodyEnd = block.lastIndexOf("</");
+            String body = block.substring(bodyStart, bodyEnd);
+            result = result.substring(0, range[0]) + block.substring(0, bodyStart) + body.repeat(scale)
+                    + block.substring(bodyEnd) + result.substring(range[1]);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
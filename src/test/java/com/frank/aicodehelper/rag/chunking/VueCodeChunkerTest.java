@@ -0,0 +1,107 @@
+package com.frank.aicodehelper.rag.chunking;
+
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.model.CodeContextDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 语法感知分块测试：按函数/CSS 规则/JSON 键切分、片段重叠、符号元数据、确定性片段 ID
+ */
+public class VueCodeChunkerTest {
+
+    private RagConfig ragConfig;
+
+    private VueCodeChunker chunker;
+
+    @BeforeEach
+    void setUp() {
+        ragConfig = new RagConfig();
+        ragConfig.getIndexing().setTargetChunkSize(300);
+        ragConfig.getIndexing().setChunkOverlap(60);
+        chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", ragConfig);
+    }
+
+    @Test
+    void splitsScriptOnFunctionBoundariesWithOverlap() {
+        StringBuilder js = new StringBuilder("import { ref } from 'vue'\n\n");
+        for (String name : List.of("addToCart", "removeFromCart", "clearCart", "checkout")) {
+            js.append("// ").append(name).append("\n")
+                    .append("export function ").append(name).append("(item) {\n")
+                    .append("  const price = item.price * item.quantity\n".repeat(4))
+                    .append("  return price\n}\n\n");
+        }
+        String content = js.toString();
+        List<CodeContextDocument> chunks = chunker.chunk(1L, "src/stores/cart.js", content);
+
+        assertTrue(chunks.size() > 1);
+        for (CodeContextDocument chunk : chunks) {
+            assertTrue(content.contains(chunk.getContent()), "片段必须是原文的连续子串");
+            String symbols = (String) chunk.getMetadata().get("symbols");
+            assertNotNull(symbols, chunk.getFilePath());
+            assertTrue(chunk.getFilePath().startsWith("src/stores/cart.js#"), chunk.getFilePath());
+        }
+        // 函数不会被切断：每个函数的声明和 return 落在同一片段
+        for (String name : List.of("addToCart", "removeFromCart", "clearCart", "checkout")) {
+            assertTrue(chunks.stream().anyMatch(chunk -> chunk.getContent().contains("function " + name + "(")
+                    && chunk.getContent().indexOf("return price", chunk.getContent().indexOf("function " + name + "(")) > 0));
+        }
+        // 后续片段以上一片段的结尾作为重叠窗口
+        CodeContextDocument second = chunks.get(1);
+        int secondStart = (int) second.getMetadata().get("startLine");
+        int firstEnd = (int) chunks.get(0).getMetadata().get("endLine");
+        assertTrue(secondStart <= firstEnd, "相邻片段应有重叠: " + firstEnd + " / " + secondStart);
+    }
+
+    @Test
+    void splitsStyleJsonAndVueSections() {
+        StringBuilder css = new StringBuilder();
+        for (String selector : List.of(".nav-bar", ".nav-item", ".dropdown-menu", ".hero-banner", ".footer")) {
+            css.append(selector).append(" {\n").append("  margin: 0 auto;\n  padding: 12px 16px;\n".repeat(3)).append("}\n");
+        }
+        List<CodeContextDocument> cssChunks = chunker.chunk(1L, "src/style.css", css.toString());
+        assertTrue(cssChunks.size() > 1);
+        assertTrue(cssChunks.stream().allMatch(chunk -> chunk.getContent().trim().endsWith("}")));
+        assertTrue(String.valueOf(cssChunks.get(0).getMetadata().get("symbols")).contains(".nav-bar"));
+
+        StringBuilder json = new StringBuilder("{\n");
+        for (String key : List.of("name", "scripts", "dependencies", "devDependencies")) {
+            json.append("  \"").append(key).append("\": {\n")
+                    .append("    \"some-package-name\": \"^1.0.0\",\n".repeat(3)).append("    \"x\": \"1\"\n  },\n");
+        }
+        json.append("  \"private\": true\n}\n");
+        List<CodeContextDocument> jsonChunks = chunker.chunk(1L, "package.json", json.toString());
+        String jsonSymbols = String.join(",", jsonChunks.stream()
+                .map(chunk -> String.valueOf(chunk.getMetadata().get("symbols"))).toList());
+        assertTrue(jsonSymbols.contains("dependencies") && jsonSymbols.contains("devDependencies"), jsonSymbols);
+
+        String vue = "<template>\n  <nav class=\"nav-bar\">Home</nav>\n</template>\n\n"
+                + "<script setup>\n" + "const open = ref(false)\n".repeat(20) + "</script>\n\n"
+                + "<style scoped>\n.nav-bar { color: red; }\n</style>\n";
+        List<CodeContextDocument> vueChunks = chunker.chunk(1L, "src/components/NavBar.vue", vue);
+        List<String> keys = vueChunks.stream().map(CodeContextDocument::getFilePath).toList();
+        assertTrue(keys.contains("src/components/NavBar.vue#template"), keys.toString());
+        assertTrue(keys.contains("src/components/NavBar.vue#style"), keys.toString());
+        assertEquals("NavBar", vueChunks.get(0).getMetadata().get("componentName"));
+    }
+
+    @Test
+    void smallFileStaysWholeAndIdsAreDeterministic() {
+        String content = "export const total = (items) => items.length\n";
+        List<CodeContextDocument> first = chunker.chunk(1L, "src/utils.js", content);
+        List<CodeContextDocument> second = chunker.chunk(1L, "src/utils.js", content);
+
+        assertEquals(1, first.size());
+        assertEquals("src/utils.js", first.get(0).getFilePath());
+        assertEquals("total", first.get(0).getMetadata().get("symbols"));
+        assertEquals(first.get(0).getChunkId(), second.get(0).getChunkId());
+        assertNotEquals(first.get(0).getChunkId(),
+                chunker.chunk(2L, "src/utils.js", content).get(0).getChunkId());
+    }
+}
@@ -0,0 +1,59 @@
+package com.frank.aicodehelper.rag.config;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 进程内 ONNX Embedding 测试：无需网络即可批量向量化，向量空间命名与默认空间隔离
+ */
+public class OnnxEmbeddingProviderTest {
+
+    @Test
+    void embedsOfflineWithSeparateSpace() {
+        DashScopeEmbeddingConfig config = new DashScopeEmbeddingConfig();
+        assertEquals("", config.spaceSuffix());
+
+        config.setProvider("onnx");
+        config.getOnnx().setThreads(2);
+        assertEquals(384, config.effectiveDimension());
+        assertEquals("_onnx_384", config.spaceSuffix());
+
+        EmbeddingModel model = config.dashScopeEmbeddingModel();
+        List<Embedding> embeddings = model.embedAll(List.of(
+                TextSegment.from("navigation bar with dropdown menu"),
+                TextSegment.from("top nav bar dropdown"),
+                TextSegment.from("shopping cart total price calculation"))).content();
+
+        assertEquals(3, embeddings.size());
+        assertEquals(384, embeddings.get(0).dimension());
+        double related = CosineSimilarity.between(embeddings.get(0), embeddings.get(1));
+        double unrelated = CosineSimilarity.between(embeddings.get(0), embeddings.get(2));
+        assertTrue(related > unrelated, "相近文本的相似度应更高: " + related + " vs " + unrelated);
+    }
+
+    @Test
+    void customModelWithoutTokenizerFailsWithPropertyName(@TempDir Path tempDir) throws IOException {
+        DashScopeEmbeddingConfig config = new DashScopeEmbeddingConfig();
+        config.setProvider("onnx");
+        Path modelFile = Files.writeString(tempDir.resolve("model.onnx"), "");
+        config.getOnnx().setModelPath(modelFile.toString());
+
+        IllegalStateException missing = assertThrows(IllegalStateException.class, config::dashScopeEmbeddingModel);
+        assertTrue(missing.getMessage().contains("rag.embedding.onnx.tokenizer-path"), missing.getMessage());
+
+        config.getOnnx().setTokenizerPath(tempDir.resolve("tokenizer.json").toString());
+        IllegalStateException notFound = assertThrows(IllegalStateException.class, config::dashScopeEmbeddingModel);
+        assertTrue(notFound.getMessage().contains("rag.embedding.onnx.tokenizer-path"), notFound.getMessage());
+    }
+}
@@ -0,0 +1,281 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.lexical.Bm25Index;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引流水线测试：防抖合并、跨文件合批、批量写入、按片段哈希增量向量化、按登记ID删除、失败重试
+ */
+public class CodeIndexingPipelineTest {
+
+    private final AtomicInteger embedCalls = new AtomicInteger();
+
+    /**
+     * 向量化包含该文本的片段时阻塞，直到 releaseEmbedding 放行（用于制造并发写入）
+     */
+    private volatile String blockOn;
+
+    private final CountDownLatch embeddingBlocked = new CountDownLatch(1);
+
+    private final CountDownLatch releaseEmbedding = new CountDownLatch(1);
+
+    /**
+     * 向量化包含 "flaky" 的片段时剩余的失败次数
+     */
+    private final AtomicInteger flakyFailures = new AtomicInteger();
+
+    private final InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CodeIndexingPipeline pipeline;
+
+    private RagConfig ragConfig;
+
+    @BeforeEach
+    void setUp() {
+        ragConfig = new RagConfig();
+        ragConfig.getIndexing().setDebounceMillis(60_000);
+        ragConfig.getIndexing().setEmbedBatchSize(2);
+
+        VueCodeChunker chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", ragConfig);
+
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+                embedCalls.incrementAndGet();
+                if (segments.stream().anyMatch(s -> s.text().contains("flaky"))
+                        && flakyFailures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("embedding service unavailable");
+                }
+                String marker = blockOn;
+                if (marker != null && segments.stream().anyMatch(s -> s.text().contains(marker))) {
+                    embeddingBlocked.countDown();
+                    try {
+                        releaseEmbedding.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Response.from(segments.stream()
+                        .map(s -> Embedding.from(new float[]{s.text().length(), 1f}))
+                        .toList());
+            }
+        };
+
+        pipeline = new CodeIndexingPipeline();
+        ReflectionTestUtils.setField(pipeline, "dashScopeEmbeddingModel", model);
+        ReflectionTestUtils.setField(pipeline, "embeddingStore", store);
+        ReflectionTestUtils.setField(pipeline, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(pipeline, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(pipeline, "chunkHashRegistry", new ChunkHashRegistry());
+        ReflectionTestUtils.setField(pipeline, "retrievalCache", new RetrievalCache());
+        Bm25Index bm25Index = new Bm25Index();
+        ReflectionTestUtils.setField(bm25Index, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(pipeline, "bm25Index", bm25Index);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", meterRegistry);
+        pipeline.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void coalescesAndBatchesAcrossFiles() {
+        for (int i = 1; i <= 5; i++) {
+            pipeline.submit(1L, "src/App.vue", "<template>v" + i + "</template>");
+        }
+        pipeline.submit(1L, "src/main.js", "import App from './App.vue'");
+        pipeline.submit(1L, "src/style.css", "body { margin: 0 }");
+        assertEquals(3.0, meterRegistry.get("rag.indexing.queue.depth").gauge().value());
+
+        // 防抖窗口内不处理
+        pipeline.flush(false);
+        assertEquals(0, embedCalls.get());
+
+        pipeline.flushAll();
+        // 3 个片段、每批 2 个 -> 2 次 embedAll
+        assertEquals(2, embedCalls.get());
+        assertEquals(4.0, meterRegistry.get("rag.indexing.coalesced").counter().count());
+        assertEquals(0.0, meterRegistry.get("rag.indexing.queue.depth").gauge().value());
+
+        List<String> texts = store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[]{1f, 1f}))
+                        .maxResults(10)
+                        .build())
+                .matches().stream().map(m -> m.embedded().text()).toList();
+        assertEquals(3, texts.size());
+        assertTrue(texts.contains("<template>v5</template>"));
+
+        // 写入后紧跟删除：只执行删除
+        pipeline.submit(1L, "src/main.js", "changed");
+        pipeline.submitDelete(1L, "src/main.js");
+        pipeline.flushAll();
+        assertEquals(2, embedCalls.get());
+        assertEquals(2, store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1f, 1f}))
+                .maxResults(10)
+                .build()).matches().size());
+    }
+
+    @Test
+    void reembedsOnlyChangedChunks() {
+        ragConfig.getIndexing().setTargetChunkSize(60);
+        String template = "<template>\n  <div class=\"hero\">Hello</div>\n</template>\n";
+        String script = "<script setup>\nconst title = 'home'\n</script>\n";
+        pipeline.submit(1L, "src/App.vue", template + script + "<style>\n.hero { color: red }\n</style>\n");
+        pipeline.flushAll();
+        assertEquals(3.0, meterRegistry.get("rag.indexing.chunks.embedded").counter().count());
+
+        // 只修改 style：template/script 跳过，旧 style 片段被替换
+        pipeline.submit(1L, "src/App.vue", template + script + "<style>\n.hero { color: blue }\n</style>\n");
+        pipeline.flushAll();
+        assertEquals(4.0, meterRegistry.get("rag.indexing.chunks.embedded").counter().count());
+        assertEquals(2.0, meterRegistry.get("rag.indexing.chunks.skipped").counter().count());
+        assertEquals(1.0, meterRegistry.get("rag.indexing.chunks.removed").counter().count());
+        assertEquals(3, searchAll().size());
+        assertTrue(searchAll().stream().anyMatch(text -> text.contains("blue")));
+
+        // 删除 style 区块：只删除消失的片段，不重新向量化
+        pipeline.submit(1L, "src/App.vue", template + script);
+        pipeline.flushAll();
+        assertEquals(4.0, meterRegistry.get("rag.indexing.chunks.embedded").counter().count());
+        assertEquals(2, searchAll().size());
+
+        // 删除文件：按登记的 ID 精确删除全部片段
+        pipeline.submitDelete(1L, "src/App.vue");
+        pipeline.flushAll();
+        assertEquals(0, searchAll().size());
+    }
+
+    @Test
+    void dropsStaleVersions() {
+        long older = pipeline.nextVersion();
+        long newer = pipeline.nextVersion();
+        // 新版本先到、旧版本晚到：队列中保留新版本
+        pipeline.submit(1L, "src/main.js", "const v = 'new'", newer);
+        pipeline.submit(1L, "src/main.js", "const v = 'old'", older);
+        pipeline.flushAll();
+        assertEquals(List.of("const v = 'new'"), searchAll());
+
+        // 批量重建读到的旧内容晚于新版本写入：整个写入被丢弃
+        assertEquals(0, pipeline.indexNow(1L, Map.of("src/main.js", "const v = 'old'"), false, older));
+        assertEquals(List.of("const v = 'new'"), searchAll());
+        assertEquals(2.0, meterRegistry.get("rag.indexing.stale.dropped").counter().count());
+    }
+
+    @Test
+    void deletesByRegisteredIdsOnceAppIsTracked() {
+        // 未完整登记的应用：新文件写入前要按路径过滤清理可能存在的旧索引
+        pipeline.submit(1L, "src/main.js", "import App from './App.vue'");
+        pipeline.flushAll();
+        assertEquals(1.0, meterRegistry.get("rag.indexing.filter.removals").counter().count());
+
+        // 全量索引成功后标记为完整登记，之后的新文件、删除、删除应用都不再过滤检索
+        assertEquals(0, pipeline.indexNow(1L, Map.of("src/main.js", "import App from './App.vue'",
+                "src/App.vue", "<template>app</template>"), false, pipeline.nextVersion()));
+        assertEquals(2.0, meterRegistry.get("rag.indexing.filter.removals").counter().count());
+        pipeline.submit(1L, "src/router.js", "export default []");
+        pipeline.submitDelete(1L, "src/App.vue");
+        pipeline.flushAll();
+        assertEquals(2, searchAll().size());
+
+        assertEquals(2, pipeline.removeApp(1L));
+        assertEquals(0, searchAll().size());
+        assertEquals(2.0, meterRegistry.get("rag.indexing.filter.removals").counter().count());
+    }
+
+    @Test
+    void failedFilesAreRetriedWithBackoffAndNewerContentWins() throws Exception {
+        ragConfig.getIndexing().setRetryBackoffMillis(100);
+        flakyFailures.set(2);
+        pipeline.submit(1L, "src/main.js", "const flaky = 1");
+        pipeline.flushAll();
+        assertEquals(0, searchAll().size());
+        assertEquals(1.0, meterRegistry.get("rag.indexing.queue.depth").gauge().value());
+
+        // 退避期内不重试
+        pipeline.flush(false);
+        assertEquals(1.0, meterRegistry.get("rag.indexing.retried").counter().count());
+        Thread.sleep(150);
+        // 第二次失败，退避翻倍后成功
+        pipeline.flush(false);
+        assertEquals(2.0, meterRegistry.get("rag.indexing.retried").counter().count());
+        Thread.sleep(250);
+        pipeline.flush(false);
+        assertEquals(List.of("const flaky = 1"), searchAll());
+
+        // 重试等待期间提交的新版本不会被旧版本的重试覆盖
+        flakyFailures.set(1);
+        pipeline.submit(1L, "src/main.js", "const flaky = 2");
+        pipeline.flushAll();
+        pipeline.submit(1L, "src/main.js", "const v = 3");
+        Thread.sleep(150);
+        pipeline.flushAll();
+        assertEquals(List.of("const v = 3"), searchAll());
+    }
+
+    @Test
+    void reusedChunksRemovedDuringEmbeddingAreReembedded() throws Exception {
+        ragConfig.getIndexing().setTargetChunkSize(60);
+        String template = "<template>\n  <div class=\"hero\">Hello</div>\n</template>\n";
+        String script = "<script setup>\nconst title = 'home'\n</script>\n";
+        long v1 = pipeline.nextVersion();
+        long v2 = pipeline.nextVersion();
+        long v3 = pipeline.nextVersion();
+        pipeline.indexNow(1L, Map.of("src/App.vue", template + script + "<style>\n.hero { color: red }\n</style>\n"),
+                false, v1);
+
+        // v3 只改 style：template/script 沿用 v1 登记的 ID，向量化 style 时阻塞
+        blockOn = "blue";
+        CompletableFuture<Integer> newer = CompletableFuture.supplyAsync(() -> pipeline.indexNow(1L,
+                Map.of("src/App.vue", template + script + "<style>\n.hero { color: blue }\n</style>\n"), false, v3));
+        assertTrue(embeddingBlocked.await(5, TimeUnit.SECONDS));
+
+        // 此时较早的 v2 写入完成，删除了 v1 的全部片段
+        assertEquals(0, pipeline.indexNow(1L, Map.of("src/App.vue", "<template>\n  <p>Other</p>\n</template>\n"),
+                false, v2));
+        releaseEmbedding.countDown();
+        assertEquals(0, newer.get(5, TimeUnit.SECONDS));
+
+        // 登记的每个片段在向量存储中都存在
+        List<String> texts = searchAll();
+        assertEquals(3, texts.size(), texts.toString());
+        assertTrue(texts.stream().anyMatch(text -> text.contains("Hello")));
+        assertTrue(texts.stream().anyMatch(text -> text.contains("home")));
+        assertTrue(texts.stream().noneMatch(text -> text.contains("Other")));
+    }
+
+    private List<String> searchAll() {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[]{1f, 1f}))
+                        .maxResults(20)
+                        .build())
+                .matches().stream().map(m -> m.embedded().text()).toList();
+    }
+}
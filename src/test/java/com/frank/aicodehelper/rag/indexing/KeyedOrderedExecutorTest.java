@@ -0,0 +1,84 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按键有序执行器测试：同键严格有序、跨键并行、队列满时在提交线程执行、指标
+ */
+public class KeyedOrderedExecutorTest {
+
+    @Test
+    void ordersPerKeyAndRunsKeysInParallel() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Map<String, List<Integer>> executed = new ConcurrentHashMap<>();
+        CountDownLatch bothKeysRunning = new CountDownLatch(2);
+        try (KeyedOrderedExecutor executor = new KeyedOrderedExecutor("test", 1000, 100, meterRegistry)) {
+            for (String key : List.of("a", "b")) {
+                // 每个键的第一个任务等待另一个键也开始执行：只有跨键并行才能通过
+                executor.submit(key, () -> {
+                    bothKeysRunning.countDown();
+                    try {
+                        assertTrue(bothKeysRunning.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            for (int i = 0; i < 200; i++) {
+                int seq = i;
+                String key = i % 2 == 0 ? "a" : "b";
+                executor.submit(key, () -> {
+                    // 制造随机耗时，顺序只能由执行器保证
+                    if (seq % 7 == 0) {
+                        Thread.yield();
+                    }
+                    executed.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(seq);
+                });
+            }
+            executor.submit("a", () -> {
+                throw new IllegalStateException("boom");
+            });
+            executor.submit("a", () -> executed.get("a").add(-1));
+            assertTrue(executor.awaitIdle(5000));
+        }
+
+        assertEquals(IntStream.range(0, 200).filter(i -> i % 2 == 0).boxed().toList(),
+                executed.get("a").subList(0, 100));
+        assertEquals(-1, executed.get("a").get(100), "失败任务不能阻断同键后续任务");
+        assertEquals(IntStream.range(0, 200).filter(i -> i % 2 == 1).boxed().toList(), executed.get("b"));
+        assertEquals(204.0, meterRegistry.get("keyed.executor.submitted").tag("executor", "test").counter().count());
+        assertEquals(1.0, meterRegistry.get("keyed.executor.failed").tag("executor", "test").counter().count());
+    }
+
+    @Test
+    void runsOnCallerThreadWhenFull() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        try (KeyedOrderedExecutor executor = new KeyedOrderedExecutor("small", 1, 10, meterRegistry)) {
+            executor.submit("a", () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.submit("b", () -> threads.add(Thread.currentThread().getName()));
+            release.countDown();
+            assertTrue(executor.awaitIdle(5000));
+        }
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+        assertEquals(1.0, meterRegistry.get("keyed.executor.caller.runs").tag("executor", "small").counter().count());
+    }
+}
@@ -0,0 +1,118 @@
+package com.frank.aicodehelper.rag.indexing;
+
+import cn.hutool.core.io.FileUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.lexical.Bm25Index;
+import com.frank.aicodehelper.rag.model.ReindexProgress;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量重建索引任务测试：并行处理全部项目、进度统计、停止后续跑跳过已完成项目
+ */
+public class ProjectReindexJobTest {
+
+    private static final List<Long> APP_IDS = List.of(987650001L, 987650002L, 987650003L);
+
+    private final Set<Long> embeddedApps = ConcurrentHashMap.newKeySet();
+
+    private CodeIndexingPipeline pipeline;
+
+    private ProjectReindexJob job;
+
+    @BeforeEach
+    void setUp() {
+        for (Long appId : APP_IDS) {
+            String root = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + appId).toString();
+            FileUtil.writeUtf8String("<template><div>" + appId + "</div></template>", root + "/src/App.vue");
+            FileUtil.writeUtf8String("import App from './App.vue'", root + "/src/main.js");
+            FileUtil.writeUtf8String("module.exports = {}", root + "/node_modules/vue/index.js");
+        }
+
+        RagConfig ragConfig = new RagConfig();
+        ragConfig.getIndexing().setReindexConcurrency(2);
+        VueCodeChunker chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", ragConfig);
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+                segments.forEach(segment -> embeddedApps.add(Long.parseLong(segment.metadata().getString("appId"))));
+                return Response.from(segments.stream().map(s -> Embedding.from(new float[]{1f, 1f})).toList());
+            }
+        };
+        Bm25Index bm25Index = new Bm25Index();
+        ReflectionTestUtils.setField(bm25Index, "vueCodeChunker", chunker);
+
+        pipeline = new CodeIndexingPipeline();
+        ReflectionTestUtils.setField(pipeline, "dashScopeEmbeddingModel", model);
+        ReflectionTestUtils.setField(pipeline, "embeddingStore", new InMemoryEmbeddingStore<TextSegment>());
+        ReflectionTestUtils.setField(pipeline, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(pipeline, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(pipeline, "chunkHashRegistry", new ChunkHashRegistry());
+        ReflectionTestUtils.setField(pipeline, "retrievalCache", new RetrievalCache());
+        ReflectionTestUtils.setField(pipeline, "bm25Index", bm25Index);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", new SimpleMeterRegistry());
+        pipeline.init();
+
+        job = new ProjectReindexJob();
+        ReflectionTestUtils.setField(job, "codeIndexingPipeline", pipeline);
+        ReflectionTestUtils.setField(job, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(job, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(job, "embeddingConfig", new DashScopeEmbeddingConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+        pipeline.shutdown();
+        APP_IDS.forEach(appId -> FileUtil.del(Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + appId)));
+    }
+
+    @Test
+    void indexesAllProjectsAndResumesAfterStop() throws InterruptedException {
+        ReindexProgress progress = awaitFinish(job.start(false, false));
+        assertEquals(ReindexProgress.Status.COMPLETED, progress.getStatus());
+        assertTrue(embeddedApps.containsAll(APP_IDS));
+        assertTrue(progress.getCompletedProjects() >= APP_IDS.size());
+        assertEquals(0, progress.getFailedProjects());
+
+        // 模拟上一次任务停止时只完成了第一个项目：续跑只处理剩下的项目
+        embeddedApps.clear();
+        ReflectionTestUtils.setField(job, "status", ReindexProgress.Status.STOPPED);
+        @SuppressWarnings("unchecked")
+        Set<Long> done = (Set<Long>) ReflectionTestUtils.getField(job, "localDone");
+        done.removeAll(APP_IDS.subList(1, 3));
+        progress = awaitFinish(job.start(true, false));
+        assertEquals(ReindexProgress.Status.COMPLETED, progress.getStatus());
+        assertFalse(embeddedApps.contains(APP_IDS.get(0)));
+        assertTrue(embeddedApps.containsAll(APP_IDS.subList(1, 3)));
+        assertTrue(progress.getResumedProjects() >= 1);
+    }
+
+    private ReindexProgress awaitFinish(ReindexProgress progress) throws InterruptedException {
+        for (int i = 0; i < 200 && progress.getStatus() == ReindexProgress.Status.RUNNING; i++) {
+            Thread.sleep(50);
+            progress = job.progress();
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,65 @@
+package com.frank.aicodehelper.rag.lexical;
+
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 词法检索测试：代码分词、BM25 排序、增量替换、RRF 融合
+ */
+public class Bm25IndexTest {
+
+    @Test
+    void tokenizesIdentifiersIntoWholeWordsAndParts() {
+        List<String> tokens = CodeTokenizer.tokenize("<NavBar class=\"hero-title\" /> addToCart 导航栏");
+        assertTrue(tokens.containsAll(List.of("navbar", "nav", "bar", "hero-title", "hero", "title",
+                "addtocart", "add", "cart", "导航", "航栏")));
+        assertEquals(Set.of("navbar", "hero-title"), CodeTokenizer.identifiers("fix the NavBar and .hero-title color"));
+        assertTrue(CodeTokenizer.identifiers("make the price bold").isEmpty());
+    }
+
+    @Test
+    void ranksByBm25AndReplacesFileChunks() {
+        VueCodeChunker chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", new RagConfig());
+        Bm25Index index = new Bm25Index();
+        ReflectionTestUtils.setField(index, "vueCodeChunker", chunker);
+
+        long appId = -42L;
+        index.replaceFile(appId, "src/components/NavBar.vue", chunker.chunk(appId, "src/components/NavBar.vue",
+                "<template><nav class=\"nav-dropdown\">menu</nav></template>"));
+        index.replaceFile(appId, "src/App.vue", chunker.chunk(appId, "src/App.vue",
+                "<template><NavBar /><main>content</main></template>"));
+
+        List<Bm25Index.Hit> hits = index.search(appId, "nav dropdown", 5);
+        assertTrue(hits.get(0).document().filePath().startsWith("src/components/NavBar.vue"));
+
+        // 替换后旧内容不再命中
+        index.replaceFile(appId, "src/components/NavBar.vue", chunker.chunk(appId, "src/components/NavBar.vue",
+                "<template><nav class=\"top-menu\">menu</nav></template>"));
+        assertTrue(index.search(appId, "dropdown", 5).isEmpty());
+
+        index.removeFile(appId, "src/App.vue");
+        assertTrue(index.search(appId, "content", 5).isEmpty());
+    }
+
+    @Test
+    void fusesRankingsByReciprocalRank() {
+        Map<String, Double> fused = ReciprocalRankFusion.fuse(60, List.of(
+                new ReciprocalRankFusion.Ranking(List.of("a", "b", "c"), 1.0),
+                new ReciprocalRankFusion.Ranking(List.of("c", "a"), 1.0)));
+        assertEquals(List.of("a", "c", "b"), List.copyOf(fused.keySet()));
+        assertTrue(fused.get("a") < 1.0 && fused.get("a") > fused.get("c"));
+
+        Map<String, Double> single = ReciprocalRankFusion.fuse(60, List.of(
+                new ReciprocalRankFusion.Ranking(List.of("x"), 1.0)));
+        assertEquals(1.0, single.get("x"), 1e-9);
+    }
+}
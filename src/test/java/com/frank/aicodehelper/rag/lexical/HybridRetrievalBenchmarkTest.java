@@ -0,0 +1,149 @@
+package com.frank.aicodehelper.rag.lexical;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.frank.aicodehelper.rag.benchmark.HashingEmbeddingModel;
+import com.frank.aicodehelper.rag.cache.RetrievalCache;
+import com.frank.aicodehelper.rag.chunking.VueCodeChunker;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.indexing.ChunkHashRegistry;
+import com.frank.aicodehelper.rag.indexing.CodeIndexingPipeline;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.service.impl.ProjectContextServiceImpl;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 混合检索基准：在 fixture 项目上对比纯向量检索与 BM25 + 向量 RRF 融合的命中率和查询向量化次数
+ * 向量模型用哈希词袋代替（见 HashingEmbeddingModel）
+ */
+public class HybridRetrievalBenchmarkTest {
+
+    private static final long APP_ID = 1L;
+
+    private static final int DIMENSION = 64;
+
+    private HashingEmbeddingModel model;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RagConfig ragConfig;
+
+    private CodeIndexingPipeline pipeline;
+
+    private ProjectContextServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ragConfig = new RagConfig();
+        VueCodeChunker chunker = new VueCodeChunker();
+        ReflectionTestUtils.setField(chunker, "ragConfig", ragConfig);
+        model = new HashingEmbeddingModel(DIMENSION);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        Bm25Index bm25Index = new Bm25Index();
+        ReflectionTestUtils.setField(bm25Index, "vueCodeChunker", chunker);
+        ChunkHashRegistry registry = new ChunkHashRegistry();
+
+        pipeline = new CodeIndexingPipeline();
+        ReflectionTestUtils.setField(pipeline, "dashScopeEmbeddingModel", model);
+        ReflectionTestUtils.setField(pipeline, "embeddingStore", store);
+        ReflectionTestUtils.setField(pipeline, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(pipeline, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(pipeline, "chunkHashRegistry", registry);
+        ReflectionTestUtils.setField(pipeline, "retrievalCache", new RetrievalCache());
+        ReflectionTestUtils.setField(pipeline, "bm25Index", bm25Index);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", meterRegistry);
+        pipeline.init();
+
+        service = new ProjectContextServiceImpl();
+        ReflectionTestUtils.setField(service, "dashScopeEmbeddingModel", model);
+        ReflectionTestUtils.setField(service, "embeddingStore", store);
+        ReflectionTestUtils.setField(service, "vueCodeChunker", chunker);
+        ReflectionTestUtils.setField(service, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(service, "codeIndexingPipeline", pipeline);
+        ReflectionTestUtils.setField(service, "chunkHashRegistry", registry);
+        ReflectionTestUtils.setField(service, "bm25Index", bm25Index);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+
+        Path root = Paths.get(getClass().getResource("/rag/fixtures/shop").toURI());
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String relativePath = root.relativize(file).toString().replace('\\', '/');
+                service.indexCodeFile(APP_ID, relativePath, Files.readString(file));
+            }
+        }
+        pipeline.flushAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void hybridRetrievalBeatsVectorOnly() throws Exception {
+        List<JSONObject> queries = JSONUtil.parseArray(Files.readString(
+                Paths.get(getClass().getResource("/rag/fixtures/shop.queries.json").toURI()))).toList(JSONObject.class);
+
+        ragConfig.getRetrieval().setHybridEnabled(false);
+        Result vector = run(queries);
+        ragConfig.getRetrieval().setHybridEnabled(true);
+        Result hybrid = run(queries);
+
+        System.out.printf("[hybrid-retrieval] queries=%d%n", queries.size());
+        System.out.printf("[hybrid-retrieval] vector-only: hit@1=%d hit@3=%d embedCalls=%d%n",
+                vector.hitAt1, vector.hitAt3, vector.embedCalls);
+        System.out.printf("[hybrid-retrieval] hybrid(RRF): hit@1=%d hit@3=%d embedCalls=%d%n",
+                hybrid.hitAt1, hybrid.hitAt3, hybrid.embedCalls);
+
+        assertTrue(hybrid.hitAt1 >= vector.hitAt1, "混合检索 hit@1 不应低于纯向量检索");
+        assertTrue(hybrid.hitAt3 >= vector.hitAt3, "混合检索 hit@3 不应低于纯向量检索");
+        assertTrue(hybrid.embedCalls < vector.embedCalls, "标识符查询应跳过查询向量化");
+    }
+
+    private Result run(List<JSONObject> queries) {
+        // 每轮使用新的检索缓存，保证向量化次数可比
+        ReflectionTestUtils.setField(service, "retrievalCache", new RetrievalCache());
+        Result result = new Result();
+        int before = model.calls();
+        for (JSONObject query : queries) {
+            List<ContextChunk> chunks = service.searchContext(APP_ID, query.getStr("query"), 3, 0.0);
+            String expected = query.getStr("expected");
+            for (int i = 0; i < chunks.size(); i++) {
+                if (baseFile(chunks.get(i).getFilePath()).equals(expected)) {
+                    result.hitAt3++;
+                    if (i == 0) {
+                        result.hitAt1++;
+                    }
+                    break;
+                }
+            }
+        }
+        result.embedCalls = model.calls() - before;
+        return result;
+    }
+
+    private static String baseFile(String chunkPath) {
+        int hash = chunkPath.indexOf('#');
+        return hash < 0 ? chunkPath : chunkPath.substring(0, hash);
+    }
+
+    private static final class Result {
+        private int hitAt1;
+        private int hitAt3;
+        private int embedCalls;
+    }
+}
@@ -0,0 +1,139 @@
+package com.frank.aicodehelper.rag.packing;
+
+import cn.hutool.core.io.FileUtil;
+import com.frank.aicodehelper.constant.AppConstant;
+import com.frank.aicodehelper.model.enums.CodeGenTypeEnum;
+import com.frank.aicodehelper.rag.config.RagConfig;
+import com.frank.aicodehelper.rag.model.ContextChunk;
+import com.frank.aicodehelper.rag.service.impl.RagEnhancedMessageServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上下文打包测试：token 预算、相邻片段合并、整段注入、预算不足时截断（含超长单行）、摘要与代码共用预算
+ */
+public class ContextPackerTest {
+
+    private static final long APP_ID = 987660001L;
+
+    private static final String PROJECT_ROOT =
+            Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + APP_ID).toString();
+
+    private static final String SCRIPT = "<script setup>\nimport { ref } from 'vue'\nconst open = ref(false)\n"
+            + "function toggle() {\n  open.value = !open.value\n}\n</script>";
+
+    private ContextPacker packer;
+
+    @BeforeEach
+    void setUp() {
+        RagConfig ragConfig = new RagConfig();
+        packer = new ContextPacker();
+        ReflectionTestUtils.setField(packer, "ragConfig", ragConfig);
+        FileUtil.writeUtf8String("<template>\n  <nav @click=\"toggle\">Menu</nav>\n</template>\n\n" + SCRIPT + "\n",
+                PROJECT_ROOT + "/src/components/NavBar.vue");
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileUtil.del(PROJECT_ROOT);
+    }
+
+    @Test
+    void mergesAdjacentSpansAndExpandsWholeSections() {
+        List<ContextChunk> candidates = List.of(
+                chunk("src/components/NavBar.vue#script:toggle", "function toggle() {\n  open.value = !open.value\n}\n",
+                        1.0, 4, 6, "toggle"),
+                chunk("src/stores/cart.js#addItem", "export function addItem(item) {\n  items.push(item)\n}\n",
+                        0.8, 10, 12, "addItem"),
+                chunk("src/stores/cart.js#total", "}\nexport const total = () => items.length\n",
+                        0.6, 12, 13, "total"),
+                chunk("src/main.js", "import App from './App.vue'\n", 0.3, 1, 1, null));
+
+        ContextPacker.PackedContext packed = packer.pack(APP_ID, candidates, 2000);
+
+        // NavBar 的 script 区块从磁盘整段注入
+        assertTrue(packed.text().contains("<script>部分"), packed.text());
+        assertTrue(packed.text().contains(SCRIPT));
+        // cart.js 两个重叠片段合并成第 10-13 行，重叠行只出现一次
+        assertTrue(packed.text().contains("[src/stores/cart.js] 第 10-13 行"), packed.text());
+        assertTrue(packed.text().contains("  items.push(item)\n}\nexport const total"), packed.text());
+        assertTrue(packed.text().contains("（addItem, total）"));
+        assertTrue(packed.text().contains("[src/main.js]"));
+        assertEquals(3, packed.blocks());
+        assertEquals(packer.countTokens(packed.text()), packed.tokens());
+        assertTrue(packed.tokens() <= 2000);
+    }
+
+    @Test
+    void respectsBudgetAndKeepsBestChunk() {
+        String big = "const line = 'some long repeated content for the token budget'\n".repeat(200);
+        List<ContextChunk> candidates = List.of(
+                chunk("src/big.js#line", big, 1.0, 1, 200, "line"),
+                chunk("src/main.js", "import App from './App.vue'\n", 0.5, 1, 1, null));
+
+        ContextPacker.PackedContext packed = packer.pack(APP_ID, candidates, 300);
+
+        assertTrue(packed.tokens() <= 300, "tokens=" + packed.tokens());
+        assertTrue(packed.text().contains("[src/big.js]"), "最相关的片段截断后仍应注入");
+        assertTrue(packed.text().contains("内容已截断"));
+    }
+
+    @Test
+    void singleLineLongerThanBudgetIsCutByCharacters() {
+        // 压缩后的单行代码，按行截断无法缩小
+        String minified = "const data = [" + "'item', ".repeat(2000) + "]";
+        List<ContextChunk> candidates = List.of(chunk("src/data.js#data", minified, 1.0, 1, 1, "data"));
+
+        ContextPacker.PackedContext packed = packer.pack(APP_ID, candidates, 200);
+
+        assertTrue(packed.tokens() <= 200, "tokens=" + packed.tokens());
+        assertEquals(packer.countTokens(packed.text()), packed.tokens());
+        assertTrue(packed.text().contains("const data = ['item'"), packed.text());
+        assertTrue(packed.text().contains("内容已截断"));
+
+        // 预算连代码块标题都放不下时不注入
+        ContextPacker.PackedContext tiny = packer.pack(APP_ID, candidates, 10);
+        assertEquals(0, tiny.blocks());
+        assertEquals(0, tiny.tokens());
+    }
+
+    @Test
+    void summaryAndCodeTogetherStayWithinBudget() {
+        RagConfig ragConfig = new RagConfig();
+        ragConfig.getRetrieval().setContextTokenBudget(600);
+        RagEnhancedMessageServiceImpl service = new RagEnhancedMessageServiceImpl();
+        ReflectionTestUtils.setField(service, "ragConfig", ragConfig);
+        ReflectionTestUtils.setField(service, "contextPacker", packer);
+        // 摘要本身就超出总预算
+        String summary = "- src/components/Widget.vue: 组件说明与 props 列表\n".repeat(200);
+        String big = "const line = 'some long repeated content for the token budget'\n".repeat(200);
+        List<ContextChunk> candidates = List.of(chunk("src/big.js#line", big, 1.0, 1, 200, "line"));
+
+        String message = service.assembleMessage("加一个按钮", APP_ID, CodeGenTypeEnum.VUE_PROJECT, summary, candidates);
+
+        String summaryPart = message.substring(0, message.indexOf("=== 相关代码上下文"));
+        String codePart = message.substring(message.indexOf("无需再调用 readFile 读取。") + "无需再调用 readFile 读取。".length(),
+                message.indexOf("=== 用户需求 ==="));
+        int summaryTokens = packer.countTokens(summaryPart.strip());
+        assertTrue(summaryTokens <= 300, "摘要最多占一半预算: " + summaryTokens);
+        assertTrue(summaryTokens + packer.countTokens(codePart.strip()) <= 600,
+                "摘要 + 代码超出预算: " + summaryTokens + " + " + packer.countTokens(codePart.strip()));
+        assertTrue(codePart.contains("[src/big.js]"));
+    }
+
+    private static ContextChunk chunk(String key, String content, double score, int startLine, int endLine,
+                                      String symbols) {
+        Map<String, String> metadata = symbols == null
+                ? Map.of("startLine", String.valueOf(startLine), "endLine", String.valueOf(endLine))
+                : Map.of("startLine", String.valueOf(startLine), "endLine", String.valueOf(endLine), "symbols", symbols);
+        return ContextChunk.builder().filePath(key).content(content).score(score).metadata(metadata).build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.frank.aicodehelper.rag.store;
+
+import com.frank.aicodehelper.rag.config.DashScopeEmbeddingConfig;
+import com.frank.aicodehelper.rag.indexing.ChunkHashRegistry;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地分区向量存储测试：分区隔离、按 ID/过滤删除、重启恢复、登记一致性校验、HNSW 检索
+ */
+public class PartitionedLocalEmbeddingStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private DashScopeEmbeddingConfig.LocalStoreConfig options(int hnswThreshold) {
+        DashScopeEmbeddingConfig.LocalStoreConfig options = new DashScopeEmbeddingConfig.LocalStoreConfig();
+        options.setDir(dir.toString());
+        options.setHnswThreshold(hnswThreshold);
+        return options;
+    }
+
+    private static TextSegment segment(long appId, String filePath) {
+        return TextSegment.from("content of " + filePath,
+                Metadata.from("appId", String.valueOf(appId)).put("filePath", filePath));
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(PartitionedLocalEmbeddingStore store,
+                                                            float[] query, Filter filter, int k) {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(query))
+                .maxResults(k)
+                .filter(filter)
+                .build()).matches();
+    }
+
+    @Test
+    void partitionsByAppAndSurvivesRestart() {
+        PartitionedLocalEmbeddingStore store = new PartitionedLocalEmbeddingStore(options(1000));
+        store.addAll(List.of("a1", "a2", "b1"),
+                List.of(Embedding.from(new float[]{1, 0, 0}), Embedding.from(new float[]{0, 1, 0}),
+                        Embedding.from(new float[]{1, 0, 0})),
+                List.of(segment(1, "src/App.vue"), segment(1, "src/main.js"), segment(2, "src/App.vue")));
+
+        List<EmbeddingMatch<TextSegment>> matches = search(store, new float[]{2, 0, 0},
+                metadataKey("appId").isEqualTo("1"), 5);
+        assertEquals(List.of("a1", "a2"), matches.stream().map(EmbeddingMatch::embeddingId).toList());
+        assertEquals(1.0, matches.get(0).score(), 1e-6);
+
+        // 附加 filePath 过滤
+        matches = search(store, new float[]{1, 0, 0},
+                metadataKey("appId").isEqualTo("1").and(metadataKey("filePath").isEqualTo("src/main.js")), 5);
+        assertEquals(List.of("a2"), matches.stream().map(EmbeddingMatch::embeddingId).toList());
+
+        store.removeAll(List.of("a2"));
+        store.close();
+
+        // 重启后从磁盘恢复，无需重新向量化
+        PartitionedLocalEmbeddingStore reopened = new PartitionedLocalEmbeddingStore(options(1000));
+        assertEquals(1, reopened.size(1L));
+        assertEquals(1, reopened.size(2L));
+        TextSegment restored = search(reopened, new float[]{1, 0, 0}, metadataKey("appId").isEqualTo("2"), 1)
+                .get(0).embedded();
+        assertEquals("content of src/App.vue", restored.text());
+        assertEquals("2", restored.metadata().getString("appId"));
+
+        // 按应用删除：整个分区丢弃
+        reopened.removeAll(metadataKey("appId").isEqualTo("1"));
+        assertEquals(0, reopened.size(1L));
+        assertTrue(search(reopened, new float[]{1, 0, 0}, metadataKey("appId").isEqualTo("1"), 5).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void registryEntriesMissingFromLostStoreAreCleared() throws Exception {
+        PartitionedLocalEmbeddingStore store = new PartitionedLocalEmbeddingStore(options(1000));
+        store.addAll(List.of("a1", "b1"),
+                List.of(Embedding.from(new float[]{1, 0, 0}), Embedding.from(new float[]{0, 1, 0})),
+                List.of(segment(1, "src/App.vue"), segment(2, "src/App.vue")));
+        store.close();
+        ChunkHashRegistry registry = new ChunkHashRegistry();
+        registry.put(1L, "src/App.vue", Map.of("src/App.vue#template", new ChunkHashRegistry.ChunkRecord("h1", "a1")));
+        registry.put(2L, "src/App.vue", Map.of("src/App.vue#template", new ChunkHashRegistry.ChunkRecord("h2", "b1")));
+        registry.markTracked(1L);
+
+        // 应用 1 的分区文件丢失，登记仍声称其片段已索引
+        Files.delete(dir.resolve("app_1.vec"));
+        PartitionedLocalEmbeddingStore reopened = new PartitionedLocalEmbeddingStore(options(1000));
+
+        assertEquals(List.of(1L), registry.reconcile(reopened::contains));
+        assertNull(registry.get(1L, "src/App.vue"), "丢失向量的应用登记应被移除，文件会重新向量化");
+        assertFalse(registry.isTracked(1L));
+        assertNotNull(registry.get(2L, "src/App.vue"));
+        reopened.close();
+    }
+
+    @Test
+    void largePartitionUsesHnswWithGoodRecall() {
+        int dimension = 32;
+        int count = 600;
+        Random random = new Random(7);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            ids.add("v" + i);
+            embeddings.add(Embedding.from(vector));
+            segments.add(segment(9, "file" + i + ".vue"));
+        }
+        PartitionedLocalEmbeddingStore store = new PartitionedLocalEmbeddingStore(options(200));
+        store.addAll(ids, embeddings, segments);
+        assertTrue(store.usesHnsw(9L));
+
+        int hits = 0;
+        for (int i = 0; i < count; i += 10) {
+            List<EmbeddingMatch<TextSegment>> matches =
+                    search(store, embeddings.get(i).vector(), metadataKey("appId").isEqualTo("9"), 1);
+            if (!matches.isEmpty() && matches.get(0).embeddingId().equals("v" + i)) {
+                hits++;
+            }
+        }
+        assertTrue(hits >= 57, "HNSW 自查召回过低: " + hits + "/60");
+        store.close();
+    }
+}
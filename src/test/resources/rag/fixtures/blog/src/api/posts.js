@@ -0,0 +1,35 @@
+const BASE_URL = '/api'
+
+export async function fetchPosts({ page = 1, pageSize = 10, tag } = {}) {
+  const params = new URLSearchParams({ page, pageSize })
+  if (tag) {
+    params.set('tag', tag)
+  }
+  const response = await fetch(`${BASE_URL}/posts?${params}`)
+  if (!response.ok) {
+    throw new Error('加载文章列表失败')
+  }
+  return response.json()
+}
+
+export async function fetchPostById(id) {
+  const response = await fetch(`${BASE_URL}/posts/${id}`)
+  if (!response.ok) {
+    throw new Error('文章不存在')
+  }
+  return response.json()
+}
+
+export async function createComment(postId, content) {
+  const response = await fetch(`${BASE_URL}/posts/${postId}/comments`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify({ content })
+  })
+  return response.json()
+}
+
+export async function likePost(postId) {
+  const response = await fetch(`${BASE_URL}/posts/${postId}/like`, { method: 'POST' })
+  return response.json()
+}
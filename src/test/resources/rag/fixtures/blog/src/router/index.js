@@ -0,0 +1,16 @@
+import { createRouter, createWebHashHistory } from 'vue-router'
+import HomeView from '../views/HomeView.vue'
+
+const routes = [
+  { path: '/', name: 'home', component: HomeView },
+  { path: '/post/:id', name: 'post', component: () => import('../views/PostDetail.vue'), props: true },
+  { path: '/tag/:tag', name: 'tag', component: HomeView, props: true }
+]
+
+export default createRouter({
+  history: createWebHashHistory(),
+  routes,
+  scrollBehavior() {
+    return { top: 0 }
+  }
+})
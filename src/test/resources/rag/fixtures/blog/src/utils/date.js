@@ -0,0 +1,20 @@
+export function formatDate(value) {
+  const date = new Date(value)
+  const month = String(date.getMonth() + 1).padStart(2, '0')
+  const day = String(date.getDate()).padStart(2, '0')
+  return `${date.getFullYear()}-${month}-${day}`
+}
+
+export function timeAgo(value) {
+  const seconds = Math.floor((Date.now() - new Date(value).getTime()) / 1000)
+  if (seconds < 60) {
+    return '刚刚'
+  }
+  if (seconds < 3600) {
+    return `${Math.floor(seconds / 60)} 分钟前`
+  }
+  if (seconds < 86400) {
+    return `${Math.floor(seconds / 3600)} 小时前`
+  }
+  return formatDate(value)
+}
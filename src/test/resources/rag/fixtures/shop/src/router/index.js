@@ -0,0 +1,13 @@
+import { createRouter, createWebHashHistory } from 'vue-router'
+import HomeView from '../views/HomeView.vue'
+
+const routes = [
+  { path: '/', name: 'home', component: HomeView },
+  { path: '/products', name: 'products', component: () => import('../views/ProductsView.vue') },
+  { path: '/cart', name: 'cart', component: () => import('../views/CartView.vue') }
+]
+
+export default createRouter({
+  history: createWebHashHistory(),
+  routes
+})